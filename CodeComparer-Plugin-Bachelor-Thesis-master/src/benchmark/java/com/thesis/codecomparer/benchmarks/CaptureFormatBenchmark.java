@@ -0,0 +1,100 @@
+package com.thesis.codecomparer.benchmarks;
+
+import com.thesis.codecomparer.captureFile.CaptureIndex;
+import com.thesis.codecomparer.captureFile.CaptureReader;
+import com.thesis.codecomparer.captureFile.IndexEntry;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares the plain and the block compressed capture format: file size, write throughput, full
+ * parse throughput and random access through the index. Write throughput in MB/s is measured in
+ * uncompressed capture bytes, so both formats are compared on the same amount of data.
+ *
+ * <p>Usage: {@code CaptureFormatBenchmark [records] [iterations]}
+ */
+public class CaptureFormatBenchmark {
+
+  private static final int RANDOM_READS = 1000; // Records read through the index per iteration
+
+  public static void main(String[] args) throws IOException {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+    List<BreakpointState> states = SyntheticCaptures.generate(records, 42);
+    File directory = Files.createTempDirectory("codecomparer-benchmark").toFile();
+
+    System.out.printf("Capture format benchmark, %d records, best of %d%n%n", records, iterations);
+    System.out.printf(
+        "%-12s %12s %14s %14s %14s %16s%n",
+        "format", "size (MB)", "write (rec/s)", "write (MB/s)", "parse (rec/s)", "random (rec/s)");
+
+    long plainSize = 0;
+    for (boolean compressed : new boolean[] {false, true}) {
+      File file = new File(directory, compressed ? "capture.ccz" : "capture.txt");
+
+      long bestWrite = Long.MAX_VALUE;
+      long bestParse = Long.MAX_VALUE;
+      long bestRandom = Long.MAX_VALUE;
+      for (int i = 0; i < iterations; i++) {
+        long start = System.nanoTime();
+        SyntheticCaptures.write(file, states, compressed);
+        bestWrite = Math.min(bestWrite, System.nanoTime() - start);
+
+        start = System.nanoTime();
+        List<BreakpointState> parsed = CaptureReader.readAll(file);
+        bestParse = Math.min(bestParse, System.nanoTime() - start);
+        if (parsed.size() != records) {
+          throw new IllegalStateException("Parsed " + parsed.size() + " of " + records);
+        }
+
+        CaptureIndex index = CaptureIndex.load(file);
+        List<IndexEntry> selection = randomSelection(index.getEntries(), i);
+        start = System.nanoTime();
+        CaptureReader.readRecords(file, index, selection);
+        bestRandom = Math.min(bestRandom, System.nanoTime() - start);
+      }
+
+      long size = file.length();
+      if (!compressed) {
+        plainSize = size;
+      }
+      System.out.printf(
+          "%-12s %12.1f %14.0f %14.1f %14.0f %16.0f%n",
+          compressed ? "compressed" : "plain",
+          size / 1e6,
+          perSecond(records, bestWrite),
+          perSecond(plainSize / 1e6, bestWrite),
+          perSecond(records, bestParse),
+          perSecond(RANDOM_READS, bestRandom));
+      file.delete();
+      CaptureIndex.indexFileFor(file).delete();
+    }
+    directory.delete();
+  }
+
+  // Picks random entries, sorted by position like a location lookup would return them
+  private static List<IndexEntry> randomSelection(List<IndexEntry> entries, long seed) {
+    Random random = new Random(seed);
+    List<Integer> positions = new ArrayList<>();
+    for (int i = 0; i < RANDOM_READS; i++) {
+      positions.add(random.nextInt(entries.size()));
+    }
+    positions.sort(null);
+
+    List<IndexEntry> selection = new ArrayList<>();
+    for (int position : positions) {
+      selection.add(entries.get(position));
+    }
+    return selection;
+  }
+
+  private static double perSecond(double amount, long nanos) {
+    return amount / (nanos / 1e9);
+  }
+}
@@ -0,0 +1,69 @@
+package com.thesis.codecomparer.benchmarks;
+
+import com.thesis.codecomparer.comparators.FileComparator;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how the comparison of two runs scales with the number of threads. Both runs hold the
+ * same synthetic hits, except that about one percent of the hits of the second run have a changed
+ * value and a few hits are missing. Every parallel report is checked to be identical to the report
+ * of the single threaded run.
+ *
+ * <p>Usage: {@code ComparisonBenchmark [hits] [iterations]}
+ */
+public class ComparisonBenchmark {
+
+  public static void main(String[] args) {
+    int hits = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+    List<BreakpointState> run1 = SyntheticCaptures.generate(hits, 42);
+    List<BreakpointState> run2 = SyntheticCaptures.generate(hits, 42);
+    Random random = new Random(7);
+    for (int i = 0; i < hits / 100; i++) {
+      run2.get(random.nextInt(run2.size())).setInvokedMethodReturnValue("{\"id\":-1}");
+    }
+    for (int i = 0; i < 10; i++) {
+      run2.remove(random.nextInt(run2.size()));
+    }
+
+    System.out.printf(
+        "Comparison benchmark, %d hits, %d cores, best of %d%n%n",
+        hits, Runtime.getRuntime().availableProcessors(), iterations);
+    System.out.printf(
+        "%-10s %14s %16s %10s%n", "threads", "time (ms)", "compare (hits/s)", "speedup");
+
+    String expected = null;
+    long singleThreaded = 0;
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int threads = 1; ; threads = Math.min(threads * 2, cores)) {
+      ForkJoinPool pool = new ForkJoinPool(threads);
+      try {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+          long start = System.nanoTime();
+          String report = FileComparator.generateGroupedReport(run1, run2, "run1", "run2", pool);
+          best = Math.min(best, System.nanoTime() - start);
+
+          if (expected == null) {
+            expected = report;
+          } else if (!expected.equals(report)) {
+            throw new IllegalStateException("Report with " + threads + " threads differs");
+          }
+        }
+        if (threads == 1) {
+          singleThreaded = best;
+        }
+        System.out.printf(
+            "%-10d %14.0f %16.0f %9.2fx%n",
+            threads, best / 1e6, hits / (best / 1e9), (double) singleThreaded / best);
+      } finally {
+        pool.shutdown();
+      }
+      if (threads == cores) break;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package com.thesis.codecomparer.benchmarks;
+
+import com.thesis.codecomparer.captureFile.CaptureIndex;
+import com.thesis.codecomparer.captureFile.CaptureReader;
+import com.thesis.codecomparer.captureFile.CaptureWriter;
+import com.thesis.codecomparer.captureFile.StringDictionary;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Measures how parsing a large capture scales with the number of threads. The capture is parsed
+ * once sequentially and then in parallel with 1, 2, 4, ... threads up to the number of cores. The
+ * speedup is relative to the sequential parse.
+ *
+ * <p>Usage: {@code ParallelParseBenchmark [size in MB] [iterations]}, e.g. {@code 2048} for a 2 GB
+ * capture.
+ */
+public class ParallelParseBenchmark {
+
+  private static final int BATCH_SIZE = 10_000; // Records generated at once while writing
+
+  public static void main(String[] args) throws IOException {
+    long targetSize = (args.length > 0 ? Long.parseLong(args[0]) : 512) * 1024 * 1024;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+    File directory = Files.createTempDirectory("codecomparer-benchmark").toFile();
+
+    File plainFile = new File(directory, "capture.txt");
+    int batches = writePlain(plainFile, targetSize);
+    File compressedFile = new File(directory, "capture.ccz");
+    writeCompressed(compressedFile, batches);
+
+    System.out.printf(
+        "Parallel parse benchmark, %d records, %.0f MB, %d cores, best of %d%n%n",
+        batches * BATCH_SIZE,
+        plainFile.length() / 1e6,
+        Runtime.getRuntime().availableProcessors(),
+        iterations);
+    System.out.printf(
+        "%-12s %-12s %14s %12s %10s%n", "format", "threads", "parse (rec/s)", "MB/s", "speedup");
+
+    for (File file : new File[] {plainFile, compressedFile}) {
+      String format = file == plainFile ? "plain" : "compressed";
+      long sequential = bestOf(iterations, () -> CaptureReader.readAll(file));
+      print(format, "sequential", batches, plainFile.length(), sequential, sequential);
+
+      for (int threads = 1; ; threads = Math.min(threads * 2, cores())) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+          long parallel =
+              bestOf(
+                  iterations,
+                  () -> CaptureReader.readAllParallel(file, new StringDictionary(), pool));
+          print(format, String.valueOf(threads), batches, plainFile.length(), parallel, sequential);
+        } finally {
+          pool.shutdown();
+        }
+        if (threads == cores()) break;
+      }
+      file.delete();
+      CaptureIndex.indexFileFor(file).delete();
+    }
+    directory.delete();
+  }
+
+  /** A parse run of the benchmark. */
+  private interface Parse {
+    List<BreakpointState> run() throws IOException;
+  }
+
+  // Returns the fastest of several parses in nanoseconds
+  private static long bestOf(int iterations, Parse parse) throws IOException {
+    long best = Long.MAX_VALUE;
+    int records = -1;
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      List<BreakpointState> states = parse.run();
+      best = Math.min(best, System.nanoTime() - start);
+      if (records != -1 && states.size() != records) {
+        throw new IllegalStateException("Parsed " + states.size() + " instead of " + records);
+      }
+      records = states.size();
+    }
+    return best;
+  }
+
+  // Writes batches of records until the plain capture reaches the target size
+  private static int writePlain(File file, long targetSize) throws IOException {
+    int batches = 0;
+    try (CaptureWriter writer = new CaptureWriter(file, false)) {
+      while (file.length() < targetSize) {
+        for (BreakpointState state : SyntheticCaptures.generate(BATCH_SIZE, batches)) {
+          writer.write(state);
+        }
+        batches++;
+      }
+    }
+    return batches;
+  }
+
+  // Writes the same records as writePlain to a compressed capture
+  private static void writeCompressed(File file, int batches) throws IOException {
+    try (CaptureWriter writer = new CaptureWriter(file, true)) {
+      for (int batch = 0; batch < batches; batch++) {
+        for (BreakpointState state : SyntheticCaptures.generate(BATCH_SIZE, batch)) {
+          writer.write(state);
+        }
+      }
+    }
+  }
+
+  private static void print(
+      String format, String threads, int batches, long plainSize, long nanos, long sequential) {
+    double seconds = nanos / 1e9;
+    System.out.printf(
+        "%-12s %-12s %14.0f %12.1f %9.2fx%n",
+        format,
+        threads,
+        (double) batches * BATCH_SIZE / seconds,
+        plainSize / 1e6 / seconds,
+        (double) sequential / nanos);
+  }
+
+  private static int cores() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+}
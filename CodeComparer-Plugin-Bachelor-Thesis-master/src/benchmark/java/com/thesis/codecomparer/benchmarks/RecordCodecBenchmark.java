@@ -0,0 +1,135 @@
+package com.thesis.codecomparer.benchmarks;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.thesis.codecomparer.captureFile.CaptureRecordCodec;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the hand-written record codec with the Gson binding it replaced: encode and decode
+ * throughput, the size of an encoded record and the bytes allocated per record. The Gson path
+ * pretty prints like earlier versions of the capture writer and binds the beans by reflection.
+ * Records are encoded with plain names, so the dictionary does not take part in the measurement.
+ *
+ * <p>Usage: {@code RecordCodecBenchmark [records] [iterations]}
+ */
+public class RecordCodecBenchmark {
+
+  private static final com.sun.management.ThreadMXBean THREADS =
+      (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+  /** Encodes and decodes single records in one of the compared ways. */
+  private interface Codec {
+    void encode(BreakpointState state, OutputStream output) throws IOException;
+
+    BreakpointState decode(byte[] record);
+  }
+
+  public static void main(String[] args) throws IOException {
+    int records = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+    List<BreakpointState> states = SyntheticCaptures.generate(records, 42);
+
+    System.out.printf("Record codec benchmark, %d records, best of %d%n%n", records, iterations);
+    System.out.printf(
+        "%-16s %10s %14s %14s %14s %14s%n",
+        "codec", "bytes/rec", "encode (rec/s)", "decode (rec/s)", "enc alloc/rec", "dec alloc/rec");
+
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    measure(
+        "gson (pretty)",
+        states,
+        iterations,
+        new Codec() {
+          @Override
+          public void encode(BreakpointState state, OutputStream output) throws IOException {
+            output.write(gson.toJson(state).getBytes(StandardCharsets.UTF_8));
+          }
+
+          @Override
+          public BreakpointState decode(byte[] record) {
+            return gson.fromJson(
+                new String(record, StandardCharsets.UTF_8), BreakpointState.class);
+          }
+        });
+    for (boolean prettyPrinted : new boolean[] {false, true}) {
+      CaptureRecordCodec codec = new CaptureRecordCodec(prettyPrinted);
+      measure(
+          prettyPrinted ? "codec (pretty)" : "codec (compact)",
+          states,
+          iterations,
+          new Codec() {
+            @Override
+            public void encode(BreakpointState state, OutputStream output) throws IOException {
+              codec.encode(state, output);
+            }
+
+            @Override
+            public BreakpointState decode(byte[] record) {
+              return CaptureRecordCodec.decode(record, 0, record.length);
+            }
+          });
+    }
+  }
+
+  private static void measure(
+      String name, List<BreakpointState> states, int iterations, Codec codec) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024); // Reused for all records
+    List<byte[]> encoded = new ArrayList<>(states.size());
+    long totalBytes = 0;
+    for (BreakpointState state : states) {
+      output.reset();
+      codec.encode(state, output);
+      encoded.add(output.toByteArray());
+      totalBytes += output.size();
+    }
+
+    long bestEncode = Long.MAX_VALUE;
+    long bestDecode = Long.MAX_VALUE;
+    long encodeAllocation = Long.MAX_VALUE;
+    long decodeAllocation = Long.MAX_VALUE;
+    int checksum = 0; // Keeps the results alive
+    for (int i = 0; i < iterations; i++) {
+      long allocated = THREADS.getCurrentThreadAllocatedBytes();
+      long start = System.nanoTime();
+      for (BreakpointState state : states) {
+        output.reset();
+        codec.encode(state, output);
+      }
+      bestEncode = Math.min(bestEncode, System.nanoTime() - start);
+      encodeAllocation =
+          Math.min(encodeAllocation, THREADS.getCurrentThreadAllocatedBytes() - allocated);
+      checksum += output.size();
+
+      allocated = THREADS.getCurrentThreadAllocatedBytes();
+      start = System.nanoTime();
+      for (byte[] record : encoded) {
+        checksum += codec.decode(record).getLineNumber();
+      }
+      bestDecode = Math.min(bestDecode, System.nanoTime() - start);
+      decodeAllocation =
+          Math.min(decodeAllocation, THREADS.getCurrentThreadAllocatedBytes() - allocated);
+    }
+
+    int records = states.size();
+    System.out.printf(
+        "%-16s %10.0f %14.0f %14.0f %14.0f %14.0f%n",
+        name,
+        (double) totalBytes / records,
+        records / (bestEncode / 1e9),
+        records / (bestDecode / 1e9),
+        (double) encodeAllocation / records,
+        (double) decodeAllocation / records);
+    if (checksum == 42) {
+      System.out.println(); // Practically never, but the JIT cannot know
+    }
+  }
+}
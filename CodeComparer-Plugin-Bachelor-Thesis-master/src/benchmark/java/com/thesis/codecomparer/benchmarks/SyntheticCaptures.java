@@ -0,0 +1,118 @@
+package com.thesis.codecomparer.benchmarks;
+
+import com.thesis.codecomparer.captureFile.CaptureWriter;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic breakpoint records for the benchmarks. The records mimic real captures: a
+ * small set of classes, methods and types repeats over and over, while the serialized values are
+ * nested JSON objects of varying size.
+ */
+class SyntheticCaptures {
+
+  private static final String[] CLASSES = {
+    "OrderService", "CustomerRepository", "InvoiceMapper", "PriceCalculator", "JsonParser"
+  };
+  private static final String[] METHODS = {"process", "findById", "map", "calculate", "parse"};
+  private static final String[] TYPES = {
+    "void", "int", "java.lang.String", "com.example.Order", "java.util.List"
+  };
+  private static final String STACK_TRACE =
+      "com.example.OrderService.process(OrderService.java:42)\n"
+          + "com.example.Main.run(Main.java:17)\n"
+          + "com.example.Main.main(Main.java:9)\n";
+
+  private SyntheticCaptures() {
+    // Only static helpers
+  }
+
+  /**
+   * Generates a deterministic list of breakpoint records.
+   *
+   * @param count The number of records to generate.
+   * @param seed The random seed, equal seeds produce equal records.
+   * @return The generated records.
+   */
+  static List<BreakpointState> generate(int count, long seed) {
+    Random random = new Random(seed);
+    List<BreakpointState> states = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      int site = random.nextInt(CLASSES.length);
+
+      BreakpointState state = new BreakpointState();
+      state.setFileName(CLASSES[site]);
+      state.setLineNumber(10 + site * 7);
+      state.setThreadName(random.nextInt(10) == 0 ? "worker-" + random.nextInt(4) : "main");
+      state.setCurrentMethodState(methodState(random, site));
+      state.setInvokedMethodState(methodState(random, (site + 1) % CLASSES.length));
+      state.setInvokedMethodReturnValue(value(random, 1 + random.nextInt(3)));
+
+      if (random.nextInt(50) == 0) {
+        ExceptionDetails exceptionDetails = new ExceptionDetails();
+        exceptionDetails.setExceptionType("java.lang.IllegalStateException");
+        exceptionDetails.setExceptionMessage("Order " + random.nextInt(100) + " is closed");
+        exceptionDetails.setStackTrace(STACK_TRACE);
+        state.setExceptionDetails(exceptionDetails);
+      }
+      states.add(state);
+    }
+    return states;
+  }
+
+  /**
+   * Writes records to a new capture file.
+   *
+   * @param file The capture file to write.
+   * @param states The records to write.
+   * @param compressed Whether the capture is block compressed.
+   * @throws IOException If writing fails.
+   */
+  static void write(File file, List<BreakpointState> states, boolean compressed)
+      throws IOException {
+    try (CaptureWriter writer = new CaptureWriter(file, compressed)) {
+      for (BreakpointState state : states) {
+        writer.write(state);
+      }
+    }
+  }
+
+  private static MethodState methodState(Random random, int site) {
+    MethodState methodState = new MethodState();
+    methodState.setMethodName(METHODS[site]);
+    methodState.setReturnType(TYPES[site]);
+
+    List<ParameterInfo> parameters = new ArrayList<>();
+    int parameterCount = 1 + site % 3;
+    for (int i = 0; i < parameterCount; i++) {
+      parameters.add(new ParameterInfo("arg" + i, value(random, 1 + random.nextInt(4))));
+    }
+    methodState.setParameters(parameters);
+    return methodState;
+  }
+
+  // Builds a nested JSON value in the style of ValueJsonSerializer
+  private static String value(Random random, int items) {
+    StringBuilder json = new StringBuilder();
+    json.append("{\"id\":").append(random.nextInt(1000));
+    json.append(",\"customer\":\"customer-").append(random.nextInt(50)).append('"');
+    json.append(",\"status\":\"").append(random.nextInt(20) == 0 ? "FAILED" : "OK").append('"');
+    json.append(",\"created\":\"java.time.Instant(id=").append(random.nextInt(100000)).append(")\"");
+    json.append(",\"items\":[");
+    for (int i = 0; i < items; i++) {
+      if (i > 0) json.append(',');
+      json.append("{\"sku\":\"SKU-").append(random.nextInt(200)).append('"');
+      json.append(",\"quantity\":").append(1 + random.nextInt(5));
+      json.append(",\"price\":").append(random.nextInt(10000) / 100.0).append('}');
+    }
+    json.append("]}");
+    return json.toString();
+  }
+}
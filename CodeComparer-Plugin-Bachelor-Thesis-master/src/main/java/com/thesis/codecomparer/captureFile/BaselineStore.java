@@ -0,0 +1,751 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.*;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Local store of baseline runs, so captured runs are kept under the project instead of being
+ * picked as loose files, and the hits of one location in many runs are found without parsing them.
+ *
+ * <p>The store is a directory holding an append-only log and a hash index. The log is a sequence
+ * of checksummed frames: a run starts with a run frame, followed by one frame per hit and a commit
+ * frame, and a removal frame drops a run. Hits are encoded by the {@link CaptureRecordCodec} with
+ * plain names, so every hit can be decoded on its own. Runs without their commit frame, e.g. after
+ * a crash, are ignored, and a torn frame at the end of the log is cut off when the store is opened.
+ * A corrupt frame before the end is not repaired, opening the store fails instead.
+ *
+ * <p>The index maps run ids to the position of their frames, and within every run the breakpoint
+ * locations (file and line) to the positions of their hits, so the hits of one location in the
+ * last N runs are read directly from the log. It is kept in memory; a snapshot is written next to
+ * the log after every change, and frames appended after the snapshot are replayed when the store
+ * is opened.
+ *
+ * <p>Removed and replaced runs stay in the log until it is compacted, which copies the frames of
+ * the live runs to a new log that replaces the old one. {@link #applyRetention(RetentionPolicy)}
+ * removes runs by number and age and compacts once most of the log is garbage. The directory is
+ * locked while the store is open, so an IDE and a command line comparison cannot write it at once.
+ */
+public class BaselineStore implements Closeable {
+
+  public static final String DEFAULT_DIRECTORY = "CodeComparer-Plugin/baselines"; // In the project
+  private static final String LOG_FILE = "baselines.log";
+  private static final String INDEX_FILE = "baselines.idx";
+  private static final String LOCK_FILE = "baselines.lock";
+  private static final int MAGIC = 0x4343424C; // "CCBL"
+  private static final int INDEX_MAGIC = 0x43434249; // "CCBI"
+  private static final int VERSION = 1;
+  private static final int LOG_HEADER_LENGTH = 8; // Magic and version
+  private static final int FRAME_HEADER_LENGTH = 8; // Payload length and checksum
+  private static final byte RUN_TAG = 'R'; // Starts a run: number, id, creation time and source
+  private static final byte HIT_TAG = 'H'; // One hit: run number, location and encoded record
+  private static final byte COMMIT_TAG = 'C'; // Completes a run: number and hit count
+  private static final byte REMOVE_TAG = 'X'; // Removes a run: number
+  private static final int WRITE_BUFFER_SIZE = 256 * 1024; // Frames collected before writing
+  private static final double COMPACTION_THRESHOLD = 0.5; // Garbage part of the log to compact
+  private static final int PROGRESS_INTERVAL = 1024; // Added hits between progress updates
+
+  private final File directory; // Directory of the store
+  private final File logFile; // The append-only log
+  private final File indexFile; // Snapshot of the index
+  private final RandomAccessFile lockFile; // Holds the lock of the directory
+  private final FileLock lock; // Keeps other processes out while the store is open
+  private RandomAccessFile log; // Reads and appends the log
+  private long logLength; // Length of the log including frames not written yet
+  private final ByteArrayOutputStream pendingFrames = new ByteArrayOutputStream(); // Not written
+  private final Map<String, Run> runs = new LinkedHashMap<>(); // Live runs by id, oldest first
+  private int nextRunNumber; // Number of the next run, numbers are never reused
+  private final CaptureRecordCodec codec = new CaptureRecordCodec(); // Encodes added hits
+  private final CRC32 checksum = new CRC32(); // Checksum of the frame being written or read
+  private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(); // Next payload
+  private final DataOutputStream payloadOutput = new DataOutputStream(payloadBytes);
+
+  /**
+   * Information about a stored run.
+   *
+   * @param id The id of the run, e.g. the version of the program it was captured with.
+   * @param createdMillis When the run was added to the store.
+   * @param source Where the run came from, e.g. the path of the imported capture.
+   * @param hits The number of hits of the run.
+   */
+  public record RunInfo(String id, long createdMillis, String source, int hits) {}
+
+  /**
+   * The hits of one location in a stored run.
+   *
+   * @param run The run.
+   * @param hits The hits of the location, in the order they were captured.
+   */
+  public record LocationHits(RunInfo run, List<BreakpointState> hits) {}
+
+  /**
+   * Which runs to keep.
+   *
+   * @param maxRuns The number of most recent runs to keep, or 0 for no limit.
+   * @param maxAge The age after which runs are removed, or null for no limit.
+   */
+  public record RetentionPolicy(int maxRuns, Duration maxAge) {
+
+    /**
+     * Returns the policy configured with the system properties {@code codecomparer.baselineRuns}
+     * (default 50) and {@code codecomparer.baselineDays} (default no limit).
+     *
+     * @return The configured policy.
+     */
+    public static RetentionPolicy configured() {
+      int days = Integer.getInteger("codecomparer.baselineDays", 0);
+      return new RetentionPolicy(
+          Integer.getInteger("codecomparer.baselineRuns", 50),
+          days > 0 ? Duration.ofDays(days) : null);
+    }
+  }
+
+  private BaselineStore(File directory, RandomAccessFile lockFile, FileLock lock) {
+    this.directory = directory;
+    this.logFile = new File(directory, LOG_FILE);
+    this.indexFile = new File(directory, INDEX_FILE);
+    this.lockFile = lockFile;
+    this.lock = lock;
+  }
+
+  /**
+   * Opens the store in a directory, creating it if needed.
+   *
+   * @param directory The directory of the store.
+   * @return The open store.
+   * @throws IOException If the store cannot be read or is already open.
+   */
+  public static BaselineStore open(File directory) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create the baseline store " + directory);
+    }
+    RandomAccessFile lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+    FileLock lock;
+    try {
+      lock = lockFile.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null; // Already open in this process
+    } catch (IOException | RuntimeException e) {
+      lockFile.close();
+      throw e;
+    }
+    if (lock == null) {
+      lockFile.close();
+      throw new IOException("The baseline store " + directory + " is already in use");
+    }
+
+    BaselineStore store = new BaselineStore(directory, lockFile, lock);
+    try {
+      store.load();
+    } catch (IOException | RuntimeException e) {
+      store.close();
+      throw e;
+    }
+    return store;
+  }
+
+  /**
+   * Adds the hits of a capture file as a run. A run with the same id is replaced.
+   *
+   * @param runId The id of the run.
+   * @param captureFile The capture file to import, plain or block compressed.
+   * @param progress The monitor receiving the progress; a cancelled run is not added.
+   * @return The added run.
+   * @throws IOException If the capture cannot be read or the store cannot be written.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public synchronized RunInfo addRun(String runId, File captureFile, ProgressMonitor progress)
+      throws IOException {
+    RecordDecoder decoder = new RecordDecoder(new StringDictionary());
+    double fileLength = Math.max(1, captureFile.length());
+    return addRun(
+        runId,
+        captureFile.getAbsolutePath(),
+        run ->
+            RecordScanner.scanFile(
+                captureFile,
+                (blockOffset, offset, data, start, length) -> {
+                  BreakpointState state = decoder.decode(data, start, length);
+                  if (state != null) {
+                    appendHit(run, state);
+                  }
+                  if (run.hits % PROGRESS_INTERVAL == 0) {
+                    progress.checkCanceled();
+                    progress.setFraction((blockOffset >= 0 ? blockOffset : offset) / fileLength);
+                  }
+                }));
+  }
+
+  /**
+   * Adds hits as a run. A run with the same id is replaced.
+   *
+   * @param runId The id of the run.
+   * @param hits The hits of the run.
+   * @param source Where the hits came from, shown with the run.
+   * @param progress The monitor receiving the progress; a cancelled run is not added.
+   * @return The added run.
+   * @throws IOException If the store cannot be written.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public synchronized RunInfo addRun(
+      String runId, List<BreakpointState> hits, String source, ProgressMonitor progress)
+      throws IOException {
+    return addRun(
+        runId,
+        source,
+        run -> {
+          for (BreakpointState state : hits) {
+            if (run.hits % PROGRESS_INTERVAL == 0) {
+              progress.checkCanceled();
+              progress.setFraction((double) run.hits / hits.size());
+            }
+            appendHit(run, state);
+          }
+        });
+  }
+
+  /**
+   * Returns all runs of the store.
+   *
+   * @return The runs, oldest first.
+   */
+  public synchronized List<RunInfo> getRuns() {
+    List<RunInfo> infos = new ArrayList<>(runs.size());
+    for (Run run : runs.values()) {
+      infos.add(run.info());
+    }
+    return infos;
+  }
+
+  /**
+   * Reads all hits of a run.
+   *
+   * @param runId The id of the run.
+   * @param rules The rules normalizing the values of every hit.
+   * @return The hits in the order they were captured, or null if there is no run with the id.
+   * @throws IOException If the log cannot be read.
+   */
+  public synchronized List<BreakpointState> readRun(String runId, NormalizationRules rules)
+      throws IOException {
+    Run run = runs.get(runId);
+    if (run == null) {
+      return null;
+    }
+    flushFrames();
+    RecordDecoder decoder = new RecordDecoder(new StringDictionary(), rules);
+    List<BreakpointState> hits = new ArrayList<>(run.hits);
+    long position = run.start;
+    while (position < run.end) {
+      byte[] payload = readFrame(position);
+      if (payload[0] == HIT_TAG) {
+        hits.add(decodeHit(payload, decoder));
+      }
+      position += FRAME_HEADER_LENGTH + payload.length;
+    }
+    return hits;
+  }
+
+  /**
+   * Reads the hits of a location in the most recent runs that hit it. Only the frames of these
+   * hits are read, found through the index.
+   *
+   * @param fileName The file name of the location.
+   * @param lineNumber The line number of the location.
+   * @param maxRuns The maximum number of runs to return.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every hit.
+   * @return The hits per run, most recent run first. Runs without hits of the location are left
+   *     out.
+   * @throws IOException If the log cannot be read.
+   */
+  public synchronized List<LocationHits> findByLocation(
+      String fileName,
+      int lineNumber,
+      int maxRuns,
+      StringDictionary dictionary,
+      NormalizationRules rules)
+      throws IOException {
+    flushFrames();
+    Location location = new Location(fileName, lineNumber);
+    List<Run> newestFirst = new ArrayList<>(runs.values());
+    Collections.reverse(newestFirst);
+
+    List<LocationHits> result = new ArrayList<>();
+    for (Run run : newestFirst) {
+      if (result.size() >= maxRuns) break;
+
+      Offsets offsets = run.locations.get(location);
+      if (offsets == null) continue;
+
+      RecordDecoder decoder = new RecordDecoder(dictionary, rules);
+      List<BreakpointState> hits = new ArrayList<>(offsets.size);
+      for (int i = 0; i < offsets.size; i++) {
+        hits.add(decodeHit(readFrame(run.start + offsets.values[i]), decoder));
+      }
+      result.add(new LocationHits(run.info(), hits));
+    }
+    return result;
+  }
+
+  /**
+   * Removes a run. Its frames stay in the log until it is compacted.
+   *
+   * @param runId The id of the run.
+   * @return true if the run existed.
+   * @throws IOException If the store cannot be written.
+   */
+  public synchronized boolean removeRun(String runId) throws IOException {
+    Run run = runs.remove(runId);
+    if (run == null) {
+      return false;
+    }
+    DataOutputStream payload = newPayload(REMOVE_TAG);
+    payload.writeInt(run.number);
+    appendFrame();
+    flushFrames();
+    log.getFD().sync();
+    writeIndex();
+    return true;
+  }
+
+  /**
+   * Removes the runs the policy does not keep, and compacts the log if most of it is garbage
+   * afterwards.
+   *
+   * @param policy The retention policy.
+   * @return The number of removed runs.
+   * @throws IOException If the store cannot be written.
+   */
+  public synchronized int applyRetention(RetentionPolicy policy) throws IOException {
+    List<String> expired = new ArrayList<>();
+    long oldestKept =
+        policy.maxAge() == null
+            ? Long.MIN_VALUE
+            : System.currentTimeMillis() - policy.maxAge().toMillis();
+    int remaining = runs.size();
+    for (Run run : runs.values()) {
+      if ((policy.maxRuns() > 0 && remaining > policy.maxRuns()) || run.created < oldestKept) {
+        expired.add(run.id);
+        remaining--;
+      }
+    }
+    for (String runId : expired) {
+      removeRun(runId);
+    }
+    if (getGarbageBytes() > COMPACTION_THRESHOLD * (logLength - LOG_HEADER_LENGTH)) {
+      compact();
+    }
+    return expired.size();
+  }
+
+  /**
+   * Returns the size of the frames in the log that belong to no live run.
+   *
+   * @return The bytes a compaction would free.
+   */
+  public synchronized long getGarbageBytes() {
+    long liveBytes = 0;
+    for (Run run : runs.values()) {
+      liveBytes += run.end - run.start;
+    }
+    return logLength - LOG_HEADER_LENGTH - liveBytes;
+  }
+
+  /**
+   * Rewrites the log with the frames of the live runs only. The new log replaces the old one
+   * atomically, so the store stays consistent if the compaction is interrupted.
+   *
+   * @throws IOException If the store cannot be written.
+   */
+  public synchronized void compact() throws IOException {
+    flushFrames();
+    File compacted = new File(directory, LOG_FILE + ".compact");
+    Map<Run, Long> newStarts = new HashMap<>();
+    try (RandomAccessFile target = new RandomAccessFile(compacted, "rw")) {
+      target.setLength(0);
+      target.writeInt(MAGIC);
+      target.writeInt(VERSION);
+      byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+      for (Run run : runs.values()) {
+        newStarts.put(run, target.getFilePointer());
+        log.seek(run.start);
+        for (long remaining = run.end - run.start; remaining > 0; ) {
+          int read = log.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+          if (read < 0) {
+            throw new EOFException("The baseline log ends inside run " + run.id);
+          }
+          target.write(buffer, 0, read);
+          remaining -= read;
+        }
+      }
+      target.getFD().sync();
+    }
+
+    log.close();
+    // The snapshot's offsets are wrong for the new log, without it the index is rebuilt on open
+    Files.deleteIfExists(indexFile.toPath());
+    Files.move(
+        compacted.toPath(),
+        logFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    log = new RandomAccessFile(logFile, "rw");
+    logLength = log.length();
+    // Hit positions are relative to their run, moving a run only changes its start
+    for (Map.Entry<Run, Long> entry : newStarts.entrySet()) {
+      Run run = entry.getKey();
+      run.end = entry.getValue() + (run.end - run.start);
+      run.start = entry.getValue();
+    }
+    writeIndex();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (log != null) {
+        flushFrames();
+        log.close();
+      }
+    } finally {
+      try {
+        lock.release();
+      } finally {
+        lockFile.close();
+      }
+    }
+  }
+
+  /** Writes the frames of a run. */
+  private interface RunWriter {
+    void write(Run run) throws IOException;
+  }
+
+  private RunInfo addRun(String runId, String source, RunWriter hits) throws IOException {
+    Run run = new Run(nextRunNumber++, runId, System.currentTimeMillis(), source, logLength);
+    try {
+      DataOutputStream payload = newPayload(RUN_TAG);
+      payload.writeInt(run.number);
+      payload.writeUTF(run.id);
+      payload.writeLong(run.created);
+      payload.writeUTF(source);
+      appendFrame();
+
+      hits.write(run);
+
+      payload = newPayload(COMMIT_TAG);
+      payload.writeInt(run.number);
+      payload.writeInt(run.hits);
+      appendFrame();
+      flushFrames();
+      log.getFD().sync();
+    } catch (IOException | RuntimeException e) {
+      // Drop the incomplete run, it would be ignored when the log is replayed anyway
+      pendingFrames.reset();
+      logLength = run.start;
+      log.setLength(logLength);
+      throw e;
+    }
+
+    run.end = logLength;
+    runs.remove(runId); // A replaced run becomes garbage, its commit is older
+    runs.put(runId, run);
+    writeIndex();
+    return run.info();
+  }
+
+  private void appendHit(Run run, BreakpointState state) throws IOException {
+    codec.encode(state, null, null);
+    DataOutputStream payload = newPayload(HIT_TAG);
+    payload.writeInt(run.number);
+    payload.writeUTF(Objects.requireNonNullElse(state.getFileName(), ""));
+    payload.writeInt(state.getLineNumber());
+    payload.write(codec.buffer(), 0, codec.length());
+    long offset = appendFrame();
+    run.addHit(new Location(state.getFileName(), state.getLineNumber()), offset - run.start);
+  }
+
+  private DataOutputStream newPayload(byte tag) throws IOException {
+    payloadBytes.reset();
+    payloadOutput.writeByte(tag);
+    return payloadOutput;
+  }
+
+  // Appends the payload built last as a frame, returns the frame's offset in the log
+  private long appendFrame() throws IOException {
+    long offset = logLength;
+    byte[] payload = payloadBytes.toByteArray();
+    checksum.reset();
+    checksum.update(payload);
+    DataOutputStream frame = new DataOutputStream(pendingFrames);
+    frame.writeInt(payload.length);
+    frame.writeInt((int) checksum.getValue());
+    frame.write(payload);
+    logLength += FRAME_HEADER_LENGTH + payload.length;
+    if (pendingFrames.size() >= WRITE_BUFFER_SIZE) {
+      flushFrames();
+    }
+    return offset;
+  }
+
+  private void flushFrames() throws IOException {
+    if (pendingFrames.size() == 0) return;
+
+    log.seek(logLength - pendingFrames.size());
+    log.write(pendingFrames.toByteArray());
+    pendingFrames.reset();
+  }
+
+  // Reads the payload of the frame at the offset and checks it against its checksum
+  private byte[] readFrame(long offset) throws IOException {
+    log.seek(offset);
+    int length = log.readInt();
+    int expected = log.readInt();
+    if (length <= 0 || offset + FRAME_HEADER_LENGTH + length > logLength) {
+      throw new IOException("Corrupt frame at offset " + offset + " of the baseline log");
+    }
+    byte[] payload = new byte[length];
+    log.readFully(payload);
+    checksum.reset();
+    checksum.update(payload);
+    if ((int) checksum.getValue() != expected) {
+      throw new IOException("Checksum mismatch at offset " + offset + " of the baseline log");
+    }
+    return payload;
+  }
+
+  private static BreakpointState decodeHit(byte[] payload, RecordDecoder decoder)
+      throws IOException {
+    DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+    input.readByte(); // Tag
+    input.readInt(); // Run number
+    input.readUTF(); // File name, only needed by the index
+    input.readInt(); // Line number
+    int recordStart = payload.length - input.available();
+    return decoder.decode(payload, recordStart, payload.length - recordStart);
+  }
+
+  // Loads the index snapshot and replays the frames appended after it
+  private void load() throws IOException {
+    boolean newLog = !logFile.exists() || logFile.length() < LOG_HEADER_LENGTH;
+    log = new RandomAccessFile(logFile, "rw");
+    if (newLog) {
+      log.setLength(0);
+      log.writeInt(MAGIC);
+      log.writeInt(VERSION);
+      logLength = LOG_HEADER_LENGTH;
+      writeIndex();
+      return;
+    }
+    if (log.readInt() != MAGIC || log.readInt() != VERSION) {
+      throw new IOException(logFile + " is not a baseline log of this version");
+    }
+    logLength = log.length();
+
+    long replayFrom = readIndex();
+    if (replayFrom < 0) {
+      runs.clear();
+      nextRunNumber = 0;
+      replayFrom = LOG_HEADER_LENGTH;
+    }
+    if (replay(replayFrom)) {
+      writeIndex();
+    }
+  }
+
+  // Replays the frames from the offset on, returns whether any frame was replayed
+  private boolean replay(long from) throws IOException {
+    Map<Integer, Run> runsByNumber = new HashMap<>();
+    for (Run run : runs.values()) {
+      runsByNumber.put(run.number, run);
+    }
+    Run pending = null; // Run whose commit frame was not read yet
+    long position = from;
+    while (position < logLength) {
+      byte[] payload;
+      try {
+        payload = readFrame(position);
+      } catch (IOException e) {
+        if (!isTornTail(position)) {
+          throw e; // Cutting the log here would lose the intact frames behind it
+        }
+        // A frame torn by a crash while it was appended
+        logLength = position;
+        log.setLength(position);
+        break;
+      }
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+      byte tag = input.readByte();
+      int number = input.readInt();
+      if (tag == RUN_TAG) {
+        pending = new Run(number, input.readUTF(), input.readLong(), input.readUTF(), position);
+        nextRunNumber = Math.max(nextRunNumber, number + 1);
+      } else if (tag == HIT_TAG && pending != null && pending.number == number) {
+        String fileName = input.readUTF();
+        pending.addHit(new Location(fileName, input.readInt()), position - pending.start);
+      } else if (tag == COMMIT_TAG && pending != null && pending.number == number) {
+        pending.end = position + FRAME_HEADER_LENGTH + payload.length;
+        runs.remove(pending.id);
+        runs.put(pending.id, pending);
+        runsByNumber.put(number, pending);
+        pending = null;
+      } else if (tag == REMOVE_TAG) {
+        Run removed = runsByNumber.remove(number);
+        if (removed != null && runs.get(removed.id) == removed) {
+          runs.remove(removed.id);
+        }
+      }
+      position += FRAME_HEADER_LENGTH + payload.length;
+    }
+    return position > from;
+  }
+
+  // Whether the unreadable frame at the offset reaches the end of the log, i.e. was torn
+  private boolean isTornTail(long offset) throws IOException {
+    if (offset + FRAME_HEADER_LENGTH > logLength) {
+      return true;
+    }
+    log.seek(offset);
+    int length = log.readInt();
+    return length > 0 && offset + FRAME_HEADER_LENGTH + length >= logLength;
+  }
+
+  // Writes the index to a temporary file first, so a crash never leaves a partial snapshot
+  private void writeIndex() throws IOException {
+    File temporary = new File(directory, INDEX_FILE + ".tmp");
+    try (DataOutputStream output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+      output.writeInt(INDEX_MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(logLength);
+      output.writeInt(nextRunNumber);
+      output.writeInt(runs.size());
+      for (Run run : runs.values()) {
+        output.writeInt(run.number);
+        output.writeUTF(run.id);
+        output.writeLong(run.created);
+        output.writeUTF(run.source);
+        output.writeLong(run.start);
+        output.writeLong(run.end);
+        output.writeInt(run.hits);
+        output.writeInt(run.locations.size());
+        for (Map.Entry<Location, Offsets> entry : run.locations.entrySet()) {
+          output.writeUTF(Objects.requireNonNullElse(entry.getKey().fileName(), ""));
+          output.writeInt(entry.getKey().lineNumber());
+          Offsets offsets = entry.getValue();
+          output.writeInt(offsets.size);
+          for (int i = 0; i < offsets.size; i++) {
+            output.writeLong(offsets.values[i]);
+          }
+        }
+      }
+    }
+    Files.move(
+        temporary.toPath(),
+        indexFile.toPath(),
+        StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // Returns the log length covered by the snapshot, or -1 if there is no usable snapshot
+  private long readIndex() {
+    if (!indexFile.exists()) {
+      return -1;
+    }
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (input.readInt() != INDEX_MAGIC || input.readInt() != VERSION) {
+        return -1;
+      }
+      long coveredLength = input.readLong();
+      if (coveredLength > logLength) {
+        return -1; // The log was cut off after the snapshot
+      }
+      nextRunNumber = input.readInt();
+      int runCount = input.readInt();
+      for (int i = 0; i < runCount; i++) {
+        int number = input.readInt();
+        String id = input.readUTF();
+        long created = input.readLong();
+        Run run = new Run(number, id, created, input.readUTF(), input.readLong());
+        run.end = input.readLong();
+        int hits = input.readInt();
+        int locationCount = input.readInt();
+        for (int j = 0; j < locationCount; j++) {
+          Location location = new Location(input.readUTF(), input.readInt());
+          int offsetCount = input.readInt();
+          for (int k = 0; k < offsetCount; k++) {
+            run.addHit(location, input.readLong());
+          }
+        }
+        if (run.hits != hits) {
+          return -1;
+        }
+        runs.put(run.id, run);
+      }
+      return coveredLength;
+    } catch (IOException e) {
+      return -1; // Rebuilt from the log
+    }
+  }
+
+  /**
+   * A breakpoint location.
+   *
+   * @param fileName The file name, empty if the hit had none.
+   * @param lineNumber The line number.
+   */
+  private record Location(String fileName, int lineNumber) {
+    Location {
+      fileName = Objects.requireNonNullElse(fileName, "");
+    }
+  }
+
+  /** Growable list of hit positions, relative to the start of their run. */
+  private static class Offsets {
+    private long[] values = new long[4];
+    private int size;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+  }
+
+  /** A run in the log and the positions of its hits by location. */
+  private static class Run {
+    private final int number; // Never reused, hit and removal frames refer to it
+    private final String id;
+    private final long created;
+    private final String source;
+    private long start; // Offset of the run frame
+    private long end; // End of the commit frame
+    private int hits;
+    private final Map<Location, Offsets> locations = new HashMap<>();
+
+    Run(int number, String id, long created, String source, long start) {
+      this.number = number;
+      this.id = id;
+      this.created = created;
+      this.source = source;
+      this.start = start;
+    }
+
+    void addHit(Location location, long relativeOffset) {
+      locations.computeIfAbsent(location, k -> new Offsets()).add(relativeOffset);
+      hits++;
+    }
+
+    RunInfo info() {
+      return new RunInfo(id, created, source, hits);
+    }
+  }
+}
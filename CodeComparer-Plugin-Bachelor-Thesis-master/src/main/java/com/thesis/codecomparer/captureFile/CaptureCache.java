@@ -0,0 +1,219 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.*;
+
+/**
+ * IDE wide cache of parsed capture files, so a baseline that is compared against many candidate
+ * runs is parsed only once per IDE session.
+ *
+ * <p>Captures are held as {@link CompactCapture}s. Entries are keyed by the canonical path of the
+ * capture and are only valid as long as the file's size and modification time are unchanged. The
+ * cache has a memory budget, estimated from the columns of the captures; when it is exceeded, the
+ * least recently used captures are evicted. The captures are held through soft references, so the
+ * garbage collector can still reclaim them before the IDE runs out of memory. All cached captures
+ * are loaded through one shared {@link StringDictionary}, so names of different captures are the
+ * same instances. The dictionary counts against the budget, and it is replaced by an empty one
+ * whenever no capture is cached, so the names and stack traces of evicted captures do not pile up
+ * over the IDE session.
+ *
+ * <p>The budget defaults to a quarter of the maximum heap and can be set in MB with the system
+ * property {@code codecomparer.captureCacheMB}.
+ */
+public class CaptureCache {
+
+  private static final long MEGABYTE = 1024 * 1024;
+  private static CaptureCache instance; // Singleton instance of the cache
+
+  private final long budget; // Memory budget in bytes
+  private StringDictionary dictionary = new StringDictionary(); // Shared by the cached captures
+  private final LinkedHashMap<String, Entry> entries =
+      new LinkedHashMap<>(16, 0.75f, true); // Canonical path -> entry, least recently used first
+  private long usedBytes; // Estimated size of all cached captures
+
+  /** Loads a capture that is not cached yet. */
+  public interface Loader {
+
+    /**
+     * Parses a capture file.
+     *
+     * @param filePath The path of the capture file.
+     * @param dictionary The dictionary the loaded names must be interned into.
+     * @return The capture.
+     * @throws IOException If the capture cannot be read.
+     */
+    CompactCapture load(String filePath, StringDictionary dictionary) throws IOException;
+  }
+
+  /**
+   * A cached capture.
+   *
+   * @param size Size of the file when it was parsed.
+   * @param lastModified Modification time of the file when it was parsed.
+   * @param estimatedBytes Estimated memory held by the capture.
+   * @param rules The normalization rules the capture was parsed with.
+   * @param capture The parsed capture, may be cleared by the garbage collector.
+   */
+  private record Entry(
+      long size,
+      long lastModified,
+      long estimatedBytes,
+      NormalizationRules rules,
+      SoftReference<CompactCapture> capture) {}
+
+  /**
+   * Creates a cache with the given memory budget.
+   *
+   * @param budget The memory budget in bytes.
+   */
+  public CaptureCache(long budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Returns the IDE wide instance of the cache.
+   *
+   * @return The singleton instance.
+   */
+  public static synchronized CaptureCache getInstance() {
+    if (instance == null) {
+      long budget =
+          Long.getLong(
+              "codecomparer.captureCacheMB", Runtime.getRuntime().maxMemory() / 4 / MEGABYTE);
+      instance = new CaptureCache(budget * MEGABYTE);
+    }
+    return instance;
+  }
+
+  /**
+   * Returns a parsed capture file, parsing it only if it is not cached or has changed since it was
+   * cached.
+   *
+   * @param filePath The path of the capture file.
+   * @param loader Parses the file if it is not cached.
+   * @return The capture.
+   * @throws IOException If the capture cannot be read.
+   */
+  public CompactCapture get(String filePath, Loader loader) throws IOException {
+    return get(filePath, NormalizationRules.NONE, loader);
+  }
+
+  /**
+   * Returns a parsed capture file that the loader normalizes with the given rules. Cached captures
+   * parsed with other rules are parsed again.
+   *
+   * @param filePath The path of the capture file.
+   * @param rules The normalization rules the loader applies.
+   * @param loader Parses and normalizes the file if it is not cached.
+   * @return The capture.
+   * @throws IOException If the capture cannot be read.
+   */
+  public CompactCapture get(String filePath, NormalizationRules rules, Loader loader)
+      throws IOException {
+    File file = new File(filePath);
+    String key = file.getCanonicalPath();
+    long size = file.length();
+    long lastModified = file.lastModified();
+
+    StringDictionary loadDictionary;
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        CompactCapture capture = entry.capture().get();
+        if (capture != null
+            && entry.size() == size
+            && entry.lastModified() == lastModified
+            && entry.rules().equals(rules)) {
+          return capture;
+        }
+        remove(key); // Changed on disk, parsed with other rules or reclaimed by the collector
+      }
+      removeReclaimed();
+      loadDictionary = dictionary;
+    }
+
+    // Parse outside the lock, so other captures can be served meanwhile
+    CompactCapture capture = loader.load(filePath, loadDictionary);
+    long estimatedBytes = capture.getEstimatedBytes();
+
+    synchronized (this) {
+      remove(key);
+      // Captures loaded through a dictionary replaced meanwhile are not cached, their names would
+      // not be shared with the cached ones nor counted against the budget
+      if (estimatedBytes <= budget && loadDictionary == dictionary) {
+        entries.put(
+            key,
+            new Entry(size, lastModified, estimatedBytes, rules, new SoftReference<>(capture)));
+        usedBytes += estimatedBytes;
+      }
+      evict();
+    }
+    return capture;
+  }
+
+  /**
+   * Returns the dictionary the cached captures are loaded through. Captures parsed with it outside
+   * the cache share their names with the cached ones. The dictionary is replaced once the cache is
+   * empty, so do not keep it beyond one comparison.
+   *
+   * @return The shared dictionary.
+   */
+  public synchronized StringDictionary getDictionary() {
+    return dictionary;
+  }
+
+  /**
+   * Returns the estimated memory held by the cache, the cached captures and their dictionary.
+   *
+   * @return The estimated size in bytes.
+   */
+  public synchronized long getUsedBytes() {
+    return usedBytes + dictionary.getEstimatedBytes();
+  }
+
+  /** Removes all cached captures and the names they were loaded with. */
+  public synchronized void clear() {
+    entries.clear();
+    usedBytes = 0;
+    dictionary = new StringDictionary();
+  }
+
+  // Evicts the least recently used captures until the cache and its dictionary fit into the budget
+  private void evict() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (usedBytes + dictionary.getEstimatedBytes() > budget && iterator.hasNext()) {
+      usedBytes -= iterator.next().estimatedBytes();
+      iterator.remove();
+    }
+    replaceDictionaryIfEmpty();
+  }
+
+  // Removes the captures that were reclaimed by the garbage collector
+  private void removeReclaimed() {
+    Iterator<Entry> iterator = entries.values().iterator();
+    while (iterator.hasNext()) {
+      Entry entry = iterator.next();
+      if (entry.capture().get() == null) {
+        usedBytes -= entry.estimatedBytes();
+        iterator.remove();
+      }
+    }
+    replaceDictionaryIfEmpty();
+  }
+
+  private void remove(String key) {
+    Entry entry = entries.remove(key);
+    if (entry != null) {
+      usedBytes -= entry.estimatedBytes();
+    }
+  }
+
+  // Without cached captures, no name of the dictionary is needed any more
+  private void replaceDictionaryIfEmpty() {
+    if (entries.isEmpty() && dictionary.size() > 0) {
+      dictionary = new StringDictionary();
+    }
+  }
+}
@@ -0,0 +1,367 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.*;
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * Sidecar index of a capture file. The index lists the byte range of every breakpoint record
+ * together with its location, method, thread and value digest, so readers can select records and
+ * seek straight to them instead of parsing the whole capture.
+ *
+ * <p>The index is stored next to the capture file with the suffix {@code .idx}. It is a small
+ * binary file: a header followed by tagged entries. Strings (file, method and thread names) are
+ * written once and referenced by their position afterwards, which keeps the index compact even for
+ * millions of hits. The index also keeps a copy of the capture's own string dictionary (see {@link
+ * DictionaryEncoding}) and of its stack trace table, so records read by random access can be
+ * decoded without the dictionary blocks that precede them in the capture.
+ */
+public class CaptureIndex {
+
+  private static final String INDEX_SUFFIX = ".idx";
+  private static final int MAGIC = 0x43434958; // "CCIX"
+  private static final int VERSION = 4; // Version 4 added the capture's stack trace table
+  private static final int STRING_TAG = 'S'; // Defines the next string of the string table
+  private static final int ENTRY_TAG = 'E'; // One IndexEntry referencing the string table
+  private static final int CAPTURE_STRING_TAG = 'D'; // Next string of the capture's dictionary
+  private static final int CAPTURE_TRACE_TAG = 'T'; // Next trace of the capture's trace table
+
+  private final List<IndexEntry> entries; // All entries in file order
+  private final List<String> captureStrings; // The capture's dictionary, by id
+  private final List<int[]> captureTraces; // Frame ids of the capture's stack traces, by id
+  private Map<String, List<IndexEntry>> entriesByLocation; // Built on first lookup
+  private Map<String, List<IndexEntry>> entriesByMethod; // Built on first lookup
+
+  private CaptureIndex(
+      List<IndexEntry> entries, List<String> captureStrings, List<int[]> captureTraces) {
+    this.entries = Collections.unmodifiableList(entries);
+    this.captureStrings = Collections.unmodifiableList(captureStrings);
+    this.captureTraces = Collections.unmodifiableList(captureTraces);
+  }
+
+  /**
+   * Returns the sidecar index file belonging to a capture file.
+   *
+   * @param captureFile The capture file.
+   * @return The index file next to the capture file.
+   */
+  public static File indexFileFor(File captureFile) {
+    return new File(captureFile.getPath() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Loads the index of a capture file. If the capture has no index yet, or the index is older than
+   * the capture, it is rebuilt first.
+   *
+   * @param captureFile The capture file.
+   * @return The index of the capture file.
+   * @throws IOException If neither reading nor rebuilding the index is possible.
+   */
+  public static CaptureIndex load(File captureFile) throws IOException {
+    File indexFile = indexFileFor(captureFile);
+    if (indexFile.isFile()) {
+      try {
+        CaptureIndex index = read(indexFile);
+        if (index.isConsistentWith(captureFile, indexFile)) {
+          return index;
+        }
+      } catch (IOException e) {
+        // The index is only derived data, fall through and rebuild it
+      }
+    }
+    return rebuild(captureFile);
+  }
+
+  /**
+   * Rebuilds the index of a capture file in one streaming pass and writes it next to the capture.
+   * This makes captures written before the index existed usable for random access.
+   *
+   * @param captureFile The capture file.
+   * @return The rebuilt index.
+   * @throws IOException If the capture cannot be read or the index cannot be written.
+   */
+  public static CaptureIndex rebuild(File captureFile) throws IOException {
+    RecordDecoder decoder = new RecordDecoder(new StringDictionary());
+    List<IndexEntry> entries = new ArrayList<>();
+    List<String> captureStrings = new ArrayList<>();
+    List<int[]> captureTraces = new ArrayList<>();
+
+    try (Appender appender = new Appender(indexFileFor(captureFile))) {
+      RecordScanner.scanFile(
+          captureFile,
+          (blockOffset, offset, data, start, length) -> {
+            BreakpointState state = decoder.decode(data, start, length);
+            if (state == null) {
+              // A dictionary block, copy strings and traces so readers can resolve ids without it
+              while (captureStrings.size() < decoder.definedStrings()) {
+                String value = decoder.definedString(captureStrings.size());
+                appender.appendCaptureString(value);
+                captureStrings.add(value);
+              }
+              while (captureTraces.size() < decoder.definedTraces()) {
+                int[] frames = decoder.definedTrace(captureTraces.size());
+                appender.appendCaptureTrace(frames);
+                captureTraces.add(frames);
+              }
+              return;
+            }
+            IndexEntry entry = createEntry(blockOffset, offset, length, state);
+            appender.append(entry);
+            entries.add(entry);
+          });
+    }
+    return new CaptureIndex(entries, captureStrings, captureTraces);
+  }
+
+  /**
+   * Creates the index entry for a record.
+   *
+   * @param blockOffset File offset of the compressed block holding the record, or -1.
+   * @param offset Byte offset of the record.
+   * @param length Length of the record in bytes.
+   * @param state The parsed record.
+   * @return The index entry describing the record.
+   */
+  static IndexEntry createEntry(long blockOffset, long offset, int length, BreakpointState state) {
+    String methodName =
+        state.getCurrentMethodState() != null ? state.getCurrentMethodState().getMethodName() : "";
+    return new IndexEntry(
+        blockOffset,
+        offset,
+        length,
+        nullToEmpty(state.getFileName()),
+        state.getLineNumber(),
+        nullToEmpty(methodName),
+        nullToEmpty(state.getThreadName()),
+        RecordDigest.of(state));
+  }
+
+  /**
+   * Returns all entries of the index in file order.
+   *
+   * @return An unmodifiable list of all index entries.
+   */
+  public List<IndexEntry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Returns the capture's string dictionary, which resolves the metadata ids inside the records.
+   *
+   * @return The strings of the capture's dictionary, by id.
+   */
+  List<String> getCaptureStrings() {
+    return captureStrings;
+  }
+
+  /**
+   * Returns the capture's stack trace table, which resolves the trace ids inside the records.
+   *
+   * @return The frame ids of the capture's stack traces, by trace id.
+   */
+  List<int[]> getCaptureTraces() {
+    return captureTraces;
+  }
+
+  /**
+   * Returns the entries of all hits at the given location, in file order.
+   *
+   * @param fileName The file name of the breakpoint.
+   * @param lineNumber The line number of the breakpoint.
+   * @return The matching entries, or an empty list.
+   */
+  public List<IndexEntry> findByLocation(String fileName, int lineNumber) {
+    if (entriesByLocation == null) {
+      entriesByLocation = groupEntries(entries, IndexEntry::locationKey);
+    }
+    return entriesByLocation.getOrDefault(fileName + ":" + lineNumber, List.of());
+  }
+
+  /**
+   * Returns the entries of all hits inside the given method, in file order.
+   *
+   * @param methodName The name of the method containing the breakpoint.
+   * @return The matching entries, or an empty list.
+   */
+  public List<IndexEntry> findByMethod(String methodName) {
+    if (entriesByMethod == null) {
+      entriesByMethod = groupEntries(entries, IndexEntry::methodName);
+    }
+    return entriesByMethod.getOrDefault(methodName, List.of());
+  }
+
+  private static Map<String, List<IndexEntry>> groupEntries(
+      List<IndexEntry> entries, Function<IndexEntry, String> key) {
+    Map<String, List<IndexEntry>> groups = new HashMap<>();
+    for (IndexEntry entry : entries) {
+      groups.computeIfAbsent(key.apply(entry), k -> new ArrayList<>()).add(entry);
+    }
+    return groups;
+  }
+
+  // An index is usable if it was written after the capture and does not point beyond its end
+  private boolean isConsistentWith(File captureFile, File indexFile) {
+    if (indexFile.lastModified() < captureFile.lastModified()) {
+      return false;
+    }
+    if (entries.isEmpty()) {
+      return true;
+    }
+    IndexEntry last = entries.get(entries.size() - 1);
+    if (last.isCompressed()) {
+      return last.blockOffset() + CompressedBlockFormat.BLOCK_HEADER_LENGTH <= captureFile.length();
+    }
+    return last.offset() + last.length() <= captureFile.length();
+  }
+
+  // Reads an index file written by the Appender
+  private static CaptureIndex read(File indexFile) throws IOException {
+    List<IndexEntry> entries = new ArrayList<>();
+    List<String> strings = new ArrayList<>();
+    List<String> captureStrings = new ArrayList<>();
+    List<int[]> captureTraces = new ArrayList<>();
+
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Unsupported capture index: " + indexFile);
+      }
+      int version = in.readUnsignedShort();
+      if (version > VERSION) {
+        throw new IOException("Unsupported capture index version " + version + ": " + indexFile);
+      }
+      try {
+        int tag;
+        while ((tag = in.read()) != -1) {
+          if (tag == STRING_TAG) {
+            strings.add(in.readUTF());
+          } else if (tag == CAPTURE_STRING_TAG) {
+            captureStrings.add(in.readUTF());
+          } else if (tag == CAPTURE_TRACE_TAG) {
+            int[] frames = new int[in.readInt()];
+            for (int i = 0; i < frames.length; i++) {
+              frames[i] = in.readInt();
+            }
+            captureTraces.add(frames);
+          } else if (tag == ENTRY_TAG) {
+            long blockOffset = version >= 2 ? in.readLong() : -1;
+            long offset = in.readLong();
+            int length = in.readInt();
+            String fileName = strings.get(in.readInt());
+            int lineNumber = in.readInt();
+            String methodName = strings.get(in.readInt());
+            String threadName = strings.get(in.readInt());
+            long valueDigest = in.readLong();
+            entries.add(
+                new IndexEntry(
+                    blockOffset,
+                    offset,
+                    length,
+                    fileName,
+                    lineNumber,
+                    methodName,
+                    threadName,
+                    valueDigest));
+          } else {
+            throw new IOException("Corrupt capture index: " + indexFile);
+          }
+        }
+      } catch (EOFException e) {
+        // The last entry was cut off while it was written, keep all complete entries
+      }
+    }
+    return new CaptureIndex(entries, captureStrings, captureTraces);
+  }
+
+  private static String nullToEmpty(String value) {
+    return value == null ? "" : value;
+  }
+
+  /** Appends entries to an index file while the corresponding capture file is written. */
+  static class Appender implements Closeable {
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> stringIds = new HashMap<>(); // Strings already written
+
+    /**
+     * Creates a new, empty index file.
+     *
+     * @param indexFile The index file to (over)write.
+     * @throws IOException If the file cannot be created.
+     */
+    Appender(File indexFile) throws IOException {
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, false)));
+      out.writeInt(MAGIC);
+      out.writeShort(VERSION);
+    }
+
+    /**
+     * Appends an entry to the index. Call {@link #flush()} to make it visible to readers.
+     *
+     * @param entry The entry to append.
+     * @throws IOException If writing fails.
+     */
+    void append(IndexEntry entry) throws IOException {
+      int fileNameId = stringId(entry.fileName());
+      int methodNameId = stringId(entry.methodName());
+      int threadNameId = stringId(entry.threadName());
+
+      out.writeByte(ENTRY_TAG);
+      out.writeLong(entry.blockOffset());
+      out.writeLong(entry.offset());
+      out.writeInt(entry.length());
+      out.writeInt(fileNameId);
+      out.writeInt(entry.lineNumber());
+      out.writeInt(methodNameId);
+      out.writeInt(threadNameId);
+      out.writeLong(entry.valueDigest());
+    }
+
+    /**
+     * Appends the next string of the capture's dictionary to the index.
+     *
+     * @param value The string with the next id.
+     * @throws IOException If writing fails.
+     */
+    void appendCaptureString(String value) throws IOException {
+      out.writeByte(CAPTURE_STRING_TAG);
+      out.writeUTF(value);
+    }
+
+    /**
+     * Appends the next trace of the capture's stack trace table to the index.
+     *
+     * @param frames The dictionary ids of the frames of the trace.
+     * @throws IOException If writing fails.
+     */
+    void appendCaptureTrace(int[] frames) throws IOException {
+      out.writeByte(CAPTURE_TRACE_TAG);
+      out.writeInt(frames.length);
+      for (int frame : frames) {
+        out.writeInt(frame);
+      }
+    }
+
+    void flush() throws IOException {
+      out.flush();
+    }
+
+    // Returns the id of a string, writing its definition first if it is new
+    private int stringId(String value) throws IOException {
+      Integer id = stringIds.get(value);
+      if (id == null) {
+        id = stringIds.size();
+        stringIds.put(value, id);
+        out.writeByte(STRING_TAG);
+        out.writeUTF(value);
+      }
+      return id;
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,204 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a running capture, e.g. for a live dashboard: captured hits, pause time per hit,
+ * bytes written, records waiting in the writer, serializer truncations and the breakpoints that
+ * cost the most pause time.
+ *
+ * <p>The capture threads update the metrics without locks: counters are {@link LongAdder}s and
+ * pause times are counted in a histogram of atomic buckets. Readers take a {@link Snapshot} at
+ * their own pace, e.g. from a timer, and never block the capture.
+ *
+ * <p>Pause times are bucketed log-linearly, with 16 buckets per power of two microseconds, so
+ * percentiles are exact to about 6% up to pauses of several days.
+ */
+public class CaptureMetrics {
+
+  private static final int SUB_BUCKET_BITS = 4; // 16 buckets per power of two
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40; // Longer pauses are counted in the last bucket
+  private static final int BUCKETS =
+      (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + 1; // The last one counts overflows
+  private static CaptureMetrics instance; // Metrics of the debugger sessions
+
+  private final LongAdder hits = new LongAdder(); // Captured hits
+  private final LongAdder bytesWritten = new LongAdder(); // Bytes written to the capture file
+  private final LongAdder truncations = new LongAdder(); // Values the serializer cut short
+  private volatile int writerBacklog; // Records written but not yet on disk
+  private final AtomicLongArray pauseHistogram = new AtomicLongArray(BUCKETS); // Per bucket
+  private final Map<String, BreakpointCost> costs =
+      new ConcurrentHashMap<>(); // Breakpoint location -> pause time spent on it
+
+  /** Pause time spent on one breakpoint location. */
+  private static final class BreakpointCost {
+    private final LongAdder hits = new LongAdder(); // Hits of the location
+    private final LongAdder pauseNanos = new LongAdder(); // Total pause time of its hits
+  }
+
+  /**
+   * Pause time spent on a breakpoint location.
+   *
+   * @param location The location, e.g. "Main:12".
+   * @param hits The number of captured hits of the location.
+   * @param totalPauseMicros The total pause time of all its hits in microseconds.
+   */
+  public record Breakpoint(String location, long hits, long totalPauseMicros) {}
+
+  /**
+   * Values of the metrics at one point in time.
+   *
+   * @param hits The number of captured hits.
+   * @param bytesWritten The number of bytes written to the capture file.
+   * @param writerBacklog The number of records written but not yet on disk.
+   * @param truncations The number of values the serializer cut short.
+   * @param pauseP50Micros The median pause time per hit in microseconds.
+   * @param pauseP99Micros The 99th percentile of the pause time per hit in microseconds.
+   * @param expensiveBreakpoints The locations with the most pause time, most expensive first.
+   */
+  public record Snapshot(
+      long hits,
+      long bytesWritten,
+      int writerBacklog,
+      long truncations,
+      long pauseP50Micros,
+      long pauseP99Micros,
+      List<Breakpoint> expensiveBreakpoints) {}
+
+  /**
+   * Returns the metrics updated by the debugger sessions.
+   *
+   * @return The singleton instance.
+   */
+  public static synchronized CaptureMetrics getInstance() {
+    if (instance == null) {
+      instance = new CaptureMetrics();
+    }
+    return instance;
+  }
+
+  /**
+   * Records a captured hit.
+   *
+   * @param location The breakpoint location, e.g. "Main:12".
+   * @param pauseNanos The time the debuggee was paused to capture the hit, in nanoseconds.
+   */
+  public void recordHit(String location, long pauseNanos) {
+    hits.increment();
+    pauseHistogram.incrementAndGet(bucketOf(pauseNanos / 1000));
+    BreakpointCost cost = costs.computeIfAbsent(location, k -> new BreakpointCost());
+    cost.hits.increment();
+    cost.pauseNanos.add(pauseNanos);
+  }
+
+  /**
+   * Adds bytes written to the capture file.
+   *
+   * @param bytes The number of bytes.
+   */
+  public void addBytesWritten(long bytes) {
+    bytesWritten.add(bytes);
+  }
+
+  /**
+   * Sets the number of records the writer holds that are not on disk yet.
+   *
+   * @param records The number of records.
+   */
+  public void setWriterBacklog(int records) {
+    writerBacklog = records;
+  }
+
+  /** Records a value the serializer cut short, e.g. because it took too long. */
+  public void recordTruncation() {
+    truncations.increment();
+  }
+
+  /** Resets all metrics, e.g. when a new capture starts. */
+  public void reset() {
+    hits.reset();
+    bytesWritten.reset();
+    truncations.reset();
+    writerBacklog = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      pauseHistogram.set(i, 0);
+    }
+    costs.clear();
+  }
+
+  /**
+   * Takes a snapshot of the metrics. Counters updated while the snapshot is taken may or may not be
+   * included.
+   *
+   * @param maxBreakpoints The maximum number of expensive breakpoints to include.
+   * @return The snapshot.
+   */
+  public Snapshot snapshot(int maxBreakpoints) {
+    long[] histogram = new long[BUCKETS];
+    long pauses = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      histogram[i] = pauseHistogram.get(i);
+      pauses += histogram[i];
+    }
+
+    List<Breakpoint> breakpoints = new ArrayList<>(costs.size());
+    costs.forEach(
+        (location, cost) ->
+            breakpoints.add(
+                new Breakpoint(location, cost.hits.sum(), cost.pauseNanos.sum() / 1000)));
+    breakpoints.sort(Comparator.comparingLong(Breakpoint::totalPauseMicros).reversed());
+
+    return new Snapshot(
+        hits.sum(),
+        bytesWritten.sum(),
+        writerBacklog,
+        truncations.sum(),
+        percentile(histogram, pauses, 0.50),
+        percentile(histogram, pauses, 0.99),
+        List.copyOf(breakpoints.subList(0, Math.min(maxBreakpoints, breakpoints.size()))));
+  }
+
+  // Returns the lower bound of the bucket holding the given fraction of all pauses
+  private static long percentile(long[] histogram, long pauses, double fraction) {
+    if (pauses == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(pauses * fraction));
+    long seen = 0;
+    for (int i = 0; i < histogram.length; i++) {
+      seen += histogram[i];
+      if (seen >= rank) {
+        return lowerBoundOf(i);
+      }
+    }
+    return lowerBoundOf(histogram.length - 1);
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) Math.max(0, micros);
+    }
+    int exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+    if (exponent == MAX_EXPONENT) {
+      return BUCKETS - 1;
+    }
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long lowerBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+}
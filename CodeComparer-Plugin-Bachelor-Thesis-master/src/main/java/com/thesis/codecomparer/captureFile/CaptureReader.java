@@ -0,0 +1,366 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Inflater;
+
+/**
+ * Reads breakpoint records from capture files. Plain and block compressed captures are detected
+ * from their content, so callers do not need to know which format a file uses.
+ *
+ * <p>Together with the {@link CaptureIndex} this also allows to parse only the records of interest,
+ * e.g. all hits of one location, without scanning the whole capture.
+ */
+public class CaptureReader {
+
+  static final int PROGRESS_INTERVAL = 1024; // Records decoded between two progress updates
+
+  /** Decides from the bytes of a record whether it is decoded at all. */
+  public interface RawRecordFilter {
+
+    /** Filter that decodes every record. */
+    RawRecordFilter ALL = (data, start, length) -> true;
+
+    /**
+     * Checks whether a record may be of interest. Records for which this returns false are skipped
+     * without being decoded, so the check must never reject a record that is of interest.
+     *
+     * @param data Buffer holding the record.
+     * @param start Start of the record inside the buffer.
+     * @param length Length of the record in bytes.
+     * @return false if the record can be skipped.
+     */
+    boolean mayMatch(byte[] data, int start, int length);
+  }
+
+  /** Receives records one at a time while they are read, instead of collecting them in a list. */
+  public interface RecordVisitor {
+
+    /**
+     * Visits one decoded record.
+     *
+     * @param entry The index entry of the record.
+     * @param state The decoded record.
+     * @return true to read on, false to stop reading without touching the remaining records.
+     * @throws IOException If handling the record fails.
+     */
+    boolean visit(IndexEntry entry, BreakpointState state) throws IOException;
+  }
+
+  private CaptureReader() {
+    // Only static helpers
+  }
+
+  /**
+   * Reads all records of a capture file in one streaming pass.
+   *
+   * @param captureFile The capture file to read.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readAll(File captureFile) throws IOException {
+    return readAll(captureFile, new StringDictionary());
+  }
+
+  /**
+   * Reads all records of a capture file in one streaming pass, interning all metadata names into
+   * the given dictionary. Captures loaded through the same dictionary share their name instances.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readAll(File captureFile, StringDictionary dictionary)
+      throws IOException {
+    return readAll(captureFile, dictionary, NormalizationRules.NONE);
+  }
+
+  /**
+   * Reads all records of a capture file in one streaming pass, normalizing the values of every
+   * record while it is decoded.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every record.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readAll(
+      File captureFile, StringDictionary dictionary, NormalizationRules rules) throws IOException {
+    return readAll(captureFile, dictionary, rules, ProgressMonitor.NONE);
+  }
+
+  /**
+   * Reads all records of a capture file in one streaming pass like {@link #readAll(File,
+   * StringDictionary, NormalizationRules)}, reporting the read part of the file to a monitor and
+   * stopping as soon as it is cancelled.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every record.
+   * @param progress The monitor receiving the progress.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static List<BreakpointState> readAll(
+      File captureFile,
+      StringDictionary dictionary,
+      NormalizationRules rules,
+      ProgressMonitor progress)
+      throws IOException {
+    RecordDecoder decoder = new RecordDecoder(dictionary, rules);
+    List<BreakpointState> states = new ArrayList<>();
+    double fileLength = Math.max(1, captureFile.length());
+    int[] decoded = new int[1];
+
+    RecordScanner.scanFile(
+        captureFile,
+        (blockOffset, offset, data, start, length) -> {
+          if (++decoded[0] % PROGRESS_INTERVAL == 0) {
+            progress.checkCanceled();
+            progress.setFraction((blockOffset < 0 ? offset : blockOffset) / fileLength);
+          }
+          BreakpointState state = decoder.decode(data, start, length);
+          if (state != null) {
+            states.add(state);
+          }
+        });
+    progress.setFraction(1);
+    return states;
+  }
+
+  /**
+   * Reads all records of a capture file, decoding chunks of the file in parallel on the given pool.
+   * The result is the same as for {@link #readAll(File, StringDictionary)}, but large captures are
+   * parsed considerably faster on machines with several cores.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param pool The pool decoding the chunks of the file.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readAllParallel(
+      File captureFile, StringDictionary dictionary, ForkJoinPool pool) throws IOException {
+    return readAllParallel(captureFile, dictionary, NormalizationRules.NONE, pool);
+  }
+
+  /**
+   * Reads all records of a capture file in parallel like {@link #readAllParallel(File,
+   * StringDictionary, ForkJoinPool)}, normalizing the values of every record while its chunk is
+   * decoded.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every record.
+   * @param pool The pool decoding the chunks of the file.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readAllParallel(
+      File captureFile, StringDictionary dictionary, NormalizationRules rules, ForkJoinPool pool)
+      throws IOException {
+    return readAllParallel(captureFile, dictionary, rules, pool, ProgressMonitor.NONE);
+  }
+
+  /**
+   * Reads all records of a capture file in parallel like {@link #readAllParallel(File,
+   * StringDictionary, NormalizationRules, ForkJoinPool)}, reporting the decoded chunks to a monitor.
+   * All chunks stop as soon as the monitor is cancelled.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every record.
+   * @param pool The pool decoding the chunks of the file.
+   * @param progress The monitor receiving the progress, called from the threads of the pool.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static List<BreakpointState> readAllParallel(
+      File captureFile,
+      StringDictionary dictionary,
+      NormalizationRules rules,
+      ForkJoinPool pool,
+      ProgressMonitor progress)
+      throws IOException {
+    return ParallelCaptureReader.readAll(captureFile, dictionary, rules, pool, progress);
+  }
+
+  /**
+   * Reads the records described by the given index entries by seeking directly to them. For
+   * compressed captures only the blocks holding the selected records are decoded.
+   *
+   * @param captureFile The capture file the entries belong to.
+   * @param index The index of the capture file.
+   * @param entries The index entries of the records to read.
+   * @return The parsed records, in the order of the given entries.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readRecords(
+      File captureFile, CaptureIndex index, List<IndexEntry> entries) throws IOException {
+    return readRecords(captureFile, index, entries, new StringDictionary());
+  }
+
+  /**
+   * Reads the records described by the given index entries by seeking directly to them, interning
+   * all metadata names into the given dictionary.
+   *
+   * @param captureFile The capture file the entries belong to.
+   * @param index The index of the capture file, it resolves the capture's dictionary ids.
+   * @param entries The index entries of the records to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @return The parsed records, in the order of the given entries.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readRecords(
+      File captureFile, CaptureIndex index, List<IndexEntry> entries, StringDictionary dictionary)
+      throws IOException {
+    return readRecords(captureFile, index, entries, dictionary, NormalizationRules.NONE);
+  }
+
+  /**
+   * Reads the records described by the given index entries by seeking directly to them,
+   * normalizing the values of every record while it is decoded.
+   *
+   * @param captureFile The capture file the entries belong to.
+   * @param index The index of the capture file, it resolves the capture's dictionary ids.
+   * @param entries The index entries of the records to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every record.
+   * @return The parsed records, in the order of the given entries.
+   * @throws IOException If the capture file cannot be read.
+   */
+  public static List<BreakpointState> readRecords(
+      File captureFile,
+      CaptureIndex index,
+      List<IndexEntry> entries,
+      StringDictionary dictionary,
+      NormalizationRules rules)
+      throws IOException {
+    List<BreakpointState> states = new ArrayList<>(entries.size());
+    readRecords(
+        captureFile,
+        index,
+        entries,
+        dictionary,
+        rules,
+        RawRecordFilter.ALL,
+        (entry, state) -> states.add(state),
+        ProgressMonitor.NONE);
+    return states;
+  }
+
+  /**
+   * Reads the records described by the given index entries by seeking directly to them, and
+   * passes them to a visitor one at a time instead of collecting them. A filter sees the bytes of
+   * every record first, and records it rejects are not decoded at all. Reading stops as soon as the
+   * visitor returns false.
+   *
+   * @param captureFile The capture file the entries belong to.
+   * @param index The index of the capture file, it resolves the capture's dictionary ids.
+   * @param entries The index entries of the records to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values of every record.
+   * @param filter The filter deciding which records are decoded.
+   * @param visitor The visitor receiving the decoded records, in the order of the given entries.
+   * @param progress The monitor receiving the read part of the entries.
+   * @throws IOException If the capture file cannot be read or the visitor fails.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static void readRecords(
+      File captureFile,
+      CaptureIndex index,
+      List<IndexEntry> entries,
+      StringDictionary dictionary,
+      NormalizationRules rules,
+      RawRecordFilter filter,
+      RecordVisitor visitor,
+      ProgressMonitor progress)
+      throws IOException {
+    RecordDecoder decoder = new RecordDecoder(dictionary, rules);
+    for (String value : index.getCaptureStrings()) {
+      decoder.define(value);
+    }
+    for (int[] frames : index.getCaptureTraces()) {
+      decoder.defineTrace(frames);
+    }
+    Inflater inflater = new Inflater();
+
+    try (RandomAccessFile file = new RandomAccessFile(captureFile, "r")) {
+      long cachedBlockOffset = -1; // Consecutive entries often share the same block
+      byte[] cachedBlock = null;
+      byte[] record = new byte[0]; // Reused for plain records, decoded records do not keep it
+
+      for (int i = 0; i < entries.size(); i++) {
+        if (i % PROGRESS_INTERVAL == 0) {
+          progress.checkCanceled();
+          progress.setFraction((double) i / entries.size());
+        }
+        IndexEntry entry = entries.get(i);
+        byte[] data;
+        int start;
+        if (entry.isCompressed()) {
+          if (entry.blockOffset() != cachedBlockOffset) {
+            cachedBlock = readBlock(file, entry.blockOffset(), inflater);
+            cachedBlockOffset = entry.blockOffset();
+          }
+          data = cachedBlock;
+          start = (int) entry.offset();
+        } else {
+          if (record.length < entry.length()) {
+            record = new byte[Math.max(entry.length(), record.length * 2)];
+          }
+          file.seek(entry.offset());
+          file.readFully(record, 0, entry.length());
+          data = record;
+          start = 0;
+        }
+        if (filter.mayMatch(data, start, entry.length())
+            && !visitor.visit(entry, decoder.decode(data, start, entry.length()))) {
+          break; // The remaining records are neither read nor decoded
+        }
+      }
+    } finally {
+      inflater.end();
+    }
+    progress.setFraction(1);
+  }
+
+  /**
+   * Seeks to a block of a compressed capture and decodes it on its own.
+   *
+   * @param file The compressed capture file.
+   * @param blockOffset The file offset of the block, as stored in the index.
+   * @param inflater The inflater used to decompress the block.
+   * @return The uncompressed content of the block.
+   * @throws IOException If the block cannot be read or is corrupt.
+   */
+  public static byte[] readBlock(RandomAccessFile file, long blockOffset, Inflater inflater)
+      throws IOException {
+    file.seek(blockOffset);
+    CompressedBlockFormat.Block block = CompressedBlockFormat.readBlock(file, inflater);
+    if (block == null) {
+      throw new IOException("Capture block at offset " + blockOffset + " is incomplete");
+    }
+    return block.data();
+  }
+
+  /**
+   * Checks whether a capture file is block compressed.
+   *
+   * @param captureFile The capture file to check.
+   * @return true if the capture is block compressed, false for plain captures.
+   * @throws IOException If the file cannot be read.
+   */
+  public static boolean isCompressed(File captureFile) throws IOException {
+    return CompressedBlockFormat.isCompressed(captureFile);
+  }
+}
@@ -0,0 +1,872 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.google.gson.JsonSyntaxException;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hand-written JSON codec for the records of the capture stream.
+ *
+ * <p>Records are encoded straight from the beans into a reused byte buffer, and decoded straight
+ * from their bytes into the beans, without reflection and without an intermediate JSON tree. By
+ * default records are written compact, on a single line; pretty printing with the indentation of
+ * earlier versions can be chosen per codec.
+ *
+ * <p>Metadata names are written as dictionary ids (see {@link DictionaryEncoding}). Parameter and
+ * return values are already JSON text, so instead of escaping them again as JSON strings they are
+ * embedded verbatim under their own keys:
+ *
+ * <pre>
+ *   {"fileName":0,...,"parameters":[{"name":4,"serializedJson":{"id":7}}],
+ *    "invokedMethodReturnJson":[1,2]}
+ * </pre>
+ *
+ * <p>Values that are not exactly one well-formed JSON value are written as strings under the keys
+ * {@code serializedValue} and {@code invokedMethodReturnValue}, which is how older captures store
+ * all values. The decoder reads both forms as well as names written as plain strings, and skips
+ * keys it does not know. Embedded values are taken over as text without being parsed.
+ */
+public class CaptureRecordCodec {
+
+  private static final byte[] FILE_NAME = key("fileName");
+  private static final byte[] LINE_NUMBER = key("lineNumber");
+  private static final byte[] THREAD_NAME = key("threadName");
+  private static final byte[] CURRENT_METHOD_STATE = key("currentMethodState");
+  private static final byte[] INVOKED_METHOD_STATE = key("invokedMethodState");
+  private static final byte[] RETURN_VALUE = key("invokedMethodReturnValue");
+  private static final byte[] RAW_RETURN_VALUE = key("invokedMethodReturnJson");
+  private static final byte[] EXCEPTION_DETAILS = key("exceptionDetails");
+  private static final byte[] METHOD_NAME = key("methodName");
+  private static final byte[] RETURN_TYPE = key("returnType");
+  private static final byte[] PARAMETERS = key("parameters");
+  private static final byte[] NAME = key("name");
+  private static final byte[] SERIALIZED_VALUE = key("serializedValue");
+  private static final byte[] RAW_SERIALIZED_VALUE = key("serializedJson");
+  private static final byte[] EXCEPTION_TYPE = key("exceptionType");
+  private static final byte[] EXCEPTION_MESSAGE = key("exceptionMessage");
+  private static final byte[] STACK_TRACE = key("stackTrace");
+
+  private static final int MAX_NESTING = 512; // Deeper values are written as strings
+  private static final String[] SMALL_NUMBERS = new String[4096]; // Shared texts of common ids
+  private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+  static {
+    for (int i = 0; i < SMALL_NUMBERS.length; i++) {
+      SMALL_NUMBERS[i] = Integer.toString(i);
+    }
+  }
+
+  private final boolean prettyPrinted; // Whether records are indented over several lines
+  private byte[] buffer = new byte[8 * 1024]; // Encoded record, reused for every record
+  private int length; // Length of the encoded record
+  private int depth; // Nesting of the container being written
+  private boolean hasElements; // Whether the container being written has an element already
+
+  /** Creates a codec writing compact records. */
+  public CaptureRecordCodec() {
+    this(false);
+  }
+
+  /**
+   * Creates a codec.
+   *
+   * @param prettyPrinted Whether records are indented over several lines instead of written on a
+   *     single line.
+   */
+  public CaptureRecordCodec(boolean prettyPrinted) {
+    this.prettyPrinted = prettyPrinted;
+  }
+
+  /**
+   * Encodes a record with plain names, i.e. without a dictionary, and writes it to a stream.
+   *
+   * @param state The record to encode.
+   * @param output The stream receiving the encoded record.
+   * @throws IOException If writing to the stream fails.
+   */
+  public void encode(BreakpointState state, OutputStream output) throws IOException {
+    encode(state, null, null);
+    output.write(buffer, 0, length);
+  }
+
+  /**
+   * Encodes a record into the codec's buffer, see {@link #buffer()} and {@link #length()}. Names
+   * and stack traces that are not known yet are added to the dictionary and the trace table.
+   *
+   * @param state The record to encode.
+   * @param dictionary The dictionary of the capture being written, or null to write plain names.
+   * @param traces The trace table of the capture being written, or null to write plain traces.
+   */
+  void encode(BreakpointState state, StringDictionary dictionary, StackTraceTable traces) {
+    length = 0;
+    depth = 0;
+    beginObject();
+    if (state.getFileName() != null) {
+      name(FILE_NAME);
+      writeName(state.getFileName(), dictionary);
+    }
+    name(LINE_NUMBER);
+    writeInt(state.getLineNumber());
+    if (state.getThreadName() != null) {
+      name(THREAD_NAME);
+      writeName(state.getThreadName(), dictionary);
+    }
+    writeMethod(CURRENT_METHOD_STATE, state.getCurrentMethodState(), dictionary);
+    writeMethod(INVOKED_METHOD_STATE, state.getInvokedMethodState(), dictionary);
+    writeValue(RAW_RETURN_VALUE, RETURN_VALUE, state.getInvokedMethodReturnValue());
+
+    ExceptionDetails exceptionDetails = state.getExceptionDetails();
+    if (exceptionDetails != null) {
+      name(EXCEPTION_DETAILS);
+      beginObject();
+      if (exceptionDetails.getExceptionType() != null) {
+        name(EXCEPTION_TYPE);
+        writeName(exceptionDetails.getExceptionType(), dictionary);
+      }
+      if (exceptionDetails.getExceptionMessage() != null) {
+        name(EXCEPTION_MESSAGE);
+        writeString(exceptionDetails.getExceptionMessage());
+      }
+      if (exceptionDetails.getStackTrace() != null) {
+        name(STACK_TRACE);
+        if (traces != null && dictionary != null) {
+          writeInt(traces.idOf(exceptionDetails.getStackTrace(), dictionary));
+        } else {
+          writeString(exceptionDetails.getStackTrace());
+        }
+      }
+      endObject();
+    }
+    endObject();
+  }
+
+  /**
+   * Returns the buffer holding the record encoded last. It is overwritten by the next record.
+   *
+   * @return The buffer, its first {@link #length()} bytes are the record.
+   */
+  byte[] buffer() {
+    return buffer;
+  }
+
+  /**
+   * Returns the length of the record encoded last.
+   *
+   * @return The length in bytes.
+   */
+  int length() {
+    return length;
+  }
+
+  /**
+   * Decodes a record of the capture stream. Metadata ids are returned as their decimal text, to be
+   * resolved by the {@link RecordDecoder}.
+   *
+   * @param data Buffer holding the record.
+   * @param start Start of the record inside the buffer.
+   * @param length Length of the record in bytes.
+   * @return The decoded record.
+   * @throws JsonSyntaxException If the record is not well-formed, like the Gson binding it
+   *     replaces.
+   */
+  public static BreakpointState decode(byte[] data, int start, int length) {
+    Cursor in = new Cursor(data, start, start + length);
+    BreakpointState state = new BreakpointState();
+    in.beginObject();
+    while (in.nextMember()) {
+      if (in.keyIs(FILE_NAME)) {
+        state.setFileName(in.readText());
+      } else if (in.keyIs(LINE_NUMBER)) {
+        state.setLineNumber(in.readInt());
+      } else if (in.keyIs(THREAD_NAME)) {
+        state.setThreadName(in.readText());
+      } else if (in.keyIs(CURRENT_METHOD_STATE)) {
+        state.setCurrentMethodState(readMethod(in));
+      } else if (in.keyIs(INVOKED_METHOD_STATE)) {
+        state.setInvokedMethodState(readMethod(in));
+      } else if (in.keyIs(RAW_RETURN_VALUE)) {
+        state.setInvokedMethodReturnValue(in.readRaw());
+      } else if (in.keyIs(RETURN_VALUE)) {
+        state.setInvokedMethodReturnValue(in.readText());
+      } else if (in.keyIs(EXCEPTION_DETAILS)) {
+        state.setExceptionDetails(readExceptionDetails(in));
+      } else {
+        in.skipValue();
+      }
+    }
+    return state;
+  }
+
+  private static MethodState readMethod(Cursor in) {
+    if (in.readNull()) {
+      return null;
+    }
+    MethodState methodState = new MethodState();
+    in.beginObject();
+    while (in.nextMember()) {
+      if (in.keyIs(METHOD_NAME)) {
+        methodState.setMethodName(in.readText());
+      } else if (in.keyIs(RETURN_TYPE)) {
+        methodState.setReturnType(in.readText());
+      } else if (in.keyIs(PARAMETERS)) {
+        methodState.setParameters(readParameters(in));
+      } else {
+        in.skipValue();
+      }
+    }
+    return methodState;
+  }
+
+  private static List<ParameterInfo> readParameters(Cursor in) {
+    if (in.readNull()) {
+      return null;
+    }
+    List<ParameterInfo> parameters = new ArrayList<>();
+    in.beginArray();
+    while (in.nextElement()) {
+      ParameterInfo parameter = new ParameterInfo(null, null);
+      in.beginObject();
+      while (in.nextMember()) {
+        if (in.keyIs(NAME)) {
+          parameter.setName(in.readText());
+        } else if (in.keyIs(RAW_SERIALIZED_VALUE)) {
+          parameter.setSerializedValue(in.readRaw());
+        } else if (in.keyIs(SERIALIZED_VALUE)) {
+          parameter.setSerializedValue(in.readText());
+        } else {
+          in.skipValue();
+        }
+      }
+      parameters.add(parameter);
+    }
+    return parameters;
+  }
+
+  private static ExceptionDetails readExceptionDetails(Cursor in) {
+    if (in.readNull()) {
+      return null;
+    }
+    ExceptionDetails exceptionDetails = new ExceptionDetails();
+    in.beginObject();
+    while (in.nextMember()) {
+      if (in.keyIs(EXCEPTION_TYPE)) {
+        exceptionDetails.setExceptionType(in.readText());
+      } else if (in.keyIs(EXCEPTION_MESSAGE)) {
+        exceptionDetails.setExceptionMessage(in.readText());
+      } else if (in.keyIs(STACK_TRACE)) {
+        exceptionDetails.setStackTrace(in.readText());
+      } else {
+        in.skipValue();
+      }
+    }
+    return exceptionDetails;
+  }
+
+  private void writeMethod(byte[] key, MethodState methodState, StringDictionary dictionary) {
+    if (methodState == null) return;
+
+    name(key);
+    beginObject();
+    if (methodState.getMethodName() != null) {
+      name(METHOD_NAME);
+      writeName(methodState.getMethodName(), dictionary);
+    }
+    if (methodState.getReturnType() != null) {
+      name(RETURN_TYPE);
+      writeName(methodState.getReturnType(), dictionary);
+    }
+    if (methodState.getParameters() != null) {
+      name(PARAMETERS);
+      beginArray();
+      for (ParameterInfo parameter : methodState.getParameters()) {
+        element();
+        beginObject();
+        if (parameter.getName() != null) {
+          name(NAME);
+          writeName(parameter.getName(), dictionary);
+        }
+        writeValue(RAW_SERIALIZED_VALUE, SERIALIZED_VALUE, parameter.getSerializedValue());
+        endObject();
+      }
+      endArray();
+    }
+    endObject();
+  }
+
+  // Embeds a value verbatim if it is well-formed JSON, otherwise writes it as a string
+  private void writeValue(byte[] rawKey, byte[] stringKey, String value) {
+    if (value == null) return;
+
+    int mark = length;
+    name(rawKey);
+    int valueStart = length;
+    writeUtf8(value, false);
+    if (isWellFormed(buffer, valueStart, length)) {
+      hasElements = true;
+      return;
+    }
+    length = mark;
+    name(stringKey);
+    writeString(value);
+  }
+
+  private void writeName(String value, StringDictionary dictionary) {
+    if (dictionary != null) {
+      writeInt(dictionary.idOf(value));
+    } else {
+      writeString(value);
+    }
+  }
+
+  private void beginObject() {
+    ensureCapacity(1);
+    buffer[length++] = '{';
+    depth++;
+    hasElements = false;
+  }
+
+  private void endObject() {
+    endContainer((byte) '}');
+  }
+
+  private void beginArray() {
+    ensureCapacity(1);
+    buffer[length++] = '[';
+    depth++;
+    hasElements = false;
+  }
+
+  private void endArray() {
+    endContainer((byte) ']');
+  }
+
+  private void endContainer(byte bracket) {
+    depth--;
+    if (hasElements) {
+      newLine();
+    }
+    ensureCapacity(1);
+    buffer[length++] = bracket;
+    hasElements = true; // The container is an element of its parent
+  }
+
+  // Starts an element of an array
+  private void element() {
+    if (hasElements) {
+      ensureCapacity(1);
+      buffer[length++] = ',';
+    }
+    newLine();
+  }
+
+  // Starts a member of an object, the key is written with its quotes
+  private void name(byte[] key) {
+    element();
+    ensureCapacity(key.length + 2);
+    System.arraycopy(key, 0, buffer, length, key.length);
+    length += key.length;
+    buffer[length++] = ':';
+    if (prettyPrinted) {
+      buffer[length++] = ' ';
+    }
+  }
+
+  private void newLine() {
+    if (!prettyPrinted) return;
+
+    ensureCapacity(1 + 2 * depth);
+    buffer[length++] = '\n';
+    for (int i = 0; i < depth; i++) {
+      buffer[length++] = ' ';
+      buffer[length++] = ' ';
+    }
+  }
+
+  private void writeInt(int value) {
+    ensureCapacity(11);
+    long remaining = value;
+    if (remaining < 0) {
+      buffer[length++] = '-';
+      remaining = -remaining;
+    }
+    int digitsEnd = length + digits(remaining);
+    for (int position = digitsEnd - 1; position >= length; position--) {
+      buffer[position] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    }
+    length = digitsEnd;
+    hasElements = true;
+  }
+
+  private static int digits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+
+  private void writeString(String value) {
+    ensureCapacity(1);
+    buffer[length++] = '"';
+    writeUtf8(value, true);
+    ensureCapacity(1);
+    buffer[length++] = '"';
+    hasElements = true;
+  }
+
+  // Writes the UTF-8 bytes of a string, escaping it for the inside of a JSON string if requested
+  private void writeUtf8(String value, boolean escape) {
+    int count = value.length();
+    ensureCapacity(3 * count); // No character takes more than three bytes unescaped
+    for (int i = 0; i < count; i++) {
+      char c = value.charAt(i);
+      if (c < 0x80) {
+        if (escape && (c < 0x20 || c == '"' || c == '\\')) {
+          ensureCapacity(6 + 3 * (count - i));
+          writeEscaped(c);
+        } else {
+          buffer[length++] = (byte) c;
+        }
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xC0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)
+          && i + 1 < count
+          && Character.isLowSurrogate(value.charAt(i + 1))) {
+        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+        buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+        buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+        buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+        buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        buffer[length++] = '?'; // Unpaired surrogate, replaced like String.getBytes does
+      } else {
+        buffer[length++] = (byte) (0xE0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void writeEscaped(char c) {
+    buffer[length++] = '\\';
+    switch (c) {
+      case '"', '\\' -> buffer[length++] = (byte) c;
+      case '\n' -> buffer[length++] = 'n';
+      case '\r' -> buffer[length++] = 'r';
+      case '\t' -> buffer[length++] = 't';
+      case '\b' -> buffer[length++] = 'b';
+      case '\f' -> buffer[length++] = 'f';
+      default -> {
+        buffer[length++] = 'u';
+        buffer[length++] = '0';
+        buffer[length++] = '0';
+        buffer[length++] = HEX_DIGITS[c >> 4];
+        buffer[length++] = HEX_DIGITS[c & 0xF];
+      }
+    }
+  }
+
+  private void ensureCapacity(int additional) {
+    if (length + additional > buffer.length) {
+      buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + additional));
+    }
+  }
+
+  /**
+   * Checks whether a range of bytes is exactly one well-formed JSON value, without surrounding
+   * whitespace, so it can be embedded into a record verbatim.
+   *
+   * @param data Buffer holding the value.
+   * @param start Start of the value inside the buffer.
+   * @param end End of the value inside the buffer.
+   * @return true if the value can be embedded.
+   */
+  static boolean isWellFormed(byte[] data, int start, int end) {
+    return validValue(data, start, end, 0) == end;
+  }
+
+  // Returns the end of the value starting at the position, or -1 if it is not well-formed
+  private static int validValue(byte[] data, int position, int end, int nesting) {
+    if (position >= end || nesting > MAX_NESTING) {
+      return -1;
+    }
+    return switch (data[position]) {
+      case '{' -> validContainer(data, position, end, nesting, true);
+      case '[' -> validContainer(data, position, end, nesting, false);
+      case '"' -> validString(data, position, end);
+      case 't' -> validLiteral(data, position, end, "true");
+      case 'f' -> validLiteral(data, position, end, "false");
+      case 'n' -> validLiteral(data, position, end, "null");
+      default -> validNumber(data, position, end);
+    };
+  }
+
+  private static int validContainer(
+      byte[] data, int position, int end, int nesting, boolean object) {
+    byte close = (byte) (object ? '}' : ']');
+    position = skipWhitespace(data, position + 1, end);
+    if (position < end && data[position] == close) {
+      return position + 1;
+    }
+    while (true) {
+      if (object) {
+        if (position >= end || data[position] != '"') return -1;
+        position = skipWhitespace(data, validString(data, position, end), end);
+        if (position < 0 || position >= end || data[position] != ':') return -1;
+        position = skipWhitespace(data, position + 1, end);
+      }
+      position = validValue(data, position, end, nesting + 1);
+      if (position < 0) return -1;
+      position = skipWhitespace(data, position, end);
+      if (position >= end) return -1;
+      if (data[position] == close) return position + 1;
+      if (data[position] != ',') return -1;
+      position = skipWhitespace(data, position + 1, end);
+    }
+  }
+
+  private static int validString(byte[] data, int position, int end) {
+    position++; // Opening quote
+    while (position < end) {
+      byte b = data[position];
+      if (b == '"') {
+        return position + 1;
+      } else if (b == '\\') {
+        if (position + 1 >= end) return -1;
+        byte escaped = data[position + 1];
+        if (escaped == 'u') {
+          if (position + 6 > end) return -1;
+          for (int i = position + 2; i < position + 6; i++) {
+            if (Character.digit(data[i], 16) < 0) return -1;
+          }
+          position += 6;
+        } else if ("\"\\/bfnrt".indexOf(escaped) >= 0) {
+          position += 2;
+        } else {
+          return -1;
+        }
+      } else if (b >= 0 && b < 0x20) {
+        return -1; // Control characters must be escaped
+      } else {
+        position++;
+      }
+    }
+    return -1;
+  }
+
+  private static int validLiteral(byte[] data, int position, int end, String literal) {
+    if (end - position < literal.length()) return -1;
+    for (int i = 0; i < literal.length(); i++) {
+      if (data[position + i] != literal.charAt(i)) return -1;
+    }
+    return position + literal.length();
+  }
+
+  private static int validNumber(byte[] data, int position, int end) {
+    if (position < end && data[position] == '-') {
+      position++;
+    }
+    if (position >= end || !isDigit(data[position])) return -1;
+    if (data[position] == '0') {
+      position++;
+    } else {
+      position = skipDigits(data, position, end);
+    }
+    if (position < end && data[position] == '.') {
+      if (position + 1 >= end || !isDigit(data[position + 1])) return -1;
+      position = skipDigits(data, position + 1, end);
+    }
+    if (position < end && (data[position] == 'e' || data[position] == 'E')) {
+      position++;
+      if (position < end && (data[position] == '+' || data[position] == '-')) {
+        position++;
+      }
+      if (position >= end || !isDigit(data[position])) return -1;
+      position = skipDigits(data, position, end);
+    }
+    return position;
+  }
+
+  private static int skipDigits(byte[] data, int position, int end) {
+    while (position < end && isDigit(data[position])) {
+      position++;
+    }
+    return position;
+  }
+
+  private static boolean isDigit(byte b) {
+    return b >= '0' && b <= '9';
+  }
+
+  private static int skipWhitespace(byte[] data, int position, int end) {
+    while (position >= 0
+        && position < end
+        && (data[position] == ' '
+            || data[position] == '\n'
+            || data[position] == '\r'
+            || data[position] == '\t')) {
+      position++;
+    }
+    return position;
+  }
+
+  private static byte[] key(String name) {
+    return ("\"" + name + "\"").getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Pull parser over the bytes of one record. */
+  private static class Cursor {
+
+    private final byte[] data;
+    private final int start; // Start of the record
+    private final int end; // End of the record
+    private int position; // Position of the next byte to read
+    private int keyStart; // Start of the current key, including its quotes
+    private int keyEnd; // End of the current key, including its quotes
+
+    Cursor(byte[] data, int start, int end) {
+      this.data = data;
+      this.start = start;
+      this.position = start;
+      this.end = end;
+    }
+
+    void beginObject() {
+      expect('{');
+    }
+
+    void beginArray() {
+      expect('[');
+    }
+
+    // Moves to the next member of the object and reads its key, false at the end of the object
+    boolean nextMember() {
+      if (!hasNext('}')) {
+        return false;
+      }
+      if (peek() != '"') {
+        throw error("Expected a key");
+      }
+      keyStart = position;
+      position = skipString(position);
+      keyEnd = position;
+      expect(':');
+      return true;
+    }
+
+    // Moves to the next element of the array, false at the end of the array
+    boolean nextElement() {
+      return hasNext(']');
+    }
+
+    private boolean hasNext(char close) {
+      byte b = peek();
+      if (b == ',') {
+        position++;
+        b = peek();
+      }
+      if (b == close) {
+        position++;
+        return false;
+      }
+      return true;
+    }
+
+    boolean keyIs(byte[] key) {
+      return Arrays.equals(data, keyStart, keyEnd, key, 0, key.length);
+    }
+
+    // Consumes a null literal, false if the next value is something else
+    boolean readNull() {
+      if (peek() == 'n') {
+        position = literalEnd(position);
+        return true;
+      }
+      return false;
+    }
+
+    // Reads a string, or the text of a number or literal like Gson does for String fields
+    String readText() {
+      byte b = peek();
+      if (b == '"') {
+        return readString();
+      }
+      int textStart = position;
+      position = literalEnd(position);
+      if (position - textStart == 4 && data[textStart] == 'n') {
+        return null;
+      }
+      return numberText(textStart, position);
+    }
+
+    int readInt() {
+      String text = readText();
+      try {
+        return text == null ? 0 : Integer.parseInt(text);
+      } catch (NumberFormatException e) {
+        throw error("Expected an int but was " + text);
+      }
+    }
+
+    // Returns the text of the next value without parsing it
+    String readRaw() {
+      peek(); // Skips the whitespace before the value
+      int valueStart = position;
+      skipValue();
+      return new String(data, valueStart, position - valueStart, StandardCharsets.UTF_8);
+    }
+
+    void skipValue() {
+      byte b = peek();
+      if (b == '"') {
+        position = skipString(position);
+        return;
+      }
+      if (b != '{' && b != '[') {
+        position = literalEnd(position);
+        return;
+      }
+      int nesting = 0;
+      while (position < end) {
+        b = data[position];
+        if (b == '"') {
+          position = skipString(position);
+          continue;
+        }
+        position++;
+        if (b == '{' || b == '[') {
+          nesting++;
+        } else if ((b == '}' || b == ']') && --nesting == 0) {
+          return;
+        }
+      }
+      throw error("Unterminated value");
+    }
+
+    private String readString() {
+      int textStart = position + 1;
+      int stringEnd = textStart;
+      while (stringEnd < end && data[stringEnd] != '"' && data[stringEnd] != '\\') {
+        stringEnd++;
+      }
+      if (stringEnd < end && data[stringEnd] == '"') {
+        position = stringEnd + 1; // No escapes, the common case
+        return new String(data, textStart, stringEnd - textStart, StandardCharsets.UTF_8);
+      }
+
+      StringBuilder text = new StringBuilder();
+      position = textStart;
+      while (true) {
+        int runStart = position;
+        while (position < end && data[position] != '"' && data[position] != '\\') {
+          position++;
+        }
+        text.append(new String(data, runStart, position - runStart, StandardCharsets.UTF_8));
+        if (position >= end) {
+          throw error("Unterminated string");
+        }
+        if (data[position++] == '"') {
+          return text.toString();
+        }
+        if (position >= end) {
+          throw error("Unterminated escape");
+        }
+        byte escaped = data[position++];
+        switch (escaped) {
+          case 'n' -> text.append('\n');
+          case 'r' -> text.append('\r');
+          case 't' -> text.append('\t');
+          case 'b' -> text.append('\b');
+          case 'f' -> text.append('\f');
+          case 'u' -> {
+            if (position + 4 > end) {
+              throw error("Unterminated escape");
+            }
+            int c = 0;
+            for (int i = 0; i < 4; i++) {
+              int digit = Character.digit(data[position++], 16);
+              if (digit < 0) {
+                throw error("Malformed unicode escape");
+              }
+              c = c * 16 + digit;
+            }
+            text.append((char) c);
+          }
+          default -> text.append((char) escaped);
+        }
+      }
+    }
+
+    private String numberText(int textStart, int textEnd) {
+      int textLength = textEnd - textStart;
+      if (textLength > 0 && textLength <= 4 && (textLength == 1 || data[textStart] != '0')) {
+        int value = 0;
+        for (int i = textStart; i < textEnd && value >= 0; i++) {
+          value = isDigit(data[i]) ? value * 10 + data[i] - '0' : -1;
+        }
+        if (value >= 0 && value < SMALL_NUMBERS.length) {
+          return SMALL_NUMBERS[value]; // Dictionary ids repeat in every record
+        }
+      }
+      if (textLength == 0) {
+        throw error("Expected a value");
+      }
+      return new String(data, textStart, textLength, StandardCharsets.US_ASCII);
+    }
+
+    private int skipString(int from) {
+      int stringEnd = from + 1;
+      while (stringEnd < end && data[stringEnd] != '"') {
+        stringEnd += data[stringEnd] == '\\' ? 2 : 1;
+      }
+      if (stringEnd >= end) {
+        throw error("Unterminated string");
+      }
+      return stringEnd + 1;
+    }
+
+    // End of a number or literal
+    private int literalEnd(int from) {
+      int literalEnd = from;
+      while (literalEnd < end) {
+        byte b = data[literalEnd];
+        if (b == ',' || b == '}' || b == ']' || b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+          break;
+        }
+        literalEnd++;
+      }
+      return literalEnd;
+    }
+
+    private void expect(char c) {
+      if (peek() != c) {
+        throw error("Expected '" + c + "'");
+      }
+      position++;
+    }
+
+    // Returns the next byte that is not whitespace, without consuming it
+    private byte peek() {
+      position = skipWhitespace(data, position, end);
+      if (position >= end) {
+        throw error("Unexpected end of record");
+      }
+      return data[position];
+    }
+
+    private JsonSyntaxException error(String message) {
+      return new JsonSyntaxException(message + " at byte " + (position - start) + " of the record");
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Writes breakpoint records to a capture file and maintains its sidecar index.
+ *
+ * <p>Each record is written as a JSON object followed by a separator line. While writing, the
+ * writer tracks the byte offset and length of every record and appends them, together with the
+ * record's location, method, thread and value digest, to the {@link CaptureIndex} next to the
+ * capture file.
+ *
+ * <p>Metadata names are dictionary encoded (see {@link DictionaryEncoding}): every file, thread,
+ * method, type and parameter name is written once and referenced by its id afterwards. Exception
+ * stack traces are deduplicated the same way through a {@link StackTraceTable}. Records are
+ * encoded by a {@link CaptureRecordCodec}, which embeds serialized values as raw JSON instead of
+ * escaped strings. Records are written compact, on one line each, unless pretty printing is
+ * requested.
+ *
+ * <p>Optionally the capture can be written block compressed (see {@link CompressedBlockFormat}).
+ * Records are then collected in memory and written as one compressed block once the block is full
+ * or the writer is closed.
+ *
+ * <p>The bytes written and the number of records still waiting for their block are reported to a
+ * {@link CaptureMetrics}.
+ */
+public class CaptureWriter implements Closeable {
+
+  public static final String SEPARATOR = "===================="; // Separates two records
+  private static final byte[] RECORD_TERMINATOR =
+      ("\n" + SEPARATOR + "\n").getBytes(StandardCharsets.UTF_8);
+
+  private final File captureFile; // The capture file being written
+  private final DataOutputStream output; // Stream to the capture file
+  private final CaptureIndex.Appender indexAppender; // Stream to the sidecar index
+  private final Gson gson; // Writes the dictionary blocks
+  private final CaptureRecordCodec codec; // Encodes the records, reusing its buffer
+  private final StringDictionary dictionary = new StringDictionary(); // Names written so far
+  private final StackTraceTable traces = new StackTraceTable(); // Stack traces written so far
+  private long position; // Number of bytes written to the capture file so far
+  private final CaptureMetrics metrics; // Receives the bytes written and the pending records
+
+  private final boolean compressed; // Whether records are written in compressed blocks
+  private Deflater deflater; // Compressor shared by all blocks
+  private ByteArrayOutputStream block; // Uncompressed content of the current block
+  private final List<IndexEntry> pendingEntries = new ArrayList<>(); // Entries of current block
+
+  /**
+   * Creates or empties a plain capture file and its index.
+   *
+   * @param captureFile The capture file to write.
+   * @throws IOException If the capture file or its index cannot be created.
+   */
+  public CaptureWriter(File captureFile) throws IOException {
+    this(captureFile, false);
+  }
+
+  /**
+   * Creates or empties a capture file and its index.
+   *
+   * @param captureFile The capture file to write.
+   * @param compressed Whether the capture is written block compressed.
+   * @throws IOException If the capture file or its index cannot be created.
+   */
+  public CaptureWriter(File captureFile, boolean compressed) throws IOException {
+    this(captureFile, compressed, new CaptureMetrics());
+  }
+
+  /**
+   * Creates or empties a capture file and its index, reporting the progress of the capture.
+   *
+   * @param captureFile The capture file to write.
+   * @param compressed Whether the capture is written block compressed.
+   * @param metrics The metrics updated while writing.
+   * @throws IOException If the capture file or its index cannot be created.
+   */
+  public CaptureWriter(File captureFile, boolean compressed, CaptureMetrics metrics)
+      throws IOException {
+    this(captureFile, compressed, false, metrics);
+  }
+
+  /**
+   * Creates or empties a capture file and its index, reporting the progress of the capture.
+   *
+   * @param captureFile The capture file to write.
+   * @param compressed Whether the capture is written block compressed.
+   * @param prettyPrinted Whether records are indented over several lines, e.g. to read the capture
+   *     in an editor.
+   * @param metrics The metrics updated while writing.
+   * @throws IOException If the capture file or its index cannot be created.
+   */
+  public CaptureWriter(
+      File captureFile, boolean compressed, boolean prettyPrinted, CaptureMetrics metrics)
+      throws IOException {
+    this.captureFile = captureFile;
+    this.compressed = compressed;
+    this.metrics = metrics;
+    this.gson = prettyPrinted ? new GsonBuilder().setPrettyPrinting().create() : new Gson();
+    this.codec = new CaptureRecordCodec(prettyPrinted);
+    this.output =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(captureFile, false)));
+    try {
+      if (compressed) {
+        output.writeInt(CompressedBlockFormat.MAGIC);
+        position = CompressedBlockFormat.HEADER_LENGTH;
+        // Favor a short pause per hit over the last few percent of compression
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        block = new ByteArrayOutputStream(CompressedBlockFormat.BLOCK_SIZE + 64 * 1024);
+      } else {
+        byte[] header = (SEPARATOR + "\n").getBytes(StandardCharsets.UTF_8);
+        output.write(header); // Add the initial separator
+        position = header.length;
+      }
+      output.flush();
+      metrics.addBytesWritten(position);
+      this.indexAppender = new CaptureIndex.Appender(CaptureIndex.indexFileFor(captureFile));
+    } catch (IOException e) {
+      output.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Appends a breakpoint record to the capture file and its index. Plain captures are flushed, so
+   * the record is immediately visible to readers. Compressed captures make the record visible once
+   * its block is written.
+   *
+   * @param state The breakpoint state to write.
+   * @throws IOException If writing fails.
+   */
+  public synchronized void write(BreakpointState state) throws IOException {
+    int firstNewId = dictionary.size();
+    int firstNewTraceId = traces.size();
+    codec.encode(state, dictionary, traces);
+    if (dictionary.size() > firstNewId || traces.size() > firstNewTraceId) {
+      // Define new names and traces before the first record referencing them
+      byte[] definitions =
+          toBytes(
+              DictionaryEncoding.dictionaryBlock(dictionary, firstNewId, traces, firstNewTraceId));
+      append(definitions, definitions.length);
+      for (int id = firstNewId; id < dictionary.size(); id++) {
+        indexAppender.appendCaptureString(dictionary.get(id));
+      }
+      for (int id = firstNewTraceId; id < traces.size(); id++) {
+        indexAppender.appendCaptureTrace(traces.frames(id));
+      }
+    }
+
+    long offset = append(codec.buffer(), codec.length());
+
+    if (compressed) {
+      pendingEntries.add(CaptureIndex.createEntry(position, offset, codec.length(), state));
+      if (block.size() >= CompressedBlockFormat.BLOCK_SIZE) {
+        writeBlock();
+      }
+      metrics.setWriterBacklog(pendingEntries.size());
+      return;
+    }
+
+    output.flush();
+    indexAppender.append(CaptureIndex.createEntry(-1, offset, codec.length(), state));
+    indexAppender.flush();
+  }
+
+  // Appends a block of the capture stream followed by the separator, returns the block's offset
+  private long append(byte[] json, int length) throws IOException {
+    if (compressed) {
+      long offset = block.size();
+      block.write(json, 0, length);
+      block.write(RECORD_TERMINATOR); // Separate different breakpoints
+      return offset;
+    }
+
+    long offset = position;
+    output.write(json, 0, length);
+    output.write(RECORD_TERMINATOR); // Separate different breakpoints
+    position += length + RECORD_TERMINATOR.length;
+    metrics.addBytesWritten(length + RECORD_TERMINATOR.length);
+    return offset;
+  }
+
+  private byte[] toBytes(JsonObject json) {
+    return gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+  }
+
+  // Compresses the current block, writes it and publishes the index entries of its records
+  private void writeBlock() throws IOException {
+    if (block.size() == 0) return;
+
+    byte[] data = block.toByteArray();
+    long blockLength = CompressedBlockFormat.writeBlock(output, deflater, data, data.length);
+    position += blockLength;
+    output.flush();
+    metrics.addBytesWritten(blockLength);
+    block.reset();
+
+    for (IndexEntry entry : pendingEntries) {
+      indexAppender.append(entry);
+    }
+    indexAppender.flush();
+    pendingEntries.clear();
+    metrics.setWriterBacklog(0);
+  }
+
+  /**
+   * Returns the capture file written by this writer.
+   *
+   * @return The capture file.
+   */
+  public File getCaptureFile() {
+    return captureFile;
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    try {
+      if (compressed) {
+        writeBlock(); // Write the last, partially filled block
+        deflater.end();
+      }
+    } finally {
+      try {
+        output.close();
+      } finally {
+        indexAppender.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,574 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Read only, compact in-memory form of a loaded capture. Instead of one {@link BreakpointState}
+ * with its method, parameter and exception beans per record, the records are stored column by
+ * column in primitive arrays:
+ *
+ * <ul>
+ *   <li>file, thread, method, type and parameter names as ids of a shared {@link
+ *       StringDictionary},
+ *   <li>serialized values, exception messages and stack traces as slots pointing into shared UTF-8
+ *       byte buffers, each with its length and digest; equal values of a capture share one slot,
+ *   <li>the value digest of every record, see {@link RecordDigest}.
+ * </ul>
+ *
+ * <p>A million records therefore take a few dozen arrays instead of millions of small objects. The
+ * comparators check records for equality directly on the columns, and the beans of a record are
+ * only built by {@link #toState(int)} when the record is compared in detail or displayed.
+ */
+public class CompactCapture {
+
+  private static final int NO_ID = -1; // Id of a null name and slot of a null value
+  private static final int ABSENT = -2; // Name id of a method or exception a record does not have
+  private static final int CURRENT = 0; // Index of the current method's columns
+  private static final int INVOKED = 1; // Index of the invoked method's columns
+  private static final int SEGMENT_SIZE = 16 * 1024 * 1024; // Size of a value buffer segment
+
+  private final StringDictionary names; // Names referenced by the id columns
+  private final int size; // Number of records
+
+  // Record columns
+  private final int[] fileIds; // File name id per record
+  private final int[] lines; // Line number per record
+  private final int[] threadIds; // Thread name id per record
+  private final int[] returnValues; // Return value slot per record
+  private final int[] exceptionTypeIds; // Exception type id per record
+  private final int[] exceptionMessages; // Exception message slot per record
+  private final int[] exceptionTraces; // Stack trace slot per record
+  private final long[] recordDigests; // Value digest per record
+
+  // Method columns, indexed by CURRENT or INVOKED and the record
+  private final int[][] methodNameIds; // Method name id
+  private final int[][] returnTypeIds; // Return type id
+  private final int[][] parameterStarts; // First parameter of the method
+  private final int[][] parameterEnds; // End of the method's parameters, exclusive
+
+  // Parameter columns, the parameters of a method are stored consecutively
+  private final int[] parameterNameIds; // Parameter name id
+  private final int[] parameterValues; // Parameter value slot
+
+  // Value slots
+  private final byte[][] segments; // UTF-8 buffers holding the values
+  private final long[] slotAddresses; // Segment index in the high, offset in the low 32 bits
+  private final int[] slotLengths; // Length of the value in bytes
+  private final long[] slotDigests; // Digest of the value, see RecordDigest.of(String)
+
+  private CompactCapture(Builder builder) {
+    this.names = builder.names;
+    this.size = builder.size;
+    this.fileIds = Arrays.copyOf(builder.fileIds, size);
+    this.lines = Arrays.copyOf(builder.lines, size);
+    this.threadIds = Arrays.copyOf(builder.threadIds, size);
+    this.returnValues = Arrays.copyOf(builder.returnValues, size);
+    this.exceptionTypeIds = Arrays.copyOf(builder.exceptionTypeIds, size);
+    this.exceptionMessages = Arrays.copyOf(builder.exceptionMessages, size);
+    this.exceptionTraces = Arrays.copyOf(builder.exceptionTraces, size);
+    this.recordDigests = Arrays.copyOf(builder.recordDigests, size);
+    this.methodNameIds = new int[2][];
+    this.returnTypeIds = new int[2][];
+    this.parameterStarts = new int[2][];
+    this.parameterEnds = new int[2][];
+    for (int method = CURRENT; method <= INVOKED; method++) {
+      methodNameIds[method] = Arrays.copyOf(builder.methodNameIds[method], size);
+      returnTypeIds[method] = Arrays.copyOf(builder.returnTypeIds[method], size);
+      parameterStarts[method] = Arrays.copyOf(builder.parameterStarts[method], size);
+      parameterEnds[method] = Arrays.copyOf(builder.parameterEnds[method], size);
+    }
+    this.parameterNameIds = Arrays.copyOf(builder.parameterNameIds, builder.parameterCount);
+    this.parameterValues = Arrays.copyOf(builder.parameterValues, builder.parameterCount);
+
+    List<byte[]> builderSegments = builder.segments;
+    int last = builderSegments.size() - 1;
+    if (last >= 0) {
+      // Only the filled part of the last segment is kept
+      builderSegments.set(last, Arrays.copyOf(builderSegments.get(last), builder.segmentOffset));
+    }
+    this.segments = builderSegments.toArray(new byte[0][]);
+    this.slotAddresses = Arrays.copyOf(builder.slotAddresses, builder.slotCount);
+    this.slotLengths = Arrays.copyOf(builder.slotLengths, builder.slotCount);
+    this.slotDigests = Arrays.copyOf(builder.slotDigests, builder.slotCount);
+  }
+
+  /**
+   * Reads all records of a capture file into the compact form. Every record is decoded to beans
+   * and appended to the columns right away, so the beans of only one record exist at a time.
+   *
+   * @param captureFile The capture file to read.
+   * @param names The dictionary the names are stored in, share it between compared captures.
+   * @param rules The rules normalizing the values of every record.
+   * @param progress The monitor receiving the progress.
+   * @return The compact capture.
+   * @throws IOException If the capture file cannot be read.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static CompactCapture read(
+      File captureFile, StringDictionary names, NormalizationRules rules, ProgressMonitor progress)
+      throws IOException {
+    RecordDecoder decoder = new RecordDecoder(names, rules);
+    Builder builder = new Builder(names);
+    double fileLength = Math.max(1, captureFile.length());
+    int[] decoded = new int[1];
+
+    RecordScanner.scanFile(
+        captureFile,
+        (blockOffset, offset, data, start, length) -> {
+          if (++decoded[0] % CaptureReader.PROGRESS_INTERVAL == 0) {
+            progress.checkCanceled();
+            progress.setFraction((blockOffset < 0 ? offset : blockOffset) / fileLength);
+          }
+          BreakpointState state = decoder.decode(data, start, length);
+          if (state != null) {
+            builder.add(state);
+          }
+        });
+    progress.setFraction(1);
+    return builder.build();
+  }
+
+  /**
+   * Converts parsed records into the compact form.
+   *
+   * @param states The records.
+   * @param names The dictionary the names are stored in, share it between compared captures.
+   * @return The compact capture.
+   */
+  public static CompactCapture of(List<BreakpointState> states, StringDictionary names) {
+    Builder builder = new Builder(names);
+    for (BreakpointState state : states) {
+      builder.add(state);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the number of records.
+   *
+   * @return The number of records.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the estimated memory held by the columns and value buffers, e.g. for a cache budget.
+   * The names are held by the shared dictionary and are not included.
+   *
+   * @return The estimated size in bytes.
+   */
+  public long getEstimatedBytes() {
+    long bytes = size * (15L * Integer.BYTES + Long.BYTES); // Record and method columns
+    bytes += parameterNameIds.length * 2L * Integer.BYTES;
+    bytes += slotAddresses.length * (2L * Long.BYTES + Integer.BYTES);
+    for (byte[] segment : segments) {
+      bytes += segment.length;
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the file name of a record.
+   *
+   * @param record The index of the record.
+   * @return The canonical file name from the dictionary, or null.
+   */
+  public String getFileName(int record) {
+    return name(fileIds[record]);
+  }
+
+  /**
+   * Returns the line number of a record.
+   *
+   * @param record The index of the record.
+   * @return The line number.
+   */
+  public int getLineNumber(int record) {
+    return lines[record];
+  }
+
+  /**
+   * Returns the name of the thread that hit the breakpoint of a record.
+   *
+   * @param record The index of the record.
+   * @return The canonical thread name from the dictionary, or null.
+   */
+  public String getThreadName(int record) {
+    return name(threadIds[record]);
+  }
+
+  /**
+   * Returns the name of the method containing the breakpoint of a record.
+   *
+   * @param record The index of the record.
+   * @return The canonical method name from the dictionary, or null.
+   */
+  public String getCurrentMethodName(int record) {
+    int id = methodNameIds[CURRENT][record];
+    return id == ABSENT ? null : name(id);
+  }
+
+  /**
+   * Returns the value digest of a record, see {@link RecordDigest#of(BreakpointState)}.
+   *
+   * @param record The index of the record.
+   * @return The digest of all values of the record.
+   */
+  public long getRecordDigest(int record) {
+    return recordDigests[record];
+  }
+
+  /**
+   * Checks whether two records have equal locations, method names, types, parameters, values and
+   * exceptions, i.e. everything the comparison of two hits looks at. Only the columns are read, no
+   * beans are built.
+   *
+   * @param record The index of the record in this capture.
+   * @param other The capture of the other record, may be this one.
+   * @param otherRecord The index of the other record.
+   * @return True if the records are equal, false if their beans need to be compared.
+   */
+  public boolean sameValues(int record, CompactCapture other, int otherRecord) {
+    if (recordDigests[record] != other.recordDigests[otherRecord]
+        || lines[record] != other.lines[otherRecord]
+        || !sameName(fileIds[record], other, other.fileIds[otherRecord])
+        || !sameValue(returnValues[record], other, other.returnValues[otherRecord])) {
+      return false;
+    }
+
+    for (int method = CURRENT; method <= INVOKED; method++) {
+      int nameId = methodNameIds[method][record];
+      int otherNameId = other.methodNameIds[method][otherRecord];
+      if (nameId == ABSENT || otherNameId == ABSENT) {
+        return false; // Compared in detail, like the beans
+      }
+      if (!sameName(nameId, other, otherNameId)
+          || !sameName(
+              returnTypeIds[method][record], other, other.returnTypeIds[method][otherRecord])) {
+        return false;
+      }
+
+      int start = parameterStarts[method][record];
+      int end = parameterEnds[method][record];
+      int otherStart = other.parameterStarts[method][otherRecord];
+      if (end - start != other.parameterEnds[method][otherRecord] - otherStart) {
+        return false;
+      }
+      for (int i = 0; i < end - start; i++) {
+        if (!sameName(parameterNameIds[start + i], other, other.parameterNameIds[otherStart + i])
+            || !sameValue(
+                parameterValues[start + i], other, other.parameterValues[otherStart + i])) {
+          return false;
+        }
+      }
+    }
+
+    int exceptionType = exceptionTypeIds[record];
+    int otherExceptionType = other.exceptionTypeIds[otherRecord];
+    if (exceptionType == ABSENT || otherExceptionType == ABSENT) {
+      return exceptionType == otherExceptionType;
+    }
+    return sameName(exceptionType, other, otherExceptionType)
+        && sameValue(exceptionMessages[record], other, other.exceptionMessages[otherRecord])
+        && sameValue(exceptionTraces[record], other, other.exceptionTraces[otherRecord]);
+  }
+
+  /**
+   * Builds the beans of a record, e.g. to compare it in detail or to display it. Names are the
+   * canonical instances of the dictionary, values are decoded from the value buffers.
+   *
+   * @param record The index of the record.
+   * @return A new BreakpointState with the content of the record.
+   */
+  public BreakpointState toState(int record) {
+    BreakpointState state = new BreakpointState();
+    state.setFileName(name(fileIds[record]));
+    state.setLineNumber(lines[record]);
+    state.setThreadName(name(threadIds[record]));
+    state.setCurrentMethodState(toMethodState(CURRENT, record));
+    state.setInvokedMethodState(toMethodState(INVOKED, record));
+    state.setInvokedMethodReturnValue(value(returnValues[record]));
+
+    if (exceptionTypeIds[record] != ABSENT) {
+      ExceptionDetails exception = new ExceptionDetails();
+      exception.setExceptionType(name(exceptionTypeIds[record]));
+      exception.setExceptionMessage(value(exceptionMessages[record]));
+      exception.setStackTrace(value(exceptionTraces[record]));
+      state.setExceptionDetails(exception);
+    }
+    return state;
+  }
+
+  /**
+   * Returns the records as a list of beans. The list is a view: every call of get builds the beans
+   * of the record again, so keep the returned states only as long as they are needed.
+   *
+   * @return An unmodifiable list view of the records.
+   */
+  public List<BreakpointState> asStates() {
+    return new StateView();
+  }
+
+  private MethodState toMethodState(int method, int record) {
+    int nameId = methodNameIds[method][record];
+    if (nameId == ABSENT) {
+      return null;
+    }
+    MethodState methodState = new MethodState();
+    methodState.setMethodName(name(nameId));
+    methodState.setReturnType(name(returnTypeIds[method][record]));
+    int start = parameterStarts[method][record];
+    int end = parameterEnds[method][record];
+    List<ParameterInfo> parameters = new ArrayList<>(end - start);
+    for (int i = start; i < end; i++) {
+      parameters.add(new ParameterInfo(name(parameterNameIds[i]), value(parameterValues[i])));
+    }
+    methodState.setParameters(parameters);
+    return methodState;
+  }
+
+  private String name(int id) {
+    return id == NO_ID ? null : names.get(id);
+  }
+
+  private String value(int slot) {
+    if (slot == NO_ID) {
+      return null;
+    }
+    long address = slotAddresses[slot];
+    return new String(
+        segments[(int) (address >>> 32)], (int) address, slotLengths[slot], StandardCharsets.UTF_8);
+  }
+
+  // Ids of a shared dictionary are compared directly, otherwise the names themselves
+  private boolean sameName(int id, CompactCapture other, int otherId) {
+    if (names == other.names || id == NO_ID || otherId == NO_ID) {
+      return id == otherId;
+    }
+    return names.get(id).equals(other.names.get(otherId));
+  }
+
+  private boolean sameValue(int slot, CompactCapture other, int otherSlot) {
+    if (slot == NO_ID || otherSlot == NO_ID) {
+      return slot == otherSlot;
+    }
+    if (other == this && slot == otherSlot) {
+      return true;
+    }
+    int length = slotLengths[slot];
+    if (slotDigests[slot] != other.slotDigests[otherSlot]
+        || length != other.slotLengths[otherSlot]) {
+      return false;
+    }
+    long address = slotAddresses[slot];
+    long otherAddress = other.slotAddresses[otherSlot];
+    int offset = (int) address;
+    int otherOffset = (int) otherAddress;
+    return Arrays.equals(
+        segments[(int) (address >>> 32)],
+        offset,
+        offset + length,
+        other.segments[(int) (otherAddress >>> 32)],
+        otherOffset,
+        otherOffset + length);
+  }
+
+  /** List view building the beans of a record when it is requested. */
+  private class StateView extends AbstractList<BreakpointState> implements RandomAccess {
+    @Override
+    public BreakpointState get(int index) {
+      return toState(index);
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+
+  /** Appends records to the columns of a new compact capture. */
+  public static class Builder {
+
+    private final StringDictionary names; // Dictionary of the name ids
+    private int size; // Number of records added
+    private int[] fileIds = new int[16];
+    private int[] lines = new int[16];
+    private int[] threadIds = new int[16];
+    private int[] returnValues = new int[16];
+    private int[] exceptionTypeIds = new int[16];
+    private int[] exceptionMessages = new int[16];
+    private int[] exceptionTraces = new int[16];
+    private long[] recordDigests = new long[16];
+    private final int[][] methodNameIds = {new int[16], new int[16]};
+    private final int[][] returnTypeIds = {new int[16], new int[16]};
+    private final int[][] parameterStarts = {new int[16], new int[16]};
+    private final int[][] parameterEnds = {new int[16], new int[16]};
+
+    private int parameterCount; // Number of parameters of all methods added
+    private int[] parameterNameIds = new int[16];
+    private int[] parameterValues = new int[16];
+
+    private final List<byte[]> segments = new ArrayList<>(); // Value buffers, the last is filled
+    private int segmentOffset = SEGMENT_SIZE; // Filled part of the last segment
+    private int slotCount; // Number of value slots
+    private long[] slotAddresses = new long[16];
+    private int[] slotLengths = new int[16];
+    private long[] slotDigests = new long[16];
+    private final Map<Long, Integer> slotsByDigest = new HashMap<>(); // Value digest -> slot
+
+    /**
+     * Creates a builder storing names in the given dictionary.
+     *
+     * @param names The dictionary, share it between captures that are compared.
+     */
+    public Builder(StringDictionary names) {
+      this.names = names;
+    }
+
+    /**
+     * Appends a record.
+     *
+     * @param state The record, it is not referenced afterwards.
+     */
+    public void add(BreakpointState state) {
+      if (size == fileIds.length) {
+        grow();
+      }
+      fileIds[size] = idOf(state.getFileName());
+      lines[size] = state.getLineNumber();
+      threadIds[size] = idOf(state.getThreadName());
+      returnValues[size] = slotOf(state.getInvokedMethodReturnValue());
+      addMethod(CURRENT, state.getCurrentMethodState());
+      addMethod(INVOKED, state.getInvokedMethodState());
+
+      ExceptionDetails exception = state.getExceptionDetails();
+      if (exception == null) {
+        exceptionTypeIds[size] = ABSENT;
+        exceptionMessages[size] = NO_ID;
+        exceptionTraces[size] = NO_ID;
+      } else {
+        exceptionTypeIds[size] = idOf(exception.getExceptionType());
+        exceptionMessages[size] = slotOf(exception.getExceptionMessage());
+        exceptionTraces[size] = slotOf(exception.getStackTrace());
+      }
+      recordDigests[size] = RecordDigest.of(state);
+      size++;
+    }
+
+    /**
+     * Returns the compact capture of all records added so far.
+     *
+     * @return The compact capture.
+     */
+    public CompactCapture build() {
+      return new CompactCapture(this);
+    }
+
+    private void addMethod(int method, MethodState methodState) {
+      int start = parameterCount;
+      if (methodState == null) {
+        methodNameIds[method][size] = ABSENT;
+        returnTypeIds[method][size] = NO_ID;
+      } else {
+        methodNameIds[method][size] = idOf(methodState.getMethodName());
+        returnTypeIds[method][size] = idOf(methodState.getReturnType());
+        List<ParameterInfo> parameters = methodState.getParameters();
+        for (ParameterInfo parameter : parameters == null ? List.<ParameterInfo>of() : parameters) {
+          if (parameterCount == parameterNameIds.length) {
+            parameterNameIds = Arrays.copyOf(parameterNameIds, parameterCount * 2);
+            parameterValues = Arrays.copyOf(parameterValues, parameterCount * 2);
+          }
+          parameterNameIds[parameterCount] = idOf(parameter.getName());
+          parameterValues[parameterCount] = slotOf(parameter.getSerializedValue());
+          parameterCount++;
+        }
+      }
+      parameterStarts[method][size] = start;
+      parameterEnds[method][size] = parameterCount;
+    }
+
+    private int idOf(String name) {
+      return name == null ? NO_ID : names.idOf(name);
+    }
+
+    // Stores a value in the buffers, values equal to an earlier value reuse its slot
+    private int slotOf(String value) {
+      if (value == null) {
+        return NO_ID;
+      }
+      long digest = RecordDigest.of(value);
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      Integer existing = slotsByDigest.get(digest);
+      if (existing != null && sameBytes(existing, bytes)) {
+        return existing;
+      }
+
+      if (bytes.length > SEGMENT_SIZE - segmentOffset) {
+        // Values larger than a segment get a segment of their own
+        segments.add(new byte[Math.max(SEGMENT_SIZE, bytes.length)]);
+        segmentOffset = 0;
+      }
+      System.arraycopy(bytes, 0, segments.get(segments.size() - 1), segmentOffset, bytes.length);
+
+      if (slotCount == slotAddresses.length) {
+        slotAddresses = Arrays.copyOf(slotAddresses, slotCount * 2);
+        slotLengths = Arrays.copyOf(slotLengths, slotCount * 2);
+        slotDigests = Arrays.copyOf(slotDigests, slotCount * 2);
+      }
+      int slot = slotCount++;
+      slotAddresses[slot] = ((long) (segments.size() - 1) << 32) | segmentOffset;
+      slotLengths[slot] = bytes.length;
+      slotDigests[slot] = digest;
+      segmentOffset += bytes.length;
+      if (existing == null) {
+        slotsByDigest.put(digest, slot); // On a digest collision the first value is kept
+      }
+      return slot;
+    }
+
+    private boolean sameBytes(int slot, byte[] bytes) {
+      long address = slotAddresses[slot];
+      int offset = (int) address;
+      return slotLengths[slot] == bytes.length
+          && Arrays.equals(
+              segments.get((int) (address >>> 32)),
+              offset,
+              offset + bytes.length,
+              bytes,
+              0,
+              bytes.length);
+    }
+
+    private void grow() {
+      int capacity = size * 2;
+      fileIds = Arrays.copyOf(fileIds, capacity);
+      lines = Arrays.copyOf(lines, capacity);
+      threadIds = Arrays.copyOf(threadIds, capacity);
+      returnValues = Arrays.copyOf(returnValues, capacity);
+      exceptionTypeIds = Arrays.copyOf(exceptionTypeIds, capacity);
+      exceptionMessages = Arrays.copyOf(exceptionMessages, capacity);
+      exceptionTraces = Arrays.copyOf(exceptionTraces, capacity);
+      recordDigests = Arrays.copyOf(recordDigests, capacity);
+      for (int method = CURRENT; method <= INVOKED; method++) {
+        methodNameIds[method] = Arrays.copyOf(methodNameIds[method], capacity);
+        returnTypeIds[method] = Arrays.copyOf(returnTypeIds[method], capacity);
+        parameterStarts[method] = Arrays.copyOf(parameterStarts[method], capacity);
+        parameterEnds[method] = Arrays.copyOf(parameterEnds[method], capacity);
+      }
+    }
+  }
+}
@@ -0,0 +1,186 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.io.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Layout of block compressed capture files.
+ *
+ * <p>A compressed capture starts with a 4 byte magic number followed by a sequence of blocks. Every
+ * block holds a group of complete records in the plain capture layout (JSON followed by a separator
+ * line) and is compressed on its own with {@link Deflater}:
+ *
+ * <pre>
+ *   int compressedLength | int uncompressedLength | compressedLength bytes of deflate data
+ * </pre>
+ *
+ * Because blocks do not depend on each other, a reader can seek to any block offset and decode it
+ * without touching the rest of the file. A block holds at least one record, so it is larger than
+ * BLOCK_SIZE if a record is; block headers with lengths beyond MAX_BLOCK_SIZE are corrupt.
+ */
+class CompressedBlockFormat {
+
+  static final int MAGIC = 0x43435A31; // "CCZ1"
+  static final int HEADER_LENGTH = 4; // Length of the magic number
+  static final int BLOCK_HEADER_LENGTH = 8; // Length of the two length fields of a block
+  static final int BLOCK_SIZE = 64 * 1024; // Uncompressed size after which a block is closed
+  static final int MAX_BLOCK_SIZE = 256 * 1024 * 1024; // Bounds a full block plus its last record
+
+  /**
+   * A decoded block.
+   *
+   * @param data The uncompressed content of the block.
+   * @param storedLength Number of bytes the block occupies in the file, including its header.
+   */
+  record Block(byte[] data, int storedLength) {}
+
+  private CompressedBlockFormat() {
+    // Only static helpers
+  }
+
+  /**
+   * Checks whether a file is a block compressed capture by looking at its magic number.
+   *
+   * @param captureFile The capture file to check.
+   * @return true if the file starts with the compressed capture magic number.
+   * @throws IOException If the file cannot be read.
+   */
+  static boolean isCompressed(File captureFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new FileInputStream(captureFile))) {
+      return in.readInt() == MAGIC;
+    } catch (EOFException e) {
+      return false; // Too short to be a compressed capture
+    }
+  }
+
+  /**
+   * Sums the uncompressed lengths of all complete blocks of a compressed capture. Only the block
+   * headers are read.
+   *
+   * @param captureFile The compressed capture file.
+   * @return The size the capture would have in the plain layout.
+   * @throws IOException If the file cannot be read.
+   */
+  static long uncompressedLength(File captureFile) throws IOException {
+    long total = 0;
+    try (RandomAccessFile file = new RandomAccessFile(captureFile, "r")) {
+      long position = HEADER_LENGTH;
+      while (position + BLOCK_HEADER_LENGTH <= file.length()) {
+        file.seek(position);
+        int compressedLength = file.readInt();
+        int uncompressedLength = file.readInt();
+        checkLengths(compressedLength, uncompressedLength);
+        position += BLOCK_HEADER_LENGTH + compressedLength;
+        if (position > file.length()) {
+          break; // The last block was cut off while it was written
+        }
+        total += uncompressedLength;
+      }
+    }
+    return total;
+  }
+
+  /**
+   * Compresses and writes one block.
+   *
+   * @param out The stream to write the block to.
+   * @param deflater The deflater to use, it is reset before use.
+   * @param data Buffer holding the uncompressed block.
+   * @param length Number of bytes of the block inside the buffer.
+   * @return The number of bytes written, including the block header.
+   * @throws IOException If writing fails or the block is larger than MAX_BLOCK_SIZE.
+   */
+  static int writeBlock(DataOutputStream out, Deflater deflater, byte[] data, int length)
+      throws IOException {
+    if (length > MAX_BLOCK_SIZE) {
+      throw new IOException("Capture block of " + length + " bytes exceeds " + MAX_BLOCK_SIZE);
+    }
+    deflater.reset();
+    deflater.setInput(data, 0, length);
+    deflater.finish();
+
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+    byte[] chunk = new byte[16 * 1024];
+    while (!deflater.finished()) {
+      int size = deflater.deflate(chunk);
+      compressed.write(chunk, 0, size);
+    }
+
+    out.writeInt(compressed.size());
+    out.writeInt(length);
+    compressed.writeTo(out);
+    return BLOCK_HEADER_LENGTH + compressed.size();
+  }
+
+  /**
+   * Reads and decompresses the next block of a stream.
+   *
+   * @param in The stream, positioned at the start of a block.
+   * @param inflater The inflater to use, it is reset before use.
+   * @return The decoded block, or null at the end of the stream or for a block that was cut off
+   *     while it was written.
+   * @throws IOException If reading fails or the block is corrupt.
+   */
+  static Block readBlock(DataInput in, Inflater inflater) throws IOException {
+    byte[] compressed;
+    int uncompressedLength;
+    try {
+      int compressedLength = in.readInt();
+      uncompressedLength = in.readInt();
+      checkLengths(compressedLength, uncompressedLength);
+      compressed = new byte[compressedLength];
+      in.readFully(compressed);
+    } catch (EOFException e) {
+      return null;
+    }
+    return new Block(
+        inflate(inflater, compressed, uncompressedLength),
+        BLOCK_HEADER_LENGTH + compressed.length);
+  }
+
+  // Rejects lengths no block of the writer has, before a buffer of that length is allocated
+  private static void checkLengths(int compressedLength, int uncompressedLength)
+      throws IOException {
+    if (uncompressedLength < 0
+        || uncompressedLength > MAX_BLOCK_SIZE
+        || compressedLength < 0
+        || compressedLength > deflateBound(uncompressedLength)) {
+      throw new IOException(
+          "Corrupt capture block header: "
+              + compressedLength
+              + " compressed, "
+              + uncompressedLength
+              + " uncompressed bytes");
+    }
+  }
+
+  // The largest deflate output of the given input length, as computed by zlib's compressBound
+  private static long deflateBound(long length) {
+    return length + (length >> 12) + (length >> 14) + (length >> 25) + 13;
+  }
+
+  private static byte[] inflate(Inflater inflater, byte[] compressed, int uncompressedLength)
+      throws IOException {
+    inflater.reset();
+    inflater.setInput(compressed);
+    byte[] block = new byte[uncompressedLength];
+    try {
+      int size = 0;
+      while (size < uncompressedLength && !inflater.finished()) {
+        int inflated = inflater.inflate(block, size, uncompressedLength - size);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        size += inflated;
+      }
+      if (size != uncompressedLength) {
+        throw new IOException("Corrupt capture block: expected " + uncompressedLength + " bytes");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Corrupt capture block", e);
+    }
+    return block;
+  }
+}
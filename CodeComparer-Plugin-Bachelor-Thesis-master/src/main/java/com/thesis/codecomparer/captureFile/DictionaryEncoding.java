@@ -0,0 +1,132 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding of the metadata strings in the capture stream.
+ *
+ * <p>File, thread, method, type, parameter and exception type names are written as integer ids. The
+ * strings behind the ids are defined incrementally by dictionary blocks, which are written between
+ * the records right before the first record that uses them:
+ *
+ * <pre>
+ *   {"dictionary": {"firstId": 5, "strings": ["OrderService", "process"]}}
+ * </pre>
+ *
+ * <p>Exception stack traces are written as the id of a trace in the capture's {@link
+ * StackTraceTable}. New traces are defined in the same dictionary blocks as lists of frame ids,
+ * after the strings of their frames:
+ *
+ * <pre>
+ *   {"dictionary": {"firstId": 7, "strings": ["at A.run(A.java:3)"],
+ *                   "firstTraceId": 0, "traces": [[7]]}}
+ * </pre>
+ *
+ * <p>The records themselves are encoded by the {@link CaptureRecordCodec}.
+ */
+class DictionaryEncoding {
+
+  static final String DICTIONARY_KEY = "dictionary";
+  static final String TRACES_KEY = "traces";
+  static final String FIRST_TRACE_ID_KEY = "firstTraceId";
+  private static final byte[] DICTIONARY_KEY_BYTES =
+      ("\"" + DICTIONARY_KEY + "\"").getBytes(StandardCharsets.UTF_8);
+
+  private DictionaryEncoding() {
+    // Only static helpers
+  }
+
+  /**
+   * Creates the dictionary block defining all strings and traces from the given ids on.
+   *
+   * @param dictionary The dictionary of the capture being written.
+   * @param firstId The id of the first string to define.
+   * @param traces The stack trace table of the capture being written.
+   * @param firstTraceId The id of the first trace to define.
+   * @return The dictionary block.
+   */
+  static JsonObject dictionaryBlock(
+      StringDictionary dictionary, int firstId, StackTraceTable traces, int firstTraceId) {
+    JsonArray strings = new JsonArray();
+    for (int id = firstId; id < dictionary.size(); id++) {
+      strings.add(dictionary.get(id));
+    }
+
+    JsonObject definition = new JsonObject();
+    definition.addProperty("firstId", firstId);
+    definition.add("strings", strings);
+    if (firstTraceId < traces.size()) {
+      JsonArray traceDefinitions = new JsonArray();
+      for (int id = firstTraceId; id < traces.size(); id++) {
+        JsonArray frames = new JsonArray();
+        for (int frame : traces.frames(id)) {
+          frames.add(frame);
+        }
+        traceDefinitions.add(frames);
+      }
+      definition.addProperty(FIRST_TRACE_ID_KEY, firstTraceId);
+      definition.add(TRACES_KEY, traceDefinitions);
+    }
+
+    JsonObject block = new JsonObject();
+    block.add(DICTIONARY_KEY, definition);
+    return block;
+  }
+
+  /**
+   * Checks whether a block of the capture stream is a dictionary block, without parsing it.
+   *
+   * @param data Buffer holding the block.
+   * @param start Start of the block inside the buffer.
+   * @param length Length of the block.
+   * @return true if the block's first key is the dictionary key.
+   */
+  static boolean isDictionaryBlock(byte[] data, int start, int length) {
+    int end = start + length;
+    int position = skipWhitespace(data, start, end);
+    if (position == end || data[position] != '{') {
+      return false;
+    }
+    position = skipWhitespace(data, position + 1, end);
+    return end - position >= DICTIONARY_KEY_BYTES.length
+        && Arrays.equals(
+            data,
+            position,
+            position + DICTIONARY_KEY_BYTES.length,
+            DICTIONARY_KEY_BYTES,
+            0,
+            DICTIONARY_KEY_BYTES.length);
+  }
+
+  /**
+   * Checks whether a string read from a metadata field is a dictionary id.
+   *
+   * @param value The string read from the capture.
+   * @return true if the string consists of digits only.
+   */
+  static boolean isId(String value) {
+    if (value.isEmpty() || value.length() > 9) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (!Character.isDigit(value.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int skipWhitespace(byte[] data, int position, int end) {
+    while (position < end
+        && (data[position] == ' '
+            || data[position] == '\n'
+            || data[position] == '\r'
+            || data[position] == '\t')) {
+      position++;
+    }
+    return position;
+  }
+}
@@ -0,0 +1,45 @@
+package com.thesis.codecomparer.captureFile;
+
+/**
+ * A single entry of a capture index. Each entry points to one breakpoint record inside a capture
+ * file and carries the keys needed to select records without parsing them.
+ *
+ * @param blockOffset File offset of the compressed block holding the record, or -1 for plain
+ *     captures.
+ * @param offset Byte offset of the record's JSON inside the capture file, or inside the
+ *     uncompressed block for compressed captures.
+ * @param length Length of the record's JSON in bytes.
+ * @param fileName File where the breakpoint was hit (empty if unknown).
+ * @param lineNumber Line number of the breakpoint.
+ * @param methodName Name of the method containing the breakpoint (empty if unknown).
+ * @param threadName Name of the thread that hit the breakpoint (empty if unknown).
+ * @param valueDigest Digest of all captured values of the record, see {@link RecordDigest}.
+ */
+public record IndexEntry(
+    long blockOffset,
+    long offset,
+    int length,
+    String fileName,
+    int lineNumber,
+    String methodName,
+    String threadName,
+    long valueDigest) {
+
+  /**
+   * Checks whether the record is stored inside a compressed block.
+   *
+   * @return true if the record belongs to a block compressed capture.
+   */
+  public boolean isCompressed() {
+    return blockOffset >= 0;
+  }
+
+  /**
+   * Returns the location key of the record in the form {@code fileName:lineNumber}.
+   *
+   * @return The location key of the record.
+   */
+  public String locationKey() {
+    return fileName + ":" + lineNumber;
+  }
+}
@@ -0,0 +1,94 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parser of the JSON paths used by normalization rules and queries, e.g. {@code $..timestamp} or
+ * {@code .items[*].id}. Supported are members ({@code .name}, {@code ['name']} or {@code
+ * ["name"]}), array indexes ({@code [0]}), the wildcards {@code .*} and {@code [*]}, which both
+ * select all members and elements, and the recursive descent {@code ..}.
+ */
+public class JsonPathSyntax {
+
+  /**
+   * One step of a path.
+   *
+   * @param member The selected member name, or null for array indexes and wildcards.
+   * @param index The selected array index, or -1 for members and wildcards.
+   * @param recursive true if the step selects at any depth below the current value.
+   */
+  public record Step(String member, int index, boolean recursive) {
+
+    /**
+     * Checks whether the step selects all members and elements.
+     *
+     * @return true for {@code .*} and {@code [*]}.
+     */
+    public boolean isWildcard() {
+      return member == null && index < 0;
+    }
+  }
+
+  private JsonPathSyntax() {
+    // Only static helpers
+  }
+
+  /**
+   * Parses the steps of a path.
+   *
+   * @param path The path.
+   * @param start The offset of the first step in the path, e.g. 1 to skip a leading {@code $}.
+   * @return The steps, empty if the path ends at {@code start}.
+   * @throws IllegalArgumentException If the path is invalid.
+   */
+  public static List<Step> parse(String path, int start) {
+    List<Step> steps = new ArrayList<>();
+    int i = start;
+    while (i < path.length()) {
+      boolean recursive = path.startsWith("..", i);
+      if (recursive) {
+        // The second dot starts a member step, a bracket step follows it
+        i += i + 2 < path.length() && path.charAt(i + 2) == '[' ? 2 : 1;
+      }
+      char c = path.charAt(i);
+      if (c == '.') {
+        int end = i + 1;
+        while (end < path.length() && ".[".indexOf(path.charAt(end)) < 0) {
+          end++;
+        }
+        String member = path.substring(i + 1, end);
+        if (member.isEmpty()) {
+          throw new IllegalArgumentException("Empty member in JSON path: " + path);
+        }
+        steps.add(new Step(member.equals("*") ? null : member, -1, recursive));
+        i = end;
+      } else if (c == '[' && i + 1 < path.length() && "'\"".indexOf(path.charAt(i + 1)) >= 0) {
+        // Quoted members may contain dots and brackets
+        int end = path.indexOf(path.charAt(i + 1) + "]", i + 2);
+        if (end < 0) {
+          throw new IllegalArgumentException("Unclosed member in JSON path: " + path);
+        }
+        steps.add(new Step(path.substring(i + 2, end), -1, recursive));
+        i = end + 2;
+      } else if (c == '[') {
+        int end = path.indexOf(']', i);
+        if (end < 0) {
+          throw new IllegalArgumentException("Unclosed bracket in JSON path: " + path);
+        }
+        String selector = path.substring(i + 1, end);
+        if (selector.equals("*")) {
+          steps.add(new Step(null, -1, recursive));
+        } else if (selector.matches("\\d+")) {
+          steps.add(new Step(null, Integer.parseInt(selector), recursive));
+        } else {
+          throw new IllegalArgumentException("Invalid index in JSON path: " + path);
+        }
+        i = end + 1;
+      } else {
+        throw new IllegalArgumentException("Invalid JSON path: " + path);
+      }
+    }
+    return steps;
+  }
+}
@@ -0,0 +1,451 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Declarative rules that replace run specific parts of captured values, such as object ids from
+ * {@code Type(id=1234)} references, identity hash codes, temporary paths or timestamps, so they do
+ * not show up as differences.
+ *
+ * <p>A rule selects values with a JSON path relative to each serialized value, e.g. {@code
+ * $..createdAt} or {@code $.items[*].path}, and either replaces the matches of a regular
+ * expression ({@code pattern}) or replaces every value of a JSON type ({@code type}: string, number
+ * or boolean) with its {@code replacement}. Rules without a path apply to every value. Rules are
+ * read from a JSON file:
+ *
+ * <pre>{@code
+ * {"rules": [
+ *   {"pattern": "/tmp/[\\w.-]+", "replacement": "/tmp/*"},
+ *   {"path": "$..timestamp", "type": "number", "replacement": "<timestamp>"}
+ * ]}
+ * }</pre>
+ *
+ * <p>The rules are compiled once. They are applied to every record while the capture is decoded
+ * (see {@link CaptureReader}), so there is no second pass over the parsed values. A value is only
+ * parsed as JSON if at least one rule may apply to it: the patterns of all rules are combined into
+ * one expression that is searched in the raw value first, and rules for a member name require that
+ * name to occur in the value. Patterns with anchors or negative lookarounds depend on where a value
+ * starts and ends, which the raw JSON does not show, so they are not part of the combined
+ * expression.
+ */
+public class NormalizationRules {
+
+  /** Rules that change nothing. */
+  public static final NormalizationRules NONE = new NormalizationRules(List.of());
+
+  private static final String RULES_PROPERTY = "codecomparer.normalizationRules";
+  private static final int MAX_CACHED_PATHS = 10_000; // Bounds the rules cached by value path
+  private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
+  /**
+   * A normalization rule as written in the rules file.
+   *
+   * @param path JSON path of the values the rule applies to, or null for all values.
+   * @param pattern Regular expression whose matches are replaced, or null for a type rule.
+   * @param type JSON type (string, number or boolean) of values that are replaced completely, or
+   *     null for a pattern rule.
+   * @param replacement The replacement, may refer to groups of the pattern with {@code $1}.
+   */
+  public record Rule(String path, String pattern, String type, String replacement) {}
+
+  private final List<Rule> rules; // The rules as declared
+  private final List<CompiledRule> compiledRules = new ArrayList<>();
+  private final Pattern anyPattern; // Patterns searchable in raw JSON as one alternative, or null
+  private final Map<String, List<CompiledRule>> rulesByPath = new ConcurrentHashMap<>();
+
+  /**
+   * Compiles a list of rules.
+   *
+   * @param rules The rules to compile.
+   * @throws IllegalArgumentException If a rule has an invalid path, pattern or type.
+   */
+  public NormalizationRules(List<Rule> rules) {
+    this.rules = List.copyOf(rules);
+    StringBuilder anyPattern = new StringBuilder();
+    for (Rule rule : this.rules) {
+      CompiledRule compiled = new CompiledRule(rule);
+      compiledRules.add(compiled);
+      if (compiled.pattern != null && compiled.searchableInRaw) {
+        anyPattern.append(anyPattern.length() == 0 ? "" : "|").append("(?:");
+        anyPattern.append(rule.pattern()).append(")");
+      }
+    }
+    this.anyPattern = anyPattern.length() == 0 ? null : Pattern.compile(anyPattern.toString());
+  }
+
+  /**
+   * Returns the built-in rules, which replace the object ids of {@code Type(id=1234)} references
+   * and the identity hash codes of default {@code toString} results like {@code Type@1b6d3586}.
+   *
+   * @return The built-in rules.
+   */
+  public static NormalizationRules defaults() {
+    return new NormalizationRules(
+        List.of(
+            new Rule(null, "\\(id=\\d+\\)", null, "(id=*)"),
+            new Rule(null, "(?<=[\\w$])@[0-9a-f]{6,8}\\b", null, "@*")));
+  }
+
+  /**
+   * Loads rules from a rules file.
+   *
+   * @param file The JSON rules file.
+   * @return The compiled rules.
+   * @throws IOException If the file cannot be read or contains invalid rules.
+   */
+  public static NormalizationRules load(File file) throws IOException {
+    try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      JsonArray array = JsonParser.parseReader(reader).getAsJsonObject().getAsJsonArray("rules");
+      if (array == null) {
+        throw new IOException("No \"rules\" array in " + file);
+      }
+      List<Rule> rules = new ArrayList<>();
+      for (JsonElement element : array) {
+        JsonObject rule = element.getAsJsonObject();
+        rules.add(
+            new Rule(
+                getString(rule, "path"),
+                getString(rule, "pattern"),
+                getString(rule, "type"),
+                getString(rule, "replacement")));
+      }
+      return new NormalizationRules(rules);
+    } catch (JsonParseException | IllegalStateException e) {
+      throw new IOException("Invalid normalization rules in " + file + ": " + e.getMessage(), e);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid normalization rule in " + file + ": " + e.getMessage(), e);
+    }
+  }
+
+  private static String getString(JsonObject object, String name) {
+    JsonElement value = object.get(name);
+    return value == null || value.isJsonNull() ? null : value.getAsString();
+  }
+
+  /**
+   * Returns the rules configured for comparisons: the rules file given by the system property
+   * {@code codecomparer.normalizationRules}, or the {@link #defaults()} if it is not set.
+   *
+   * @return The configured rules.
+   * @throws IOException If the configured rules file cannot be read.
+   */
+  public static NormalizationRules configured() throws IOException {
+    String rulesFile = System.getProperty(RULES_PROPERTY);
+    return rulesFile == null ? defaults() : load(new File(rulesFile));
+  }
+
+  /**
+   * Normalizes all serialized values of a record in place: parameter values, the return value and
+   * the exception message and stack trace. It is safe to normalize records concurrently.
+   *
+   * @param state The record to normalize.
+   */
+  public void apply(BreakpointState state) {
+    if (compiledRules.isEmpty()) {
+      return;
+    }
+    apply(state.getCurrentMethodState());
+    apply(state.getInvokedMethodState());
+    state.setInvokedMethodReturnValue(normalize(state.getInvokedMethodReturnValue()));
+
+    ExceptionDetails exception = state.getExceptionDetails();
+    if (exception != null) {
+      exception.setExceptionMessage(normalizeText(exception.getExceptionMessage()));
+      // Trace ids are normalized once per trace when the decoder resolves them
+      String stackTrace = exception.getStackTrace();
+      if (stackTrace == null || !DictionaryEncoding.isId(stackTrace)) {
+        exception.setStackTrace(normalizeText(stackTrace));
+      }
+    }
+  }
+
+  private void apply(MethodState method) {
+    if (method == null || method.getParameters() == null) {
+      return;
+    }
+    for (ParameterInfo parameter : method.getParameters()) {
+      parameter.setSerializedValue(normalize(parameter.getSerializedValue()));
+    }
+  }
+
+  /**
+   * Normalizes one serialized value.
+   *
+   * @param json The serialized value, may be null.
+   * @return The normalized value, the same instance if no rule applied.
+   */
+  public String normalize(String json) {
+    if (json == null || !mayApply(json)) {
+      return json;
+    }
+
+    JsonElement element;
+    try {
+      element = JsonParser.parseString(json);
+    } catch (JsonParseException e) {
+      return normalizeText(json); // Values that are no JSON are a single text at the root
+    }
+    if (element.isJsonPrimitive() || element.isJsonNull()) {
+      JsonElement normalized = normalizeLeaf("", element);
+      return normalized == element ? json : GSON.toJson(normalized);
+    }
+    return normalizeTree("", element) ? GSON.toJson(element) : json;
+  }
+
+  /**
+   * Normalizes text that is no JSON value, e.g. a stack trace, as a string at the root path.
+   *
+   * @param text The text, may be null.
+   * @return The normalized text, the same instance if no rule applied.
+   */
+  String normalizeText(String text) {
+    if (text == null || !mayApply(text)) {
+      return text;
+    }
+    JsonElement normalized = normalizeLeaf("", new JsonPrimitive(text));
+    return normalized.getAsString();
+  }
+
+  // Checks cheaply, without parsing, whether any rule may change the raw value
+  private boolean mayApply(String raw) {
+    for (CompiledRule rule : compiledRules) {
+      if ((rule.pattern == null || !rule.searchableInRaw) && rule.mayApplyTo(raw)) {
+        return true; // Type rule or anchored pattern whose path may occur
+      }
+    }
+    // Escaped characters in the raw JSON may hide a match in the unescaped value
+    return anyPattern != null && (raw.indexOf('\\') >= 0 || anyPattern.matcher(raw).find());
+  }
+
+  // Normalizes the leaves below an object or array, returns whether anything changed
+  private boolean normalizeTree(String path, JsonElement element) {
+    boolean changed = false;
+    if (element.isJsonObject()) {
+      JsonObject object = element.getAsJsonObject();
+      for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+        String memberPath = path + "/" + member.getKey().replace("/", "%2F");
+        changed |= normalizeChild(memberPath, member.getValue(), member::setValue);
+      }
+    } else if (element.isJsonArray()) {
+      JsonArray array = element.getAsJsonArray();
+      for (int i = 0; i < array.size(); i++) {
+        int index = i;
+        changed |=
+            normalizeChild(path + "/#" + i, array.get(i), value -> array.set(index, value));
+      }
+    }
+    return changed;
+  }
+
+  private boolean normalizeChild(
+      String path, JsonElement child, Consumer<JsonElement> replace) {
+    if (child.isJsonObject() || child.isJsonArray()) {
+      return normalizeTree(path, child);
+    }
+    JsonElement normalized = normalizeLeaf(path, child);
+    if (normalized == child) {
+      return false;
+    }
+    replace.accept(normalized);
+    return true;
+  }
+
+  // Applies all rules matching the path to a leaf, returns the leaf itself if none changed it
+  private JsonElement normalizeLeaf(String path, JsonElement leaf) {
+    JsonElement result = leaf;
+    for (CompiledRule rule : rulesFor(path)) {
+      result = rule.apply(result);
+    }
+    return result;
+  }
+
+  private List<CompiledRule> rulesFor(String path) {
+    List<CompiledRule> cached = rulesByPath.get(path);
+    if (cached != null) {
+      return cached;
+    }
+    List<CompiledRule> matching = new ArrayList<>();
+    for (CompiledRule rule : compiledRules) {
+      if (rule.matchesPath(path)) {
+        matching.add(rule);
+      }
+    }
+    if (rulesByPath.size() < MAX_CACHED_PATHS) {
+      rulesByPath.put(path, matching);
+    }
+    return matching;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof NormalizationRules otherRules && rules.equals(otherRules.rules);
+  }
+
+  @Override
+  public int hashCode() {
+    return rules.hashCode();
+  }
+
+  /** A rule with its path and pattern compiled. */
+  private static class CompiledRule {
+
+    private final Pattern path; // Matches value paths like "/items/#2/name", null for all paths
+    private final String requiredName; // Quoted member name every matching value contains
+    private final Pattern pattern; // Pattern whose matches are replaced, null for a type rule
+    private final boolean searchableInRaw; // Whether the pattern matches the raw JSON of a match
+    private final String type; // JSON type replaced completely, null for a pattern rule
+    private final String replacement;
+
+    CompiledRule(Rule rule) {
+      if ((rule.pattern() == null) == (rule.type() == null)) {
+        throw new IllegalArgumentException("A rule needs either a pattern or a type: " + rule);
+      }
+      if (rule.type() != null && !List.of("string", "number", "boolean").contains(rule.type())) {
+        throw new IllegalArgumentException("Unknown type " + rule.type() + " in " + rule);
+      }
+      if (rule.replacement() == null) {
+        throw new IllegalArgumentException("A rule needs a replacement: " + rule);
+      }
+      try {
+        this.pattern = rule.pattern() == null ? null : Pattern.compile(rule.pattern());
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException("Invalid pattern in " + rule + ": " + e.getMessage());
+      }
+      this.searchableInRaw = rule.pattern() != null && !dependsOnValueBounds(rule.pattern());
+      List<String> members = new ArrayList<>();
+      this.path = rule.path() == null ? null : compilePath(rule.path(), members);
+      this.requiredName = members.isEmpty() ? null : quotedName(members.get(members.size() - 1));
+      this.type = rule.type();
+      this.replacement = rule.replacement();
+    }
+
+    boolean mayApplyTo(String raw) {
+      return requiredName == null || raw.contains(requiredName);
+    }
+
+    boolean matchesPath(String valuePath) {
+      return path == null || path.matcher(valuePath).matches();
+    }
+
+    JsonElement apply(JsonElement leaf) {
+      if (!leaf.isJsonPrimitive()) {
+        return leaf; // Null values are kept
+      }
+      JsonPrimitive primitive = leaf.getAsJsonPrimitive();
+      if (type != null) {
+        return hasType(primitive) ? new JsonPrimitive(replacement) : leaf;
+      }
+
+      String value = primitive.getAsString();
+      Matcher matcher = pattern.matcher(value);
+      return matcher.find() ? new JsonPrimitive(matcher.replaceAll(replacement)) : leaf;
+    }
+
+    private boolean hasType(JsonPrimitive primitive) {
+      return switch (type) {
+        case "number" -> primitive.isNumber();
+        case "boolean" -> primitive.isBoolean();
+        default -> primitive.isString();
+      };
+    }
+
+    /**
+     * Translates a JSON path into a pattern over value paths, where every member is written as
+     * {@code /name} and every array element as {@code /#index}. The path starts with {@code $},
+     * its steps are described in {@link JsonPathSyntax}.
+     *
+     * @param jsonPath The JSON path.
+     * @param members Receives the member name of every step, null for indexes and wildcards.
+     * @return The pattern over value paths.
+     */
+    private static Pattern compilePath(String jsonPath, List<String> members) {
+      if (!jsonPath.startsWith("$")) {
+        throw new IllegalArgumentException("JSON path must start with $: " + jsonPath);
+      }
+      StringBuilder regex = new StringBuilder();
+      for (JsonPathSyntax.Step step : JsonPathSyntax.parse(jsonPath, 1)) {
+        if (step.recursive()) {
+          regex.append("(?:/[^/]*)*");
+        }
+        if (step.isWildcard()) {
+          regex.append("/[^/]*");
+        } else if (step.member() == null) {
+          regex.append("/#").append(step.index());
+        } else {
+          regex.append(Pattern.quote("/" + step.member().replace("/", "%2F")));
+        }
+        members.add(step.member());
+      }
+      return Pattern.compile(regex.toString());
+    }
+
+    /**
+     * Checks whether a pattern contains anchors ({@code ^}, {@code $}, {@code \A}, {@code \z},
+     * {@code \Z}, {@code \G}) or negative lookarounds. Their matches depend on the start and end
+     * of the value, which are quotes or separators in the raw JSON. Other patterns that match a
+     * value also match its raw JSON, unless it contains escapes.
+     *
+     * @param regex The pattern.
+     * @return true if the pattern may match a value but not its raw JSON.
+     */
+    private static boolean dependsOnValueBounds(String regex) {
+      boolean inClass = false;
+      for (int i = 0; i < regex.length(); i++) {
+        char c = regex.charAt(i);
+        if (c == '\\' && i + 1 < regex.length()) {
+          char escaped = regex.charAt(++i);
+          if (escaped == 'Q') {
+            int end = regex.indexOf("\\E", i);
+            i = end < 0 ? regex.length() : end + 1;
+          } else if (!inClass && "AzZG".indexOf(escaped) >= 0) {
+            return true;
+          }
+        } else if (inClass) {
+          inClass = c != ']';
+        } else if (c == '[') {
+          inClass = true;
+          // A bracket right after the opening one or its negation is a literal
+          i += regex.startsWith("^]", i + 1) ? 2 : regex.startsWith("]", i + 1) ? 1 : 0;
+        } else if (c == '^'
+            || c == '$'
+            || regex.startsWith("(?!", i)
+            || regex.startsWith("(?<!", i)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Returns a member name as it appears in the raw JSON, or null if JSON escapes it
+    private static String quotedName(String name) {
+      if (name == null || name.chars().anyMatch(c -> c == '"' || c == '\\' || c < ' ')) {
+        return null;
+      }
+      return "\"" + name + "\"";
+    }
+  }
+}
@@ -0,0 +1,278 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Parses a capture file on a {@link ForkJoinPool}.
+ *
+ * <p>The file is split into chunks of complete records: plain captures at separator lines,
+ * compressed captures at block boundaries. The chunks are decoded in parallel, each with its own
+ * {@link RecordDecoder}. Since a dictionary block may be in a different chunk than the records
+ * using its ids, the dictionaries of all chunks are merged afterwards and the records are resolved
+ * in a second parallel pass. The records are returned in file order.
+ */
+class ParallelCaptureReader {
+
+  private static final long MIN_CHUNK_SIZE = 4L * 1024 * 1024; // Below, splitting does not pay
+  private static final long MAX_CHUNK_SIZE = 32L * 1024 * 1024; // Bounds the memory of one task
+  private static final int CHUNKS_PER_THREAD = 4; // Evens out chunks that decode slower
+
+  /**
+   * A range of the capture file holding complete records or blocks.
+   *
+   * @param start File offset of the first byte of the chunk.
+   * @param end File offset after the last byte of the chunk.
+   */
+  private record Chunk(long start, long end) {}
+
+  /** Work done for every chunk. */
+  private interface ChunkAction {
+    void run(int chunk) throws IOException;
+  }
+
+  private ParallelCaptureReader() {
+    // Only static helpers
+  }
+
+  /**
+   * Reads all records of a capture file in parallel.
+   *
+   * @param captureFile The capture file to read.
+   * @param dictionary The dictionary the loaded names are interned into.
+   * @param rules The rules normalizing the values while the chunks are decoded.
+   * @param pool The pool decoding the chunks.
+   * @param progress The monitor receiving the decoded part of the file, checked while every chunk
+   *     is decoded.
+   * @return All records of the capture, in file order.
+   * @throws IOException If the capture file cannot be read.
+   */
+  static List<BreakpointState> readAll(
+      File captureFile,
+      StringDictionary dictionary,
+      NormalizationRules rules,
+      ForkJoinPool pool,
+      ProgressMonitor progress)
+      throws IOException {
+    boolean compressed = CompressedBlockFormat.isCompressed(captureFile);
+    long chunkSize =
+        Math.min(
+            MAX_CHUNK_SIZE,
+            Math.max(
+                MIN_CHUNK_SIZE,
+                captureFile.length() / ((long) pool.getParallelism() * CHUNKS_PER_THREAD)));
+    List<Chunk> chunks =
+        compressed ? splitBlocks(captureFile, chunkSize) : splitRecords(captureFile, chunkSize);
+
+    // Decode all chunks, each chunk collects the dictionary blocks it contains
+    List<List<BreakpointState>> chunkStates = new ArrayList<>(chunks.size());
+    List<RecordDecoder> chunkDecoders = new ArrayList<>(chunks.size());
+    for (int i = 0; i < chunks.size(); i++) {
+      chunkStates.add(new ArrayList<>());
+      chunkDecoders.add(new RecordDecoder(dictionary, rules));
+    }
+    AtomicInteger decodedChunks = new AtomicInteger();
+    forEachChunk(
+        pool,
+        chunks.size(),
+        i -> {
+          decodeChunk(
+              captureFile,
+              compressed,
+              chunks.get(i),
+              chunkDecoders.get(i),
+              chunkStates.get(i),
+              progress);
+          progress.setFraction(decodedChunks.incrementAndGet() / (double) chunks.size());
+        });
+    progress.checkCanceled();
+
+    // Resolve the metadata ids against the dictionary of the whole capture
+    RecordDecoder decoder = new RecordDecoder(dictionary, rules);
+    for (RecordDecoder chunkDecoder : chunkDecoders) {
+      decoder.defineAll(chunkDecoder);
+    }
+    forEachChunk(
+        pool,
+        chunks.size(),
+        i -> {
+          for (BreakpointState state : chunkStates.get(i)) {
+            decoder.resolve(state);
+          }
+        });
+
+    int count = 0;
+    for (List<BreakpointState> states : chunkStates) {
+      count += states.size();
+    }
+    List<BreakpointState> states = new ArrayList<>(count);
+    for (List<BreakpointState> chunk : chunkStates) {
+      states.addAll(chunk);
+    }
+    return states;
+  }
+
+  // Reads one chunk and decodes its records without resolving them
+  private static void decodeChunk(
+      File captureFile,
+      boolean compressed,
+      Chunk chunk,
+      RecordDecoder decoder,
+      List<BreakpointState> states,
+      ProgressMonitor progress)
+      throws IOException {
+    byte[] data = new byte[(int) (chunk.end() - chunk.start())];
+    try (RandomAccessFile file = new RandomAccessFile(captureFile, "r")) {
+      file.seek(chunk.start());
+      file.readFully(data);
+    }
+
+    RecordScanner.RecordConsumer consumer =
+        (offset, block, start, length) -> {
+          if (states.size() % CaptureReader.PROGRESS_INTERVAL == 0) {
+            progress.checkCanceled();
+          }
+          BreakpointState state = decoder.decodeUnresolved(block, start, length);
+          if (state != null) {
+            states.add(state);
+          }
+        };
+    if (!compressed) {
+      RecordScanner.scan(new ByteArrayInputStream(data), consumer);
+      return;
+    }
+
+    Inflater inflater = new Inflater();
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+      CompressedBlockFormat.Block block;
+      while ((block = CompressedBlockFormat.readBlock(input, inflater)) != null) {
+        RecordScanner.scan(new ByteArrayInputStream(block.data()), consumer);
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  // Splits a plain capture at the separator lines following every chunkSize bytes
+  private static List<Chunk> splitRecords(File captureFile, long chunkSize) throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    long length = captureFile.length();
+    long start = 0;
+    try (RandomAccessFile file = new RandomAccessFile(captureFile, "r")) {
+      while (start < length) {
+        long end = length;
+        if (start + chunkSize < length) {
+          end = Math.min(length, nextRecordBoundary(file, start + chunkSize));
+        }
+        chunks.add(new Chunk(start, end));
+        start = end;
+      }
+    }
+    return chunks;
+  }
+
+  // Returns the file offset after the first separator line that starts after the given offset
+  private static long nextRecordBoundary(RandomAccessFile file, long from) throws IOException {
+    byte[] buffer = new byte[64 * 1024];
+    byte[] line = new byte[256]; // Lines longer than this can never be a separator
+    int lineLength = 0;
+    boolean firstLine = true; // The line containing the offset may be cut, never use it
+    long position = from;
+
+    file.seek(from);
+    int read;
+    while ((read = file.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        position++;
+        if (buffer[i] != '\n') {
+          if (lineLength < line.length) {
+            line[lineLength] = buffer[i];
+          }
+          lineLength++;
+          continue;
+        }
+        if (!firstLine
+            && lineLength <= line.length
+            && RecordScanner.isSeparator(line, 0, lineLength)) {
+          return position;
+        }
+        firstLine = false;
+        lineLength = 0;
+      }
+    }
+    return position;
+  }
+
+  // Splits a compressed capture into runs of consecutive blocks of about chunkSize bytes
+  private static List<Chunk> splitBlocks(File captureFile, long chunkSize) throws IOException {
+    List<Chunk> chunks = new ArrayList<>();
+    long length = captureFile.length();
+    long start = CompressedBlockFormat.HEADER_LENGTH;
+    long position = start;
+    try (RandomAccessFile file = new RandomAccessFile(captureFile, "r")) {
+      while (position + CompressedBlockFormat.BLOCK_HEADER_LENGTH <= length) {
+        file.seek(position);
+        long end = position + CompressedBlockFormat.BLOCK_HEADER_LENGTH + file.readInt();
+        if (end > length) {
+          break; // The last block was cut off while it was written
+        }
+        position = end;
+        if (position - start >= chunkSize) {
+          chunks.add(new Chunk(start, position));
+          start = position;
+        }
+      }
+    }
+    if (position > start) {
+      chunks.add(new Chunk(start, position));
+    }
+    return chunks;
+  }
+
+  // Runs the action for all chunks on the pool and waits for it to finish
+  private static void forEachChunk(ForkJoinPool pool, int chunkCount, ChunkAction action)
+      throws IOException {
+    if (chunkCount == 0) return;
+
+    try {
+      pool.invoke(new ChunkTask(action, 0, chunkCount));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Fork/join task running the action for a range of chunks by splitting it in halves. */
+  private static class ChunkTask extends RecursiveAction {
+
+    private final ChunkAction action;
+    private final int from; // First chunk of the range
+    private final int to; // End of the range, exclusive
+
+    ChunkTask(ChunkAction action, int from, int to) {
+      this.action = action;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > 1) {
+        int middle = (from + to) >>> 1;
+        invokeAll(new ChunkTask(action, from, middle), new ChunkTask(action, middle, to));
+        return;
+      }
+      try {
+        action.run(from);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
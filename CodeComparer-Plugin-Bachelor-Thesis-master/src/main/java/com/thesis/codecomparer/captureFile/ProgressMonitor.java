@@ -0,0 +1,63 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.util.concurrent.CancellationException;
+
+/**
+ * Receives the progress of parsing captures and comparing them, and lets the caller cancel the
+ * work. The readers and comparators only depend on this interface, so they stay free of IntelliJ
+ * classes, and the UI adapts it to a progress indicator. Parallel readers call it from several
+ * threads, so implementations must be thread safe.
+ */
+public interface ProgressMonitor {
+
+  /** Monitor for work that is neither shown nor cancelled. */
+  ProgressMonitor NONE =
+      new ProgressMonitor() {
+        @Override
+        public void checkCanceled() {
+          // Never cancelled
+        }
+
+        @Override
+        public void setFraction(double fraction) {
+          // Progress is not shown
+        }
+      };
+
+  /**
+   * Stops the work if it was cancelled. Called regularly while records are parsed or compared.
+   *
+   * @throws CancellationException If the work was cancelled.
+   */
+  void checkCanceled();
+
+  /**
+   * Reports how much of the work is done.
+   *
+   * @param fraction The done part of the work, from 0 to 1.
+   */
+  void setFraction(double fraction);
+
+  /**
+   * Returns a monitor for one part of the work, e.g. parsing the first of two files. Its fractions
+   * are mapped to the given range of this monitor, and it is cancelled together with it.
+   *
+   * @param from The fraction of this monitor when the part starts.
+   * @param to The fraction of this monitor when the part is done.
+   * @return The monitor of the part.
+   */
+  default ProgressMonitor range(double from, double to) {
+    ProgressMonitor parent = this;
+    return new ProgressMonitor() {
+      @Override
+      public void checkCanceled() {
+        parent.checkCanceled();
+      }
+
+      @Override
+      public void setFraction(double fraction) {
+        parent.setFraction(from + (to - from) * fraction);
+      }
+    };
+  }
+}
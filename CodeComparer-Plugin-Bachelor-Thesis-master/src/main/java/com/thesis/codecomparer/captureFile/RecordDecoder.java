@@ -0,0 +1,274 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decodes the blocks of one capture stream into BreakpointState objects.
+ *
+ * <p>The decoder keeps the capture's dictionary while the stream is read: dictionary blocks extend
+ * it, and metadata ids inside records are resolved through it. All metadata strings, whether they
+ * were dictionary encoded or written as plain text by older versions, are interned into the
+ * given {@link StringDictionary}. Stack traces written as trace ids are resolved through the
+ * capture's trace table; every distinct trace is joined, normalized and interned once, so all
+ * records with the same trace share one string instance. Records are bound to the beans by the
+ * {@link CaptureRecordCodec}, which takes values embedded as raw JSON over without parsing them.
+ */
+class RecordDecoder {
+
+  private final StringDictionary dictionary; // Dictionary all loaded names are interned into
+  private final NormalizationRules rules; // Applied to the values of every decoded record
+  private final List<String> captureStrings = new ArrayList<>(); // The capture's strings by id
+  private final List<int[]> captureTraces = new ArrayList<>(); // Frame ids of the traces by id
+  private final Map<Integer, String> resolvedTraces = new ConcurrentHashMap<>(); // Joined traces
+
+  /**
+   * Creates a decoder for one capture stream.
+   *
+   * @param dictionary The dictionary loaded names are interned into.
+   */
+  RecordDecoder(StringDictionary dictionary) {
+    this(dictionary, NormalizationRules.NONE);
+  }
+
+  /**
+   * Creates a decoder for one capture stream that normalizes the values of every record.
+   *
+   * @param dictionary The dictionary loaded names are interned into.
+   * @param rules The rules applied to the values of every record while it is decoded.
+   */
+  RecordDecoder(StringDictionary dictionary, NormalizationRules rules) {
+    this.dictionary = dictionary;
+    this.rules = rules;
+  }
+
+  /**
+   * Decodes one block of the capture stream.
+   *
+   * @param data Buffer holding the block.
+   * @param start Start of the block inside the buffer.
+   * @param length Length of the block in bytes.
+   * @return The decoded record, or null if the block was a dictionary block.
+   */
+  BreakpointState decode(byte[] data, int start, int length) {
+    BreakpointState state = decodeUnresolved(data, start, length);
+    if (state != null) {
+      resolve(state);
+    }
+    return state;
+  }
+
+  /**
+   * Decodes one block of the capture stream without resolving the metadata ids of a record. This
+   * allows to decode parts of a capture independently and to resolve the records once the
+   * dictionary blocks of all parts are known (see {@link #defineAll(RecordDecoder)}).
+   *
+   * @param data Buffer holding the block.
+   * @param start Start of the block inside the buffer.
+   * @param length Length of the block in bytes.
+   * @return The decoded, unresolved record, or null if the block was a dictionary block.
+   */
+  BreakpointState decodeUnresolved(byte[] data, int start, int length) {
+    if (DictionaryEncoding.isDictionaryBlock(data, start, length)) {
+      defineAll(new String(data, start, length, StandardCharsets.UTF_8));
+      return null;
+    }
+    BreakpointState state = CaptureRecordCodec.decode(data, start, length);
+    rules.apply(state); // Values do not depend on the dictionary, so this needs no resolving
+    return state;
+  }
+
+  /**
+   * Adds the next string of the capture's dictionary, e.g. when it is loaded from the index.
+   *
+   * @param value The string with the next id.
+   */
+  void define(String value) {
+    captureStrings.add(dictionary.intern(value));
+  }
+
+  /**
+   * Adds the next trace of the capture's trace table, e.g. when it is loaded from the index.
+   *
+   * @param frames The dictionary ids of the frames of the trace with the next id.
+   */
+  void defineTrace(int[] frames) {
+    captureTraces.add(frames);
+  }
+
+  /**
+   * Adds all strings and traces another decoder has seen in the dictionary blocks of its part of
+   * the capture.
+   *
+   * @param other A decoder of another part of the same capture.
+   */
+  void defineAll(RecordDecoder other) {
+    for (int id = 0; id < other.captureStrings.size(); id++) {
+      if (other.captureStrings.get(id) != null) {
+        define(id, other.captureStrings.get(id));
+      }
+    }
+    for (int id = 0; id < other.captureTraces.size(); id++) {
+      if (other.captureTraces.get(id) != null) {
+        defineTrace(id, other.captureTraces.get(id));
+      }
+    }
+  }
+
+  /**
+   * Returns the number of strings of the capture's dictionary known so far.
+   *
+   * @return The number of defined strings.
+   */
+  int definedStrings() {
+    return captureStrings.size();
+  }
+
+  /**
+   * Returns a string of the capture's dictionary.
+   *
+   * @param id The id of the string inside the capture.
+   * @return The canonical string.
+   */
+  String definedString(int id) {
+    return captureStrings.get(id);
+  }
+
+  /**
+   * Returns the number of traces of the capture's trace table known so far.
+   *
+   * @return The number of defined traces.
+   */
+  int definedTraces() {
+    return captureTraces.size();
+  }
+
+  /**
+   * Returns a trace of the capture's trace table.
+   *
+   * @param id The id of the trace inside the capture.
+   * @return The dictionary ids of the frames of the trace.
+   */
+  int[] definedTrace(int id) {
+    return captureTraces.get(id);
+  }
+
+  // Adds the strings of a dictionary block to the capture's dictionary
+  private void defineAll(String json) {
+    JsonObject definition =
+        JsonParser.parseString(json)
+            .getAsJsonObject()
+            .getAsJsonObject(DictionaryEncoding.DICTIONARY_KEY);
+    int id = definition.get("firstId").getAsInt();
+    JsonArray strings = definition.getAsJsonArray("strings");
+
+    for (int i = 0; i < strings.size(); i++, id++) {
+      define(id, dictionary.intern(strings.get(i).getAsString()));
+    }
+
+    JsonArray traces = definition.getAsJsonArray(DictionaryEncoding.TRACES_KEY);
+    if (traces != null) {
+      int traceId = definition.get(DictionaryEncoding.FIRST_TRACE_ID_KEY).getAsInt();
+      for (int i = 0; i < traces.size(); i++, traceId++) {
+        JsonArray frames = traces.get(i).getAsJsonArray();
+        int[] frameIds = new int[frames.size()];
+        for (int j = 0; j < frameIds.length; j++) {
+          frameIds[j] = frames.get(j).getAsInt();
+        }
+        defineTrace(traceId, frameIds);
+      }
+    }
+  }
+
+  // The frames of a trace may be defined in another part of the capture, traces are resolved later
+  private void defineTrace(int id, int[] frames) {
+    while (captureTraces.size() <= id) {
+      captureTraces.add(null);
+    }
+    captureTraces.set(id, frames);
+  }
+
+  private void define(int id, String value) {
+    while (captureStrings.size() <= id) {
+      captureStrings.add(null); // Parts of the capture may define their strings out of order
+    }
+    captureStrings.set(id, value);
+  }
+
+  /**
+   * Replaces the metadata ids of a record by their strings and interns all metadata strings. Once
+   * all strings are defined, records may be resolved concurrently.
+   *
+   * @param state The record returned by {@link #decodeUnresolved(byte[], int, int)}.
+   */
+  void resolve(BreakpointState state) {
+    state.setFileName(resolve(state.getFileName()));
+    state.setThreadName(resolve(state.getThreadName()));
+    resolve(state.getCurrentMethodState());
+    resolve(state.getInvokedMethodState());
+
+    ExceptionDetails exceptionDetails = state.getExceptionDetails();
+    if (exceptionDetails != null) {
+      exceptionDetails.setExceptionType(resolve(exceptionDetails.getExceptionType()));
+      exceptionDetails.setStackTrace(resolveTrace(exceptionDetails.getStackTrace()));
+    }
+  }
+
+  // Replaces a trace id by its trace, traces written as plain text are interned
+  private String resolveTrace(String value) {
+    if (value == null) {
+      return null;
+    }
+    if (captureTraces.isEmpty() || !DictionaryEncoding.isId(value)) {
+      return dictionary.intern(value); // Written before trace tables existed
+    }
+    int id = Integer.parseInt(value);
+    if (id >= captureTraces.size() || captureTraces.get(id) == null) {
+      return dictionary.intern(value);
+    }
+    return resolvedTraces.computeIfAbsent(id, this::joinTrace);
+  }
+
+  private String joinTrace(int id) {
+    List<String> frames = new ArrayList<>();
+    for (int frame : captureTraces.get(id)) {
+      frames.add(captureStrings.get(frame));
+    }
+    return dictionary.intern(rules.normalizeText(StackTraceTable.join(frames)));
+  }
+
+  private void resolve(MethodState methodState) {
+    if (methodState == null) return;
+
+    methodState.setMethodName(resolve(methodState.getMethodName()));
+    methodState.setReturnType(resolve(methodState.getReturnType()));
+    if (methodState.getParameters() != null) {
+      for (ParameterInfo parameter : methodState.getParameters()) {
+        parameter.setName(resolve(parameter.getName()));
+      }
+    }
+  }
+
+  private String resolve(String value) {
+    if (value == null) {
+      return null;
+    }
+    if (!captureStrings.isEmpty() && DictionaryEncoding.isId(value)) {
+      int id = Integer.parseInt(value);
+      if (id < captureStrings.size() && captureStrings.get(id) != null) {
+        return captureStrings.get(id);
+      }
+    }
+    return dictionary.intern(value); // Plain text name, written before dictionaries existed
+  }
+}
@@ -0,0 +1,78 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+
+/**
+ * Computes 64-bit FNV-1a digests over the values captured at a breakpoint hit.
+ *
+ * <p>The digest covers the serialized parameter values of the current and invoked method, the
+ * return value and the exception details. Two hits with the same digest very likely captured the
+ * same values, which lets readers group or skip records without comparing their full content.
+ */
+public class RecordDigest {
+
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private RecordDigest() {
+    // Only static helpers
+  }
+
+  /**
+   * Computes the value digest of a breakpoint hit.
+   *
+   * @param state The breakpoint state to digest.
+   * @return The 64-bit digest of all captured values.
+   */
+  public static long of(BreakpointState state) {
+    long hash = FNV_OFFSET_BASIS;
+    hash = hashMethodValues(hash, state.getCurrentMethodState());
+    hash = hashMethodValues(hash, state.getInvokedMethodState());
+    hash = hash(hash, state.getInvokedMethodReturnValue());
+
+    ExceptionDetails exceptionDetails = state.getExceptionDetails();
+    if (exceptionDetails != null) {
+      hash = hash(hash, exceptionDetails.getExceptionType());
+      hash = hash(hash, exceptionDetails.getExceptionMessage());
+      hash = hash(hash, exceptionDetails.getStackTrace());
+    }
+    return hash;
+  }
+
+  /**
+   * Computes the digest of a single value.
+   *
+   * @param value The value to digest, may be null.
+   * @return The 64-bit digest of the value.
+   */
+  public static long of(String value) {
+    return hash(FNV_OFFSET_BASIS, value);
+  }
+
+  // Folds the serialized values of all parameters of a method into the hash
+  private static long hashMethodValues(long hash, MethodState methodState) {
+    if (methodState == null || methodState.getParameters() == null) {
+      return hash(hash, null);
+    }
+    for (ParameterInfo parameter : methodState.getParameters()) {
+      hash = hash(hash, parameter.getSerializedValue());
+    }
+    return hash;
+  }
+
+  /**
+   * Folds a string into an FNV-1a hash. The length is hashed first so that concatenated values
+   * cannot collide with each other, and null is distinguished from the empty string.
+   */
+  static long hash(long hash, String value) {
+    int length = value == null ? -1 : value.length();
+    hash = (hash ^ length) * FNV_PRIME;
+    for (int i = 0; i < length; i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash;
+  }
+}
@@ -0,0 +1,172 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Inflater;
+
+/**
+ * Splits a plain capture stream into its separator-delimited records in a single streaming pass.
+ * Unlike a line based reader, the scanner keeps track of byte offsets, so every record can later be
+ * read again directly from the file. Plain and block compressed captures are both supported.
+ */
+class RecordScanner {
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final byte[] SEPARATOR_BYTES =
+      CaptureWriter.SEPARATOR.getBytes(StandardCharsets.UTF_8);
+
+  /** Receives the records found by the scanner. */
+  interface RecordConsumer {
+
+    /**
+     * Called once per record, in file order.
+     *
+     * @param offset Byte offset of the record inside the stream.
+     * @param data Buffer holding the record's bytes (only valid during the call).
+     * @param start Start of the record inside the buffer.
+     * @param length Length of the record in bytes.
+     * @throws IOException If the consumer fails to process the record.
+     */
+    void accept(long offset, byte[] data, int start, int length) throws IOException;
+  }
+
+  /** Receives the records of a capture file together with their position. */
+  interface FileRecordConsumer {
+
+    /**
+     * Called once per record, in file order.
+     *
+     * @param blockOffset File offset of the compressed block holding the record, or -1 for plain
+     *     captures.
+     * @param offset Byte offset of the record inside the file, or inside the uncompressed block.
+     * @param data Buffer holding the record's bytes (only valid during the call).
+     * @param start Start of the record inside the buffer.
+     * @param length Length of the record in bytes.
+     * @throws IOException If the consumer fails to process the record.
+     */
+    void accept(long blockOffset, long offset, byte[] data, int start, int length)
+        throws IOException;
+  }
+
+  private RecordScanner() {
+    // Only static helpers
+  }
+
+  /**
+   * Scans a capture file in one streaming pass. The format of the file is detected from its
+   * content, so plain and block compressed captures are handled transparently.
+   *
+   * @param captureFile The capture file to scan.
+   * @param consumer The consumer receiving the records.
+   * @throws IOException If reading the file fails.
+   */
+  static void scanFile(File captureFile, FileRecordConsumer consumer) throws IOException {
+    if (!CompressedBlockFormat.isCompressed(captureFile)) {
+      try (InputStream input = new FileInputStream(captureFile)) {
+        scan(
+            input,
+            (offset, data, start, length) -> consumer.accept(-1, offset, data, start, length));
+      }
+      return;
+    }
+
+    Inflater inflater = new Inflater();
+    try (DataInputStream input =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(captureFile)))) {
+      input.readInt(); // Skip the magic number
+      long blockOffset = CompressedBlockFormat.HEADER_LENGTH;
+      CompressedBlockFormat.Block block;
+      while ((block = CompressedBlockFormat.readBlock(input, inflater)) != null) {
+        long currentBlock = blockOffset;
+        scan(
+            new ByteArrayInputStream(block.data()),
+            (offset, data, start, length) ->
+                consumer.accept(currentBlock, offset, data, start, length));
+        blockOffset += block.storedLength();
+      }
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Scans the stream and reports every non-blank record that is terminated by a separator line.
+   * Content after the last separator is ignored, since it belongs to a record that was not
+   * completely written.
+   *
+   * @param input The stream to scan, positioned at the start of the capture.
+   * @param consumer The consumer receiving the records.
+   * @throws IOException If reading the stream fails.
+   */
+  static void scan(InputStream input, RecordConsumer consumer) throws IOException {
+    byte[] buffer = new byte[BUFFER_SIZE];
+    byte[] block = new byte[BUFFER_SIZE]; // Bytes of the record currently being read
+    int blockSize = 0;
+    int lineStart = 0; // Start of the current line inside the block
+    long position = 0; // Number of bytes consumed from the stream
+    long blockOffset = 0; // Stream offset of the current block
+
+    int read;
+    while ((read = input.read(buffer)) != -1) {
+      for (int i = 0; i < read; i++) {
+        byte b = buffer[i];
+        position++;
+
+        if (b == '\n' && isSeparator(block, lineStart, blockSize)) {
+          // The separator closes the current record
+          emit(consumer, blockOffset, block, lineStart);
+          blockSize = 0;
+          lineStart = 0;
+          blockOffset = position;
+          continue;
+        }
+
+        if (blockSize == block.length) {
+          block = Arrays.copyOf(block, block.length * 2);
+        }
+        block[blockSize++] = b;
+        if (b == '\n') {
+          lineStart = blockSize;
+        }
+      }
+    }
+  }
+
+  // Reports the record with surrounding whitespace removed, skipping blank blocks
+  private static void emit(RecordConsumer consumer, long blockOffset, byte[] block, int end)
+      throws IOException {
+    int start = 0;
+    while (start < end && isWhitespace(block[start])) {
+      start++;
+    }
+    while (end > start && isWhitespace(block[end - 1])) {
+      end--;
+    }
+    if (start < end) {
+      consumer.accept(blockOffset + start, block, start, end - start);
+    }
+  }
+
+  /**
+   * Checks whether the given line (without its line break) is the record separator.
+   *
+   * @param block Buffer holding the line.
+   * @param start Start of the line inside the buffer.
+   * @param end End of the line inside the buffer.
+   * @return true if the line, ignoring surrounding whitespace, is the separator.
+   */
+  static boolean isSeparator(byte[] block, int start, int end) {
+    while (start < end && isWhitespace(block[start])) {
+      start++;
+    }
+    while (end > start && isWhitespace(block[end - 1])) {
+      end--;
+    }
+    return Arrays.equals(block, start, end, SEPARATOR_BYTES, 0, SEPARATOR_BYTES.length);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+  }
+}
@@ -0,0 +1,82 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Content addressed table of the exception stack traces written to a capture.
+ *
+ * <p>A trace is stored as the list of its frames, and every frame as the id of its text in the
+ * capture's {@link StringDictionary}, so frames shared by different traces are written once. Equal
+ * traces get the same id, so an exception thrown 10k times in a loop is written once and every
+ * record refers to it by id. Traces are split into frames at line breaks and joined again without
+ * any loss, a trailing line break is kept as an empty last frame.
+ */
+class StackTraceTable {
+
+  private final Map<String, Integer> ids = new HashMap<>(); // Trace text -> id
+  private final List<int[]> traces = new ArrayList<>(); // Id -> frame ids
+
+  /**
+   * Returns the id of a trace, adding it and its frames if it is new.
+   *
+   * @param trace The stack trace, must not be null.
+   * @param dictionary The dictionary of the capture, receives the frames.
+   * @return The id of the trace.
+   */
+  int idOf(String trace, StringDictionary dictionary) {
+    Integer id = ids.get(trace);
+    if (id == null) {
+      String[] frames = split(trace);
+      int[] frameIds = new int[frames.length];
+      for (int i = 0; i < frames.length; i++) {
+        frameIds[i] = dictionary.idOf(frames[i]);
+      }
+      id = traces.size();
+      traces.add(frameIds);
+      ids.put(trace, id);
+    }
+    return id;
+  }
+
+  /**
+   * Returns the number of traces in the table.
+   *
+   * @return The number of traces.
+   */
+  int size() {
+    return traces.size();
+  }
+
+  /**
+   * Returns the frames of a trace.
+   *
+   * @param id The id of the trace.
+   * @return The dictionary ids of its frames.
+   */
+  int[] frames(int id) {
+    return traces.get(id);
+  }
+
+  /**
+   * Splits a trace into its frames, keeping empty frames so {@link #join(List)} restores it.
+   *
+   * @param trace The stack trace.
+   * @return The frames of the trace.
+   */
+  static String[] split(String trace) {
+    return trace.split("\n", -1);
+  }
+
+  /**
+   * Joins frames into the stack trace they were split from.
+   *
+   * @param frames The frames of the trace.
+   * @return The stack trace.
+   */
+  static String join(List<String> frames) {
+    return String.join("\n", frames);
+  }
+}
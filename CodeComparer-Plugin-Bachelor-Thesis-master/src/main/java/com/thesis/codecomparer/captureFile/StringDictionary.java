@@ -0,0 +1,85 @@
+package com.thesis.codecomparer.captureFile;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary of repeated metadata strings such as file, method, type and parameter names.
+ *
+ * <p>Every distinct string gets a dense integer id and one canonical instance. Writers use the ids
+ * to reference strings in the capture stream instead of repeating them. Readers intern all loaded
+ * names through a dictionary, so equal names share one instance in memory; when both captures of a
+ * comparison are loaded through the same dictionary, equal names are even the same object and
+ * comparing them reduces to a reference check.
+ */
+public class StringDictionary {
+
+  private static final int BYTES_PER_STRING = 80; // String, map entry and list slot of a string
+
+  private final Map<String, Integer> ids = new HashMap<>(); // Canonical string -> id
+  private final List<String> strings = new ArrayList<>(); // Id -> canonical string
+  private long estimatedBytes; // Estimated memory held by the strings
+
+  /**
+   * Returns the id of a string, adding it to the dictionary if it is new.
+   *
+   * @param value The string, must not be null.
+   * @return The id of the string.
+   */
+  public synchronized int idOf(String value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = strings.size();
+      ids.put(value, id);
+      strings.add(value);
+      estimatedBytes += BYTES_PER_STRING + value.length();
+    }
+    return id;
+  }
+
+  /**
+   * Returns the canonical instance of a string, adding it to the dictionary if it is new.
+   *
+   * @param value The string, may be null.
+   * @return The canonical instance equal to the given string, or null.
+   */
+  public synchronized String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    return strings.get(idOf(value));
+  }
+
+  /**
+   * Returns the string with the given id.
+   *
+   * @param id The id of the string.
+   * @return The canonical string.
+   * @throws IndexOutOfBoundsException If no string has this id.
+   */
+  public synchronized String get(int id) {
+    return strings.get(id);
+  }
+
+  /**
+   * Returns the number of strings in the dictionary. Ids are assigned densely, so this is also the
+   * id the next new string will get.
+   *
+   * @return The number of strings in the dictionary.
+   */
+  public synchronized int size() {
+    return strings.size();
+  }
+
+  /**
+   * Returns the estimated memory held by the dictionary, e.g. to count it against a cache budget.
+   * Strings are estimated at one byte per character plus their overhead.
+   *
+   * @return The estimated size in bytes.
+   */
+  public synchronized long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+}
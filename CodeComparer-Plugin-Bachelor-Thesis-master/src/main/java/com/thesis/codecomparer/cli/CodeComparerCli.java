@@ -0,0 +1,249 @@
+package com.thesis.codecomparer.cli;
+
+import com.thesis.codecomparer.captureFile.CompactCapture;
+import com.thesis.codecomparer.captureFile.NormalizationRules;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.captureFile.StringDictionary;
+import com.thesis.codecomparer.comparators.FileComparator;
+import com.thesis.codecomparer.comparators.JsonComparisonReport;
+import com.thesis.codecomparer.comparators.MultiRunComparator;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.query.CaptureQuery;
+import com.thesis.codecomparer.query.CaptureQueryEngine;
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares captures without starting an IDE, e.g. in a CI job:
+ *
+ * <pre>
+ * java -cp codecomparer.jar:gson.jar com.thesis.codecomparer.cli.CodeComparerCli \
+ *     [--json report.json] [--report report.txt] [--rules rules.json | --no-normalize] \
+ *     baseline.txt candidate.txt...
+ * </pre>
+ *
+ * The JSON report (see {@link JsonComparisonReport}) is written to the given file or to standard
+ * output, the optional text report is the grouped report for one candidate and the matrix report
+ * for several. The exit code is 0 if all candidates match the baseline, 1 if any differs and 2 for
+ * invalid arguments or unreadable files.
+ *
+ * <p>With {@code --query}, the captures are queried instead of compared (see {@link CaptureQuery}),
+ * e.g. {@code --query "where invoked = parse and return.status != OK" run.txt}. The result of
+ * every capture is written to the report file or to standard output, and the exit code is 0, or 2
+ * for invalid queries or unreadable files.
+ *
+ * <p>Only the capture, comparison and data model packages are used here, so no IntelliJ platform
+ * class is loaded and the comparison starts as fast as a plain Java program.
+ */
+public class CodeComparerCli {
+
+  static final int EXIT_SAME = 0; // All candidates match the baseline
+  static final int EXIT_DIFFERENT = 1; // At least one candidate differs from the baseline
+  static final int EXIT_ERROR = 2; // Invalid arguments or unreadable files
+
+  private static final String USAGE =
+      "Usage: CodeComparerCli [--json <file>] [--report <file>] [--rules <file> | --no-normalize]"
+          + " <baseline> <candidate>...\n"
+          + "       CodeComparerCli --query <query> [--report <file>] <capture>...";
+
+  private CodeComparerCli() {
+    // Only static helpers
+  }
+
+  /**
+   * Runs the comparison and exits with its exit code.
+   *
+   * @param args The command line arguments.
+   */
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * Runs the comparison.
+   *
+   * @param args The command line arguments.
+   * @param out Receives the JSON report if no report file is given.
+   * @param err Receives progress and error messages.
+   * @return The exit code.
+   */
+  static int run(String[] args, PrintStream out, PrintStream err) {
+    String jsonFile = null;
+    String reportFile = null;
+    String rulesFile = null;
+    String query = null;
+    boolean normalize = true;
+    List<String> captures = new ArrayList<>();
+
+    for (int i = 0; i < args.length; i++) {
+      String arg = args[i];
+      boolean hasValue = i + 1 < args.length;
+      if (arg.equals("--json") && hasValue) {
+        jsonFile = args[++i];
+      } else if (arg.equals("--report") && hasValue) {
+        reportFile = args[++i];
+      } else if (arg.equals("--rules") && hasValue) {
+        rulesFile = args[++i];
+      } else if (arg.equals("--query") && hasValue) {
+        query = args[++i];
+      } else if (arg.equals("--no-normalize")) {
+        normalize = false;
+      } else if (arg.startsWith("--")) {
+        err.println("Unknown or incomplete option: " + arg);
+        err.println(USAGE);
+        return EXIT_ERROR;
+      } else {
+        captures.add(arg);
+      }
+    }
+    if (query != null && !captures.isEmpty()) {
+      return query(query, captures, reportFile, out, err);
+    }
+    if (captures.size() < 2) {
+      err.println(USAGE);
+      return EXIT_ERROR;
+    }
+
+    try {
+      NormalizationRules rules;
+      if (!normalize) {
+        rules = NormalizationRules.NONE;
+      } else if (rulesFile != null) {
+        rules = NormalizationRules.load(new File(rulesFile));
+      } else {
+        rules = NormalizationRules.configured();
+      }
+      boolean different = compare(captures, rules, jsonFile, reportFile, out, err);
+      return different ? EXIT_DIFFERENT : EXIT_SAME;
+    } catch (IOException | RuntimeException e) {
+      err.println("Comparison failed: " + e.getMessage());
+      return EXIT_ERROR;
+    }
+  }
+
+  /**
+   * Compares every candidate with the baseline. Captures are held as {@link CompactCapture}s.
+   * Without a text report for several candidates, only the baseline and the current candidate are
+   * held in memory; the matrix report of several candidates needs the records of all runs.
+   *
+   * @return True if any candidate differs from the baseline.
+   */
+  private static boolean compare(
+      List<String> captures,
+      NormalizationRules rules,
+      String jsonFile,
+      String reportFile,
+      PrintStream out,
+      PrintStream err)
+      throws IOException {
+    StringDictionary dictionary = new StringDictionary(); // Shared by all captures
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    String baselineName = captures.get(0);
+    CompactCapture baseline =
+        FileComparator.parseCompact(baselineName, dictionary, rules, ProgressMonitor.NONE);
+    boolean matrixReport = reportFile != null && captures.size() > 2;
+    List<List<BreakpointState>> runs = new ArrayList<>();
+    if (matrixReport) {
+      runs.add(new ArrayList<>(baseline.asStates()));
+    }
+
+    Writer jsonOut = jsonFile == null ? keepOpen(out) : openWriter(jsonFile);
+    try (JsonComparisonReport report = new JsonComparisonReport(jsonOut, baselineName)) {
+      try {
+        for (String candidateName : captures.subList(1, captures.size())) {
+          CompactCapture candidate =
+              FileComparator.parseCompact(candidateName, dictionary, rules, ProgressMonitor.NONE);
+          int differing = report.addCandidate(baseline, candidate, candidateName, pool);
+          err.println(
+              candidateName
+                  + ": "
+                  + (differing == 0
+                      ? "same as the baseline"
+                      : differing + " differing breakpoints"));
+
+          if (matrixReport) {
+            runs.add(new ArrayList<>(candidate.asStates()));
+          } else if (reportFile != null) {
+            try (Writer text = openWriter(reportFile)) {
+              FileComparator.writeGroupedReport(
+                  baseline,
+                  candidate,
+                  baselineName,
+                  candidateName,
+                  text,
+                  pool,
+                  ProgressMonitor.NONE);
+            }
+          }
+        }
+
+        if (matrixReport) {
+          try (Writer text = openWriter(reportFile)) {
+            MultiRunComparator.writeMatrixReport(runs, captures, text, ProgressMonitor.NONE);
+          }
+        }
+      } catch (IOException | RuntimeException e) {
+        // The report must not look like a comparison that found no differences
+        report.setError(e.getMessage() != null ? e.getMessage() : e.toString());
+        throw e;
+      }
+      return report.isDifferencesFound();
+    }
+  }
+
+  /**
+   * Runs a query over every capture and writes the results one after another.
+   *
+   * @return The exit code.
+   */
+  private static int query(
+      String query, List<String> captures, String reportFile, PrintStream out, PrintStream err) {
+    CaptureQuery parsed;
+    try {
+      parsed = CaptureQuery.parse(query);
+    } catch (IllegalArgumentException e) {
+      err.println("Invalid query: " + e.getMessage());
+      return EXIT_ERROR;
+    }
+
+    try (Writer report = reportFile == null ? keepOpen(out) : openWriter(reportFile)) {
+      for (int i = 0; i < captures.size(); i++) {
+        if (i > 0) {
+          report.write("\n");
+        }
+        CaptureQueryEngine.Statistics statistics =
+            CaptureQueryEngine.run(
+                new File(captures.get(i)), parsed, report, ProgressMonitor.NONE);
+        err.println(captures.get(i) + ": " + statistics.matchingHits() + " matching hits");
+      }
+      return EXIT_SAME; // Queries only fail on errors
+    } catch (IOException | RuntimeException e) {
+      err.println("Query failed: " + e.getMessage());
+      return EXIT_ERROR;
+    }
+  }
+
+  private static Writer openWriter(String path) throws IOException {
+    return Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8);
+  }
+
+  // Writes to the caller's stream, e.g. System.out, and only flushes it when the writer is closed
+  private static Writer keepOpen(PrintStream out) {
+    return new FilterWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    };
+  }
+}
@@ -0,0 +1,66 @@
+package com.thesis.codecomparer.comparators;
+
+import java.util.Arrays;
+
+/**
+ * Result of aligning two sequences of breakpoint hits. The alignment is a list of steps in
+ * sequence order; every step either pairs a hit of the first sequence with a hit of the second
+ * sequence, or contains a hit that only exists in one of them.
+ *
+ * <p>Steps are stored as two int arrays, so even alignments of millions of hits stay compact.
+ */
+public class Alignment {
+
+  private int[] indexes1 = new int[16]; // Index into the first sequence per step, or -1
+  private int[] indexes2 = new int[16]; // Index into the second sequence per step, or -1
+  private int size; // Number of steps
+
+  /**
+   * Returns the number of steps of the alignment.
+   *
+   * @return The number of steps.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the index of the first sequence's hit of a step.
+   *
+   * @param step The step of the alignment.
+   * @return The index into the first sequence, or -1 if the step only exists in the second one.
+   */
+  public int index1(int step) {
+    return indexes1[step];
+  }
+
+  /**
+   * Returns the index of the second sequence's hit of a step.
+   *
+   * @param step The step of the alignment.
+   * @return The index into the second sequence, or -1 if the step only exists in the first one.
+   */
+  public int index2(int step) {
+    return indexes2[step];
+  }
+
+  /**
+   * Checks whether a step pairs hits of both sequences.
+   *
+   * @param step The step of the alignment.
+   * @return true if both sequences have a hit at this step.
+   */
+  public boolean isMatch(int step) {
+    return indexes1[step] >= 0 && indexes2[step] >= 0;
+  }
+
+  void add(int index1, int index2) {
+    if (size == indexes1.length) {
+      indexes1 = Arrays.copyOf(indexes1, size * 2);
+      indexes2 = Arrays.copyOf(indexes2, size * 2);
+    }
+    indexes1[size] = index1;
+    indexes2[size] = index2;
+    size++;
+  }
+}
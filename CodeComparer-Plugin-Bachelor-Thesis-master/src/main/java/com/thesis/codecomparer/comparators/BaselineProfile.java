@@ -0,0 +1,464 @@
+package com.thesis.codecomparer.comparators;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.thesis.codecomparer.captureFile.RecordDigest;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import java.io.*;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Summary of the values seen in several reference runs of the same program, used as a baseline that
+ * tolerates non-deterministic values like timestamps, random ids or hash ordered collections.
+ *
+ * <p>Every captured value is split into its leaf values by JSON path, and the values of each path
+ * are summarized per breakpoint location (file, line and method). A path is {@link
+ * Stability#STABLE} if all reference hits had the same value, {@link Stability#SMALL_SET} if they
+ * had at most MAX_VALUES different values and {@link Stability#VOLATILE} otherwise. Only digests of
+ * the values are kept, with the value type for volatile paths, so the profile stays small however
+ * long the reference runs are: its size depends on the number of locations and paths, not hits.
+ * Array elements beyond MAX_ARRAY_ELEMENTS share one path, and so do the members of an object
+ * beyond the first MAX_MEMBERS different names seen at its path, e.g. maps keyed by ids or
+ * timestamps. This bounds the paths per value.
+ */
+public class BaselineProfile {
+
+  private static final int MAGIC = 0x43434250; // "CCBP"
+  private static final int VERSION = 2; // Version 1 profiles have no member names
+  private static final int MAX_VALUES = 8; // Paths with more different values are volatile
+  private static final int MAX_ARRAY_ELEMENTS = 16; // Later elements share the path "[*]"
+  private static final int MAX_MEMBERS = 64; // Later member names of an object share ".*"
+  private static final int MAX_VALUE_LENGTH = 80; // Longer example values are shortened
+
+  // JSON kinds of leaf values, kept as a bit mask for volatile paths
+  private static final int KIND_NULL = 1;
+  private static final int KIND_BOOLEAN = 2;
+  private static final int KIND_NUMBER = 4;
+  private static final int KIND_STRING = 8;
+
+  /** How the values of a path varied between the reference hits. */
+  public enum Stability {
+    STABLE,
+    SMALL_SET,
+    VOLATILE
+  }
+
+  private final Map<String, LocationProfile> locations = new HashMap<>(); // By location key
+  private int runCount; // Number of reference runs added
+
+  /**
+   * Builds the profile of several reference runs.
+   *
+   * @param runs The hits of every reference run.
+   * @return The profile of all runs.
+   */
+  public static BaselineProfile build(List<List<BreakpointState>> runs) {
+    BaselineProfile profile = new BaselineProfile();
+    for (List<BreakpointState> run : runs) {
+      profile.addRun(run);
+    }
+    return profile;
+  }
+
+  /**
+   * Adds the hits of one more reference run to the profile.
+   *
+   * @param run The hits of the reference run.
+   */
+  public void addRun(List<BreakpointState> run) {
+    for (BreakpointState state : run) {
+      LocationProfile location =
+          locations.computeIfAbsent(locationKey(state), k -> new LocationProfile());
+      location.hits++;
+      // A path may occur several times in one hit (array elements beyond the limit)
+      Set<String> seen = new HashSet<>();
+      forEachLeaf(
+          state,
+          (objectPath, member) -> location.memberPath(objectPath, member, true),
+          (path, leaf) -> {
+            PathProfile pathProfile = location.paths.computeIfAbsent(path, k -> new PathProfile());
+            if (seen.add(path)) {
+              pathProfile.hits++;
+            }
+            pathProfile.add(leaf);
+          });
+    }
+    runCount++;
+  }
+
+  /**
+   * Returns the number of reference runs in the profile.
+   *
+   * @return The number of runs.
+   */
+  public int getRunCount() {
+    return runCount;
+  }
+
+  /**
+   * Returns the stability of a path at a breakpoint location.
+   *
+   * @param state A hit of the breakpoint location.
+   * @param path The path, e.g. {@code Current Method -> Argument[0] $.id}.
+   * @return The stability, or null if the path was not seen at the location.
+   */
+  public Stability getStability(BreakpointState state, String path) {
+    LocationProfile location = locations.get(locationKey(state));
+    PathProfile pathProfile = location == null ? null : location.paths.get(path);
+    return pathProfile == null ? null : pathProfile.stability();
+  }
+
+  /**
+   * Compares a hit with the profile of its location. A value is only reported if it falls outside
+   * what the reference runs saw: a stable path with another value, a small set path with a value
+   * that is not in the set, a volatile path with a value of another JSON type, and paths that were
+   * added or that every reference hit had but this hit does not.
+   *
+   * @param state The hit to check.
+   * @return A list of strings describing the unexpected values, empty if there are none.
+   */
+  public List<String> findUnexpectedValues(BreakpointState state) {
+    List<String> differences = new ArrayList<>();
+    LocationProfile location = locations.get(locationKey(state));
+    if (location == null) {
+      differences.add("  - Location: not hit in the reference runs");
+      return differences;
+    }
+
+    Set<String> seen = new HashSet<>();
+    forEachLeaf(
+        state,
+        (objectPath, member) -> location.memberPath(objectPath, member, false),
+        (path, leaf) -> {
+          seen.add(path);
+          PathProfile pathProfile = location.paths.get(path);
+          String value = shorten(leaf);
+          if (pathProfile == null) {
+            differences.add("  - " + path + " added: " + value);
+          } else if (!pathProfile.accepts(leaf)) {
+            differences.add("  - " + path + ": " + value + " " + pathProfile.describeExpected());
+          }
+        });
+
+    for (Map.Entry<String, PathProfile> path : location.paths.entrySet()) {
+      if (path.getValue().hits == location.hits && !seen.contains(path.getKey())) {
+        differences.add("  - " + path.getKey() + " removed");
+      }
+    }
+    return differences;
+  }
+
+  /**
+   * Counts the paths of every stability, for the summary of a report.
+   *
+   * @return The number of paths by stability.
+   */
+  public Map<Stability, Integer> countPaths() {
+    Map<Stability, Integer> counts = new EnumMap<>(Stability.class);
+    for (Stability stability : Stability.values()) {
+      counts.put(stability, 0);
+    }
+    for (LocationProfile location : locations.values()) {
+      for (PathProfile path : location.paths.values()) {
+        counts.merge(path.stability(), 1, Integer::sum);
+      }
+    }
+    return counts;
+  }
+
+  /**
+   * Saves the profile to a file, so it can be reused without the reference runs.
+   *
+   * @param file The file to write.
+   * @throws IOException If writing the file fails.
+   */
+  public void save(File file) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(runCount);
+      out.writeInt(locations.size());
+      for (Map.Entry<String, LocationProfile> location : locations.entrySet()) {
+        out.writeUTF(location.getKey());
+        out.writeInt(location.getValue().hits);
+        out.writeInt(location.getValue().paths.size());
+        for (Map.Entry<String, PathProfile> path : location.getValue().paths.entrySet()) {
+          out.writeUTF(path.getKey());
+          path.getValue().write(out);
+        }
+        out.writeInt(location.getValue().members.size());
+        for (Map.Entry<String, Set<String>> object : location.getValue().members.entrySet()) {
+          out.writeUTF(object.getKey());
+          out.writeInt(object.getValue().size());
+          for (String member : object.getValue()) {
+            out.writeUTF(member);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Loads a profile saved with {@link #save(File)}.
+   *
+   * @param file The file to read.
+   * @return The loaded profile.
+   * @throws IOException If reading the file fails or it is not a baseline profile.
+   */
+  public static BaselineProfile load(File file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+      int magic = in.readInt();
+      int version = in.readInt();
+      if (magic != MAGIC || version < 1 || version > VERSION) {
+        throw new IOException("Not a baseline profile: " + file);
+      }
+      BaselineProfile profile = new BaselineProfile();
+      profile.runCount = in.readInt();
+      int locationCount = in.readInt();
+      for (int i = 0; i < locationCount; i++) {
+        LocationProfile location = new LocationProfile();
+        profile.locations.put(in.readUTF(), location);
+        location.hits = in.readInt();
+        int pathCount = in.readInt();
+        for (int j = 0; j < pathCount; j++) {
+          location.paths.put(in.readUTF(), PathProfile.read(in));
+        }
+        int objectCount = version >= 2 ? in.readInt() : 0;
+        for (int j = 0; j < objectCount; j++) {
+          Set<String> members = new HashSet<>();
+          location.members.put(in.readUTF(), members);
+          int memberCount = in.readInt();
+          for (int k = 0; k < memberCount; k++) {
+            members.add(in.readUTF());
+          }
+        }
+      }
+      return profile;
+    }
+  }
+
+  private static String locationKey(BreakpointState state) {
+    MethodState method = state.getCurrentMethodState();
+    return state.getFileName()
+        + ":"
+        + state.getLineNumber()
+        + " "
+        + (method != null ? method.getMethodName() : null);
+  }
+
+  // Calls the consumer for every leaf value of a hit, with its path
+  private static void forEachLeaf(
+      BreakpointState state, MemberPaths members, BiConsumer<String, JsonElement> consumer) {
+    forEachParameterLeaf(state.getCurrentMethodState(), "Current Method", members, consumer);
+    MethodState invoked = state.getInvokedMethodState();
+    if (invoked != null) {
+      consumer.accept("Invoked Method -> Name", leaf(invoked.getMethodName()));
+      forEachParameterLeaf(invoked, "Invoked Method", members, consumer);
+    }
+    if (state.getInvokedMethodReturnValue() != null) {
+      forEachLeaf("Return Value $", parse(state.getInvokedMethodReturnValue()), members, consumer);
+    }
+
+    ExceptionDetails exception = state.getExceptionDetails();
+    if (exception != null) {
+      consumer.accept("Exception -> Type", leaf(exception.getExceptionType()));
+      consumer.accept("Exception -> Message", leaf(exception.getExceptionMessage()));
+      consumer.accept("Exception -> Stack Trace", leaf(exception.getStackTrace()));
+    }
+  }
+
+  private static void forEachParameterLeaf(
+      MethodState method,
+      String context,
+      MemberPaths members,
+      BiConsumer<String, JsonElement> consumer) {
+    if (method == null || method.getParameters() == null) {
+      return;
+    }
+    for (int i = 0; i < method.getParameters().size(); i++) {
+      String serializedValue = method.getParameters().get(i).getSerializedValue();
+      forEachLeaf(
+          context + " -> Argument[" + i + "] $", parse(serializedValue), members, consumer);
+    }
+  }
+
+  private static void forEachLeaf(
+      String path,
+      JsonElement element,
+      MemberPaths members,
+      BiConsumer<String, JsonElement> consumer) {
+    if (element.isJsonObject()) {
+      for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+        forEachLeaf(members.of(path, member.getKey()), member.getValue(), members, consumer);
+      }
+    } else if (element.isJsonArray()) {
+      int index = 0;
+      for (JsonElement item : element.getAsJsonArray()) {
+        String itemPath = index < MAX_ARRAY_ELEMENTS ? "[" + index + "]" : "[*]";
+        forEachLeaf(path + itemPath, item, members, consumer);
+        index++;
+      }
+    } else {
+      consumer.accept(path, element);
+    }
+  }
+
+  // Parses a serialized value, keeping values that are no JSON as a string primitive
+  private static JsonElement parse(String json) {
+    if (json == null) {
+      return leaf(null);
+    }
+    try {
+      return JsonParser.parseString(json);
+    } catch (JsonParseException e) {
+      return new JsonPrimitive(json);
+    }
+  }
+
+  private static JsonElement leaf(String value) {
+    return value == null ? JsonNull.INSTANCE : new JsonPrimitive(value);
+  }
+
+  private static int kindOf(JsonElement leaf) {
+    if (!leaf.isJsonPrimitive()) {
+      return KIND_NULL;
+    }
+    JsonPrimitive primitive = leaf.getAsJsonPrimitive();
+    return primitive.isBoolean() ? KIND_BOOLEAN : primitive.isNumber() ? KIND_NUMBER : KIND_STRING;
+  }
+
+  private static long digestOf(JsonElement leaf) {
+    return leaf.isJsonPrimitive()
+        ? RecordDigest.of(kindOf(leaf) + ":" + leaf.getAsString())
+        : RecordDigest.of((String) null);
+  }
+
+  private static String shorten(JsonElement leaf) {
+    String value = leaf.toString();
+    return value.length() <= MAX_VALUE_LENGTH
+        ? value
+        : value.substring(0, MAX_VALUE_LENGTH - 3) + "...";
+  }
+
+  /** Chooses the path of an object member. */
+  private interface MemberPaths {
+    String of(String objectPath, String member);
+  }
+
+  /** Profile of a breakpoint location. */
+  private static class LocationProfile {
+    private int hits; // Reference hits of the location
+    private final Map<String, PathProfile> paths = new HashMap<>(); // By path
+    private final Map<String, Set<String>> members =
+        new HashMap<>(); // Object path -> member names with a path of their own
+
+    /**
+     * Returns the path of an object member. The first MAX_MEMBERS names seen at an object path get
+     * a path of their own, all later names share the path {@code .*}.
+     *
+     * @param objectPath The path of the object.
+     * @param member The name of the member.
+     * @param add Whether a new name is added to the names of the object, while building.
+     * @return The path of the member.
+     */
+    String memberPath(String objectPath, String member, boolean add) {
+      Set<String> names = members.get(objectPath);
+      if (names == null || !names.contains(member)) {
+        if (names != null && names.size() >= MAX_MEMBERS) {
+          return objectPath + ".*";
+        }
+        if (add) {
+          members.computeIfAbsent(objectPath, k -> new HashSet<>()).add(member);
+        }
+      }
+      return objectPath + "." + member;
+    }
+  }
+
+  /** Summary of the values of one path at one location. */
+  private static class PathProfile {
+    private int hits; // Reference hits that had the path
+    private long[] digests = new long[1]; // Digests of the different values, until volatile
+    private int valueCount; // Number of different values, -1 once the path is volatile
+    private int kinds; // JSON kinds of all values
+    private String example; // Shortened first value, to show what a stable path expects
+
+    void add(JsonElement leaf) {
+      kinds |= kindOf(leaf);
+      if (example == null) {
+        example = shorten(leaf);
+      }
+      if (valueCount < 0 || contains(digestOf(leaf))) {
+        return;
+      }
+      if (valueCount == MAX_VALUES) {
+        valueCount = -1; // Too many values, only the kinds are kept from now on
+        digests = new long[0];
+        return;
+      }
+      if (valueCount == digests.length) {
+        digests = Arrays.copyOf(digests, Math.min(MAX_VALUES, digests.length * 2));
+      }
+      digests[valueCount++] = digestOf(leaf);
+    }
+
+    boolean accepts(JsonElement leaf) {
+      return valueCount < 0 ? (kinds & kindOf(leaf)) != 0 : contains(digestOf(leaf));
+    }
+
+    Stability stability() {
+      return valueCount < 0
+          ? Stability.VOLATILE
+          : valueCount == 1 ? Stability.STABLE : Stability.SMALL_SET;
+    }
+
+    String describeExpected() {
+      return switch (stability()) {
+        case STABLE -> "!= " + example + " (stable in the reference runs)";
+        case SMALL_SET -> "is none of the " + valueCount + " values of the reference runs";
+        case VOLATILE -> "has a type not seen in the reference runs";
+      };
+    }
+
+    private boolean contains(long digest) {
+      for (int i = 0; i < valueCount; i++) {
+        if (digests[i] == digest) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    void write(DataOutputStream out) throws IOException {
+      out.writeInt(hits);
+      out.writeInt(valueCount);
+      out.writeByte(kinds);
+      out.writeUTF(example);
+      for (int i = 0; i < valueCount; i++) {
+        out.writeLong(digests[i]);
+      }
+    }
+
+    static PathProfile read(DataInputStream in) throws IOException {
+      PathProfile path = new PathProfile();
+      path.hits = in.readInt();
+      path.valueCount = in.readInt();
+      path.kinds = in.readByte();
+      path.example = in.readUTF();
+      path.digests = new long[Math.max(path.valueCount, 0)];
+      for (int i = 0; i < path.valueCount; i++) {
+        path.digests[i] = in.readLong();
+      }
+      return path;
+    }
+  }
+}
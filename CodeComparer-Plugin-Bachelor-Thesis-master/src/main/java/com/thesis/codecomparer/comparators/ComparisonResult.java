@@ -0,0 +1,214 @@
+package com.thesis.codecomparer.comparators;
+
+import com.thesis.codecomparer.captureFile.CaptureIndex;
+import com.thesis.codecomparer.captureFile.NormalizationRules;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Browsable result of comparing two captures, e.g. for a tree view of the differences. Only the
+ * alignment and the steps with differences are stored, 4 bytes per differing breakpoint; the
+ * differences of a breakpoint are computed again from its hits when they are requested, so a
+ * result with a million differing breakpoints stays small. For compact captures, the hits of a
+ * breakpoint are also only built when they are requested, and {@link #readingHitsFrom} gives a
+ * result that reads them from the capture files instead of holding the captures.
+ */
+public class ComparisonResult {
+
+  private final HitSource file1Hits; // Hits of the first file
+  private final HitSource file2Hits; // Hits of the second file
+  private final String file1Name; // Name of the first file
+  private final String file2Name; // Name of the second file
+  private final Alignment alignment; // Alignment of the hits of both files
+  private int[] differingSteps = new int[16]; // Steps with differences or only one hit
+  private int size; // Number of differing steps
+
+  ComparisonResult(
+      HitSource file1Hits,
+      String file1Name,
+      HitSource file2Hits,
+      String file2Name,
+      Alignment alignment) {
+    this.file1Hits = file1Hits;
+    this.file1Name = file1Name;
+    this.file2Hits = file2Hits;
+    this.file2Name = file2Name;
+    this.alignment = alignment;
+  }
+
+  /**
+   * Returns a result with the same differing breakpoints whose hits are read again from the capture
+   * files when they are requested, seeking to them through the files' sidecar indexes. It does not
+   * hold the compared hits, so a browsed result does not keep the captures in memory.
+   *
+   * @param file1 The first capture file.
+   * @param file2 The second capture file.
+   * @param rules The normalization rules the files were compared with.
+   * @return The result reading its hits from the files.
+   * @throws IOException If an index cannot be loaded or does not match the compared hits.
+   */
+  public ComparisonResult readingHitsFrom(File file1, File file2, NormalizationRules rules)
+      throws IOException {
+    ComparisonResult result =
+        new ComparisonResult(
+            indexedHits(file1, file1Hits, rules),
+            file1Name,
+            indexedHits(file2, file2Hits, rules),
+            file2Name,
+            alignment);
+    result.differingSteps = Arrays.copyOf(differingSteps, size);
+    result.size = size;
+    return result;
+  }
+
+  // Loads the index of a capture file, it must list the hits that were compared
+  private static HitSource indexedHits(File file, HitSource hits, NormalizationRules rules)
+      throws IOException {
+    CaptureIndex index = CaptureIndex.load(file);
+    if (index.getEntries().size() != hits.size()) {
+      throw new IOException("The index of " + file.getName() + " does not match the file");
+    }
+    return HitSource.of(file, index, rules);
+  }
+
+  void addDifferingStep(int step) {
+    if (size == differingSteps.length) {
+      differingSteps = Arrays.copyOf(differingSteps, size * 2);
+    }
+    differingSteps[size++] = step;
+  }
+
+  /**
+   * Returns the number of breakpoints that differ or exist in only one of the files.
+   *
+   * @return The number of differing breakpoints.
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of compared breakpoints, including those without differences.
+   *
+   * @return The number of steps of the alignment.
+   */
+  public int getTotalBreakpoints() {
+    return alignment.size();
+  }
+
+  /**
+   * Returns the breakpoint number of a differing breakpoint, as used in the report.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The 1-based breakpoint number.
+   */
+  public int getBreakpointNumber(int index) {
+    return differingSteps[index] + 1;
+  }
+
+  /**
+   * Returns the file name of a differing breakpoint without building its hits, taken from the hit
+   * of the first file if it has one.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The file name.
+   */
+  public String getFileName(int index) {
+    int index1 = getHitIndex1(index);
+    return index1 >= 0 ? file1Hits.getFileName(index1) : file2Hits.getFileName(getHitIndex2(index));
+  }
+
+  /**
+   * Returns the line number of a differing breakpoint like {@link #getFileName(int)}.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The line number.
+   */
+  public int getLineNumber(int index) {
+    int index1 = getHitIndex1(index);
+    return index1 >= 0
+        ? file1Hits.getLineNumber(index1)
+        : file2Hits.getLineNumber(getHitIndex2(index));
+  }
+
+  /**
+   * Returns the hit of the first file of a differing breakpoint.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The hit, or null if the breakpoint exists only in the second file.
+   */
+  public BreakpointState getState1(int index) {
+    int index1 = getHitIndex1(index);
+    return index1 < 0 ? null : file1Hits.getState(index1);
+  }
+
+  /**
+   * Returns the hit of the second file of a differing breakpoint.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The hit, or null if the breakpoint exists only in the first file.
+   */
+  public BreakpointState getState2(int index) {
+    int index2 = getHitIndex2(index);
+    return index2 < 0 ? null : file2Hits.getState(index2);
+  }
+
+  /**
+   * Returns the position of the first file's hit of a differing breakpoint among all hits of the
+   * file, which is also the position of its record in the file's index.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The position of the hit, or -1 if the breakpoint exists only in the second file.
+   */
+  public int getHitIndex1(int index) {
+    return alignment.index1(differingSteps[index]);
+  }
+
+  /**
+   * Returns the position of the second file's hit of a differing breakpoint among all hits of the
+   * file, which is also the position of its record in the file's index.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The position of the hit, or -1 if the breakpoint exists only in the first file.
+   */
+  public int getHitIndex2(int index) {
+    return alignment.index2(differingSteps[index]);
+  }
+
+  /**
+   * Compares the hits of a differing breakpoint again and returns their differences.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The differences, in the format of the grouped report, or an empty list if the
+   *     breakpoint exists in only one of the files.
+   */
+  public List<String> getDifferences(int index) {
+    int index1 = getHitIndex1(index);
+    int index2 = getHitIndex2(index);
+    if (index1 < 0 || index2 < 0) {
+      return List.of();
+    }
+    return file1Hits.compare(index1, file1Name, file2Hits, index2, file2Name);
+  }
+
+  /**
+   * Returns the name of the first file.
+   *
+   * @return The name of the first file.
+   */
+  public String getFile1Name() {
+    return file1Name;
+  }
+
+  /**
+   * Returns the name of the second file.
+   *
+   * @return The name of the second file.
+   */
+  public String getFile2Name() {
+    return file2Name;
+  }
+}
@@ -0,0 +1,151 @@
+package com.thesis.codecomparer.comparators;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the captured value a difference line refers to and formats it for a side-by-side diff,
+ * e.g. the serialized argument behind "Current Method -> Argument[0] JSON $.x: 1 != 2".
+ */
+public class DifferenceValues {
+
+  private static final Pattern ARGUMENT = Pattern.compile("^Argument\\[(\\d+)]");
+  private static final int TOKENS_PER_CHECK = 64 * 1024; // Tokens printed between two checks
+
+  private DifferenceValues() {
+    // Only static helpers
+  }
+
+  /**
+   * Returns the value of a hit that a difference refers to.
+   *
+   * @param state The hit.
+   * @param section The section of the difference, see {@link StateComparator#splitDifference}.
+   * @param detail The rest of the difference line.
+   * @return The serialized value, or a plain text description for names, types and exceptions.
+   */
+  public static String selectValue(BreakpointState state, String section, String detail) {
+    return switch (section) {
+      case "Current Method" -> selectMethodValue(state.getCurrentMethodState(), detail);
+      case "Invoked Method" -> selectMethodValue(state.getInvokedMethodState(), detail);
+      case "Return Value" -> String.valueOf(state.getInvokedMethodReturnValue());
+      case "Class Name", "Line" -> state.getFileName() + ":" + state.getLineNumber();
+      default -> describeException(state.getExceptionDetails()); // Exception sections
+    };
+  }
+
+  // Selects an argument, or describes the whole method for name, type and size differences
+  private static String selectMethodValue(MethodState method, String detail) {
+    Matcher argument = ARGUMENT.matcher(detail);
+    if (argument.find()) {
+      int index = Integer.parseInt(argument.group(1));
+      if (index < method.getParameters().size()) {
+        return method.getParameters().get(index).getSerializedValue();
+      }
+    }
+
+    StringBuilder text =
+        new StringBuilder(method.getReturnType() + " " + method.getMethodName() + "(\n");
+    for (ParameterInfo parameter : method.getParameters()) {
+      text.append("  ")
+          .append(parameter.getName())
+          .append(" = ")
+          .append(parameter.getSerializedValue())
+          .append("\n");
+    }
+    return text.append(")").toString();
+  }
+
+  private static String describeException(ExceptionDetails exception) {
+    if (exception == null) {
+      return "No exception";
+    }
+    return exception.getExceptionType()
+        + ": "
+        + exception.getExceptionMessage()
+        + "\n"
+        + exception.getStackTrace();
+  }
+
+  /**
+   * Pretty prints a serialized value with one JSON member per line, so a diff shows the changed
+   * members side by side. The value is copied token by token in a streaming pass, checking the
+   * monitor regularly, so even a value of many megabytes can be cancelled. Values that are not
+   * JSON are returned unchanged.
+   *
+   * @param value The value to print.
+   * @param progress The monitor checked while printing.
+   * @return The printed value.
+   * @throws CancellationException If the monitor was cancelled.
+   */
+  public static String prettyPrint(String value, ProgressMonitor progress) {
+    String trimmed = value.strip();
+    if (!trimmed.startsWith("{") && !trimmed.startsWith("[")) {
+      return value;
+    }
+
+    StringWriter printed = new StringWriter(value.length() + value.length() / 4);
+    try (JsonReader reader = new JsonReader(new StringReader(trimmed))) {
+      JsonWriter writer = new JsonWriter(printed);
+      writer.setIndent("  ");
+      writer.setSerializeNulls(true);
+      copyTokens(reader, writer, progress);
+      writer.flush();
+    } catch (CancellationException e) {
+      throw e; // A CancellationException is an IllegalStateException, but not a JSON error
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      return value; // Not valid JSON, e.g. a truncated value, show it as it was captured
+    }
+    return printed.toString();
+  }
+
+  private static void copyTokens(JsonReader reader, JsonWriter writer, ProgressMonitor progress)
+      throws IOException {
+    int tokens = 0;
+    JsonToken token;
+    while ((token = reader.peek()) != JsonToken.END_DOCUMENT) {
+      if (++tokens % TOKENS_PER_CHECK == 0) {
+        progress.checkCanceled();
+      }
+      switch (token) {
+        case BEGIN_OBJECT -> {
+          reader.beginObject();
+          writer.beginObject();
+        }
+        case END_OBJECT -> {
+          reader.endObject();
+          writer.endObject();
+        }
+        case BEGIN_ARRAY -> {
+          reader.beginArray();
+          writer.beginArray();
+        }
+        case END_ARRAY -> {
+          reader.endArray();
+          writer.endArray();
+        }
+        case NAME -> writer.name(reader.nextName());
+        case STRING -> writer.value(reader.nextString());
+        case NUMBER -> writer.jsonValue(reader.nextString()); // Keeps the captured digits
+        case BOOLEAN -> writer.value(reader.nextBoolean());
+        case NULL -> {
+          reader.nextNull();
+          writer.nullValue();
+        }
+        default -> throw new IllegalStateException("Unexpected token " + token);
+      }
+    }
+  }
+}
@@ -1,52 +1,236 @@
 package com.thesis.codecomparer.comparators;
 
-import com.google.gson.Gson;
+import com.thesis.codecomparer.captureFile.BaselineStore;
+import com.thesis.codecomparer.captureFile.CaptureIndex;
+import com.thesis.codecomparer.captureFile.CaptureReader;
+import com.thesis.codecomparer.captureFile.CompactCapture;
+import com.thesis.codecomparer.captureFile.NormalizationRules;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.captureFile.StringDictionary;
 import com.thesis.codecomparer.dataModels.BreakpointState;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
 public class FileComparator {
 
-  private static final String SEPARATOR = "====================";
+  /** Receives the steps of an alignment in order, together with the differences of their hits. */
+  interface StepVisitor {
+
+    /**
+     * Visits one step of the alignment.
+     *
+     * @param step The position of the step in the alignment.
+     * @param index1 The index of the hit in the first file, or -1 if it exists only in the second.
+     * @param index2 The index of the hit in the second file, or -1 if it exists only in the first.
+     * @param differences The differences of both hits, or null if there are none or the hit exists
+     *     in only one file.
+     * @throws IOException If writing the step fails.
+     */
+    void visit(int step, int index1, int index2, List<String> differences) throws IOException;
+  }
+
+  // Captures of at least this size are parsed in parallel
+  private static final long PARALLEL_PARSE_THRESHOLD = 16L * 1024 * 1024;
+  // Aligned hits compared at once, bounds the differences held in memory while writing the report
+  private static final int COMPARISON_WINDOW = 64 * 1024;
+  private static final int PROGRESS_INTERVAL = 1024; // Checked hits between progress updates
 
   /**
    * Parses a file containing JSON blocks separated by a predefined separator and converts them into
-   * a list of BreakpointState objects.
+   * a list of BreakpointState objects. Block compressed captures are detected automatically.
    *
    * @param filePath The path to the file to be parsed.
    * @return A list of BreakpointState objects parsed from the file.
    * @throws IOException If an error occurs while reading the file.
    */
   public static List<BreakpointState> parseFile(String filePath) throws IOException {
-    List<BreakpointState> states = new ArrayList<>(); // To store parsed BreakpointState objects
-    Gson gson = new Gson(); // Gson instance for JSON parsing
-    StringBuilder jsonBreakpoint = new StringBuilder(); // Temporary storage for JSON Breakpoint
-
-    try (BufferedReader reader = new BufferedReader(new FileReader(filePath))) {
-      String line;
-      while ((line = reader.readLine()) != null) {
-        // Check if the current line is the Breakpoint separator
-        if (line.trim().equals(SEPARATOR)) {
-          if (!jsonBreakpoint.isEmpty()) {
-            // parse the JSON Breakpoint and add to the list
-            BreakpointState state = gson.fromJson(jsonBreakpoint.toString(), BreakpointState.class);
-            states.add(state);
-            jsonBreakpoint.setLength(0); // Clear the buffer for the next Breakpoint
-          }
-        } else {
-          // Append the line to the current JSON Breakpoint
-          jsonBreakpoint.append(line).append("\n");
-        }
-      }
+    return parseFile(filePath, new StringDictionary());
+  }
+
+  /**
+   * Parses a capture file like {@link #parseFile(String)}, interning all file, method, type and
+   * parameter names into the given dictionary. Parse both files of a comparison with the same
+   * dictionary, so equal names are the same instance and compare by reference. Large captures are
+   * split into chunks that are decoded in parallel on the common fork/join pool.
+   *
+   * @param filePath The path to the file to be parsed.
+   * @param dictionary The dictionary shared by the files of one comparison.
+   * @return A list of BreakpointState objects parsed from the file.
+   * @throws IOException If an error occurs while reading the file.
+   */
+  public static List<BreakpointState> parseFile(String filePath, StringDictionary dictionary)
+      throws IOException {
+    return parseFile(filePath, dictionary, NormalizationRules.NONE);
+  }
+
+  /**
+   * Parses a capture file like {@link #parseFile(String, StringDictionary)}, normalizing run
+   * specific parts of the values, like object ids or timestamps, while the file is decoded.
+   *
+   * @param filePath The path to the file to be parsed.
+   * @param dictionary The dictionary shared by the files of one comparison.
+   * @param rules The rules normalizing the values of every record.
+   * @return A list of BreakpointState objects parsed from the file.
+   * @throws IOException If an error occurs while reading the file.
+   */
+  public static List<BreakpointState> parseFile(
+      String filePath, StringDictionary dictionary, NormalizationRules rules) throws IOException {
+    return parseFile(filePath, dictionary, rules, ProgressMonitor.NONE);
+  }
+
+  /**
+   * Parses a capture file like {@link #parseFile(String, StringDictionary, NormalizationRules)},
+   * reporting the parsed part of the file to a monitor and stopping as soon as it is cancelled.
+   *
+   * @param filePath The path to the file to be parsed.
+   * @param dictionary The dictionary shared by the files of one comparison.
+   * @param rules The rules normalizing the values of every record.
+   * @param progress The monitor receiving the progress.
+   * @return A list of BreakpointState objects parsed from the file.
+   * @throws IOException If an error occurs while reading the file.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static List<BreakpointState> parseFile(
+      String filePath,
+      StringDictionary dictionary,
+      NormalizationRules rules,
+      ProgressMonitor progress)
+      throws IOException {
+    File file = new File(filePath);
+    if (file.length() >= PARALLEL_PARSE_THRESHOLD) {
+      return CaptureReader.readAllParallel(
+          file, dictionary, rules, ForkJoinPool.commonPool(), progress);
+    }
+    return CaptureReader.readAll(file, dictionary, rules, progress);
+  }
+
+  /**
+   * Parses a capture file into a {@link CompactCapture}, which needs far less memory than the
+   * records of {@link #parseFile(String, StringDictionary, NormalizationRules, ProgressMonitor)}.
+   * Parse both files of a comparison with the same dictionary, so their names are compared by id.
+   * Files larger than PARALLEL_PARSE_THRESHOLD are decoded in parallel first, and every record is
+   * released once it is added to the columns.
+   *
+   * @param filePath The path to the file to be parsed.
+   * @param dictionary The dictionary shared by the files of one comparison.
+   * @param rules The rules normalizing the values of every record.
+   * @param progress The monitor receiving the progress.
+   * @return The compact capture.
+   * @throws IOException If an error occurs while reading the file.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static CompactCapture parseCompact(
+      String filePath,
+      StringDictionary dictionary,
+      NormalizationRules rules,
+      ProgressMonitor progress)
+      throws IOException {
+    File file = new File(filePath);
+    if (file.length() < PARALLEL_PARSE_THRESHOLD) {
+      return CompactCapture.read(file, dictionary, rules, progress);
+    }
+    List<BreakpointState> states =
+        CaptureReader.readAllParallel(file, dictionary, rules, ForkJoinPool.commonPool(), progress);
+    CompactCapture.Builder builder = new CompactCapture.Builder(dictionary);
+    for (int i = 0; i < states.size(); i++) {
+      builder.add(states.set(i, null));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Generates a grouped report for the hits of a single breakpoint location. Instead of parsing
+   * both files completely, the hits are selected through the sidecar index of each file and only
+   * those records are read and compared.
+   *
+   * @param file1Path The path to the first capture file.
+   * @param file2Path The path to the second capture file.
+   * @param fileName The file name of the breakpoint location.
+   * @param lineNumber The line number of the breakpoint location.
+   * @return A formatted string report detailing differences between the hits of the location.
+   * @throws IOException If an error occurs while reading the files or their indexes.
+   */
+  public static String generateLocationReport(
+      String file1Path, String file2Path, String fileName, int lineNumber) throws IOException {
+    File file1 = new File(file1Path);
+    File file2 = new File(file2Path);
+    CaptureIndex index1 = CaptureIndex.load(file1);
+    CaptureIndex index2 = CaptureIndex.load(file2);
+    StringDictionary dictionary = new StringDictionary(); // Shared names of both files
+
+    // Seek directly to the hits of the location in both files
+    List<BreakpointState> file1States =
+        CaptureReader.readRecords(
+            file1, index1, index1.findByLocation(fileName, lineNumber), dictionary);
+    List<BreakpointState> file2States =
+        CaptureReader.readRecords(
+            file2, index2, index2.findByLocation(fileName, lineNumber), dictionary);
+
+    return generateGroupedReport(file1States, file2States, file1.getName(), file2.getName());
+  }
+
+  /**
+   * Writes a matrix report comparing the hits of a single breakpoint location in a capture with
+   * the hits of the same location in the most recent runs of a baseline store. The hits are found
+   * through the sidecar index of the capture and the index of the store, so neither the capture
+   * nor the stored runs are parsed completely. The most recent stored run is the baseline of the
+   * matrix and the capture is the second run, so the capture is reported where it differs from the
+   * baseline. The older stored runs follow and show where the baseline itself varies.
+   *
+   * @param filePath The path to the capture file.
+   * @param store The store holding the baseline runs.
+   * @param fileName The file name of the breakpoint location.
+   * @param lineNumber The line number of the breakpoint location.
+   * @param maxRuns The maximum number of stored runs to compare with.
+   * @param rules The rules normalizing the values of the capture and the stored runs.
+   * @param report The writer receiving the report, it is not closed.
+   * @param progress The monitor receiving the progress of the comparison.
+   * @throws IOException If the capture, its index or the store cannot be read.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static void writeStoredBaselineReport(
+      String filePath,
+      BaselineStore store,
+      String fileName,
+      int lineNumber,
+      int maxRuns,
+      NormalizationRules rules,
+      Writer report,
+      ProgressMonitor progress)
+      throws IOException {
+    File file = new File(filePath);
+    CaptureIndex index = CaptureIndex.load(file);
+    StringDictionary dictionary = new StringDictionary(); // Shared names of all runs
+    List<BreakpointState> states =
+        CaptureReader.readRecords(
+            file, index, index.findByLocation(fileName, lineNumber), dictionary, rules);
+    List<BaselineStore.LocationHits> baselines =
+        store.findByLocation(fileName, lineNumber, maxRuns, dictionary, rules);
+    if (baselines.isEmpty()) {
+      report.write("No stored baseline run hit " + fileName + ":" + lineNumber + "\n");
+      report.flush();
+      return;
     }
 
-    return states; // Return the list of parsed BreakpointState objects
+    List<List<BreakpointState>> runs = new ArrayList<>();
+    List<String> runNames = new ArrayList<>();
+    for (BaselineStore.LocationHits baseline : baselines) {
+      runs.add(baseline.hits());
+      runNames.add(baseline.run().id());
+    }
+    runs.add(1, states);
+    runNames.add(1, file.getName() + " (Capture)");
+    MultiRunComparator.writeMatrixReport(runs, runNames, report, progress);
   }
 
   /**
    * Generates a grouped report highlighting differences between two lists of BreakpointState
-   * objects.
+   * objects. The hits of both lists are aligned by location, method and thread first (see {@link
+   * SequenceAligner}), so only corresponding hits are compared and hits that exist in just one file
+   * are reported as extra breakpoints where they occur.
    *
    * @param file1States A list of BreakpointState objects from the first file.
    * @param file2States A list of BreakpointState objects from the second file.
@@ -59,212 +243,386 @@ public class FileComparator {
       List<BreakpointState> file2States,
       String file1Name,
       String file2Name) {
-    StringBuilder report = new StringBuilder();
+    return generateGroupedReport(
+        file1States, file2States, file1Name, file2Name, ForkJoinPool.commonPool());
+  }
 
+  /**
+   * Generates a grouped report like {@link #generateGroupedReport(List, List, String, String)},
+   * comparing the aligned hits in parallel on the given pool. The report does not depend on the
+   * pool, it is the same as for a sequential comparison.
+   *
+   * @param file1States A list of BreakpointState objects from the first file.
+   * @param file2States A list of BreakpointState objects from the second file.
+   * @param file1Name Name of the first file being compared.
+   * @param file2Name Name of the second file being compared.
+   * @param pool The pool comparing the aligned hits.
+   * @return A formatted string report detailing differences between the two lists.
+   */
+  public static String generateGroupedReport(
+      List<BreakpointState> file1States,
+      List<BreakpointState> file2States,
+      String file1Name,
+      String file2Name,
+      ForkJoinPool pool) {
+    StringWriter report = new StringWriter();
+    try {
+      writeGroupedReport(file1States, file2States, file1Name, file2Name, report, pool);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // A StringWriter does not fail
+    }
+    return report.toString();
+  }
+
+  /**
+   * Writes the grouped report of {@link #generateGroupedReport(List, List, String, String)} to a
+   * writer, e.g. a file or a bounded UI model. The report is written section by section while the
+   * hits are compared; only counters and the first breakpoints of each summary list are kept, so
+   * the memory needed does not grow with the number of differences.
+   *
+   * @param file1States A list of BreakpointState objects from the first file.
+   * @param file2States A list of BreakpointState objects from the second file.
+   * @param file1Name Name of the first file being compared.
+   * @param file2Name Name of the second file being compared.
+   * @param report The writer receiving the report, it is not closed.
+   * @param pool The pool comparing the aligned hits.
+   * @throws IOException If writing to the report fails.
+   */
+  public static void writeGroupedReport(
+      List<BreakpointState> file1States,
+      List<BreakpointState> file2States,
+      String file1Name,
+      String file2Name,
+      Writer report,
+      ForkJoinPool pool)
+      throws IOException {
+    writeGroupedReport(
+        file1States, file2States, file1Name, file2Name, report, pool, ProgressMonitor.NONE);
+  }
+
+  /**
+   * Writes the grouped report like {@link #writeGroupedReport(List, List, String, String, Writer,
+   * ForkJoinPool)}, reporting the compared part of the alignment to a monitor. The monitor is
+   * checked after every breakpoint, so a cancelled comparison stops promptly with an incomplete
+   * report.
+   *
+   * @param file1States A list of BreakpointState objects from the first file.
+   * @param file2States A list of BreakpointState objects from the second file.
+   * @param file1Name Name of the first file being compared.
+   * @param file2Name Name of the second file being compared.
+   * @param report The writer receiving the report, it is not closed.
+   * @param pool The pool comparing the aligned hits.
+   * @param progress The monitor receiving the progress.
+   * @return The result of the comparison, for browsing the differing breakpoints.
+   * @throws IOException If writing to the report fails.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static ComparisonResult writeGroupedReport(
+      List<BreakpointState> file1States,
+      List<BreakpointState> file2States,
+      String file1Name,
+      String file2Name,
+      Writer report,
+      ForkJoinPool pool,
+      ProgressMonitor progress)
+      throws IOException {
+    return writeGroupedReport(
+        HitSource.of(file1States),
+        HitSource.of(file2States),
+        file1Name,
+        file2Name,
+        report,
+        pool,
+        progress);
+  }
+
+  /**
+   * Writes the grouped report of two compact captures like {@link #writeGroupedReport(List, List,
+   * String, String, Writer, ForkJoinPool, ProgressMonitor)}. Equal hits are recognized on the
+   * columns of the captures, only the beans of differing hits are built to describe their
+   * differences. The report is the same as for the parsed records.
+   *
+   * @param capture1 The hits of the first file.
+   * @param capture2 The hits of the second file.
+   * @param file1Name Name of the first file being compared.
+   * @param file2Name Name of the second file being compared.
+   * @param report The writer receiving the report, it is not closed.
+   * @param pool The pool comparing the aligned hits.
+   * @param progress The monitor receiving the progress.
+   * @return The result of the comparison, its hits are built from the captures when requested.
+   * @throws IOException If writing to the report fails.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static ComparisonResult writeGroupedReport(
+      CompactCapture capture1,
+      CompactCapture capture2,
+      String file1Name,
+      String file2Name,
+      Writer report,
+      ForkJoinPool pool,
+      ProgressMonitor progress)
+      throws IOException {
+    return writeGroupedReport(
+        HitSource.of(capture1),
+        HitSource.of(capture2),
+        file1Name,
+        file2Name,
+        report,
+        pool,
+        progress);
+  }
+
+  private static ComparisonResult writeGroupedReport(
+      HitSource file1Hits,
+      HitSource file2Hits,
+      String file1Name,
+      String file2Name,
+      Writer report,
+      ForkJoinPool pool,
+      ProgressMonitor progress)
+      throws IOException {
     // Add header for file comparison
     addComparisonHeader(report, file1Name, file2Name);
 
     // Initialize summary trackers
-    List<String> breakpointsWithDiffs = new ArrayList<>();
-    List<String> breakpointsWithoutDiffs = new ArrayList<>();
-    int breakpointsWithDifferences = 0;
-    int breakpointsWithoutDifferences = 0;
+    ReportSummary summary = new ReportSummary();
 
-    int totalBreakpoints = Math.max(file1States.size(), file2States.size());
+    // Align the hits, so an extra hit in one file does not shift all following hits
+    Alignment alignment = SequenceAligner.alignHits(file1Hits, file2Hits);
+    int totalBreakpoints = alignment.size();
+    ComparisonResult result =
+        new ComparisonResult(file1Hits, file1Name, file2Hits, file2Name, alignment);
 
-    // Compare the common breakpoints that exist in both files
-    for (int i = 0; i < Math.min(file1States.size(), file2States.size()); i++) {
-      String location = getBreakpointLocation(i, file1States, file2States);
+    compareAligned(
+        alignment,
+        file1Hits,
+        file1Name,
+        file2Hits,
+        file2Name,
+        pool,
+        progress,
+        (step, index1, index2, differences) -> {
+          if (index1 < 0 || index2 < 0 || differences != null) {
+            result.addDifferingStep(step);
+          }
 
-      // Collect differences for the current breakpoint
-      List<String> differences =
-          getBreakpointDifferences(i, file1States, file1Name, file2States, file2Name);
+          // Hits that exist in only one of the files
+          if (index2 < 0) {
+            addExtraBreakpoint(report, step, file1Hits, index1, file1Name, summary);
+            return;
+          }
+          if (index1 < 0) {
+            addExtraBreakpoint(report, step, file2Hits, index2, file2Name, summary);
+            return;
+          }
 
+          String location = getBreakpointLocation(file1Hits, index1);
+          if (differences == null) {
+            // No differences for this breakpoint
+            summary.addWithoutDifferences("Breakpoint " + (step + 1) + location);
+          } else {
+            // Append differences to the report
+            appendBreakpointWithDifferences(report, step, location, differences);
+            summary.addWithDifferences("Breakpoint " + (step + 1) + location);
+          }
+        });
+
+    // Add summary section
+    summary.write(report, totalBreakpoints);
+    report.flush();
+    return result;
+  }
+
+  /**
+   * Compares the aligned hits of two files and visits every step of the alignment in order. The
+   * hits are compared in parallel in windows of COMPARISON_WINDOW steps, so only the differences
+   * of one window are held in memory.
+   *
+   * @param alignment The alignment of both files.
+   * @param file1Hits The hits of the first file.
+   * @param file1Name Name of the first file being compared.
+   * @param file2Hits The hits of the second file.
+   * @param file2Name Name of the second file being compared.
+   * @param pool The pool comparing the aligned hits.
+   * @param progress The monitor receiving the progress, checked after every step.
+   * @param visitor Receives the steps in order.
+   * @throws IOException If the visitor fails.
+   */
+  static void compareAligned(
+      Alignment alignment,
+      HitSource file1Hits,
+      String file1Name,
+      HitSource file2Hits,
+      String file2Name,
+      ForkJoinPool pool,
+      ProgressMonitor progress,
+      StepVisitor visitor)
+      throws IOException {
+    for (int windowStart = 0; windowStart < alignment.size(); windowStart += COMPARISON_WINDOW) {
+      int windowEnd = Math.min(alignment.size(), windowStart + COMPARISON_WINDOW);
+
+      // Compare the aligned hits of the window in parallel, they are visited in step order below
+      List<List<String>> stepDifferences =
+          ParallelStateComparison.compareAll(
+              alignment,
+              windowStart,
+              windowEnd,
+              file1Hits,
+              file1Name,
+              file2Hits,
+              file2Name,
+              pool);
+
+      for (int step = windowStart; step < windowEnd; step++) {
+        visitor.visit(
+            step,
+            alignment.index1(step),
+            alignment.index2(step),
+            stepDifferences.get(step - windowStart));
+        progress.checkCanceled();
+      }
+      progress.setFraction(windowEnd / (double) alignment.size());
+    }
+  }
+
+  /**
+   * Writes a report of the hits of a run that fall outside a baseline profile of several reference
+   * runs. Values that already varied between the reference runs are not reported as long as the
+   * new value is one the reference runs saw (see {@link BaselineProfile}).
+   *
+   * @param profile The profile of the reference runs.
+   * @param states A list of BreakpointState objects from the checked run.
+   * @param fileName Name of the file of the checked run.
+   * @param report The writer receiving the report, it is not closed.
+   * @param progress The monitor receiving the progress.
+   * @throws IOException If writing to the report fails.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static void writeBaselineReport(
+      BaselineProfile profile,
+      List<BreakpointState> states,
+      String fileName,
+      Writer report,
+      ProgressMonitor progress)
+      throws IOException {
+    report.write("=== Comparing with Reference Runs ===\n");
+    report.write("- Reference Runs: " + profile.getRunCount() + "\n");
+    report.write("- File: " + fileName + "\n\n");
+    report.write("=== Differences Found ===\n\n");
+
+    ReportSummary summary = new ReportSummary();
+    HitSource hits = HitSource.of(states);
+    for (int i = 0; i < states.size(); i++) {
+      if (i % PROGRESS_INTERVAL == 0) {
+        progress.checkCanceled();
+        progress.setFraction((double) i / states.size());
+      }
+      String location = getBreakpointLocation(hits, i);
+      List<String> differences = profile.findUnexpectedValues(states.get(i));
       if (differences.isEmpty()) {
-        // No differences for this breakpoint
-        breakpointsWithoutDiffs.add("Breakpoint " + (i + 1) + location);
-        breakpointsWithoutDifferences++;
+        summary.addWithoutDifferences("Breakpoint " + (i + 1) + location);
       } else {
-        // Append differences to the report
         appendBreakpointWithDifferences(report, i, location, differences);
-        breakpointsWithDiffs.add("Breakpoint " + (i + 1) + location);
-        breakpointsWithDifferences++;
+        summary.addWithDifferences("Breakpoint " + (i + 1) + location);
       }
     }
 
-    // Check and add extra breakpoints
-    addExtraBreakpoints(report, file1States, file2States, file1Name, breakpointsWithDiffs);
-    addExtraBreakpoints(report, file2States, file1States, file2Name, breakpointsWithDiffs);
-
-    // Add summary section
-    appendSummary(
-        report,
-        totalBreakpoints,
-        breakpointsWithDifferences,
-        breakpointsWithoutDifferences,
-        breakpointsWithDiffs,
-        breakpointsWithoutDiffs);
-
-    return report.toString();
+    summary.write(report, states.size());
+    Map<BaselineProfile.Stability, Integer> paths = profile.countPaths();
+    report.write("\n- Reference Paths: ");
+    report.write(paths.get(BaselineProfile.Stability.STABLE) + " stable, ");
+    report.write(paths.get(BaselineProfile.Stability.SMALL_SET) + " with few values, ");
+    report.write(paths.get(BaselineProfile.Stability.VOLATILE) + " volatile\n");
+    report.flush();
+    progress.setFraction(1);
   }
 
   /**
    * Adds a header section for file comparison to the report.
    *
-   * @param report The StringBuilder to append the header to.
+   * @param report The writer to write the header to.
    * @param file1Name Name of the first file being compared.
    * @param file2Name Name of the second file being compared.
+   * @throws IOException If writing to the report fails.
    */
-  private static void addComparisonHeader(
-      StringBuilder report, String file1Name, String file2Name) {
-    report.append("=== Comparing Files ===\n");
-    report.append("- File 1: ").append(file1Name).append("\n");
-    report.append("- File 2: ").append(file2Name).append("\n\n");
-    report.append("=== Differences Found ===\n\n");
+  private static void addComparisonHeader(Writer report, String file1Name, String file2Name)
+      throws IOException {
+    report.write("=== Comparing Files ===\n");
+    report.write("- File 1: " + file1Name + "\n");
+    report.write("- File 2: " + file2Name + "\n\n");
+    report.write("=== Differences Found ===\n\n");
   }
 
   /**
    * Retrieves the file name and line number information for a breakpoint.
    *
-   * @param index The index of the breakpoint.
-   * @param file1States List of breakpoints from the first file.
-   * @param file2States List of breakpoints from the second file.
+   * @param hits The hits of a file.
+   * @param index The index of the breakpoint's hit.
    * @return A string describing the breakpoint's file and line number.
    */
-  private static String getBreakpointLocation(
-      int index, List<BreakpointState> file1States, List<BreakpointState> file2States) {
-    if (index < file1States.size()) {
-      BreakpointState state1 = file1States.get(index);
-      return " (Class: " + state1.getFileName() + ", Line: " + state1.getLineNumber() + ")";
-    } else if (index < file2States.size()) {
-      BreakpointState state2 = file2States.get(index);
-      return " (Class: " + state2.getFileName() + ", Line: " + state2.getLineNumber() + ")";
-    }
-    return "";
-  }
-
-  /**
-   * Compares the breakpoints at the specified index and identifies differences.
-   *
-   * @param index The index of the breakpoint.
-   * @param file1States List of breakpoints from the first file.
-   * @param file2States List of breakpoints from the second file.
-   * @return A list of strings describing differences, or an empty list if no differences exist.
-   */
-  private static List<String> getBreakpointDifferences(
-      int index,
-      List<BreakpointState> file1States,
-      String file1Name,
-      List<BreakpointState> file2States,
-      String file2Name) {
-    if (index < file1States.size() && index < file2States.size()) {
-      return StateComparator.compareBreakpointStates(
-          file1States.get(index), file1Name, file2States.get(index), file2Name);
-    }
-    return new ArrayList<>();
+  private static String getBreakpointLocation(HitSource hits, int index) {
+    return " (Class: " + hits.getFileName(index) + ", Line: " + hits.getLineNumber(index) + ")";
   }
 
   /**
    * Appends details of a breakpoint with differences to the report.
    *
-   * @param report The StringBuilder to append to.
-   * @param index The index of the breakpoint.
+   * @param report The writer to write to.
+   * @param index The position of the breakpoint in the alignment of both files.
    * @param location The file and line number location of the breakpoint.
    * @param differences A list of strings describing the differences.
+   * @throws IOException If writing to the report fails.
    */
   private static void appendBreakpointWithDifferences(
-      StringBuilder report, int index, String location, List<String> differences) {
-    report.append("=== Breakpoint ").append(index + 1).append(location).append(" ===\n");
+      Writer report, int index, String location, List<String> differences) throws IOException {
+    report.write("=== Breakpoint " + (index + 1) + location + " ===\n");
     for (String diff : differences) {
       if (diff.startsWith("  Current Method ->")) {
-        report.append("  Current Method:\n");
+        report.write("  Current Method:\n");
       } else if (diff.startsWith("  Invoked Method ->")) {
-        report.append("  Invoked Method:\n");
+        report.write("  Invoked Method:\n");
       } else if (diff.startsWith("  - ")) {
-        report.append("    ").append(diff.replace("  - ", "- ")).append("\n");
+        report.write("    " + diff.replace("  - ", "- ") + "\n");
       } else {
-        report.append("    ").append(diff).append("\n");
+        report.write("    " + diff + "\n");
       }
     }
-    report.append("\n");
+    report.write("\n");
   }
 
   /**
-   * Appends a summary of the comparison results to the report.
+   * Adds a breakpoint hit that exists in only one of the files to the report. Extra hits are
+   * treated as differences, so breakpoints that were hit in one run but not in the other are
+   * captured as part of the comparison.
    *
-   * @param report The StringBuilder to append the summary to.
-   * @param totalBreakpoints The total number of breakpoints compared.
-   * @param breakpointsWithDifferences The number of breakpoints with differences.
-   * @param breakpointsWithoutDifferences The number of breakpoints without differences.
-   * @param breakpointsWithDiffs A list of breakpoints with differences.
-   * @param breakpointsWithoutDiffs A list of breakpoints without differences.
+   * @param report The writer used to construct the final comparison report.
+   * @param step The position of the hit in the alignment of both files.
+   * @param hits The hits of the file containing the hit.
+   * @param index The index of the hit that has no counterpart in the other file.
+   * @param fileName Name of the file containing the hit.
+   * @param summary The summary tracking breakpoints with differences.
+   * @throws IOException If writing to the report fails.
    */
-  private static void appendSummary(
-      StringBuilder report,
-      int totalBreakpoints,
-      int breakpointsWithDifferences,
-      int breakpointsWithoutDifferences,
-      List<String> breakpointsWithDiffs,
-      List<String> breakpointsWithoutDiffs) {
-    report.append("=== Summary ===\n");
-    report.append("- Total Breakpoints: ").append(totalBreakpoints).append("\n\n");
-    report
-        .append("- Breakpoints with Differences: ")
-        .append(breakpointsWithDifferences)
-        .append("\n");
-    for (String bp : breakpointsWithDiffs) {
-      report.append("  ").append(bp).append("\n");
-    }
-    report.append("\n");
-    report
-        .append("- Breakpoints without Differences: ")
-        .append(breakpointsWithoutDifferences)
-        .append("\n");
-    for (String bp : breakpointsWithoutDiffs) {
-      report.append("  ").append(bp).append("\n");
-    }
-  }
+  private static void addExtraBreakpoint(
+      Writer report,
+      int step,
+      HitSource hits,
+      int index,
+      String fileName,
+      ReportSummary summary)
+      throws IOException {
+    List<String> extraDifferences = new ArrayList<>();
+    extraDifferences.add(
+        "  - Extra Breakpoint in "
+            + fileName
+            + ": "
+            + hits.getFileName(index)
+            + " at line "
+            + hits.getLineNumber(index));
 
-  /**
-   * This helper method checks if the primary file contains extra breakpoints that are not present
-   * in the secondary file. If extra breakpoints are found in the primary file (file1), they are
-   * treated as differences and added to the report. This ensures that breakpoints that exist in the
-   * primary file but not the secondary file are captured as part of the comparison.
-   *
-   * @param report StringBuilder used to construct the final comparison report.
-   * @param primaryStates List of breakpoints for the primary file (e.g., file1).
-   * @param secondaryStates List of breakpoints for the secondary file (e.g., file2).
-   * @param primaryFileName Name of the primary file for logging purposes.
-   * @param breakpointsWithDiffs List to track breakpoints with differences (used for the summary).
-   */
-  private static void addExtraBreakpoints(
-      StringBuilder report,
-      List<BreakpointState> primaryStates,
-      List<BreakpointState> secondaryStates,
-      String primaryFileName,
-      List<String> breakpointsWithDiffs) {
-
-    // Check and add extra breakpoints from the primary file if it has more breakpoints than the
-    // secondary
-    if (primaryStates.size() > secondaryStates.size()) {
-      for (int i = secondaryStates.size(); i < primaryStates.size(); i++) {
-
-        BreakpointState extraBreakpoint = primaryStates.get(i);
-        List<String> extraDifferences = new ArrayList<>();
-        extraDifferences.add(
-            "  - Extra Breakpoint in "
-                + primaryFileName
-                + ": "
-                + extraBreakpoint.getFileName()
-                + " at line "
-                + extraBreakpoint.getLineNumber());
-
-        // Treat the extra breakpoint as a difference and append it
-        appendBreakpointWithDifferences(
-            report, i, getBreakpointLocation(i, primaryStates, secondaryStates), extraDifferences);
-        breakpointsWithDiffs.add(
-            "Breakpoint " + (i + 1) + getBreakpointLocation(i, primaryStates, secondaryStates));
-      }
-    }
+    // Treat the extra breakpoint as a difference and append it
+    String location = getBreakpointLocation(hits, index);
+    appendBreakpointWithDifferences(report, step, location, extraDifferences);
+    summary.addWithDifferences("Breakpoint " + (step + 1) + location);
   }
 }
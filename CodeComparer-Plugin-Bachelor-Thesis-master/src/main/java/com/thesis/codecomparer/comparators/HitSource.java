@@ -0,0 +1,241 @@
+package com.thesis.codecomparer.comparators;
+
+import com.thesis.codecomparer.captureFile.CaptureIndex;
+import com.thesis.codecomparer.captureFile.CaptureReader;
+import com.thesis.codecomparer.captureFile.CompactCapture;
+import com.thesis.codecomparer.captureFile.NormalizationRules;
+import com.thesis.codecomparer.captureFile.StringDictionary;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Read access to the hits of a capture for the comparators, either parsed into beans, held in a
+ * {@link CompactCapture} or read from the capture file through its index. Locations and alignment
+ * keys are read without building beans, the beans of a hit are only requested when it is compared
+ * in detail or reported.
+ */
+interface HitSource {
+
+  /**
+   * Returns the number of hits.
+   *
+   * @return The number of hits.
+   */
+  int size();
+
+  /**
+   * Returns the file name of a hit.
+   *
+   * @param index The index of the hit.
+   * @return The file name.
+   */
+  String getFileName(int index);
+
+  /**
+   * Returns the line number of a hit.
+   *
+   * @param index The index of the hit.
+   * @return The line number.
+   */
+  int getLineNumber(int index);
+
+  /**
+   * Returns the name of the method containing the breakpoint of a hit.
+   *
+   * @param index The index of the hit.
+   * @return The method name, or null.
+   */
+  String getCurrentMethodName(int index);
+
+  /**
+   * Returns the name of the thread of a hit.
+   *
+   * @param index The index of the hit.
+   * @return The thread name.
+   */
+  String getThreadName(int index);
+
+  /**
+   * Returns the beans of a hit.
+   *
+   * @param index The index of the hit.
+   * @return The hit.
+   */
+  BreakpointState getState(int index);
+
+  /**
+   * Compares a hit with a hit of another source.
+   *
+   * @param index The index of the hit in this source.
+   * @param name Name of the file of this source.
+   * @param other The other source.
+   * @param otherIndex The index of the hit in the other source.
+   * @param otherName Name of the file of the other source.
+   * @return The differences, see {@link StateComparator#compareBreakpointStates}.
+   */
+  default List<String> compare(
+      int index, String name, HitSource other, int otherIndex, String otherName) {
+    return StateComparator.compareBreakpointStates(
+        getState(index), name, other.getState(otherIndex), otherName);
+  }
+
+  /**
+   * Returns a source of parsed hits.
+   *
+   * @param states The hits.
+   * @return The source.
+   */
+  static HitSource of(List<BreakpointState> states) {
+    return new StateList(states);
+  }
+
+  /**
+   * Returns a source of the hits of a compact capture.
+   *
+   * @param capture The capture.
+   * @return The source.
+   */
+  static HitSource of(CompactCapture capture) {
+    return new Compact(capture);
+  }
+
+  /**
+   * Returns a source reading the hits of a capture file through its sidecar index. Locations are
+   * taken from the index, and the record of a hit is read from the file whenever its beans are
+   * requested, so no hit is held in memory.
+   *
+   * @param captureFile The capture file.
+   * @param index The index of the capture file.
+   * @param rules The rules normalizing the values of the read hits.
+   * @return The source, it throws an {@link UncheckedIOException} if a record cannot be read.
+   */
+  static HitSource of(File captureFile, CaptureIndex index, NormalizationRules rules) {
+    return new Indexed(captureFile, index, rules);
+  }
+
+  /** Hits parsed into beans. */
+  record StateList(List<BreakpointState> states) implements HitSource {
+    @Override
+    public int size() {
+      return states.size();
+    }
+
+    @Override
+    public String getFileName(int index) {
+      return states.get(index).getFileName();
+    }
+
+    @Override
+    public int getLineNumber(int index) {
+      return states.get(index).getLineNumber();
+    }
+
+    @Override
+    public String getCurrentMethodName(int index) {
+      BreakpointState state = states.get(index);
+      return state.getCurrentMethodState() != null
+          ? state.getCurrentMethodState().getMethodName()
+          : null;
+    }
+
+    @Override
+    public String getThreadName(int index) {
+      return states.get(index).getThreadName();
+    }
+
+    @Override
+    public BreakpointState getState(int index) {
+      return states.get(index);
+    }
+  }
+
+  /** Hits of a compact capture, equal hits are recognized on its columns. */
+  record Compact(CompactCapture capture) implements HitSource {
+    @Override
+    public int size() {
+      return capture.size();
+    }
+
+    @Override
+    public String getFileName(int index) {
+      return capture.getFileName(index);
+    }
+
+    @Override
+    public int getLineNumber(int index) {
+      return capture.getLineNumber(index);
+    }
+
+    @Override
+    public String getCurrentMethodName(int index) {
+      return capture.getCurrentMethodName(index);
+    }
+
+    @Override
+    public String getThreadName(int index) {
+      return capture.getThreadName(index);
+    }
+
+    @Override
+    public BreakpointState getState(int index) {
+      return capture.toState(index);
+    }
+
+    @Override
+    public List<String> compare(
+        int index, String name, HitSource other, int otherIndex, String otherName) {
+      if (other instanceof Compact compact
+          && capture.sameValues(index, compact.capture(), otherIndex)) {
+        return List.of(); // Equal hits are found without building their beans
+      }
+      return HitSource.super.compare(index, name, other, otherIndex, otherName);
+    }
+  }
+
+  /** Hits read from a capture file through its index, one record at a time. */
+  record Indexed(File captureFile, CaptureIndex captureIndex, NormalizationRules rules)
+      implements HitSource {
+    @Override
+    public int size() {
+      return captureIndex.getEntries().size();
+    }
+
+    @Override
+    public String getFileName(int index) {
+      return captureIndex.getEntries().get(index).fileName();
+    }
+
+    @Override
+    public int getLineNumber(int index) {
+      return captureIndex.getEntries().get(index).lineNumber();
+    }
+
+    @Override
+    public String getCurrentMethodName(int index) {
+      return captureIndex.getEntries().get(index).methodName();
+    }
+
+    @Override
+    public String getThreadName(int index) {
+      return captureIndex.getEntries().get(index).threadName();
+    }
+
+    @Override
+    public BreakpointState getState(int index) {
+      try {
+        return CaptureReader.readRecords(
+                captureFile,
+                captureIndex,
+                List.of(captureIndex.getEntries().get(index)),
+                new StringDictionary(),
+                rules)
+            .get(0);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
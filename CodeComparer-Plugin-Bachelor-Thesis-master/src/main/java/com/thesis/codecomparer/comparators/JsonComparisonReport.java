@@ -0,0 +1,203 @@
+package com.thesis.codecomparer.comparators;
+
+import com.google.gson.stream.JsonWriter;
+import com.thesis.codecomparer.captureFile.CompactCapture;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Machine readable report of a baseline compared with one or more candidate captures, e.g. for a
+ * CI job. The report is streamed like the grouped report, every candidate is written while it is
+ * compared:
+ *
+ * <pre>
+ * {"baseline": "base.txt",
+ *  "candidates": [{"file": "run.txt",
+ *                  "differences": [{"breakpoint": 12, "file": "Foo", "line": 10,
+ *                                   "kind": "changed", "details": ["..."]}],
+ *                  "breakpoints": 120, "breakpointsWithDifferences": 1, "extraBreakpoints": 0}],
+ *  "differencesFound": true}
+ * </pre>
+ *
+ * Kind "changed" lists the differences of a hit found in both captures, kind "extra" a hit found
+ * only in the capture named by "inFile". A comparison that failed, e.g. because a candidate cannot
+ * be read, ends with an "error" field after "differencesFound", which then only covers the
+ * candidates listed. If it failed while a candidate was written, the report is not terminated.
+ */
+public class JsonComparisonReport implements Closeable {
+
+  private final Writer out; // Receives the report
+  private final JsonWriter json; // Writer of the report
+  private final String baselineName; // Name of the baseline capture
+  private boolean differencesFound; // Whether any candidate differs from the baseline
+  private boolean writingCandidate; // Whether a candidate was started but not ended
+  private String error; // Why the comparison failed, or null
+
+  /**
+   * Starts a report.
+   *
+   * @param out The writer receiving the report, it is closed with the report.
+   * @param baselineName The name of the baseline capture.
+   * @throws IOException If writing to the report fails.
+   */
+  public JsonComparisonReport(Writer out, String baselineName) throws IOException {
+    this.out = out;
+    this.json = new JsonWriter(out);
+    this.baselineName = baselineName;
+    json.setIndent("  ");
+    json.beginObject();
+    json.name("baseline").value(baselineName);
+    json.name("candidates").beginArray();
+  }
+
+  /**
+   * Compares a candidate with the baseline and adds the result to the report.
+   *
+   * @param baseline The hits of the baseline.
+   * @param candidate The hits of the candidate.
+   * @param candidateName The name of the candidate capture.
+   * @param pool The pool comparing the aligned hits.
+   * @return The number of breakpoints that differ or exist in only one of the captures.
+   * @throws IOException If writing to the report fails.
+   */
+  public int addCandidate(
+      List<BreakpointState> baseline,
+      List<BreakpointState> candidate,
+      String candidateName,
+      ForkJoinPool pool)
+      throws IOException {
+    return addCandidate(HitSource.of(baseline), HitSource.of(candidate), candidateName, pool);
+  }
+
+  /**
+   * Compares a compact candidate capture with a compact baseline like {@link #addCandidate(List,
+   * List, String, ForkJoinPool)}, building only the beans of differing hits.
+   *
+   * @param baseline The hits of the baseline.
+   * @param candidate The hits of the candidate.
+   * @param candidateName The name of the candidate capture.
+   * @param pool The pool comparing the aligned hits.
+   * @return The number of breakpoints that differ or exist in only one of the captures.
+   * @throws IOException If writing to the report fails.
+   */
+  public int addCandidate(
+      CompactCapture baseline, CompactCapture candidate, String candidateName, ForkJoinPool pool)
+      throws IOException {
+    return addCandidate(HitSource.of(baseline), HitSource.of(candidate), candidateName, pool);
+  }
+
+  private int addCandidate(
+      HitSource baseline, HitSource candidate, String candidateName, ForkJoinPool pool)
+      throws IOException {
+    Alignment alignment = SequenceAligner.alignHits(baseline, candidate);
+    int[] counts = new int[2]; // Breakpoints with differences, extra breakpoints
+
+    writingCandidate = true;
+    json.beginObject();
+    json.name("file").value(candidateName);
+    json.name("differences").beginArray();
+    FileComparator.compareAligned(
+        alignment,
+        baseline,
+        baselineName,
+        candidate,
+        candidateName,
+        pool,
+        ProgressMonitor.NONE,
+        (step, index1, index2, differences) -> {
+          if (index1 < 0 || index2 < 0) {
+            counts[1]++;
+            boolean inBaseline = index2 < 0;
+            writeBreakpoint(
+                step,
+                inBaseline ? baseline : candidate,
+                inBaseline ? index1 : index2,
+                "extra",
+                inBaseline ? baselineName : candidateName,
+                null);
+          } else if (differences != null) {
+            counts[0]++;
+            writeBreakpoint(step, baseline, index1, "changed", null, differences);
+          }
+        });
+    json.endArray();
+    json.name("breakpoints").value(alignment.size());
+    json.name("breakpointsWithDifferences").value(counts[0]);
+    json.name("extraBreakpoints").value(counts[1]);
+    json.endObject();
+    json.flush();
+    writingCandidate = false;
+
+    int differing = counts[0] + counts[1];
+    differencesFound |= differing > 0;
+    return differing;
+  }
+
+  /**
+   * Returns whether any candidate added so far differs from the baseline.
+   *
+   * @return True if a candidate differs.
+   */
+  public boolean isDifferencesFound() {
+    return differencesFound;
+  }
+
+  /**
+   * Marks the comparison as failed, so the report does not look like a complete comparison.
+   *
+   * @param error Why the comparison failed.
+   */
+  public void setError(String error) {
+    this.error = error;
+  }
+
+  /**
+   * Ends the report and closes its writer. The report of a failed comparison is left unterminated
+   * if it failed while a candidate was written.
+   *
+   * @throws IOException If writing to the report fails.
+   */
+  @Override
+  public void close() throws IOException {
+    if (writingCandidate) {
+      out.close(); // The open objects cannot be ended, an incomplete document signals the failure
+      return;
+    }
+    json.endArray();
+    json.name("differencesFound").value(differencesFound);
+    if (error != null) {
+      json.name("error").value(error);
+    }
+    json.endObject();
+    json.flush();
+    out.write("\n");
+    json.close();
+  }
+
+  private void writeBreakpoint(
+      int step, HitSource hits, int index, String kind, String inFile, List<String> differences)
+      throws IOException {
+    json.beginObject();
+    json.name("breakpoint").value(step + 1);
+    json.name("file").value(hits.getFileName(index));
+    json.name("line").value(hits.getLineNumber(index));
+    json.name("kind").value(kind);
+    if (inFile != null) {
+      json.name("inFile").value(inFile);
+    }
+    if (differences != null) {
+      json.name("details").beginArray();
+      for (String diff : differences) {
+        String detail = diff.strip();
+        json.value(detail.startsWith("- ") ? detail.substring(2) : detail);
+      }
+      json.endArray();
+    }
+    json.endObject();
+  }
+}
@@ -0,0 +1,241 @@
+package com.thesis.codecomparer.comparators;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.thesis.codecomparer.captureFile.RecordDigest;
+import java.util.*;
+
+/**
+ * Structural diff of two serialized values. Instead of printing both complete JSON values, the diff
+ * reports every added, removed and changed part of the value by its JSON path, e.g. {@code
+ * $.items[2].price: 9.99 != 10.49}.
+ *
+ * <p>Both values are parsed and every subtree gets a digest first. Subtrees with equal digests are
+ * skipped without looking into them, object members are matched by name, and array elements are
+ * aligned by their digests with the {@link SequenceAligner}, so an inserted element is reported as
+ * one added element instead of changing all following ones.
+ */
+public class JsonTreeDiff {
+
+  private static final int MAX_VALUE_LENGTH = 80; // Longer values are shortened in the report
+  private static final long NULL_DIGEST = 0x5bd1e9955bd1e995L;
+  private static final long OBJECT_SEED = 0x27d4eb2f165667c5L;
+  private static final long ARRAY_SEED = 0x165667b19e3779f9L;
+
+  /** Kind of a structural difference. */
+  public enum Kind {
+    ADDED,
+    REMOVED,
+    CHANGED
+  }
+
+  /**
+   * A single structural difference.
+   *
+   * @param kind Whether the value was added, removed or changed.
+   * @param path JSON path of the value, e.g. {@code $.items[2].price}.
+   * @param oldValue The shortened value in the first JSON, or null if it was added.
+   * @param newValue The shortened value in the second JSON, or null if it was removed.
+   */
+  public record Difference(Kind kind, String path, String oldValue, String newValue) {
+
+    /**
+     * Formats the difference as one line for the report.
+     *
+     * @return The formatted difference.
+     */
+    public String describe() {
+      return switch (kind) {
+        case ADDED -> path + " added: " + newValue;
+        case REMOVED -> path + " removed: " + oldValue;
+        case CHANGED -> path + ": " + oldValue + " != " + newValue;
+      };
+    }
+  }
+
+  private final Map<JsonElement, Long> digests = new IdentityHashMap<>(); // Digest per subtree
+  private final List<Difference> differences = new ArrayList<>();
+
+  private JsonTreeDiff() {}
+
+  /**
+   * Computes the structural differences between two serialized values. Values that are not valid
+   * JSON are compared as plain strings.
+   *
+   * @param json1 The value from the first file.
+   * @param json2 The value from the second file.
+   * @return The differences in document order, or an empty list if both values are equal.
+   */
+  public static List<Difference> diff(String json1, String json2) {
+    if (Objects.equals(json1, json2)) {
+      return List.of();
+    }
+
+    JsonTreeDiff diff = new JsonTreeDiff();
+    diff.diff("$", parse(json1), parse(json2));
+    return diff.differences;
+  }
+
+  // Parses a serialized value, keeping values that are no JSON as a string primitive
+  private static JsonElement parse(String json) {
+    if (json == null) {
+      return null;
+    }
+    try {
+      return JsonParser.parseString(json);
+    } catch (JsonParseException e) {
+      return new JsonPrimitive(json);
+    }
+  }
+
+  private void diff(String path, JsonElement element1, JsonElement element2) {
+    if (element1 == null || element2 == null) {
+      if (element1 != element2) {
+        differences.add(
+            new Difference(Kind.CHANGED, path, shorten(element1), shorten(element2)));
+      }
+      return;
+    }
+    if (digest(element1) == digest(element2)) {
+      return; // Equal subtrees
+    }
+
+    if (element1.isJsonObject() && element2.isJsonObject()) {
+      diffObjects(path, element1.getAsJsonObject(), element2.getAsJsonObject());
+    } else if (element1.isJsonArray() && element2.isJsonArray()) {
+      diffArrays(path, element1.getAsJsonArray(), element2.getAsJsonArray());
+    } else {
+      differences.add(new Difference(Kind.CHANGED, path, shorten(element1), shorten(element2)));
+    }
+  }
+
+  // Matches the members of both objects by name
+  private void diffObjects(String path, JsonObject object1, JsonObject object2) {
+    for (Map.Entry<String, JsonElement> member : object1.entrySet()) {
+      String memberPath = memberPath(path, member.getKey());
+      JsonElement value2 = object2.get(member.getKey());
+      if (value2 == null) {
+        differences.add(new Difference(Kind.REMOVED, memberPath, shorten(member.getValue()), null));
+      } else {
+        diff(memberPath, member.getValue(), value2);
+      }
+    }
+    for (Map.Entry<String, JsonElement> member : object2.entrySet()) {
+      if (!object1.has(member.getKey())) {
+        differences.add(
+            new Difference(
+                Kind.ADDED, memberPath(path, member.getKey()), null, shorten(member.getValue())));
+      }
+    }
+  }
+
+  // Aligns the elements of both arrays by their digests
+  private void diffArrays(String path, JsonArray array1, JsonArray array2) {
+    Map<Long, Integer> ids = new HashMap<>();
+    Alignment alignment = SequenceAligner.align(elementKeys(array1, ids), elementKeys(array2, ids));
+
+    // Unmatched elements between two matches are compared pairwise, the rest is added or removed
+    List<Integer> removed = new ArrayList<>();
+    List<Integer> added = new ArrayList<>();
+    for (int step = 0; step <= alignment.size(); step++) {
+      if (step < alignment.size() && !alignment.isMatch(step)) {
+        if (alignment.index1(step) >= 0) {
+          removed.add(alignment.index1(step));
+        } else {
+          added.add(alignment.index2(step));
+        }
+        continue;
+      }
+
+      int paired = Math.min(removed.size(), added.size());
+      for (int i = 0; i < paired; i++) {
+        diff(
+            path + "[" + removed.get(i) + "]",
+            array1.get(removed.get(i)),
+            array2.get(added.get(i)));
+      }
+      for (int i = paired; i < removed.size(); i++) {
+        int index = removed.get(i);
+        differences.add(
+            new Difference(
+                Kind.REMOVED, path + "[" + index + "]", shorten(array1.get(index)), null));
+      }
+      for (int i = paired; i < added.size(); i++) {
+        int index = added.get(i);
+        differences.add(
+            new Difference(Kind.ADDED, path + "[" + index + "]", null, shorten(array2.get(index))));
+      }
+      removed.clear();
+      added.clear();
+    }
+  }
+
+  private int[] elementKeys(JsonArray array, Map<Long, Integer> ids) {
+    int[] keys = new int[array.size()];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = ids.computeIfAbsent(digest(array.get(i)), k -> ids.size());
+    }
+    return keys;
+  }
+
+  // Computes the digest of a subtree once, object digests do not depend on the member order
+  private long digest(JsonElement element) {
+    Long cached = digests.get(element);
+    if (cached != null) {
+      return cached;
+    }
+
+    long digest;
+    if (element.isJsonObject()) {
+      digest = OBJECT_SEED;
+      for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+        digest += mix(RecordDigest.of(member.getKey()) * 31 + digest(member.getValue()));
+      }
+    } else if (element.isJsonArray()) {
+      digest = ARRAY_SEED;
+      for (JsonElement item : element.getAsJsonArray()) {
+        digest = mix(digest * 31 + digest(item));
+      }
+    } else if (element.isJsonPrimitive()) {
+      JsonPrimitive primitive = element.getAsJsonPrimitive();
+      char type = primitive.isString() ? 's' : primitive.isNumber() ? 'n' : 'b';
+      digest = RecordDigest.of(type + primitive.getAsString());
+    } else {
+      digest = NULL_DIGEST;
+    }
+    digests.put(element, digest);
+    return digest;
+  }
+
+  // Spreads the bits of a digest (finalizer of MurmurHash3)
+  private static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+
+  private static String memberPath(String path, String name) {
+    boolean identifier = !name.isEmpty() && Character.isJavaIdentifierStart(name.charAt(0));
+    for (int i = 1; identifier && i < name.length(); i++) {
+      identifier = Character.isJavaIdentifierPart(name.charAt(i));
+    }
+    return identifier ? path + "." + name : path + "['" + name.replace("'", "\\'") + "']";
+  }
+
+  private static String shorten(JsonElement element) {
+    if (element == null) {
+      return "null";
+    }
+    String value = element.toString();
+    return value.length() <= MAX_VALUE_LENGTH
+        ? value
+        : value.substring(0, MAX_VALUE_LENGTH - 3) + "...";
+  }
+}
@@ -0,0 +1,346 @@
+package com.thesis.codecomparer.comparators;
+
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compares a baseline run with any number of candidate runs in one pass, e.g. the captures of one
+ * program against several versions of a library.
+ *
+ * <p>Every candidate is aligned with the baseline once (see {@link SequenceAligner}), so N runs
+ * need N - 1 alignments instead of a pairwise comparison of all runs. For every hit of the
+ * baseline, the runs are then grouped into classes of equal hits, where equal means that {@link
+ * StateComparator} finds no differences, like in the grouped report of two files. Class A is the
+ * class of the baseline, further classes are named B, C, ... in the order of the runs. The report
+ * lists one matrix row for every hit where a run diverges, followed by the differences of one
+ * representative run of every diverging class, and ends with a summary per run.
+ */
+public class MultiRunComparator {
+
+  private static final char MISSING = '-'; // Matrix cell of a run without the hit
+  private static final int MAX_SAMPLES = ReportSummary.MAX_SAMPLES; // Locations listed per run
+  private static final int PROGRESS_INTERVAL = 1024; // Baseline hits between progress updates
+  private static final double ALIGNMENT_FRACTION = 0.5; // Part of the progress for the alignments
+
+  private MultiRunComparator() {
+    // Only static helpers
+  }
+
+  /**
+   * Generates the matrix report of a baseline and its candidate runs.
+   *
+   * @param runs The hits of every run, the first run is the baseline.
+   * @param runNames The names of the runs, in the same order.
+   * @return The formatted matrix report.
+   */
+  public static String generateMatrixReport(
+      List<List<BreakpointState>> runs, List<String> runNames) {
+    StringWriter report = new StringWriter();
+    try {
+      writeMatrixReport(runs, runNames, report, ProgressMonitor.NONE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e); // A StringWriter does not fail
+    }
+    return report.toString();
+  }
+
+  /**
+   * Writes the matrix report of a baseline and its candidate runs to a writer. Like the grouped
+   * report, it is written while the hits are compared and only counters and the first locations
+   * of every run are kept in memory.
+   *
+   * @param runs The hits of every run, the first run is the baseline.
+   * @param runNames The names of the runs, in the same order.
+   * @param report The writer receiving the report, it is not closed.
+   * @param progress The monitor receiving the progress.
+   * @throws IOException If writing to the report fails.
+   * @throws IllegalArgumentException If there are less than two runs or not one name per run.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static void writeMatrixReport(
+      List<List<BreakpointState>> runs,
+      List<String> runNames,
+      Writer report,
+      ProgressMonitor progress)
+      throws IOException {
+    if (runs.size() < 2 || runs.size() != runNames.size()) {
+      throw new IllegalArgumentException("Expected a baseline, at least one candidate and names");
+    }
+
+    List<BreakpointState> baseline = runs.get(0);
+    int runCount = runs.size();
+
+    // Align every candidate with the baseline, matches[run][i] is the hit matching baseline hit i
+    int[][] matches = new int[runCount][];
+    RunSummary[] summaries = new RunSummary[runCount];
+    summaries[0] = new RunSummary(runNames.get(0));
+    for (int run = 1; run < runCount; run++) {
+      summaries[run] = new RunSummary(runNames.get(run));
+      matches[run] = alignWithBaseline(baseline, runs.get(run), summaries[run]);
+      progress.checkCanceled();
+      progress.setFraction(ALIGNMENT_FRACTION * run / (runCount - 1));
+    }
+
+    addComparisonHeader(report, runNames);
+
+    BreakpointState[] states = new BreakpointState[runCount]; // The hits of the runs, or null
+    char[] classes = new char[runCount];
+    int divergentBreakpoints = 0;
+    for (int i = 0; i < baseline.size(); i++) {
+      if (i % PROGRESS_INTERVAL == 0) {
+        progress.checkCanceled();
+        progress.setFraction(ALIGNMENT_FRACTION + (1 - ALIGNMENT_FRACTION) * i / baseline.size());
+      }
+      BreakpointState baselineState = baseline.get(i);
+      states[0] = baselineState;
+      for (int run = 1; run < runCount; run++) {
+        int match = matches[run][i];
+        states[run] = match < 0 ? null : runs.get(run).get(match);
+      }
+      if (!assignClasses(states, classes)) {
+        continue; // All runs captured equal hits
+      }
+
+      divergentBreakpoints++;
+      String breakpoint = "Breakpoint " + (i + 1) + getBreakpointLocation(baselineState);
+      for (int run = 1; run < runCount; run++) {
+        if (classes[run] != 'A') {
+          summaries[run].addDivergence(breakpoint, classes[run] == MISSING);
+        }
+      }
+      appendDivergentBreakpoint(report, breakpoint, runs, runNames, matches, i, classes);
+    }
+
+    writeSummary(report, baseline.size(), divergentBreakpoints, summaries);
+    report.flush();
+    progress.setFraction(1);
+  }
+
+  // Aligns a candidate with the baseline and counts its hits that do not exist in the baseline
+  private static int[] alignWithBaseline(
+      List<BreakpointState> baseline, List<BreakpointState> candidate, RunSummary summary) {
+    Alignment alignment = SequenceAligner.alignHits(baseline, candidate);
+    int[] matches = new int[baseline.size()];
+    Arrays.fill(matches, -1);
+    for (int step = 0; step < alignment.size(); step++) {
+      if (alignment.isMatch(step)) {
+        matches[alignment.index1(step)] = alignment.index2(step);
+      } else if (alignment.index1(step) < 0) {
+        summary.addExtraHit(
+            "Hit "
+                + (alignment.index2(step) + 1)
+                + getBreakpointLocation(candidate.get(alignment.index2(step))));
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Groups the runs into classes of equal hits. A run joins the class of the first earlier run
+   * whose hit is equal to its own, compared with the first run of every class. The baseline gets
+   * class A, every further class the next letter, and runs without the hit get {@link #MISSING}.
+   *
+   * @param states The hits of the runs at one baseline hit, null for runs without it.
+   * @param classes Receives the class of every run.
+   * @return True if any run is not in class A.
+   */
+  private static boolean assignClasses(BreakpointState[] states, char[] classes) {
+    boolean divergent = false;
+    classes[0] = 'A';
+    char nextClass = 'B';
+    for (int run = 1; run < states.length; run++) {
+      if (states[run] == null) {
+        classes[run] = MISSING;
+        divergent = true;
+        continue;
+      }
+
+      classes[run] = 0;
+      for (int other = 0; other < run && classes[run] == 0; other++) {
+        if (classes[other] != MISSING
+            && isFirstOfClass(classes, other)
+            && StateComparator.isEqual(states[other], states[run])) {
+          classes[run] = classes[other];
+        }
+      }
+      if (classes[run] == 0) {
+        classes[run] = nextClass++;
+      }
+      divergent |= classes[run] != 'A';
+    }
+    return divergent;
+  }
+
+  /**
+   * Adds a header section listing the compared runs to the report.
+   *
+   * @param report The writer to write the header to.
+   * @param runNames The names of the runs, the first run is the baseline.
+   * @throws IOException If writing to the report fails.
+   */
+  private static void addComparisonHeader(Writer report, List<String> runNames)
+      throws IOException {
+    report.write("=== Comparing Runs ===\n");
+    report.write("- Run 1 (Baseline): " + runNames.get(0) + "\n");
+    for (int run = 1; run < runNames.size(); run++) {
+      report.write("- Run " + (run + 1) + ": " + runNames.get(run) + "\n");
+    }
+    report.write("\n");
+    report.write("=== Divergent Breakpoints ===\n");
+    report.write("Equal values share a class, A is the baseline and - marks a missing hit.\n\n");
+  }
+
+  /**
+   * Appends the matrix row of a divergent breakpoint to the report, followed by the differences of
+   * the first run of every class that is not the baseline's class.
+   */
+  private static void appendDivergentBreakpoint(
+      Writer report,
+      String breakpoint,
+      List<List<BreakpointState>> runs,
+      List<String> runNames,
+      int[][] matches,
+      int hit,
+      char[] classes)
+      throws IOException {
+    StringBuilder row = new StringBuilder("=== ").append(breakpoint).append(" ===\n  Runs:   ");
+    for (int run = 0; run < classes.length; run++) {
+      row.append(String.format(" %3d", run + 1));
+    }
+    row.append("\n  Class:  ");
+    for (char runClass : classes) {
+      row.append("   ").append(runClass);
+    }
+    report.write(row.append("\n").toString());
+
+    BreakpointState baselineState = runs.get(0).get(hit);
+    for (int run = 1; run < classes.length; run++) {
+      if (classes[run] == 'A' || classes[run] == MISSING || !isFirstOfClass(classes, run)) {
+        continue;
+      }
+
+      report.write("  Class " + classes[run] + " (" + classMembers(classes, run) + "):\n");
+      List<String> differences =
+          StateComparator.compareBreakpointStates(
+              baselineState,
+              runNames.get(0),
+              runs.get(run).get(matches[run][hit]),
+              runNames.get(run));
+      for (String diff : differences) {
+        report.write("    " + diff.strip() + "\n");
+      }
+    }
+    report.write("\n");
+  }
+
+  private static boolean isFirstOfClass(char[] classes, int run) {
+    for (int other = 0; other < run; other++) {
+      if (classes[other] == classes[run]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Lists the runs of the class of the given run, e.g. "Run 3, Run 5"
+  private static String classMembers(char[] classes, int run) {
+    List<String> members = new ArrayList<>();
+    for (int other = run; other < classes.length; other++) {
+      if (classes[other] == classes[run]) {
+        members.add("Run " + (other + 1));
+      }
+    }
+    return String.join(", ", members);
+  }
+
+  /**
+   * Writes the summary of the comparison, with the locations where every run diverges from the
+   * baseline.
+   */
+  private static void writeSummary(
+      Writer report, int totalBreakpoints, int divergentBreakpoints, RunSummary[] summaries)
+      throws IOException {
+    report.write("=== Summary ===\n");
+    report.write("- Baseline Breakpoints: " + totalBreakpoints + "\n");
+    report.write("- Divergent Breakpoints: " + divergentBreakpoints + "\n\n");
+    for (int run = 1; run < summaries.length; run++) {
+      summaries[run].write(report, run + 1);
+    }
+  }
+
+  /**
+   * Retrieves the file name and line number information for a breakpoint.
+   *
+   * @param state The breakpoint.
+   * @return A string describing the breakpoint's file and line number.
+   */
+  private static String getBreakpointLocation(BreakpointState state) {
+    return " (Class: " + state.getFileName() + ", Line: " + state.getLineNumber() + ")";
+  }
+
+  /** Counters and the first divergent locations of one candidate run. */
+  private static class RunSummary {
+
+    private final String runName; // Name of the run
+    private int changed; // Baseline hits with different values in this run
+    private int missing; // Baseline hits without a matching hit in this run
+    private int extra; // Hits of this run that do not exist in the baseline
+    private final List<String> divergences = new ArrayList<>(); // First divergent breakpoints
+    private final List<String> extraHits = new ArrayList<>(); // First extra hits
+
+    RunSummary(String runName) {
+      this.runName = runName;
+    }
+
+    void addDivergence(String breakpoint, boolean isMissing) {
+      if (isMissing) {
+        missing++;
+      } else {
+        changed++;
+      }
+      if (divergences.size() < MAX_SAMPLES) {
+        divergences.add(breakpoint + (isMissing ? " [missing]" : " [changed]"));
+      }
+    }
+
+    void addExtraHit(String hit) {
+      extra++;
+      if (extraHits.size() < MAX_SAMPLES) {
+        extraHits.add(hit);
+      }
+    }
+
+    void write(Writer report, int runNumber) throws IOException {
+      report.write("- Run " + runNumber + ": " + runName + "\n");
+      if (changed + missing + extra == 0) {
+        report.write("  Same as the baseline\n\n");
+        return;
+      }
+
+      report.write("  Changed: " + changed + ", Missing: " + missing + ", Extra: " + extra + "\n");
+      writeSamples(report, divergences, changed + missing);
+      if (extra > 0) {
+        report.write("  Extra hits:\n");
+        writeSamples(report, extraHits, extra);
+      }
+      report.write("\n");
+    }
+
+    private static void writeSamples(Writer report, List<String> samples, int count)
+        throws IOException {
+      for (String sample : samples) {
+        report.write("    " + sample + "\n");
+      }
+      if (count > samples.size()) {
+        report.write("    ... and " + (count - samples.size()) + " more\n");
+      }
+    }
+  }
+}
@@ -0,0 +1,118 @@
+package com.thesis.codecomparer.comparators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compares all aligned pairs of breakpoint hits on a {@link ForkJoinPool}.
+ *
+ * <p>The comparisons of different pairs are independent, so the steps of the alignment are split
+ * into ranges that are compared in parallel. Every result is stored at the position of its step,
+ * and the report is assembled from the results in step order afterwards, so it is identical to a
+ * sequential comparison.
+ */
+class ParallelStateComparison {
+
+  private static final int STEPS_PER_TASK = 512; // Smaller ranges are compared without splitting
+
+  private ParallelStateComparison() {
+    // Only static helpers
+  }
+
+  /**
+   * Compares the hits of every matched step in a range of an alignment.
+   *
+   * @param alignment The alignment of both files.
+   * @param from The first step to compare.
+   * @param to The end of the steps to compare, exclusive.
+   * @param file1Hits The hits of the first file.
+   * @param file1Name Name of the first file.
+   * @param file2Hits The hits of the second file.
+   * @param file2Name Name of the second file.
+   * @param pool The pool running the comparisons.
+   * @return The differences per step of the range, null for steps without differences or without
+   *     a pair.
+   */
+  static List<List<String>> compareAll(
+      Alignment alignment,
+      int from,
+      int to,
+      HitSource file1Hits,
+      String file1Name,
+      HitSource file2Hits,
+      String file2Name,
+      ForkJoinPool pool) {
+    // Every task only sets the elements of its own steps, which is safe without locking
+    List<List<String>> results = new ArrayList<>(Collections.nCopies(to - from, null));
+    ComparisonTask task =
+        new ComparisonTask(
+            alignment, file1Hits, file1Name, file2Hits, file2Name, results, from, from, to);
+    if (results.size() <= STEPS_PER_TASK) {
+      task.compute(); // Not worth handing over to the pool
+    } else {
+      pool.invoke(task);
+    }
+    return results;
+  }
+
+  /** Fork/join task comparing a range of steps by splitting it in halves. */
+  private static class ComparisonTask extends RecursiveAction {
+
+    private final Alignment alignment;
+    private final HitSource file1Hits;
+    private final String file1Name;
+    private final HitSource file2Hits;
+    private final String file2Name;
+    private final List<List<String>> results; // Differences per step
+    private final int resultsStart; // Step of the first element of the results
+    private final int from; // First step of the range
+    private final int to; // End of the range, exclusive
+
+    ComparisonTask(
+        Alignment alignment,
+        HitSource file1Hits,
+        String file1Name,
+        HitSource file2Hits,
+        String file2Name,
+        List<List<String>> results,
+        int resultsStart,
+        int from,
+        int to) {
+      this.alignment = alignment;
+      this.file1Hits = file1Hits;
+      this.file1Name = file1Name;
+      this.file2Hits = file2Hits;
+      this.file2Name = file2Name;
+      this.results = results;
+      this.resultsStart = resultsStart;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > STEPS_PER_TASK) {
+        int middle = (from + to) >>> 1;
+        invokeAll(split(from, middle), split(middle, to));
+        return;
+      }
+
+      for (int step = from; step < to; step++) {
+        if (!alignment.isMatch(step)) continue;
+
+        List<String> differences =
+            file1Hits.compare(
+                alignment.index1(step), file1Name, file2Hits, alignment.index2(step), file2Name);
+        results.set(step - resultsStart, differences.isEmpty() ? null : differences);
+      }
+    }
+
+    private ComparisonTask split(int from, int to) {
+      return new ComparisonTask(
+          alignment, file1Hits, file1Name, file2Hits, file2Name, results, resultsStart, from, to);
+    }
+  }
+}
@@ -0,0 +1,72 @@
+package com.thesis.codecomparer.comparators;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Summary section of a comparison report. Only the counters and the first MAX_SAMPLES breakpoints
+ * of each list are kept, so the memory needed for the summary does not grow with the size of the
+ * compared files.
+ */
+class ReportSummary {
+
+  static final int MAX_SAMPLES = 1000; // Breakpoints listed per summary list
+
+  private int breakpointsWithDifferences; // Number of breakpoints with differences
+  private int breakpointsWithoutDifferences; // Number of breakpoints without differences
+  private final List<String> breakpointsWithDiffs = new ArrayList<>(); // First breakpoints
+  private final List<String> breakpointsWithoutDiffs = new ArrayList<>(); // First breakpoints
+
+  /**
+   * Counts a breakpoint with differences.
+   *
+   * @param breakpoint Description of the breakpoint, e.g. "Breakpoint 3 (Class: A, Line: 5)".
+   */
+  void addWithDifferences(String breakpoint) {
+    breakpointsWithDifferences++;
+    if (breakpointsWithDiffs.size() < MAX_SAMPLES) {
+      breakpointsWithDiffs.add(breakpoint);
+    }
+  }
+
+  /**
+   * Counts a breakpoint without differences.
+   *
+   * @param breakpoint Description of the breakpoint, e.g. "Breakpoint 3 (Class: A, Line: 5)".
+   */
+  void addWithoutDifferences(String breakpoint) {
+    breakpointsWithoutDifferences++;
+    if (breakpointsWithoutDiffs.size() < MAX_SAMPLES) {
+      breakpointsWithoutDiffs.add(breakpoint);
+    }
+  }
+
+  /**
+   * Writes the summary of the comparison results to the report.
+   *
+   * @param report The writer to write the summary to.
+   * @param totalBreakpoints The total number of breakpoints compared.
+   * @throws IOException If writing to the report fails.
+   */
+  void write(Writer report, int totalBreakpoints) throws IOException {
+    report.write("=== Summary ===\n");
+    report.write("- Total Breakpoints: " + totalBreakpoints + "\n\n");
+    report.write("- Breakpoints with Differences: " + breakpointsWithDifferences + "\n");
+    writeSamples(report, breakpointsWithDiffs, breakpointsWithDifferences);
+    report.write("\n");
+    report.write("- Breakpoints without Differences: " + breakpointsWithoutDifferences + "\n");
+    writeSamples(report, breakpointsWithoutDiffs, breakpointsWithoutDifferences);
+  }
+
+  private static void writeSamples(Writer report, List<String> samples, int count)
+      throws IOException {
+    for (String bp : samples) {
+      report.write("  " + bp + "\n");
+    }
+    if (count > samples.size()) {
+      report.write("  ... and " + (count - samples.size()) + " more\n");
+    }
+  }
+}
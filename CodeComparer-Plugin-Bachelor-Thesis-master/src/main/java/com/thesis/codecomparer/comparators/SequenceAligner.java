@@ -0,0 +1,226 @@
+package com.thesis.codecomparer.comparators;
+
+import com.thesis.codecomparer.captureFile.CompactCapture;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Aligns two sequences of breakpoint hits, so that a hit that only exists in one run does not shift
+ * all following hits against each other.
+ *
+ * <p>Hits are matched by their key: location, method and thread. The alignment is a shortest edit
+ * script computed with the linear space variant of Myers' O(ND) difference algorithm, where D is
+ * the number of inserted and deleted hits. Runs that differ in few hits are therefore aligned in
+ * close to linear time, and the memory stays linear in the number of hits in every case.
+ */
+public class SequenceAligner {
+
+  /**
+   * Identifies the hits that should be compared with each other.
+   *
+   * @param fileName The file name of the breakpoint.
+   * @param lineNumber The line number of the breakpoint.
+   * @param methodName The name of the method containing the breakpoint.
+   * @param threadName The name of the thread that hit the breakpoint.
+   */
+  private record HitKey(String fileName, int lineNumber, String methodName, String threadName) {}
+
+  private final int[] a; // Keys of the first sequence
+  private final int[] b; // Keys of the second sequence
+  private final int[] forward; // Furthest reaching forward paths by diagonal
+  private final int[] backward; // Furthest reaching backward paths by diagonal
+  private final Alignment alignment = new Alignment();
+
+  private SequenceAligner(int[] a, int[] b) {
+    this.a = a;
+    this.b = b;
+    int length = a.length + b.length + 3; // 2 * maxD + 2 for the whole sequences
+    this.forward = new int[length];
+    this.backward = new int[length];
+  }
+
+  /**
+   * Aligns two sequences of breakpoint hits by their location, method and thread.
+   *
+   * @param states1 The hits of the first run.
+   * @param states2 The hits of the second run.
+   * @return The alignment of both runs.
+   */
+  public static Alignment alignHits(List<BreakpointState> states1, List<BreakpointState> states2) {
+    return alignHits(HitSource.of(states1), HitSource.of(states2));
+  }
+
+  /**
+   * Aligns the hits of two compact captures like {@link #alignHits(List, List)}, reading the keys
+   * from their columns.
+   *
+   * @param capture1 The hits of the first run.
+   * @param capture2 The hits of the second run.
+   * @return The alignment of both runs.
+   */
+  public static Alignment alignHits(CompactCapture capture1, CompactCapture capture2) {
+    return alignHits(HitSource.of(capture1), HitSource.of(capture2));
+  }
+
+  static Alignment alignHits(HitSource hits1, HitSource hits2) {
+    Map<HitKey, Integer> ids = new HashMap<>();
+    return align(hitKeys(hits1, ids), hitKeys(hits2, ids));
+  }
+
+  /**
+   * Aligns two sequences of integer keys with a shortest edit script.
+   *
+   * @param a The keys of the first sequence.
+   * @param b The keys of the second sequence.
+   * @return The alignment of both sequences.
+   */
+  public static Alignment align(int[] a, int[] b) {
+    SequenceAligner aligner = new SequenceAligner(a, b);
+    aligner.diff(0, a.length, 0, b.length);
+    return aligner.alignment;
+  }
+
+  // Maps every hit to a dense integer id of its key
+  private static int[] hitKeys(HitSource hits, Map<HitKey, Integer> ids) {
+    int[] keys = new int[hits.size()];
+    for (int i = 0; i < keys.length; i++) {
+      HitKey key =
+          new HitKey(
+              hits.getFileName(i),
+              hits.getLineNumber(i),
+              hits.getCurrentMethodName(i),
+              hits.getThreadName(i));
+      keys[i] = ids.computeIfAbsent(key, k -> ids.size());
+    }
+    return keys;
+  }
+
+  // Aligns a[aStart, aEnd) with b[bStart, bEnd), appending the steps in order
+  private void diff(int aStart, int aEnd, int bStart, int bEnd) {
+    // Common prefix and suffix are matched directly
+    while (aStart < aEnd && bStart < bEnd && a[aStart] == b[bStart]) {
+      alignment.add(aStart++, bStart++);
+    }
+    int suffix = 0;
+    while (aStart < aEnd - suffix
+        && bStart < bEnd - suffix
+        && a[aEnd - suffix - 1] == b[bEnd - suffix - 1]) {
+      suffix++;
+    }
+    aEnd -= suffix;
+    bEnd -= suffix;
+
+    if (aStart == aEnd) {
+      for (int j = bStart; j < bEnd; j++) {
+        alignment.add(-1, j);
+      }
+    } else if (bStart == bEnd) {
+      for (int i = aStart; i < aEnd; i++) {
+        alignment.add(i, -1);
+      }
+    } else {
+      long split = middle(aStart, aEnd, bStart, bEnd);
+      int x = (int) (split >>> 32);
+      int y = (int) split;
+      diff(aStart, x, bStart, y);
+      diff(x, aEnd, y, bEnd);
+    }
+
+    for (int i = 0; i < suffix; i++) {
+      alignment.add(aEnd + i, bEnd + i);
+    }
+  }
+
+  /*
+   * Finds a point on an optimal edit path by searching forward from the start and backward from
+   * the end until both searches overlap (Myers 1986, section 4b). The point is returned as
+   * (x << 32 | y) in absolute positions. Both sequences are non-empty and differ at their first
+   * and last element.
+   */
+  private long middle(int aStart, int aEnd, int bStart, int bEnd) {
+    int n = aEnd - aStart;
+    int m = bEnd - bStart;
+    int maxD = (n + m + 1) / 2;
+    int offset = maxD; // Index of diagonal 0 in the path arrays
+    Arrays.fill(forward, 0, 2 * maxD + 2, -1);
+    Arrays.fill(backward, 0, 2 * maxD + 2, -1);
+    forward[offset + 1] = 0;
+    backward[offset + 1] = 0;
+
+    int delta = n - m;
+    boolean odd = (delta & 1) != 0; // The forward search detects the overlap if delta is odd
+    int forwardStart = 0; // Diagonals trimmed because their paths left the edit graph
+    int forwardEnd = 0;
+    int backwardStart = 0;
+    int backwardEnd = 0;
+
+    for (int d = 0; d < maxD; d++) {
+      for (int k = -d + forwardStart; k <= d - forwardEnd; k += 2) {
+        int index = offset + k;
+        int x =
+            k == -d || (k != d && forward[index - 1] < forward[index + 1])
+                ? forward[index + 1]
+                : forward[index - 1] + 1;
+        int y = x - k;
+        while (x < n && y < m && a[aStart + x] == b[bStart + y]) {
+          x++;
+          y++;
+        }
+        forward[index] = x;
+
+        if (x > n) {
+          forwardEnd += 2; // Ran off the right of the graph
+        } else if (y > m) {
+          forwardStart += 2; // Ran off the bottom of the graph
+        } else if (odd) {
+          int backwardIndex = offset + delta - k;
+          if (backwardIndex >= 0
+              && backwardIndex < 2 * maxD + 2
+              && backward[backwardIndex] != -1
+              && x >= n - backward[backwardIndex]) {
+            return split(aStart + x, bStart + y);
+          }
+        }
+      }
+
+      for (int k = -d + backwardStart; k <= d - backwardEnd; k += 2) {
+        int index = offset + k;
+        int x =
+            k == -d || (k != d && backward[index - 1] < backward[index + 1])
+                ? backward[index + 1]
+                : backward[index - 1] + 1;
+        int y = x - k;
+        while (x < n && y < m && a[aEnd - x - 1] == b[bEnd - y - 1]) {
+          x++;
+          y++;
+        }
+        backward[index] = x;
+
+        if (x > n) {
+          backwardEnd += 2;
+        } else if (y > m) {
+          backwardStart += 2;
+        } else if (!odd) {
+          int forwardIndex = offset + delta - k;
+          if (forwardIndex >= 0 && forwardIndex < 2 * maxD + 2 && forward[forwardIndex] != -1) {
+            int forwardX = forward[forwardIndex];
+            int forwardY = offset + forwardX - forwardIndex;
+            if (forwardX >= n - x) {
+              return split(aStart + forwardX, bStart + forwardY);
+            }
+          }
+        }
+      }
+    }
+
+    // Nothing in common, delete all of a before inserting all of b
+    return split(aEnd, bStart);
+  }
+
+  private static long split(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+}
@@ -5,10 +5,18 @@ import com.thesis.codecomparer.dataModels.ExceptionDetails;
 import com.thesis.codecomparer.dataModels.MethodState;
 import com.thesis.codecomparer.dataModels.ParameterInfo;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
 
 public class StateComparator {
 
+  private static final int MAX_VALUE_DIFFERENCES = 20; // Changed paths listed per value
+  private static final Pattern LINE_NUMBER = Pattern.compile(":\\d+\\)$"); // In a stack frame
+  private static final String RETURN_VALUE = "Return Value"; // Section of return value lines
+
   /**
    * Compares two BreakpointState objects and identifies differences.
    *
@@ -21,7 +29,7 @@ public class StateComparator {
     List<String> differences = new ArrayList<>();
 
     // Compare class fields
-    if (!state1.getFileName().equals(state2.getFileName())) {
+    if (!Objects.equals(state1.getFileName(), state2.getFileName())) {
       differences.add("  - Class Name: " + state1.getFileName() + " != " + state2.getFileName());
     }
 
@@ -33,20 +41,26 @@ public class StateComparator {
     // Compare the currentMethodState fields
     differences.addAll(
         compareMethodStates(
-            state1.getCurrentMethodState(), state2.getCurrentMethodState(), "  - Current Method"));
+            state1.getCurrentMethodState(),
+            file1Name,
+            state2.getCurrentMethodState(),
+            file2Name,
+            "  - Current Method"));
 
     // Compare the breakpointMethodCallState fields
     differences.addAll(
         compareMethodStates(
-            state1.getInvokedMethodState(), state2.getInvokedMethodState(), "  - Invoked Method"));
+            state1.getInvokedMethodState(),
+            file1Name,
+            state2.getInvokedMethodState(),
+            file2Name,
+            "  - Invoked Method"));
 
     // Compare breakpointReturnValue fields
     String returnValue1 = state1.getInvokedMethodReturnValue();
     String returnValue2 = state2.getInvokedMethodReturnValue();
     if (returnValue1 != null && returnValue2 != null) {
-      if (!returnValue1.equals(returnValue2)) {
-        differences.add("  - Return Value: " + returnValue1 + " != " + returnValue2);
-      }
+      addValueDifferences(differences, "  - Return Value ", returnValue1, returnValue2);
     } else if (returnValue1 != null || returnValue2 != null) {
       differences.add(
           "  - Return Value: "
@@ -72,7 +86,7 @@ public class StateComparator {
                 + " has an exception: \n"
                 + formatExceptionInfo(state1.getExceptionDetails()));
       } else {
-        if (!exception1.getExceptionType().equals(exception2.getExceptionType())) {
+        if (!Objects.equals(exception1.getExceptionType(), exception2.getExceptionType())) {
           differences.add(
               "  - Exception Type: "
                   + exception1.getExceptionType()
@@ -80,7 +94,7 @@ public class StateComparator {
                   + exception2.getExceptionType());
         }
 
-        if (!exception1.getExceptionMessage().equals(exception2.getExceptionMessage())) {
+        if (!Objects.equals(exception1.getExceptionMessage(), exception2.getExceptionMessage())) {
           differences.add(
               "  - Exception Message: "
                   + exception1.getExceptionMessage()
@@ -88,18 +102,176 @@ public class StateComparator {
                   + exception2.getExceptionMessage());
         }
 
-        if (!exception1.getStackTrace().equals(exception2.getStackTrace())) {
-          differences.add(
-              "  - Exception Stack Trace: "
-                  + exception1.getStackTrace()
-                  + " != "
-                  + exception2.getStackTrace());
+        // Loaded traces are interned, so equal traces are usually the same instance
+        if (!Objects.equals(exception1.getStackTrace(), exception2.getStackTrace())) {
+          addStackTraceDifferences(differences, exception1, exception2);
         }
       }
     }
     return differences; // Return the list of differences
   }
 
+  /**
+   * Checks whether two BreakpointState objects are equal in everything {@link
+   * #compareBreakpointStates} compares, i.e. whether it would find no differences. Hits with equal
+   * fields are recognized without comparing their values as JSON.
+   *
+   * @param state1 The first BreakpointState object.
+   * @param state2 The second BreakpointState object.
+   * @return true if the comparison of both hits finds no differences.
+   */
+  public static boolean isEqual(BreakpointState state1, BreakpointState state2) {
+    return hasEqualFields(state1, state2)
+        || compareBreakpointStates(state1, "", state2, "").isEmpty();
+  }
+
+  // Compares the hits field by field, equal fields have no differences
+  private static boolean hasEqualFields(BreakpointState state1, BreakpointState state2) {
+    return Objects.equals(state1.getFileName(), state2.getFileName())
+        && state1.getLineNumber() == state2.getLineNumber()
+        && hasEqualFields(state1.getCurrentMethodState(), state2.getCurrentMethodState())
+        && hasEqualFields(state1.getInvokedMethodState(), state2.getInvokedMethodState())
+        && Objects.equals(
+            state1.getInvokedMethodReturnValue(), state2.getInvokedMethodReturnValue())
+        && hasEqualFields(state1.getExceptionDetails(), state2.getExceptionDetails());
+  }
+
+  private static boolean hasEqualFields(MethodState method1, MethodState method2) {
+    if (method1 == null || method2 == null) {
+      return method1 == method2;
+    }
+    if (!Objects.equals(method1.getMethodName(), method2.getMethodName())
+        || !Objects.equals(method1.getReturnType(), method2.getReturnType())) {
+      return false;
+    }
+    List<ParameterInfo> parameters1 = method1.getParameters();
+    List<ParameterInfo> parameters2 = method2.getParameters();
+    if (parameters1 == null || parameters2 == null) {
+      return parameters1 == parameters2;
+    }
+    if (parameters1.size() != parameters2.size()) {
+      return false;
+    }
+    for (int i = 0; i < parameters1.size(); i++) {
+      if (!Objects.equals(parameters1.get(i).getName(), parameters2.get(i).getName())
+          || !Objects.equals(
+              parameters1.get(i).getSerializedValue(), parameters2.get(i).getSerializedValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean hasEqualFields(ExceptionDetails exception1, ExceptionDetails exception2) {
+    if (exception1 == null || exception2 == null) {
+      return exception1 == exception2;
+    }
+    return Objects.equals(exception1.getExceptionType(), exception2.getExceptionType())
+        && Objects.equals(exception1.getExceptionMessage(), exception2.getExceptionMessage())
+        && Objects.equals(exception1.getStackTrace(), exception2.getStackTrace());
+  }
+
+  /**
+   * Splits a difference line into the section of the breakpoint it belongs to, e.g. "Current
+   * Method" or "Return Value", and the rest of the line, e.g. "Argument[0] JSON $.x: 1 != 2".
+   *
+   * @param difference A line returned by {@link #compareBreakpointStates}.
+   * @return The section and the rest of the line, which may be empty.
+   */
+  public static String[] splitDifference(String difference) {
+    String line = difference.strip();
+    if (line.startsWith("- ")) {
+      line = line.substring(2);
+    }
+
+    int arrow = line.indexOf(" -> ");
+    int colon = line.indexOf(':');
+    if (arrow >= 0 && (colon < 0 || arrow < colon)) {
+      return new String[] {line.substring(0, arrow), line.substring(arrow + 4)};
+    }
+    if (line.startsWith(RETURN_VALUE)) {
+      String rest = line.substring(RETURN_VALUE.length());
+      return new String[] {RETURN_VALUE, (rest.startsWith(":") ? rest.substring(1) : rest).strip()};
+    }
+    if (colon >= 0) {
+      return new String[] {line.substring(0, colon), line.substring(colon + 1).strip()};
+    }
+    return new String[] {line, ""};
+  }
+
+  /**
+   * Adds the structural differences of two serialized values, one line per changed JSON path, so
+   * large values with few changes produce a short report. At most MAX_VALUE_DIFFERENCES paths are
+   * listed per value.
+   *
+   * @param differences The list to add the differences to.
+   * @param label Prefix of every line, naming the compared value.
+   * @param value1 The serialized value from the first file.
+   * @param value2 The serialized value from the second file.
+   */
+  private static void addValueDifferences(
+      List<String> differences, String label, String value1, String value2) {
+    List<JsonTreeDiff.Difference> valueDifferences = JsonTreeDiff.diff(value1, value2);
+    int shown = Math.min(valueDifferences.size(), MAX_VALUE_DIFFERENCES);
+    for (int i = 0; i < shown; i++) {
+      differences.add(label + valueDifferences.get(i).describe());
+    }
+    if (valueDifferences.size() > shown) {
+      differences.add(label + "... " + (valueDifferences.size() - shown) + " more differences");
+    }
+  }
+
+  /**
+   * Adds the differences of two stack traces frame by frame. The frames are aligned by class,
+   * method and file without their line numbers, so frames that only moved to another line, e.g.
+   * because code was added above them, are not reported. Added and removed frames are listed, at
+   * most MAX_VALUE_DIFFERENCES of them.
+   *
+   * @param differences The list to add the differences to.
+   * @param exception1 The exception from the first file.
+   * @param exception2 The exception from the second file.
+   */
+  private static void addStackTraceDifferences(
+      List<String> differences, ExceptionDetails exception1, ExceptionDetails exception2) {
+    List<String> frames1 = exception1.getStackFrames();
+    List<String> frames2 = exception2.getStackFrames();
+    Map<String, Integer> ids = new HashMap<>();
+    Alignment alignment = SequenceAligner.align(frameKeys(frames1, ids), frameKeys(frames2, ids));
+
+    List<String> frameDifferences = new ArrayList<>();
+    for (int step = 0; step < alignment.size(); step++) {
+      if (alignment.isMatch(step)) continue;
+
+      int index1 = alignment.index1(step);
+      int index2 = alignment.index2(step);
+      frameDifferences.add(
+          index2 < 0
+              ? "Frame[" + index1 + "] removed: " + frames1.get(index1).strip()
+              : "Frame[" + index2 + "] added: " + frames2.get(index2).strip());
+    }
+
+    int shown = Math.min(frameDifferences.size(), MAX_VALUE_DIFFERENCES);
+    for (int i = 0; i < shown; i++) {
+      differences.add("  - Exception Stack Trace -> " + frameDifferences.get(i));
+    }
+    if (frameDifferences.size() > shown) {
+      differences.add(
+          "  - Exception Stack Trace -> ... "
+              + (frameDifferences.size() - shown)
+              + " more differences");
+    }
+  }
+
+  // Maps every frame to an id of the frame without its line number, e.g. "a.B.c(B.java)"
+  private static int[] frameKeys(List<String> frames, Map<String, Integer> ids) {
+    int[] keys = new int[frames.size()];
+    for (int i = 0; i < keys.length; i++) {
+      String frame = LINE_NUMBER.matcher(frames.get(i).strip()).replaceFirst(")");
+      keys[i] = ids.computeIfAbsent(frame, k -> ids.size());
+    }
+    return keys;
+  }
+
   private static String formatExceptionInfo(ExceptionDetails exceptionInfo) {
     return "Type: "
         + exceptionInfo.getExceptionType()
@@ -110,25 +282,43 @@ public class StateComparator {
   }
 
   /**
-   * Compares two MethodState objects and identifies differences.
+   * Compares two MethodState objects and identifies differences. A method missing in one file,
+   * e.g. because no method was invoked on the breakpoint line, is reported as one difference.
    *
-   * @param method1 The first MethodState object.
-   * @param method2 The second MethodState object.
+   * @param method1 The first MethodState object, or null.
+   * @param file1Name Name of the first file.
+   * @param method2 The second MethodState object, or null.
+   * @param file2Name Name of the second file.
    * @param context Context string for labeling differences.
    * @return A list of strings describing the differences between the two MethodState objects.
    */
   private static List<String> compareMethodStates(
-      MethodState method1, MethodState method2, String context) {
+      MethodState method1,
+      String file1Name,
+      MethodState method2,
+      String file2Name,
+      String context) {
     List<String> differences = new ArrayList<>();
+    if (method1 == null || method2 == null) {
+      if (method1 != method2) {
+        differences.add(
+            context
+                + ": present only in file "
+                + (method1 != null ? file1Name : file2Name)
+                + ": "
+                + (method1 != null ? method1 : method2).getMethodName());
+      }
+      return differences;
+    }
 
     // Compare methodName fields
-    if (!method1.getMethodName().equals(method2.getMethodName())) {
+    if (!Objects.equals(method1.getMethodName(), method2.getMethodName())) {
       differences.add(
           context + " -> Name: " + method1.getMethodName() + " != " + method2.getMethodName());
     }
 
     // Compare returnType fields
-    if (!method1.getReturnType().equals(method2.getReturnType())) {
+    if (!Objects.equals(method1.getReturnType(), method2.getReturnType())) {
       differences.add(
           context
               + " -> Return Type: "
@@ -154,7 +344,7 @@ public class StateComparator {
         ParameterInfo arg2 = method2.getParameters().get(i);
 
         // Compare argument names
-        if (!arg1.getName().equals(arg2.getName())) {
+        if (!Objects.equals(arg1.getName(), arg2.getName())) {
           differences.add(
               context
                   + " -> Argument["
@@ -166,16 +356,11 @@ public class StateComparator {
         }
 
         // Compare argument JSON representations
-        if (!arg1.getSerializedValue().equals(arg2.getSerializedValue())) {
-          differences.add(
-              context
-                  + " -> Argument["
-                  + i
-                  + "] JSON: "
-                  + arg1.getSerializedValue()
-                  + " != "
-                  + arg2.getSerializedValue());
-        }
+        addValueDifferences(
+            differences,
+            context + " -> Argument[" + i + "] JSON ",
+            arg1.getSerializedValue(),
+            arg2.getSerializedValue());
       }
     }
 
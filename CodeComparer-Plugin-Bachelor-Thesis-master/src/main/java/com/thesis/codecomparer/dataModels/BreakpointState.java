@@ -2,13 +2,14 @@ package com.thesis.codecomparer.dataModels;
 
 /**
  * Represents the state of a breakpoint during debugging. This class encapsulates information about
- * the file, line number, the current method containing the breakpoint, the method called by the
- * breakpoint, and the return value at the breakpoint.
+ * the file, line number, the thread that hit the breakpoint, the current method containing the
+ * breakpoint, the method called by the breakpoint, and the return value at the breakpoint.
  */
 public class BreakpointState {
 
   private String fileName; // File where the breakpoint is set
   private int lineNumber; // Line number of the breakpoint
+  private String threadName; // Name of the thread that hit the breakpoint
   private MethodState currentMethodState; // Details about the method containing the breakpoint
   private MethodState invokedMethodState; // Details about the method called at the breakpoint
   private String invokedMethodReturnValue; // Return value of the invoked method at the breakpoint
@@ -32,6 +33,14 @@ public class BreakpointState {
     this.lineNumber = lineNumber;
   }
 
+  public String getThreadName() {
+    return threadName;
+  }
+
+  public void setThreadName(String threadName) {
+    this.threadName = threadName;
+  }
+
   public MethodState getCurrentMethodState() {
     return currentMethodState;
   }
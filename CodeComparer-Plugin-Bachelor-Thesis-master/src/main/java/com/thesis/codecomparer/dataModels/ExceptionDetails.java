@@ -1,5 +1,7 @@
 package com.thesis.codecomparer.dataModels;
 
+import java.util.List;
+
 public class ExceptionDetails {
   private String exceptionType;
   private String exceptionMessage;
@@ -28,4 +30,14 @@ public class ExceptionDetails {
   public void setStackTrace(String stackTrace) {
     this.stackTrace = stackTrace;
   }
+
+  /**
+   * Returns the frames of the stack trace, one per line, e.g. {@code
+   * com.example.Foo.bar(Foo.java:42)}.
+   *
+   * @return The frames of the stack trace, or an empty list if there is none.
+   */
+  public List<String> getStackFrames() {
+    return stackTrace == null || stackTrace.isEmpty() ? List.of() : List.of(stackTrace.split("\n"));
+  }
 }
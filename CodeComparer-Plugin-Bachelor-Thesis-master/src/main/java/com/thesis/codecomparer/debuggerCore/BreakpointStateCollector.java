@@ -79,6 +79,16 @@ public class BreakpointStateCollector {
     }
   }
 
+  /**
+   * Retrieves the name of the thread that hit the breakpoint.
+   *
+   * @param currentStackFrame The current stack frame in the debugger session.
+   * @return The name of the thread owning the stack frame.
+   */
+  public String getThreadName(@NotNull JavaStackFrame currentStackFrame) {
+    return currentStackFrame.getStackFrameProxy().threadProxy().getThreadReference().name();
+  }
+
   /**
    * Retrieves the return value of the last executed method in the debugger session.
    *
@@ -1,7 +1,5 @@
 package com.thesis.codecomparer.debuggerCore;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.intellij.debugger.engine.JavaStackFrame;
 import com.intellij.debugger.jdi.StackFrameProxyImpl;
 import com.intellij.debugger.settings.DebuggerSettings;
@@ -18,13 +16,15 @@ import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XDebugSessionListener;
 import com.intellij.xdebugger.breakpoints.XBreakpoint;
 import com.intellij.xdebugger.impl.XDebugSessionImpl;
+import com.thesis.codecomparer.captureFile.CaptureMetrics;
+import com.thesis.codecomparer.captureFile.CaptureWriter;
 import com.thesis.codecomparer.dataModels.BreakpointState;
 import com.thesis.codecomparer.ui.CodeComparerIcons;
 import com.thesis.codecomparer.ui.CodeComparerUI;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.jetbrains.annotations.NotNull;
 
 /**
@@ -43,10 +43,25 @@ public class DebugSessionListener implements XDebugSessionListener {
 
   private final XDebugSession debugSession; // Current debugger session
 
+  // Opt-in block compressed output, enabled with -Dcodecomparer.compressOutput=true
+  private static final boolean COMPRESS_OUTPUT = Boolean.getBoolean("codecomparer.compressOutput");
+
+  // Opt-in indented records for reading the output in an editor, -Dcodecomparer.prettyOutput=true
+  private static final boolean PRETTY_OUTPUT = Boolean.getBoolean("codecomparer.prettyOutput");
+
   private final String outputDirectoryPath =
       "CodeComparer-Plugin/output"; // Directory for saving JSON output
-  private final String outputFileName = "collected_states.txt"; // Output file name
-  private File outputFile; // Reference to the output file
+  private static final String OUTPUT_FILE_NAME = "collected_states"; // Without the extension
+  private static final String OUTPUT_FILE_EXTENSION = COMPRESS_OUTPUT ? ".ccz" : ".txt";
+
+  // Output files of the running sessions, a concurrent session writes to a file of its own
+  private static final Set<String> FILES_IN_USE = ConcurrentHashMap.newKeySet();
+
+  private CaptureWriter captureWriter; // Writes the output file and its index
+  private final CaptureMetrics captureMetrics =
+      CaptureMetrics.getInstance(); // Metrics shown on the live capture dashboard
+  private long hitPauseNanos; // Time spent in the pauses of the current hit so far
+  private boolean hitSaved; // Whether the last pause completed and saved a hit
 
   private boolean isStepping = false; // General stepping state
   private boolean isSteppingInto = false; // Track if we are in a step-into operation
@@ -60,9 +75,9 @@ public class DebugSessionListener implements XDebugSessionListener {
    * @param debugProcess The debugging process to attach the listener to.
    */
   public DebugSessionListener(@NotNull XDebugProcess debugProcess) {
-    createOutputFile();
     this.debugSession = debugProcess.getSession();
     this.codeComparerUI = CodeComparerUI.getInstance();
+    createOutputFile();
 
     // Attach a listener to the debugging process to initialize the UI and settings
     debugProcess
@@ -100,6 +115,24 @@ public class DebugSessionListener implements XDebugSessionListener {
 
   @Override
   public void sessionPaused() {
+    long pauseStart = System.nanoTime();
+    if (!isStepping) {
+      hitPauseNanos = 0; // First pause of a new hit
+    }
+    hitSaved = false;
+    try {
+      collectPausedState();
+    } finally {
+      hitPauseNanos += System.nanoTime() - pauseStart;
+      if (hitSaved) {
+        captureMetrics.recordHit(
+            breakpointState.getFileName() + ":" + breakpointState.getLineNumber(), hitPauseNanos);
+      }
+    }
+  }
+
+  /** Collects the state of the current pause, depending on the stepping phase of the hit. */
+  private void collectPausedState() {
     LOGGER.warn("Debugger paused");
     JavaStackFrame javaStackFrame = (JavaStackFrame) debugSession.getCurrentStackFrame();
 
@@ -130,9 +163,16 @@ public class DebugSessionListener implements XDebugSessionListener {
   @Override
   public void sessionStopped() {
     LOGGER.warn("Debugger stopped");
+    closeOutputFile();
   }
 
-  /** Creates or resets the output file for saving breakpoint states. */
+  /**
+   * Creates or resets the output file for saving breakpoint states. A session uses
+   * collected_states.txt unless another running session writes to it, then the first free file of
+   * collected_states_2.txt, collected_states_3.txt, ... is used, so concurrent sessions do not
+   * truncate each other's file and index. The shared capture metrics start over with the first
+   * running session, concurrent sessions add to them.
+   */
   private void createOutputFile() {
     String directoryPath = outputDirectoryPath;
     File outputDir = new File(directoryPath);
@@ -142,24 +182,44 @@ public class DebugSessionListener implements XDebugSessionListener {
       outputDir.mkdirs();
     }
 
-    String filePath = directoryPath + "/" + outputFileName;
-    outputFile = new File(filePath);
+    String fileName = OUTPUT_FILE_NAME + OUTPUT_FILE_EXTENSION;
+    for (int session = 2; !FILES_IN_USE.add(fileName); session++) {
+      fileName = OUTPUT_FILE_NAME + "_" + session + OUTPUT_FILE_EXTENSION;
+    }
+    File outputFile = new File(directoryPath + "/" + fileName);
 
-    // Clear the file content and add the separator
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, false))) {
-      writer.write(""); // Empty the file
-      writer.write("====================\n"); // Add the initial separator
+    // Clear the file content, add the separator and start a new index
+    try {
+      if (FILES_IN_USE.size() == 1) {
+        captureMetrics.reset(); // No other session is capturing into the metrics
+      }
+      captureWriter = new CaptureWriter(outputFile, COMPRESS_OUTPUT, PRETTY_OUTPUT, captureMetrics);
       LOGGER.warn("Emptied the collected states file: " + outputFile.getAbsolutePath());
     } catch (IOException e) {
+      FILES_IN_USE.remove(fileName);
       codeComparerUI.updateErrorDisplay("Error emptying the collected state file:" + e);
     }
   }
 
+  /** Closes the output file and its index at the end of the session. */
+  private void closeOutputFile() {
+    if (captureWriter == null) return;
+    try {
+      captureWriter.close();
+    } catch (IOException e) {
+      codeComparerUI.updateErrorDisplay("Error closing the collected state file:" + e);
+    } finally {
+      FILES_IN_USE.remove(captureWriter.getCaptureFile().getName());
+      captureWriter = null; // The file may now be reused by another session
+    }
+  }
+
   /** Collects current method details and initiates a step-into operation. */
   private void collectAndStepInto(
       BreakpointStateCollector breakpointStateCollector, JavaStackFrame javaStackFrame) {
 
     appendFileNameAndLine();
+    breakpointState.setThreadName(breakpointStateCollector.getThreadName(javaStackFrame));
 
     // Collect current method details
     breakpointState.setCurrentMethodState(breakpointStateCollector.getMethodState(javaStackFrame));
@@ -277,16 +337,17 @@ public class DebugSessionListener implements XDebugSessionListener {
     }
   }
 
-  /** Saves the collected state to the output file in JSON format. */
+  /** Saves the collected state to the output file in JSON format and indexes it. */
   private void saveStateToFile(BreakpointState breakpointState) {
-    try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, true))) {
-      Gson gson = new GsonBuilder().setPrettyPrinting().create();
-      String json = gson.toJson(breakpointState);
-
-      writer.write(json);
-      writer.write("\n====================\n"); // Separate different breakpoints
+    if (captureWriter == null) {
+      codeComparerUI.updateErrorDisplay("Error saving collected state to file");
+      return;
+    }
+    try {
+      captureWriter.write(breakpointState);
+      hitSaved = true;
       LOGGER.warn("Successfully saved collected state to file");
-      codeComparerUI.updateFilePathDisplay(outputFile.getAbsolutePath());
+      codeComparerUI.updateFilePathDisplay(captureWriter.getCaptureFile().getAbsolutePath());
     } catch (IOException e) {
       codeComparerUI.updateErrorDisplay("Error saving collected state to file");
     }
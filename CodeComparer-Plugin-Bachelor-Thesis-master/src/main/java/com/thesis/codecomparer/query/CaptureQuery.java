@@ -0,0 +1,439 @@
+package com.thesis.codecomparer.query;
+
+import com.google.gson.JsonElement;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A query over the breakpoint hits of a capture, written as clauses in any order:
+ *
+ * <pre>
+ * where invoked = parse and return.status != OK
+ * group by location select arg.input
+ * group by thread
+ * select location, return limit 100
+ * </pre>
+ *
+ * <ul>
+ *   <li>{@code where} keeps the hits matching all conditions. A condition compares a field (see
+ *       {@link QueryField}) with a value using {@code =}, {@code !=}, {@code <}, {@code <=}, {@code
+ *       >}, {@code >=} or {@code ~} (matches a regular expression). Values are numbers, words or
+ *       quoted text. Numbers are compared as numbers, everything else as text. If a path selects
+ *       several values, a condition holds if one of them matches, and {@code !=} holds if none is
+ *       equal; a missing value is never equal.
+ *   <li>{@code select} lists the fields of the result, by default location, method and thread.
+ *       {@code select distinct} returns every combination of values once, with its hit count.
+ *   <li>{@code group by} counts the hits per combination of the listed fields. Together with
+ *       {@code select}, the distinct selected values are counted per group.
+ *   <li>{@code limit} bounds the number of result rows.
+ * </ul>
+ *
+ * Keywords are not case sensitive. Queries are executed by {@link CaptureQueryEngine}.
+ */
+public class CaptureQuery {
+
+  private static final List<QueryField> DEFAULT_SELECTION =
+      List.of(QueryField.parse("location"), QueryField.parse("method"), QueryField.parse("thread"));
+  // Characters Gson writes unescaped in strings, literals of them appear verbatim in the records
+  private static final Pattern VERBATIM_LITERAL = Pattern.compile("[A-Za-z0-9 _.:/-]+");
+
+  /** The comparison of a condition. */
+  enum Operator {
+    EQUAL("="),
+    NOT_EQUAL("!="),
+    LESS("<"),
+    LESS_OR_EQUAL("<="),
+    GREATER(">"),
+    GREATER_OR_EQUAL(">="),
+    MATCHES("~");
+
+    private final String symbol; // The operator as written in queries
+
+    Operator(String symbol) {
+      this.symbol = symbol;
+    }
+  }
+
+  /**
+   * A condition of the where clause.
+   *
+   * @param field The compared field.
+   * @param operator The comparison.
+   * @param value The value the field is compared with.
+   * @param pattern The compiled value of {@link Operator#MATCHES} conditions, null otherwise.
+   */
+  record Condition(QueryField field, Operator operator, String value, Pattern pattern) {
+
+    /**
+     * Checks whether the values of a field in a hit satisfy the condition.
+     *
+     * @param values The values of the field, see {@link QueryField#valuesOf}.
+     * @return true if the condition holds.
+     */
+    boolean test(List<JsonElement> values) {
+      if (operator == Operator.NOT_EQUAL) {
+        return !anyMatches(values, Operator.EQUAL);
+      }
+      return anyMatches(values, operator);
+    }
+
+    private boolean anyMatches(List<JsonElement> values, Operator comparison) {
+      for (JsonElement element : values) {
+        String text = textOf(element);
+        boolean matches =
+            switch (comparison) {
+              case EQUAL -> compare(element, text) == 0;
+              case LESS -> compare(element, text) < 0;
+              case LESS_OR_EQUAL -> compare(element, text) <= 0;
+              case GREATER -> compare(element, text) > 0;
+              case GREATER_OR_EQUAL -> compare(element, text) >= 0;
+              case MATCHES -> pattern.matcher(text).find();
+              case NOT_EQUAL -> throw new IllegalStateException("Handled by test");
+            };
+        if (matches) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // Compares numbers by value and everything else by text
+    private int compare(JsonElement element, String text) {
+      BigDecimal number = element.isJsonPrimitive() ? toNumber(text) : null;
+      BigDecimal expected = number != null ? toNumber(value) : null;
+      return expected != null ? number.compareTo(expected) : text.compareTo(value);
+    }
+
+    /**
+     * Returns the bytes every record satisfying the condition contains, so records without them
+     * can be skipped before they are decoded. Only conditions requiring a field stored as text to
+     * be equal to a word qualify: numbers may be written in several ways, and names are stored as
+     * dictionary ids.
+     *
+     * @return The bytes, or null if the condition does not allow to skip records by their bytes.
+     */
+    byte[] requiredBytes() {
+      if (operator != Operator.EQUAL
+          || !field.isStoredAsText()
+          || toNumber(value) != null
+          || !VERBATIM_LITERAL.matcher(value).matches()) {
+        return null;
+      }
+      return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+      return field + " " + operator.symbol + " " + value;
+    }
+  }
+
+  private final String text; // The query as written
+  private final List<Condition> conditions;
+  private final List<QueryField> selection;
+  private final List<QueryField> grouping;
+  private final boolean distinct;
+  private final int limit; // Maximum number of result rows, or Integer.MAX_VALUE
+
+  private CaptureQuery(
+      String text,
+      List<Condition> conditions,
+      List<QueryField> selection,
+      List<QueryField> grouping,
+      boolean distinct,
+      int limit) {
+    this.text = text;
+    this.conditions = conditions;
+    this.selection = selection;
+    this.grouping = grouping;
+    this.distinct = distinct;
+    this.limit = limit;
+  }
+
+  /**
+   * Parses a query.
+   *
+   * @param text The query, an empty query lists all hits.
+   * @return The parsed query.
+   * @throws IllegalArgumentException If the query is invalid.
+   */
+  public static CaptureQuery parse(String text) {
+    Tokenizer tokens = new Tokenizer(text);
+    List<Condition> conditions = new ArrayList<>();
+    List<QueryField> selection = new ArrayList<>();
+    List<QueryField> grouping = new ArrayList<>();
+    boolean distinct = false;
+    int limit = Integer.MAX_VALUE;
+
+    while (tokens.hasNext()) {
+      String clause = tokens.next().toLowerCase(Locale.ROOT);
+      switch (clause) {
+        case "where" -> {
+          do {
+            conditions.add(parseCondition(tokens));
+          } while (tokens.skipKeyword("and"));
+        }
+        case "select" -> {
+          distinct |= tokens.skipKeyword("distinct");
+          parseFields(tokens, selection);
+        }
+        case "group" -> {
+          if (!tokens.skipKeyword("by")) {
+            throw new IllegalArgumentException("Expected 'by' after 'group'");
+          }
+          parseFields(tokens, grouping);
+        }
+        case "limit" -> {
+          String count = tokens.next();
+          if (!count.matches("\\d{1,9}")) {
+            throw new IllegalArgumentException("Expected a number after 'limit': " + count);
+          }
+          limit = Integer.parseInt(count);
+        }
+        default -> throw new IllegalArgumentException("Unexpected '" + clause + "' in the query");
+      }
+    }
+
+    if (selection.isEmpty() && grouping.isEmpty()) {
+      selection.addAll(DEFAULT_SELECTION);
+    }
+    return new CaptureQuery(
+        text.trim(),
+        List.copyOf(conditions),
+        List.copyOf(selection),
+        List.copyOf(grouping),
+        distinct,
+        limit);
+  }
+
+  private static Condition parseCondition(Tokenizer tokens) {
+    QueryField field = QueryField.parse(tokens.next());
+    String symbol = tokens.next();
+    Operator operator = null;
+    for (Operator candidate : Operator.values()) {
+      if (candidate.symbol.equals(symbol)) {
+        operator = candidate;
+      }
+    }
+    if (operator == null) {
+      throw new IllegalArgumentException("Expected a comparison after " + field + ": " + symbol);
+    }
+    String value = tokens.next();
+    Pattern pattern = null;
+    if (operator == Operator.MATCHES) {
+      try {
+        pattern = Pattern.compile(value);
+      } catch (PatternSyntaxException e) {
+        throw new IllegalArgumentException("Invalid regular expression: " + value, e);
+      }
+    }
+    return new Condition(field, operator, value, pattern);
+  }
+
+  private static void parseFields(Tokenizer tokens, List<QueryField> fields) {
+    do {
+      fields.add(QueryField.parse(tokens.next()));
+    } while (tokens.skipSymbol(","));
+  }
+
+  // Returns the text of a value as it is compared and shown, strings without their quotes
+  static String textOf(JsonElement element) {
+    if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+      return element.getAsString();
+    }
+    return element.toString();
+  }
+
+  private static BigDecimal toNumber(String text) {
+    if (text.isEmpty() || "-0123456789".indexOf(text.charAt(0)) < 0) {
+      return null;
+    }
+    try {
+      return new BigDecimal(text);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the conditions of the where clause.
+   *
+   * @return The conditions, all must hold.
+   */
+  List<Condition> getConditions() {
+    return conditions;
+  }
+
+  /**
+   * Returns the selected fields.
+   *
+   * @return The selected fields, empty if only groups are counted.
+   */
+  List<QueryField> getSelection() {
+    return selection;
+  }
+
+  /**
+   * Returns the fields the hits are grouped by.
+   *
+   * @return The grouping fields, empty if the hits are not grouped.
+   */
+  List<QueryField> getGrouping() {
+    return grouping;
+  }
+
+  /**
+   * Checks whether the result counts hits instead of listing them, because the query groups them
+   * or selects distinct values.
+   *
+   * @return true if every result row is a combination of values with its hit count.
+   */
+  boolean isAggregated() {
+    return distinct || !grouping.isEmpty();
+  }
+
+  /**
+   * Returns the maximum number of result rows.
+   *
+   * @return The limit, Integer.MAX_VALUE if the query has none.
+   */
+  int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Checks whether the query can be answered from the capture index alone, without decoding any
+   * record.
+   *
+   * @return true if all fields of the query are stored in the index.
+   */
+  boolean isIndexOnly() {
+    for (Condition condition : conditions) {
+      if (!condition.field().isIndexed()) {
+        return false;
+      }
+    }
+    for (QueryField field : selection) {
+      if (!field.isIndexed()) {
+        return false;
+      }
+    }
+    for (QueryField field : grouping) {
+      if (!field.isIndexed()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+
+  /** Splits a query into words, quoted values, comparison symbols and commas. */
+  private static class Tokenizer {
+    private static final String SYMBOLS = "=!<>~,";
+
+    private final String text;
+    private int position;
+
+    Tokenizer(String text) {
+      this.text = text;
+    }
+
+    boolean hasNext() {
+      skipWhitespace();
+      return position < text.length();
+    }
+
+    // Returns the next word, symbol or quoted value without its quotes
+    String next() {
+      if (!hasNext()) {
+        throw new IllegalArgumentException("Unexpected end of the query");
+      }
+      char c = text.charAt(position);
+      if (c == '"' || c == '\'') {
+        return quoted(c);
+      }
+      int start = position;
+      if (SYMBOLS.indexOf(c) >= 0) {
+        position++;
+        if (position < text.length() && text.charAt(position) == '=' && c != ',') {
+          position++; // "!=", "<=", ">="
+        }
+        return text.substring(start, position);
+      }
+      while (position < text.length()) {
+        c = text.charAt(position);
+        if (Character.isWhitespace(c) || SYMBOLS.indexOf(c) >= 0) {
+          break;
+        }
+        if (c == '[') {
+          skipBracket(); // Members of paths may contain any character
+        } else {
+          position++;
+        }
+      }
+      return text.substring(start, position);
+    }
+
+    boolean skipKeyword(String keyword) {
+      int start = position;
+      if (hasNext() && next().equalsIgnoreCase(keyword)) {
+        return true;
+      }
+      position = start;
+      return false;
+    }
+
+    boolean skipSymbol(String symbol) {
+      if (hasNext() && text.startsWith(symbol, position)) {
+        position += symbol.length();
+        return true;
+      }
+      return false;
+    }
+
+    private String quoted(char quote) {
+      StringBuilder value = new StringBuilder();
+      position++;
+      while (position < text.length()) {
+        char c = text.charAt(position++);
+        if (c == quote) {
+          return value.toString();
+        }
+        if (c == '\\' && position < text.length()) {
+          c = text.charAt(position++);
+        }
+        value.append(c);
+      }
+      throw new IllegalArgumentException("Unclosed quote in the query");
+    }
+
+    private void skipBracket() {
+      char quote = 0;
+      while (position < text.length()) {
+        char c = text.charAt(position++);
+        if (quote != 0) {
+          if (c == quote) quote = 0;
+        } else if (c == '\'' || c == '"') {
+          quote = c;
+        } else if (c == ']') {
+          return;
+        }
+      }
+    }
+
+    private void skipWhitespace() {
+      while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+        position++;
+      }
+    }
+  }
+}
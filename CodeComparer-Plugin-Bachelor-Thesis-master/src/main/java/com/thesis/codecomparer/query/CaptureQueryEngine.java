@@ -0,0 +1,353 @@
+package com.thesis.codecomparer.query;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.thesis.codecomparer.captureFile.CaptureIndex;
+import com.thesis.codecomparer.captureFile.CaptureReader;
+import com.thesis.codecomparer.captureFile.IndexEntry;
+import com.thesis.codecomparer.captureFile.NormalizationRules;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.captureFile.StringDictionary;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Executes {@link CaptureQuery queries} over a capture file and writes their result as a report.
+ *
+ * <p>Queries avoid reading the whole capture where they can:
+ *
+ * <ul>
+ *   <li>Conditions on the location, method and thread are answered by the sidecar {@link
+ *       CaptureIndex}, which is built on the first query of a capture without one. An equal
+ *       location or method is looked up directly; only the records of the selected hits are read.
+ *   <li>Queries using only these fields, e.g. the hit count per thread, do not decode any record.
+ *   <li>Conditions requiring a value to be equal to a word are checked on the bytes of each record
+ *       before it is decoded, so records without the word are skipped.
+ *   <li>Without grouping, result rows are written while the records are read, and reading stops
+ *       at the limit.
+ * </ul>
+ *
+ * Values are queried as they were captured, without normalization.
+ */
+public class CaptureQueryEngine {
+
+  private static final int PROGRESS_INTERVAL = 1024; // Index entries between progress updates
+
+  /**
+   * What a query read and found.
+   *
+   * @param indexedHits The number of hits in the capture.
+   * @param selectedHits The hits left after the conditions on indexed fields.
+   * @param skippedHits The selected hits skipped without decoding their record.
+   * @param decodedHits The selected hits whose record was decoded.
+   * @param unreadHits The selected hits left after the result reached the limit, neither read nor
+   *     checked.
+   * @param matchingHits The hits matching all conditions, up to the limit.
+   * @param rows The number of result rows.
+   * @param limited true if rows were left out because of the limit.
+   */
+  public record Statistics(
+      int indexedHits,
+      int selectedHits,
+      long skippedHits,
+      long decodedHits,
+      long unreadHits,
+      long matchingHits,
+      long rows,
+      boolean limited) {}
+
+  private CaptureQueryEngine() {
+    // Only static helpers
+  }
+
+  /**
+   * Runs a query over a capture and writes the result: a header, the result rows as tab separated
+   * columns with a title row, and a summary of what was read.
+   *
+   * @param captureFile The capture file, plain or block compressed.
+   * @param query The query.
+   * @param report The writer receiving the result, it is not closed.
+   * @param progress The monitor receiving the progress.
+   * @return What the query read and found.
+   * @throws IOException If the capture or its index cannot be read, or writing the result fails.
+   * @throws java.util.concurrent.CancellationException If the monitor was cancelled.
+   */
+  public static Statistics run(
+      File captureFile, CaptureQuery query, Writer report, ProgressMonitor progress)
+      throws IOException {
+    CaptureIndex index = CaptureIndex.load(captureFile);
+    List<IndexEntry> entries = selectEntries(index, query);
+
+    report.write("=== Query ===\n");
+    report.write("- Capture: " + captureFile.getName() + "\n");
+    report.write("- Query: " + query + "\n\n");
+    report.write("=== Results ===\n");
+
+    Result result = new Result(query, report);
+    long[] skippedHits = new long[1];
+    long[] decodedHits = new long[1];
+    long unreadHits;
+    if (query.isIndexOnly()) {
+      int i = 0;
+      for (; i < entries.size() && !result.isFull(); i++) {
+        if (i % PROGRESS_INTERVAL == 0) {
+          progress.checkCanceled();
+          progress.setFraction((double) i / entries.size());
+        }
+        result.add(entries.get(i), null);
+      }
+      unreadHits = entries.size() - i;
+    } else {
+      List<byte[]> requiredBytes = new ArrayList<>();
+      List<CaptureQuery.Condition> recordConditions = new ArrayList<>();
+      for (CaptureQuery.Condition condition : query.getConditions()) {
+        if (!condition.field().isIndexed()) {
+          recordConditions.add(condition);
+          byte[] bytes = condition.requiredBytes();
+          if (bytes != null) {
+            requiredBytes.add(bytes);
+          }
+        }
+      }
+
+      CaptureReader.readRecords(
+          captureFile,
+          index,
+          entries,
+          new StringDictionary(),
+          NormalizationRules.NONE,
+          (data, start, length) -> {
+            if (!containsAll(data, start, length, requiredBytes)) {
+              skippedHits[0]++;
+              return false;
+            }
+            decodedHits[0]++;
+            return true;
+          },
+          (entry, state) -> {
+            for (CaptureQuery.Condition condition : recordConditions) {
+              if (!condition.test(condition.field().valuesOf(entry, state))) {
+                return true;
+              }
+            }
+            result.add(entry, state);
+            return !result.isFull(); // The remaining records are not read
+          },
+          progress);
+      unreadHits = entries.size() - skippedHits[0] - decodedHits[0];
+    }
+    result.limited |= unreadHits > 0;
+    result.finish();
+    progress.setFraction(1);
+
+    Statistics statistics =
+        new Statistics(
+            index.getEntries().size(),
+            entries.size(),
+            skippedHits[0],
+            decodedHits[0],
+            unreadHits,
+            result.matchingHits,
+            result.rows,
+            result.limited);
+    report.write("\n=== Summary ===\n");
+    report.write("- Indexed Hits: " + statistics.indexedHits() + "\n");
+    report.write("- Selected by the Index: " + statistics.selectedHits() + "\n");
+    report.write("- Skipped without Decoding: " + statistics.skippedHits() + "\n");
+    report.write("- Decoded Records: " + statistics.decodedHits() + "\n");
+    report.write("- Matching Hits: " + statistics.matchingHits() + "\n");
+    report.write("- Result Rows: " + statistics.rows() + "\n");
+    if (statistics.limited()) {
+      report.write("- Stopped at the limit of " + query.getLimit() + " rows\n");
+    }
+    if (statistics.unreadHits() > 0) {
+      report.write("- Left Unread after the Limit: " + statistics.unreadHits() + "\n");
+    }
+    report.flush();
+    return statistics;
+  }
+
+  // Selects the hits through the index, starting from the narrowest lookup the conditions allow
+  private static List<IndexEntry> selectEntries(CaptureIndex index, CaptureQuery query) {
+    List<IndexEntry> entries = index.getEntries();
+    String fileName = null;
+    String lineNumber = null;
+    for (CaptureQuery.Condition condition : query.getConditions()) {
+      if (condition.operator() != CaptureQuery.Operator.EQUAL) continue;
+
+      List<IndexEntry> candidates = null;
+      switch (condition.field().getKind()) {
+        case LOCATION -> {
+          int separator = condition.value().lastIndexOf(':');
+          if (separator > 0 && isLineNumber(condition.value().substring(separator + 1))) {
+            candidates =
+                index.findByLocation(
+                    condition.value().substring(0, separator),
+                    Integer.parseInt(condition.value().substring(separator + 1)));
+          }
+        }
+        case METHOD -> candidates = index.findByMethod(condition.value());
+        case FILE -> fileName = condition.value();
+        case LINE -> lineNumber = condition.value();
+        default -> {
+          // Not looked up, checked below or on the records
+        }
+      }
+      if (candidates != null && candidates.size() < entries.size()) {
+        entries = candidates;
+      }
+    }
+    if (fileName != null && lineNumber != null && isLineNumber(lineNumber)) {
+      List<IndexEntry> candidates = index.findByLocation(fileName, Integer.parseInt(lineNumber));
+      if (candidates.size() < entries.size()) {
+        entries = candidates;
+      }
+    }
+
+    List<CaptureQuery.Condition> indexedConditions = new ArrayList<>();
+    for (CaptureQuery.Condition condition : query.getConditions()) {
+      if (condition.field().isIndexed()) {
+        indexedConditions.add(condition);
+      }
+    }
+    if (indexedConditions.isEmpty()) {
+      return entries;
+    }
+    List<IndexEntry> selected = new ArrayList<>();
+    for (IndexEntry entry : entries) {
+      boolean matches = true;
+      for (CaptureQuery.Condition condition : indexedConditions) {
+        matches &= condition.test(condition.field().valuesOf(entry, null));
+      }
+      if (matches) {
+        selected.add(entry);
+      }
+    }
+    return selected;
+  }
+
+  private static boolean isLineNumber(String text) {
+    return text.matches("\\d{1,9}");
+  }
+
+  private static boolean containsAll(byte[] data, int start, int length, List<byte[]> required) {
+    for (byte[] bytes : required) {
+      if (!contains(data, start, start + length, bytes)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean contains(byte[] data, int start, int end, byte[] bytes) {
+    for (int i = start; i <= end - bytes.length; i++) {
+      int matched = 0;
+      while (matched < bytes.length && data[i + matched] == bytes[matched]) {
+        matched++;
+      }
+      if (matched == bytes.length) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Collects the matching hits and writes them as result rows. */
+  private static class Result {
+    private final CaptureQuery query;
+    private final Writer report;
+    private final List<QueryField> grouping; // Empty unless the query counts hits
+    private final List<QueryField> selection;
+    // Hit counts per group and per selected values within the group, groups in order of appearance
+    private final Map<List<String>, Map<List<String>, long[]>> groups = new LinkedHashMap<>();
+    private long matchingHits;
+    private long rows;
+    private boolean limited; // Whether rows were left out because of the limit
+
+    Result(CaptureQuery query, Writer report) throws IOException {
+      this.query = query;
+      this.report = report;
+      this.grouping = query.getGrouping();
+      this.selection = query.getSelection();
+
+      List<String> titles = new ArrayList<>();
+      for (QueryField field : grouping) {
+        titles.add(field.toString());
+      }
+      for (QueryField field : selection) {
+        titles.add(field.toString());
+      }
+      if (query.isAggregated()) {
+        titles.add("count");
+      }
+      writeRow(titles);
+    }
+
+    // Rows are written right away unless the query counts hits
+    boolean isFull() {
+      return !query.isAggregated() && rows >= query.getLimit();
+    }
+
+    void add(IndexEntry entry, BreakpointState state) throws IOException {
+      matchingHits++;
+      if (!query.isAggregated()) {
+        rows++;
+        writeRow(valuesOf(selection, entry, state));
+        return;
+      }
+      groups
+          .computeIfAbsent(valuesOf(grouping, entry, state), k -> new LinkedHashMap<>())
+          .computeIfAbsent(valuesOf(selection, entry, state), k -> new long[1])[0]++;
+    }
+
+    void finish() throws IOException {
+      for (Map.Entry<List<String>, Map<List<String>, long[]>> group : groups.entrySet()) {
+        List<Map.Entry<List<String>, long[]>> counts = new ArrayList<>(group.getValue().entrySet());
+        counts.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        for (Map.Entry<List<String>, long[]> count : counts) {
+          if (rows >= query.getLimit()) {
+            limited = true;
+            return;
+          }
+          List<String> row = new ArrayList<>(group.getKey());
+          row.addAll(count.getKey());
+          row.add(Long.toString(count.getValue()[0]));
+          writeRow(row);
+          rows++;
+        }
+      }
+    }
+
+    private static List<String> valuesOf(
+        List<QueryField> fields, IndexEntry entry, BreakpointState state) {
+      List<String> values = new ArrayList<>(fields.size());
+      for (QueryField field : fields) {
+        List<JsonElement> elements = field.valuesOf(entry, state);
+        if (elements.size() == 1) {
+          values.add(CaptureQuery.textOf(elements.get(0)));
+        } else if (elements.isEmpty()) {
+          values.add("");
+        } else {
+          JsonArray array = new JsonArray();
+          elements.forEach(array::add);
+          values.add(array.toString());
+        }
+      }
+      return values;
+    }
+
+    private void writeRow(List<String> values) throws IOException {
+      StringBuilder row = new StringBuilder();
+      for (String value : values) {
+        if (row.length() > 0) {
+          row.append('\t');
+        }
+        row.append(value.replace("\t", "\\t").replace("\n", "\\n"));
+      }
+      report.write(row.append('\n').toString());
+    }
+  }
+}
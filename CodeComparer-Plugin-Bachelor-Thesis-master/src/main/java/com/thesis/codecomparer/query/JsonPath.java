@@ -0,0 +1,84 @@
+package com.thesis.codecomparer.query;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.thesis.codecomparer.captureFile.JsonPathSyntax;
+import com.thesis.codecomparer.captureFile.JsonPathSyntax.Step;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A JSON path selecting parts of a serialized value, e.g. {@code .status}, {@code .items[0].name},
+ * {@code .items[*].id} or {@code ..timestamp}. Paths are parsed like the paths of the
+ * normalization rules (see {@link JsonPathSyntax}) without their leading {@code $}, because they
+ * follow the name of the value they apply to (see {@link QueryField}).
+ */
+class JsonPath {
+
+  private final String text; // The path as written
+  private final List<Step> steps; // The steps of the path, applied in order
+
+  private JsonPath(String text, List<Step> steps) {
+    this.text = text;
+    this.steps = steps;
+  }
+
+  /**
+   * Compiles a path.
+   *
+   * @param text The path, starting with {@code .} or {@code [}, or empty for the value itself.
+   * @return The compiled path.
+   * @throws IllegalArgumentException If the path is invalid.
+   */
+  static JsonPath compile(String text) {
+    return new JsonPath(text, List.copyOf(JsonPathSyntax.parse(text, 0)));
+  }
+
+  /**
+   * Selects the parts of a value the path points to.
+   *
+   * @param value The value.
+   * @return The selected parts in document order, empty if the path does not exist in the value.
+   */
+  List<JsonElement> select(JsonElement value) {
+    List<JsonElement> current = List.of(value);
+    for (Step step : steps) {
+      List<JsonElement> next = new ArrayList<>();
+      for (JsonElement element : current) {
+        apply(step, element, next);
+      }
+      current = next;
+    }
+    return current;
+  }
+
+  // Adds the children the step selects below an element, at any depth for recursive steps
+  private static void apply(Step step, JsonElement element, List<JsonElement> selected) {
+    if (element.isJsonObject()) {
+      for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+        if (step.index() < 0 && (step.member() == null || step.member().equals(member.getKey()))) {
+          selected.add(member.getValue());
+        }
+        if (step.recursive()) {
+          apply(step, member.getValue(), selected);
+        }
+      }
+    } else if (element.isJsonArray()) {
+      JsonArray array = element.getAsJsonArray();
+      for (int i = 0; i < array.size(); i++) {
+        if (step.member() == null && (step.index() < 0 || step.index() == i)) {
+          selected.add(array.get(i));
+        }
+        if (step.recursive()) {
+          apply(step, array.get(i), selected);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
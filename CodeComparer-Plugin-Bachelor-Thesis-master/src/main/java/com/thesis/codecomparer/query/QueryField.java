@@ -0,0 +1,211 @@
+package com.thesis.codecomparer.query;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.thesis.codecomparer.captureFile.IndexEntry;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A field of a breakpoint hit that a query filters, selects or groups by. Fields are written as
+ * their name, and serialized values may be followed by a {@link JsonPath} into the value:
+ *
+ * <ul>
+ *   <li>{@code file}, {@code line}, {@code location} ({@code file:line}), {@code method} and
+ *       {@code thread}, which are stored in the capture index
+ *   <li>{@code invoked} (the method invoked on the breakpoint line), {@code exception} (the type of
+ *       a thrown exception) and {@code message} (its message)
+ *   <li>{@code return}, the return value of the invoked method, e.g. {@code return.status}
+ *   <li>{@code arg.<name>}, a parameter of the current method, e.g. {@code arg.request.items[0]}
+ *   <li>{@code invokedArg.<name>}, a parameter of the invoked method
+ * </ul>
+ */
+class QueryField {
+
+  /** The kinds of fields. */
+  enum Kind {
+    FILE(true),
+    LINE(true),
+    LOCATION(true),
+    METHOD(true),
+    THREAD(true),
+    INVOKED(false),
+    EXCEPTION(false),
+    MESSAGE(false),
+    RETURN(false),
+    ARG(false),
+    INVOKED_ARG(false);
+
+    private final boolean indexed; // Whether the capture index holds the field
+
+    Kind(boolean indexed) {
+      this.indexed = indexed;
+    }
+  }
+
+  private final String text; // The field as written
+  private final Kind kind;
+  private final String parameterName; // The parameter of ARG and INVOKED_ARG fields
+  private final JsonPath path; // Path into serialized values, the root for other fields
+
+  private QueryField(String text, Kind kind, String parameterName, JsonPath path) {
+    this.text = text;
+    this.kind = kind;
+    this.parameterName = parameterName;
+    this.path = path;
+  }
+
+  /**
+   * Parses a field.
+   *
+   * @param text The field, e.g. {@code thread} or {@code return.status}.
+   * @return The parsed field.
+   * @throws IllegalArgumentException If the field or its path is invalid.
+   */
+  static QueryField parse(String text) {
+    int nameEnd = 0;
+    while (nameEnd < text.length() && Character.isLetter(text.charAt(nameEnd))) {
+      nameEnd++;
+    }
+    String name = text.substring(0, nameEnd);
+    String rest = text.substring(nameEnd);
+    Kind kind =
+        switch (name.toLowerCase(Locale.ROOT)) {
+          case "file" -> Kind.FILE;
+          case "line" -> Kind.LINE;
+          case "location" -> Kind.LOCATION;
+          case "method" -> Kind.METHOD;
+          case "thread" -> Kind.THREAD;
+          case "invoked" -> Kind.INVOKED;
+          case "exception" -> Kind.EXCEPTION;
+          case "message" -> Kind.MESSAGE;
+          case "return" -> Kind.RETURN;
+          case "arg" -> Kind.ARG;
+          case "invokedarg" -> Kind.INVOKED_ARG;
+          default -> throw new IllegalArgumentException("Unknown field: " + text);
+        };
+
+    String parameterName = null;
+    if (kind == Kind.ARG || kind == Kind.INVOKED_ARG) {
+      int parameterEnd = 1;
+      while (parameterEnd < rest.length() && ".[".indexOf(rest.charAt(parameterEnd)) < 0) {
+        parameterEnd++;
+      }
+      if (!rest.startsWith(".") || parameterEnd == 1) {
+        throw new IllegalArgumentException("Expected a parameter name after " + name + ": " + text);
+      }
+      parameterName = rest.substring(1, parameterEnd);
+      rest = rest.substring(parameterEnd);
+    }
+    if (!rest.isEmpty() && kind != Kind.RETURN && kind != Kind.ARG && kind != Kind.INVOKED_ARG) {
+      throw new IllegalArgumentException("Only serialized values have JSON paths: " + text);
+    }
+    return new QueryField(text, kind, parameterName, JsonPath.compile(rest));
+  }
+
+  /**
+   * Returns the kind of the field.
+   *
+   * @return The kind.
+   */
+  Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Checks whether the field can be read from the capture index, without decoding the record.
+   *
+   * @return true for fields stored in the index.
+   */
+  boolean isIndexed() {
+    return kind.indexed;
+  }
+
+  /**
+   * Checks whether the field is stored as text inside the records, as opposed to names that the
+   * capture stores in its dictionary. Only such fields can be searched for in the record bytes.
+   *
+   * @return true for serialized values and exception messages.
+   */
+  boolean isStoredAsText() {
+    return kind == Kind.MESSAGE
+        || kind == Kind.RETURN
+        || kind == Kind.ARG
+        || kind == Kind.INVOKED_ARG;
+  }
+
+  /**
+   * Returns the values of the field in a hit. Paths with wildcards may select several values.
+   *
+   * @param entry The index entry of the hit.
+   * @param state The decoded hit, may be null for indexed fields.
+   * @return The values, empty if the hit does not have the field.
+   */
+  List<JsonElement> valuesOf(IndexEntry entry, BreakpointState state) {
+    return switch (kind) {
+      case FILE -> List.of(new JsonPrimitive(entry.fileName()));
+      case LINE -> List.of(new JsonPrimitive(entry.lineNumber()));
+      case LOCATION -> List.of(new JsonPrimitive(entry.locationKey()));
+      case METHOD -> List.of(new JsonPrimitive(entry.methodName()));
+      case THREAD -> List.of(new JsonPrimitive(entry.threadName()));
+      case INVOKED -> text(methodName(state.getInvokedMethodState()));
+      case EXCEPTION -> {
+        ExceptionDetails exception = state.getExceptionDetails();
+        yield text(exception != null ? exception.getExceptionType() : null);
+      }
+      case MESSAGE -> {
+        ExceptionDetails exception = state.getExceptionDetails();
+        yield text(exception != null ? exception.getExceptionMessage() : null);
+      }
+      case RETURN -> select(state.getInvokedMethodReturnValue());
+      case ARG -> select(parameterValue(state.getCurrentMethodState()));
+      case INVOKED_ARG -> select(parameterValue(state.getInvokedMethodState()));
+    };
+  }
+
+  private static String methodName(MethodState method) {
+    return method != null ? method.getMethodName() : null;
+  }
+
+  private String parameterValue(MethodState method) {
+    if (method == null || method.getParameters() == null) {
+      return null;
+    }
+    for (ParameterInfo parameter : method.getParameters()) {
+      if (parameterName.equals(parameter.getName())) {
+        return parameter.getSerializedValue();
+      }
+    }
+    return null;
+  }
+
+  private static List<JsonElement> text(String value) {
+    return value == null ? List.of() : List.of(new JsonPrimitive(value));
+  }
+
+  // Parses a serialized value, keeping values that are no JSON as a string primitive
+  private List<JsonElement> select(String json) {
+    if (json == null) {
+      return List.of();
+    }
+    JsonElement value;
+    try {
+      value = JsonParser.parseString(json);
+    } catch (JsonParseException e) {
+      value = new JsonPrimitive(json);
+    }
+    return path.select(value == null ? JsonNull.INSTANCE : value);
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
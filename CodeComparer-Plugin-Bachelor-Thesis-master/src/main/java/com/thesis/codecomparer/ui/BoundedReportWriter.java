@@ -0,0 +1,74 @@
+package com.thesis.codecomparer.ui;
+
+import java.io.Writer;
+
+/**
+ * Writer that keeps a bounded part of a report for display in the UI. The beginning of the report
+ * is kept up to a fixed number of characters, together with its last characters, which hold the
+ * summary. Everything in between is dropped and only counted, so the memory needed to show a report
+ * does not depend on its size.
+ */
+public class BoundedReportWriter extends Writer {
+
+  private final StringBuilder head = new StringBuilder(); // Beginning of the report
+  private final int headLimit; // Maximum length of the head
+  private final char[] tail; // Ring buffer with the last characters written after the head
+  private long tailWritten; // Number of characters written to the ring buffer
+
+  /**
+   * Creates a writer keeping the given number of characters.
+   *
+   * @param headLimit Number of characters kept from the beginning of the report.
+   * @param tailLimit Number of characters kept from the end of the report.
+   */
+  public BoundedReportWriter(int headLimit, int tailLimit) {
+    this.headLimit = headLimit;
+    this.tail = new char[tailLimit];
+  }
+
+  @Override
+  public void write(char[] buffer, int offset, int length) {
+    int toHead = Math.min(length, headLimit - head.length());
+    if (toHead > 0) {
+      head.append(buffer, offset, toHead);
+    }
+    for (int i = Math.max(toHead, 0); i < length && tail.length > 0; i++) {
+      tail[(int) (tailWritten++ % tail.length)] = buffer[offset + i];
+    }
+  }
+
+  @Override
+  public void write(String text, int offset, int length) {
+    write(text.toCharArray(), offset, length); // Keeps the split logic in one place
+  }
+
+  /**
+   * Returns the kept parts of the report. If characters were dropped, a note with their number is
+   * inserted between the beginning and the end of the report.
+   *
+   * @return The report text to display.
+   */
+  public String getText() {
+    if (tailWritten <= tail.length) {
+      return head.toString() + new String(tail, 0, (int) tailWritten);
+    }
+
+    int start = (int) (tailWritten % tail.length);
+    return head
+        + "\n... "
+        + (tailWritten - tail.length)
+        + " characters of the report are not shown ...\n\n"
+        + new String(tail, start, tail.length - start)
+        + new String(tail, 0, start);
+  }
+
+  @Override
+  public void flush() {
+    // Nothing to flush, the report is kept in memory
+  }
+
+  @Override
+  public void close() {
+    // Nothing to close, the report is kept in memory
+  }
+}
@@ -0,0 +1,128 @@
+package com.thesis.codecomparer.ui;
+
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.ui.JBUI;
+import com.thesis.codecomparer.captureFile.CaptureMetrics;
+import java.awt.*;
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+
+/**
+ * Live dashboard of the running capture: hits per second, pause time per hit, bytes written, the
+ * writer backlog, serializer truncations and the breakpoints costing the most pause time.
+ *
+ * <p>The panel is refreshed by a Swing timer from snapshots of the {@link CaptureMetrics}, not
+ * after every hit, so a fast capture does not flood the UI thread. The timer only runs while the
+ * panel is shown.
+ */
+class CaptureDashboardPanel extends JPanel {
+
+  private static final int REFRESH_MILLIS = 1000; // Interval between two refreshes
+  private static final int EXPENSIVE_BREAKPOINTS = 10; // Breakpoints listed by pause time
+
+  private final CaptureMetrics metrics; // Metrics of the capture
+  private final Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+  private final JLabel hitsLabel = new JLabel(); // Hits and hits per second
+  private final JLabel pauseLabel = new JLabel(); // Pause time percentiles
+  private final JLabel bytesLabel = new JLabel(); // Bytes written
+  private final JLabel backlogLabel = new JLabel(); // Records not on disk yet
+  private final JLabel truncationsLabel = new JLabel(); // Truncated values
+  private final JTextArea expensiveArea = new JTextArea(); // Most expensive breakpoints
+  private long lastHits; // Hits at the previous refresh
+  private long lastRefreshNanos; // Time of the previous refresh
+
+  /**
+   * Creates the dashboard of the given metrics.
+   *
+   * @param metrics The metrics to show.
+   */
+  CaptureDashboardPanel(CaptureMetrics metrics) {
+    super(new BorderLayout());
+    this.metrics = metrics;
+
+    JPanel counters = new JPanel(new GridLayout(0, 1));
+    counters.setBorder(BorderFactory.createTitledBorder("Capture"));
+    counters.add(hitsLabel);
+    counters.add(pauseLabel);
+    counters.add(bytesLabel);
+    counters.add(backlogLabel);
+    counters.add(truncationsLabel);
+    add(counters, BorderLayout.NORTH);
+
+    expensiveArea.setEditable(false);
+    JBScrollPane expensivePane = new JBScrollPane(expensiveArea);
+    expensivePane.setBorder(BorderFactory.createTitledBorder("Most Expensive Breakpoints"));
+    add(expensivePane, BorderLayout.CENTER);
+    setBorder(new EmptyBorder(JBUI.insets(5)));
+
+    refresh();
+  }
+
+  @Override
+  public void addNotify() {
+    super.addNotify();
+    refreshTimer.start();
+  }
+
+  @Override
+  public void removeNotify() {
+    refreshTimer.stop();
+    super.removeNotify();
+  }
+
+  // Shows a new snapshot of the metrics, hits per second are averaged since the last refresh
+  private void refresh() {
+    CaptureMetrics.Snapshot snapshot = metrics.snapshot(EXPENSIVE_BREAKPOINTS);
+    long now = System.nanoTime();
+    double seconds = (now - lastRefreshNanos) / 1e9;
+    long newHits = snapshot.hits() - lastHits;
+    String rate = // No rate on the first refresh or after the metrics were reset
+        lastRefreshNanos == 0 || newHits < 0
+            ? "-"
+            : String.format("%.1f", newHits / Math.max(seconds, 1e-3));
+    lastHits = snapshot.hits();
+    lastRefreshNanos = now;
+
+    hitsLabel.setText("Hits: " + snapshot.hits() + " (" + rate + " per second)");
+    pauseLabel.setText(
+        "Pause per hit: p50 "
+            + formatMicros(snapshot.pauseP50Micros())
+            + ", p99 "
+            + formatMicros(snapshot.pauseP99Micros()));
+    bytesLabel.setText("Bytes written: " + formatBytes(snapshot.bytesWritten()));
+    backlogLabel.setText("Records waiting in the writer: " + snapshot.writerBacklog());
+    truncationsLabel.setText("Serializer truncations: " + snapshot.truncations());
+
+    StringBuilder expensive = new StringBuilder();
+    for (CaptureMetrics.Breakpoint breakpoint : snapshot.expensiveBreakpoints()) {
+      expensive
+          .append(breakpoint.location())
+          .append(": ")
+          .append(formatMicros(breakpoint.totalPauseMicros()))
+          .append(" in ")
+          .append(breakpoint.hits())
+          .append(" hits\n");
+    }
+    expensiveArea.setText(expensive.toString());
+  }
+
+  private static String formatMicros(long micros) {
+    if (micros < 1000) {
+      return micros + " \u00b5s";
+    }
+    if (micros < 1_000_000) {
+      return String.format("%.1f ms", micros / 1e3);
+    }
+    return String.format("%.2f s", micros / 1e6);
+  }
+
+  private static String formatBytes(long bytes) {
+    if (bytes < 1024) {
+      return bytes + " B";
+    }
+    if (bytes < 1024 * 1024) {
+      return String.format("%.1f KB", bytes / 1024.0);
+    }
+    return String.format("%.1f MB", bytes / (1024.0 * 1024));
+  }
+}
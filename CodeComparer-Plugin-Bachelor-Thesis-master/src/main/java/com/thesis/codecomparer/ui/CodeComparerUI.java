@@ -1,16 +1,43 @@
 package com.thesis.codecomparer.ui;
 
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.util.ui.JBUI;
+import com.thesis.codecomparer.captureFile.BaselineStore;
+import com.thesis.codecomparer.captureFile.CaptureCache;
+import com.thesis.codecomparer.captureFile.CompactCapture;
+import com.thesis.codecomparer.captureFile.CaptureMetrics;
+import com.thesis.codecomparer.captureFile.NormalizationRules;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.comparators.BaselineProfile;
+import com.thesis.codecomparer.comparators.ComparisonResult;
 import com.thesis.codecomparer.comparators.FileComparator;
+import com.thesis.codecomparer.comparators.MultiRunComparator;
 import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.query.CaptureQuery;
+import com.thesis.codecomparer.query.CaptureQueryEngine;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
 import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeExpansionListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import org.jetbrains.annotations.NotNull;
 
 /**
  * Manages the UI for the CodeComparer functionality within the IntelliJ Debugger tab. This class
@@ -23,12 +50,31 @@ import javax.swing.*;
  */
 public class CodeComparerUI {
   private static CodeComparerUI instance; // Singleton instance of the UI
+  private static final int MAX_REPORT_HEAD_CHARS = 4_000_000; // Shown from the report's start
+  private static final int MAX_REPORT_TAIL_CHARS = 500_000; // Shown from its end (the summary)
+  private static final double PARSE_FRACTION = 0.5; // Part of the progress spent parsing
+  private static final int STORED_BASELINE_RUNS = 20; // Stored runs compared with a location
   private final JPanel mainPanel; // Main container for the debugging tab
   private JLabel errorLabel; // Label to display errors
 
   private JPanel errorPanel; // Panel to display errors
   private JTextField filePathField; // Text field to display the file path
   private final JTextArea reportArea; // Text area to display the report
+  private final JTree differenceTree; // Tree to browse the differences of two files
+  private final JTextArea differenceDetailArea; // Full text of the selected difference
+  private ReportAreaWriter runningReport; // Report of the running comparison, or null
+  private String lastQuery = "group by location"; // Offered again by the next query
+  private final StatusChannel statusChannel =
+      new StatusChannel(this::showStatus); // Coalesces errors and file paths from any thread
+
+  /**
+   * Writes a report on a background thread, checking the monitor to stop when cancelled, and
+   * returns the differences to browse, or null if the report has none.
+   */
+  private interface ReportTask {
+    DifferenceTreeModel write(Writer report, ProgressIndicator indicator, ProgressMonitor progress)
+        throws IOException;
+  }
 
   /**
    * Private constructor to initialize the UI components. Use the getInstance() method to access the
@@ -37,6 +83,8 @@ public class CodeComparerUI {
   private CodeComparerUI() {
     mainPanel = new JPanel(new GridBagLayout()); // Use GridBagLayout for flexible sizing
     reportArea = createReportArea();
+    differenceTree = createDifferenceTree();
+    differenceDetailArea = createDifferenceDetailArea();
 
     // Add components to the main panel with appropriate layout constraints
     addStatusPanels(); // Add Status Panels (Error and File Path)
@@ -86,12 +134,13 @@ public class CodeComparerUI {
   }
 
   /**
-   * Updates the file path display with a new file path.
+   * Updates the file path display with a new file path. May be called from any thread, the display
+   * is updated on the event dispatch thread together with other recent status updates.
    *
    * @param filePath The file path to display.
    */
   public void updateFilePathDisplay(String filePath) {
-    filePathField.setText(filePath);
+    statusChannel.postFilePath(filePath);
   }
 
   /**
@@ -112,19 +161,46 @@ public class CodeComparerUI {
   }
 
   /**
-   * Updates the error message display. If there are errors, display the error message in red.
+   * Updates the error message display. If there are errors, display the error message in red. May
+   * be called from any thread: errors are counted by kind and shown on the event dispatch thread at
+   * most {@link StatusChannel#MAX_FLUSHES_PER_SECOND} times per second.
    *
    * @param message The error message to display (null or empty indicates no errors).
    */
   public void updateErrorDisplay(String message) {
     if (message != null && !message.trim().isEmpty()) {
-      errorLabel.setText(message);
-      errorLabel.setForeground(JBColor.RED); // Red for errors
+      statusChannel.postError(message);
     }
+  }
 
-    // Refresh the main panel to reflect the changes
-    mainPanel.revalidate();
-    mainPanel.repaint();
+  /**
+   * Shows a coalesced status: the latest error in red, with the number of errors per kind in its
+   * tooltip, and the latest file path.
+   *
+   * @param status The status to show.
+   */
+  private void showStatus(StatusChannel.Status status) {
+    if (status.filePath() != null) {
+      filePathField.setText(status.filePath());
+    }
+    if (status.latestError() == null) {
+      return;
+    }
+
+    long total = status.totalErrors();
+    errorLabel.setText(
+        total > 1 ? status.latestError() + " (" + total + " errors)" : status.latestError());
+    errorLabel.setForeground(JBColor.RED); // Red for errors
+    StringBuilder tooltip = new StringBuilder("<html>");
+    for (var count : status.errorCounts()) {
+      String kind = count.getKey().replace("&", "&amp;").replace("<", "&lt;");
+      tooltip.append(count.getValue()).append(" x ").append(kind).append("<br>");
+    }
+    errorLabel.setToolTipText(tooltip.append("</html>").toString());
+
+    // Refresh the error panel to reflect the changes
+    errorPanel.revalidate();
+    errorPanel.repaint();
   }
 
   /** Adds the file selection panel to the main panel with appropriate constraints. */
@@ -153,7 +229,95 @@ public class CodeComparerUI {
     gbc.weighty = 0.8; // Larger weight for height
     gbc.fill = GridBagConstraints.BOTH;
     gbc.insets = JBUI.insets(5);
-    mainPanel.add(new JBScrollPane(reportArea), gbc);
+    mainPanel.add(createReportTabs(), gbc);
+  }
+
+  /**
+   * Creates the tabs showing the report as text and as a tree of differences, and the live
+   * dashboard of the running capture.
+   *
+   * @return A JTabbedPane with the report, the difference tree and the capture dashboard.
+   */
+  private JTabbedPane createReportTabs() {
+    JSplitPane differencePane =
+        new JSplitPane(
+            JSplitPane.VERTICAL_SPLIT,
+            new JBScrollPane(differenceTree),
+            new JBScrollPane(differenceDetailArea));
+    differencePane.setResizeWeight(0.8); // The tree gets most of the space
+
+    JTabbedPane tabs = new JTabbedPane();
+    tabs.addTab("Report", new JBScrollPane(reportArea));
+    tabs.addTab("Differences", differencePane);
+    tabs.addTab("Live Capture", new CaptureDashboardPanel(CaptureMetrics.getInstance()));
+    return tabs;
+  }
+
+  /**
+   * Creates the tree browsing the differences of two files. The tree uses a fixed row height and
+   * the large model mode, so only the visible rows are asked from the lazy {@link
+   * DifferenceTreeModel}. Double-clicking a difference opens its values side by side.
+   *
+   * @return A JTree showing a placeholder until a comparison is finished.
+   */
+  private JTree createDifferenceTree() {
+    JTree tree = new JTree(placeholderModel("Please select files to compare."));
+    tree.setRowHeight(JBUI.scale(20));
+    tree.setLargeModel(true);
+    tree.addTreeSelectionListener(e -> showSelectedDifference());
+    tree.addTreeExpansionListener(
+        new TreeExpansionListener() {
+          @Override
+          public void treeExpanded(TreeExpansionEvent e) {
+            if (tree.getModel() instanceof DifferenceTreeModel differences) {
+              differences.setExpanded(e.getPath(), true);
+            }
+          }
+
+          @Override
+          public void treeCollapsed(TreeExpansionEvent e) {
+            if (tree.getModel() instanceof DifferenceTreeModel differences) {
+              differences.setExpanded(e.getPath(), false);
+            }
+          }
+        });
+    tree.addMouseListener(
+        new MouseAdapter() {
+          @Override
+          public void mouseClicked(MouseEvent e) {
+            if (e.getClickCount() == 2
+                && tree.getModel() instanceof DifferenceTreeModel differences) {
+              differences.openValueDiff(tree.getPathForLocation(e.getX(), e.getY()));
+            }
+          }
+        });
+    return tree;
+  }
+
+  /**
+   * Creates the text area showing the full text of the selected difference.
+   *
+   * @return A read only JTextArea with a titled border.
+   */
+  private JTextArea createDifferenceDetailArea() {
+    JTextArea textArea = new JTextArea();
+    textArea.setEditable(false);
+    textArea.setLineWrap(true);
+    textArea.setBorder(BorderFactory.createTitledBorder("Selected Difference"));
+    return textArea;
+  }
+
+  // Shows the full text of the selected difference, it is only loaded when its row is opened
+  private void showSelectedDifference() {
+    TreePath path = differenceTree.getSelectionPath();
+    Object node = path == null ? null : path.getLastPathComponent();
+    differenceDetailArea.setText(
+        node instanceof DifferenceTreeModel.DifferenceNode difference ? difference.text() : "");
+    differenceDetailArea.setCaretPosition(0);
+  }
+
+  private static TreeModel placeholderModel(String message) {
+    return new DefaultTreeModel(new DefaultMutableTreeNode(message));
   }
 
   /**
@@ -162,7 +326,7 @@ public class CodeComparerUI {
    *
    * @return The single DebuggerCodeComparerUI instance.
    */
-  public static CodeComparerUI getInstance() {
+  public static synchronized CodeComparerUI getInstance() {
     if (instance == null) {
       instance = new CodeComparerUI();
     }
@@ -182,8 +346,31 @@ public class CodeComparerUI {
     JButton selectFilesButton = new JButton("Select Files & Compare");
     selectFilesButton.addActionListener(e -> showFileSelectionDialog());
 
-    // Add the button to the panel
+    // Button for comparing a baseline with several candidate runs
+    JButton compareRunsButton = new JButton("Compare Baseline with Runs");
+    compareRunsButton.addActionListener(e -> showMultiRunSelectionDialog());
+
+    // Button for checking a run against a baseline of repeated reference runs
+    JButton compareReferenceButton = new JButton("Compare with Reference Runs");
+    compareReferenceButton.addActionListener(e -> showReferenceRunsSelectionDialog());
+
+    // Buttons for keeping runs in the baseline store and comparing a location with them
+    JButton saveBaselineButton = new JButton("Save Run as Baseline");
+    saveBaselineButton.addActionListener(e -> showSaveBaselineDialog());
+    JButton compareStoredButton = new JButton("Compare Location with Stored Baselines");
+    compareStoredButton.addActionListener(e -> showStoredBaselineDialog());
+
+    // Button for querying the hits of a capture
+    JButton queryButton = new JButton("Query Capture");
+    queryButton.addActionListener(e -> showQueryDialog());
+
+    // Add the buttons to the panel
     filePanel.add(selectFilesButton);
+    filePanel.add(compareRunsButton);
+    filePanel.add(compareReferenceButton);
+    filePanel.add(saveBaselineButton);
+    filePanel.add(compareStoredButton);
+    filePanel.add(queryButton);
 
     return filePanel;
   }
@@ -202,7 +389,10 @@ public class CodeComparerUI {
     return textArea;
   }
 
-  /** Handles the file selection process, performs the comparison, and displays the results. */
+  /**
+   * Handles the file selection process, and compares the files in the background while the report
+   * is shown as it is written.
+   */
   public void showFileSelectionDialog() {
     String file1Path = selectFile("Select First File to Compare");
     if (file1Path == null) return;
@@ -210,24 +400,328 @@ public class CodeComparerUI {
     String file2Path = selectFile("Select Second File to Compare");
     if (file2Path == null) return;
 
-    String result;
+    // Extract file names from file paths
+    String file1Name = new File(file1Path).getName();
+    String file2Name = new File(file2Path).getName();
+
+    runComparison(
+        "Comparing " + file1Name + " and " + file2Name,
+        (report, indicator, progress) -> {
+          // Parse the files, captures compared before are served from the cache
+          NormalizationRules rules = NormalizationRules.configured();
+          indicator.setText("Parsing " + file1Name);
+          CompactCapture capture1 =
+              loadCapture(file1Path, rules, progress.range(0, PARSE_FRACTION / 2));
+          indicator.setText("Parsing " + file2Name);
+          CompactCapture capture2 =
+              loadCapture(file2Path, rules, progress.range(PARSE_FRACTION / 2, PARSE_FRACTION));
+
+          // Compare the files, every finished breakpoint is shown right away
+          indicator.setText("Comparing " + file1Name + " and " + file2Name);
+          ComparisonResult result =
+              FileComparator.writeGroupedReport(
+                  capture1,
+                  capture2,
+                  file1Name,
+                  file2Name,
+                  report,
+                  ForkJoinPool.commonPool(),
+                  progress.range(PARSE_FRACTION, 1));
+
+          // The browsed hits are read from the files, so the cache can still evict the captures
+          ComparisonResult browsed =
+              result.readingHitsFrom(new File(file1Path), new File(file2Path), rules);
+          return new DifferenceTreeModel(browsed, new ValueDiffOpener(browsed));
+        });
+  }
+
+  /**
+   * Handles the selection of a baseline and several candidate runs, compares all of them in one
+   * pass in the background and displays the matrix report.
+   */
+  public void showMultiRunSelectionDialog() {
+    String baselinePath = selectFile("Select Baseline File");
+    if (baselinePath == null) return;
+
+    List<String> candidatePaths = selectFiles("Select Files to Compare with the Baseline");
+    if (candidatePaths.isEmpty()) return;
+
+    List<String> paths = prepend(baselinePath, candidatePaths);
+    runComparison(
+        "Comparing " + paths.size() + " runs",
+        (report, indicator, progress) -> {
+          NormalizationRules rules = NormalizationRules.configured();
+          List<List<BreakpointState>> runs = new ArrayList<>();
+          List<String> runNames = new ArrayList<>();
+          for (String path : paths) {
+            String runName = new File(path).getName();
+            indicator.setText("Parsing " + runName);
+            double from = PARSE_FRACTION * runs.size() / paths.size();
+            double to = PARSE_FRACTION * (runs.size() + 1) / paths.size();
+            CompactCapture capture = loadCapture(path, rules, progress.range(from, to));
+            runs.add(new ArrayList<>(capture.asStates()));
+            runNames.add(runName);
+          }
+
+          indicator.setText("Comparing " + paths.size() + " runs");
+          MultiRunComparator.writeMatrixReport(
+              runs, runNames, report, progress.range(PARSE_FRACTION, 1));
+          return null;
+        });
+  }
+
+  /**
+   * Handles the selection of several reference runs of the old version and one run to check. The
+   * baseline profile of the reference runs is built in the background, and the values that fall
+   * outside it are displayed.
+   */
+  public void showReferenceRunsSelectionDialog() {
+    List<String> referencePaths = selectFiles("Select Reference Runs");
+    if (referencePaths.isEmpty()) return;
+
+    String filePath = selectFile("Select File to Check");
+    if (filePath == null) return;
+
+    String fileName = new File(filePath).getName();
+    runComparison(
+        "Checking " + fileName + " against " + referencePaths.size() + " reference runs",
+        (report, indicator, progress) -> {
+          NormalizationRules rules = NormalizationRules.configured();
+          BaselineProfile profile = new BaselineProfile();
+          int parsed = 0;
+          for (String path : referencePaths) {
+            indicator.setText("Parsing " + new File(path).getName());
+            double from = PARSE_FRACTION * parsed / (referencePaths.size() + 1);
+            double to = PARSE_FRACTION * ++parsed / (referencePaths.size() + 1);
+            CompactCapture capture = loadCapture(path, rules, progress.range(from, to));
+            profile.addRun(new ArrayList<>(capture.asStates()));
+          }
+          indicator.setText("Parsing " + fileName);
+          CompactCapture capture =
+              loadCapture(
+                  filePath,
+                  rules,
+                  progress.range(PARSE_FRACTION * parsed / (parsed + 1), PARSE_FRACTION));
+          List<BreakpointState> states = new ArrayList<>(capture.asStates());
+
+          indicator.setText("Checking " + fileName);
+          FileComparator.writeBaselineReport(
+              profile, states, fileName, report, progress.range(PARSE_FRACTION, 1));
+          return null;
+        });
+  }
+
+  /**
+   * Handles the selection of a run and its id, and adds the run to the baseline store in the
+   * background. Stored runs beyond the configured retention are removed afterwards.
+   */
+  public void showSaveBaselineDialog() {
+    String filePath = selectFile("Select Run to Save as Baseline");
+    if (filePath == null) return;
+
+    String runId =
+        JOptionPane.showInputDialog(mainPanel, "Id of the run:", new File(filePath).getName());
+    if (runId == null || runId.isBlank()) return;
+
+    runComparison(
+        "Saving " + runId.trim() + " as baseline",
+        (report, indicator, progress) -> {
+          try (BaselineStore store = openBaselineStore()) {
+            BaselineStore.RunInfo run = store.addRun(runId.trim(), new File(filePath), progress);
+            int removed = store.applyRetention(BaselineStore.RetentionPolicy.configured());
+            report.write("Saved " + run.hits() + " hits of " + filePath + " as " + run.id() + "\n");
+            report.write("- Stored Runs: " + store.getRuns().size() + "\n");
+            report.write("- Removed by Retention: " + removed + "\n");
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Handles the selection of a run and a breakpoint location, and compares the hits of the
+   * location with the most recent runs of the baseline store in the background. Only the hits of
+   * the location are read, through the sidecar index of the run and the index of the store.
+   */
+  public void showStoredBaselineDialog() {
+    String filePath = selectFile("Select Run to Compare with Stored Baselines");
+    if (filePath == null) return;
+
+    String location =
+        JOptionPane.showInputDialog(mainPanel, "Breakpoint location (e.g. Main:42):");
+    if (location == null) return;
+
+    int separator = location.lastIndexOf(':');
+    int lineNumber;
+    try {
+      lineNumber = Integer.parseInt(location.substring(separator + 1).trim());
+    } catch (NumberFormatException e) {
+      lineNumber = -1;
+    }
+    if (separator <= 0 || lineNumber < 0) {
+      updateErrorDisplay("Invalid breakpoint location: " + location);
+      return;
+    }
+
+    String fileName = location.substring(0, separator).trim();
+    int line = lineNumber;
+    runComparison(
+        "Comparing " + fileName + ":" + line + " with stored baselines",
+        (report, indicator, progress) -> {
+          try (BaselineStore store = openBaselineStore()) {
+            FileComparator.writeStoredBaselineReport(
+                filePath,
+                store,
+                fileName,
+                line,
+                STORED_BASELINE_RUNS,
+                NormalizationRules.configured(),
+                report,
+                progress);
+          }
+          return null;
+        });
+  }
+
+  /**
+   * Handles the selection of a capture and a query, and runs the query over the capture in the
+   * background. The result is shown in the report area.
+   */
+  public void showQueryDialog() {
+    String filePath = selectFile("Select Capture to Query");
+    if (filePath == null) return;
+
+    String text =
+        (String)
+            JOptionPane.showInputDialog(
+                mainPanel,
+                "Query, e.g. where invoked = parse and return.status != OK group by location:",
+                "Query Capture",
+                JOptionPane.PLAIN_MESSAGE,
+                null,
+                null,
+                lastQuery);
+    if (text == null) return;
+
+    CaptureQuery query;
     try {
-      // Parse and compare the files
-      List<BreakpointState> file1States = FileComparator.parseFile(file1Path);
-      List<BreakpointState> file2States = FileComparator.parseFile(file2Path);
-
-      // Extract file names from file paths
-      String file1Name = new File(file1Path).getName();
-      String file2Name = new File(file2Path).getName();
-
-      // Generate the report
-      result = FileComparator.generateGroupedReport(file1States, file2States, file1Name, file2Name);
-    } catch (IOException e) {
-      result = "Error while parsing file: " + e.getMessage();
+      query = CaptureQuery.parse(text);
+    } catch (IllegalArgumentException e) {
+      updateErrorDisplay("Invalid query: " + e.getMessage());
+      return;
+    }
+    lastQuery = text;
+
+    runComparison(
+        "Querying " + new File(filePath).getName(),
+        (report, indicator, progress) -> {
+          CaptureQueryEngine.run(new File(filePath), query, report, progress);
+          return null;
+        });
+  }
+
+  // The store lives next to the capture output, it is opened for every action
+  private static BaselineStore openBaselineStore() throws IOException {
+    return BaselineStore.open(new File(BaselineStore.DEFAULT_DIRECTORY));
+  }
+
+  /**
+   * Runs a comparison as a cancellable background task. The report area is cleared and shows the
+   * report while it is written; once the comparison is finished, it shows the bounded report with
+   * its summary. Starting a comparison cancels the one still running, and a cancelled comparison
+   * keeps the part of the report written so far.
+   *
+   * @param title The title of the progress indicator.
+   * @param comparison The comparison writing the report.
+   */
+  private void runComparison(String title, ReportTask comparison) {
+    if (runningReport != null) {
+      runningReport.detach(); // Also cancels its comparison
     }
+    ReportAreaWriter report =
+        new ReportAreaWriter(reportArea, MAX_REPORT_HEAD_CHARS, MAX_REPORT_TAIL_CHARS);
+    runningReport = report;
+    reportArea.setText("");
+    differenceTree.setModel(placeholderModel(title + " ..."));
+
+    new Task.Backgroundable(null, title, true) {
+      private String error; // Message shown instead of the report if the comparison failed
+      private DifferenceTreeModel differences; // Differences to browse, or null
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        try {
+          ProgressMonitor progress = new IndicatorMonitor(indicator, report::isDetached);
+          differences = comparison.write(report, indicator, progress);
+        } catch (IOException e) {
+          error = "Error while parsing file: " + e.getMessage();
+        } catch (CancellationException e) {
+          // Cancelled by the user or by a newer comparison, handled on the event dispatch thread
+        } catch (ProcessCanceledException e) {
+          throw e; // The platform cancels the task through it
+        } catch (RuntimeException e) {
+          // E.g. a malformed record or a record that cannot be read again while browsing
+          error = "Error while comparing: " + e;
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        showFinishedReport(
+            report,
+            error != null ? error : report.getText(),
+            differences != null
+                ? differences
+                : placeholderModel("Only comparisons of two files can be browsed here."));
+      }
+
+      @Override
+      public void onCancel() {
+        showFinishedReport(
+            report,
+            report.getText() + "\n=== Comparison cancelled ===\n",
+            placeholderModel("The comparison was cancelled."));
+      }
+    }.queue();
+  }
+
+  // Replaces the live report with its final text, unless a newer comparison uses the area
+  private void showFinishedReport(ReportAreaWriter report, String text, TreeModel differences) {
+    if (report.isDetached()) return;
+
+    report.detach();
+    runningReport = null;
+    reportArea.setText(text);
+    differenceTree.setModel(differences);
+    differenceDetailArea.setText("");
+  }
+
+  /**
+   * Parses a capture file with the given normalization rules, or returns it from the cache if it
+   * was parsed with the same rules before. Comparators needing beans copy {@link
+   * CompactCapture#asStates()} into a list, since the view builds a new bean on every access.
+   *
+   * @param filePath The path of the capture file.
+   * @param rules The rules normalizing run specific parts of the values.
+   * @param progress The monitor receiving the parse progress.
+   * @return The capture.
+   * @throws IOException If the capture cannot be read.
+   */
+  private static CompactCapture loadCapture(
+      String filePath, NormalizationRules rules, ProgressMonitor progress) throws IOException {
+    progress.checkCanceled();
+    return CaptureCache.getInstance()
+        .get(
+            filePath,
+            rules,
+            (path, dictionary) -> FileComparator.parseCompact(path, dictionary, rules, progress));
+  }
 
-    // Display the result in the report area
-    reportArea.setText(result);
+  private static List<String> prepend(String first, List<String> rest) {
+    List<String> all = new ArrayList<>();
+    all.add(first);
+    all.addAll(rest);
+    return all;
   }
 
   /**
@@ -241,7 +735,8 @@ public class CodeComparerUI {
     fileChooser.setDialogTitle(title);
     fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
     fileChooser.setFileFilter(
-        new javax.swing.filechooser.FileNameExtensionFilter("Text Files (*.txt)", "txt"));
+        new javax.swing.filechooser.FileNameExtensionFilter(
+            "Capture Files (*.txt, *.ccz)", "txt", "ccz"));
 
     int returnValue = fileChooser.showOpenDialog(null);
     if (returnValue == JFileChooser.APPROVE_OPTION) {
@@ -251,6 +746,30 @@ public class CodeComparerUI {
     return null;
   }
 
+  /**
+   * Opens a file chooser dialog to let the user select several files.
+   *
+   * @param title The title of the file chooser dialog.
+   * @return The absolute paths of the selected files, empty if no file is selected.
+   */
+  private List<String> selectFiles(String title) {
+    JFileChooser fileChooser = new JFileChooser();
+    fileChooser.setDialogTitle(title);
+    fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+    fileChooser.setMultiSelectionEnabled(true);
+    fileChooser.setFileFilter(
+        new javax.swing.filechooser.FileNameExtensionFilter(
+            "Capture Files (*.txt, *.ccz)", "txt", "ccz"));
+
+    List<String> paths = new ArrayList<>();
+    if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+      for (File selectedFile : fileChooser.getSelectedFiles()) {
+        paths.add(selectedFile.getAbsolutePath());
+      }
+    }
+    return paths;
+  }
+
   /** Copies the file path to the clipboard. */
   private void copyFilePathToClipboard() {
     String filePath = filePathField.getText();
@@ -274,6 +793,7 @@ public class CodeComparerUI {
    * outdated messages from persisting.
    */
   public void resetUI() {
+    statusChannel.reset(); // Errors of the previous session are not shown again
     // Remove all components from the panel
     mainPanel.removeAll();
 
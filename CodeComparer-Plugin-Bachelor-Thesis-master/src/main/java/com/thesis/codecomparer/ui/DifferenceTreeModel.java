@@ -0,0 +1,301 @@
+package com.thesis.codecomparer.ui;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.thesis.codecomparer.comparators.ComparisonResult;
+import com.thesis.codecomparer.comparators.StateComparator;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tree model of the differences of a comparison: one row per differing breakpoint, below it one
+ * row per section of the breakpoint (e.g. "Current Method" or "Return Value") and below that one
+ * row per difference, e.g. a changed parameter path.
+ *
+ * <p>Nothing is created up front. Breakpoint rows are created when the tree asks for them, i.e.
+ * when they are scrolled into view, and the differences of a breakpoint are computed when it is
+ * expanded. Computing them reads both hits from the capture files and compares their values, so it
+ * runs in the background while the breakpoint shows a loading row; the sections replace it once
+ * they are ready. Only the sections of the most recently expanded breakpoints are kept, and those
+ * of breakpoints the tree still shows expanded (see {@link #setExpanded(TreePath, boolean)}).
+ * Together with a fixed row height, the tree stays responsive for a million differing breakpoints.
+ */
+public class DifferenceTreeModel implements TreeModel {
+
+  private static final int MAX_CACHED_BREAKPOINTS = 256; // Breakpoints keeping their sections
+  private static final int MAX_ROW_CHARS = 200; // Longer differences are shortened in their row
+
+  private final ComparisonResult result; // The compared breakpoints
+  private final ValueDiffOpener valueDiffOpener; // Opens the values behind a difference
+  private final String rootLabel; // Label of the root row
+  private final List<TreeModelListener> listeners = new ArrayList<>(); // Registered listeners
+  private final Map<Integer, List<?>> sections =
+      new LinkedHashMap<>(16, 0.75f, true); // Sections of the loaded breakpoints, in access order
+  private final Set<Integer> loading = new HashSet<>(); // Breakpoints whose sections are computed
+  private final Set<Integer> expanded = new HashSet<>(); // Breakpoints the tree shows expanded
+
+  /**
+   * Creates the model of a comparison result.
+   *
+   * @param result The result to browse.
+   * @param valueDiffOpener Opens the values behind a difference of the result.
+   */
+  public DifferenceTreeModel(ComparisonResult result, ValueDiffOpener valueDiffOpener) {
+    this.result = result;
+    this.valueDiffOpener = valueDiffOpener;
+    this.rootLabel =
+        result.size()
+            + " of "
+            + result.getTotalBreakpoints()
+            + " breakpoints differ ("
+            + result.getFile1Name()
+            + " vs "
+            + result.getFile2Name()
+            + ")";
+  }
+
+  /** Row of a differing breakpoint. */
+  record BreakpointNode(int index, String label) {
+    @Override
+    public String toString() {
+      return label;
+    }
+  }
+
+  /** Row of a section of a breakpoint, e.g. "Current Method", with its differences. */
+  record SectionNode(int breakpointIndex, String name, List<DifferenceNode> differences) {
+    @Override
+    public String toString() {
+      return name + " (" + differences.size() + ")";
+    }
+  }
+
+  /** Row shown below a breakpoint instead of its sections, while loading or if they failed. */
+  record MessageNode(String text) {
+    @Override
+    public String toString() {
+      return text;
+    }
+  }
+
+  /** Row of a single difference, its full text is only shown when the row is opened. */
+  record DifferenceNode(String text) {
+    @Override
+    public String toString() {
+      String row = text.replace('\n', ' ');
+      return row.length() <= MAX_ROW_CHARS ? row : row.substring(0, MAX_ROW_CHARS) + " ...";
+    }
+  }
+
+  /**
+   * Opens the diff viewer on the values behind a difference row, loading them in the background.
+   *
+   * @param path The path of a difference row.
+   * @return True if a diff is opened, false if the path is not a difference row.
+   */
+  public boolean openValueDiff(TreePath path) {
+    if (path == null
+        || !(path.getLastPathComponent() instanceof DifferenceNode difference)
+        || !(path.getParentPath().getLastPathComponent() instanceof SectionNode section)) {
+      return false;
+    }
+    valueDiffOpener.open(section.breakpointIndex(), section.name(), difference.text());
+    return true;
+  }
+
+  /**
+   * Tells the model that the tree expanded or collapsed a row. The tree keeps the children of an
+   * expanded breakpoint, so its sections are not evicted until it is collapsed again.
+   *
+   * @param path The path of the row.
+   * @param isExpanded Whether the row is expanded now.
+   */
+  public void setExpanded(TreePath path, boolean isExpanded) {
+    if (path.getLastPathComponent() instanceof BreakpointNode breakpoint) {
+      if (isExpanded) {
+        expanded.add(breakpoint.index());
+      } else {
+        expanded.remove(breakpoint.index());
+      }
+    } else if (path.getLastPathComponent() == rootLabel && !isExpanded) {
+      expanded.clear(); // The breakpoints stay expanded, but the tree shows none of them
+    }
+  }
+
+  @Override
+  public Object getRoot() {
+    return rootLabel;
+  }
+
+  @Override
+  public Object getChild(Object parent, int index) {
+    if (parent == rootLabel) {
+      return breakpointNode(index);
+    }
+    if (parent instanceof BreakpointNode breakpoint) {
+      return sectionsOf(breakpoint.index()).get(index);
+    }
+    return ((SectionNode) parent).differences().get(index);
+  }
+
+  @Override
+  public int getChildCount(Object parent) {
+    if (parent == rootLabel) {
+      return result.size();
+    }
+    if (parent instanceof BreakpointNode breakpoint) {
+      return sectionsOf(breakpoint.index()).size();
+    }
+    if (parent instanceof SectionNode section) {
+      return section.differences().size();
+    }
+    return 0;
+  }
+
+  @Override
+  public boolean isLeaf(Object node) {
+    if (node instanceof BreakpointNode breakpoint) {
+      // Breakpoints found in only one file have no differences to expand
+      return result.getHitIndex1(breakpoint.index()) < 0
+          || result.getHitIndex2(breakpoint.index()) < 0;
+    }
+    return node instanceof DifferenceNode || node instanceof MessageNode;
+  }
+
+  @Override
+  public int getIndexOfChild(Object parent, Object child) {
+    if (parent == rootLabel && child instanceof BreakpointNode breakpoint) {
+      return breakpoint.index();
+    }
+    if (parent instanceof BreakpointNode breakpoint) {
+      return sectionsOf(breakpoint.index()).indexOf(child);
+    }
+    if (parent instanceof SectionNode section) {
+      return section.differences().indexOf(child);
+    }
+    return -1;
+  }
+
+  @Override
+  public void valueForPathChanged(TreePath path, Object newValue) {
+    // The rows are read only
+  }
+
+  @Override
+  public void addTreeModelListener(TreeModelListener listener) {
+    listeners.add(listener); // Notified when the sections of a breakpoint are loaded
+  }
+
+  @Override
+  public void removeTreeModelListener(TreeModelListener listener) {
+    listeners.remove(listener);
+  }
+
+  // The label is built from the location, the hits of the breakpoint are not read
+  private BreakpointNode breakpointNode(int index) {
+    String label =
+        "Breakpoint "
+            + result.getBreakpointNumber(index)
+            + " (Class: "
+            + result.getFileName(index)
+            + ", Line: "
+            + result.getLineNumber(index)
+            + ")";
+    boolean inFile1 = result.getHitIndex1(index) >= 0;
+    if (!inFile1 || result.getHitIndex2(index) < 0) {
+      label += " only in " + (inFile1 ? result.getFile1Name() : result.getFile2Name());
+    }
+    return new BreakpointNode(index, label);
+  }
+
+  /**
+   * Returns the sections of a breakpoint. Sections that are not cached are computed in the
+   * background, meanwhile a loading row is returned.
+   *
+   * @param index The index of the differing breakpoint.
+   * @return The sections, or a single message row.
+   */
+  private List<?> sectionsOf(int index) {
+    List<?> cached = sections.get(index);
+    if (cached != null) {
+      return cached;
+    }
+    if (loading.add(index)) {
+      loadSections(index);
+    }
+    return List.of(new MessageNode("Loading differences ..."));
+  }
+
+  // Computes the sections of a breakpoint in the background and replaces its loading row
+  private void loadSections(int index) {
+    String title = "Comparing breakpoint " + result.getBreakpointNumber(index);
+    new Task.Backgroundable(null, title, false) {
+      private List<?> nodes; // The sections, or a message row if they cannot be computed
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        try {
+          nodes = groupBySection(index);
+        } catch (UncheckedIOException e) {
+          nodes =
+              List.of(
+                  new MessageNode("Error while reading the hits: " + e.getCause().getMessage()));
+        } catch (RuntimeException e) {
+          nodes = List.of(new MessageNode("Error while comparing the hits: " + e));
+        }
+      }
+
+      @Override
+      public void onFinished() {
+        loading.remove(index);
+        if (nodes == null) return; // Failed with an error, the platform reports it
+
+        sections.put(index, nodes);
+        evictSections();
+        TreeModelEvent event =
+            new TreeModelEvent(
+                DifferenceTreeModel.this, new Object[] {rootLabel, breakpointNode(index)});
+        for (TreeModelListener listener : new ArrayList<>(listeners)) {
+          listener.treeStructureChanged(event);
+        }
+      }
+    }.queue();
+  }
+
+  // Drops the least recently used sections beyond the limit, except those of expanded breakpoints
+  private void evictSections() {
+    int excess = sections.size() - MAX_CACHED_BREAKPOINTS;
+    Iterator<Integer> indexes = sections.keySet().iterator(); // Least recently used first
+    while (excess > 0 && indexes.hasNext()) {
+      if (!expanded.contains(indexes.next())) {
+        indexes.remove();
+        excess--;
+      }
+    }
+  }
+
+  // Groups the differences of a breakpoint by section, keeping the order of the report
+  private List<SectionNode> groupBySection(int index) {
+    Map<String, List<DifferenceNode>> bySection = new LinkedHashMap<>();
+    for (String difference : result.getDifferences(index)) {
+      String[] parts = StateComparator.splitDifference(difference);
+      bySection
+          .computeIfAbsent(parts[0], k -> new ArrayList<>())
+          .add(new DifferenceNode(parts[1].isEmpty() ? parts[0] : parts[1]));
+    }
+    List<SectionNode> nodes = new ArrayList<>();
+    bySection.forEach((name, differences) -> nodes.add(new SectionNode(index, name, differences)));
+    return nodes;
+  }
+}
@@ -0,0 +1,34 @@
+package com.thesis.codecomparer.ui;
+
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Adapts a progress indicator of a background task to the monitor used while parsing, comparing
+ * and loading values. The monitor is cancelled by the indicator's cancel button, or when the given
+ * condition becomes true, e.g. because a newer comparison replaced the task's report.
+ */
+class IndicatorMonitor implements ProgressMonitor {
+
+  private final ProgressIndicator indicator; // Indicator of the background task
+  private final BooleanSupplier superseded; // Cancels the work in addition to the indicator
+
+  IndicatorMonitor(ProgressIndicator indicator, BooleanSupplier superseded) {
+    this.indicator = indicator;
+    this.superseded = superseded;
+  }
+
+  @Override
+  public void checkCanceled() {
+    if (indicator.isCanceled() || superseded.getAsBoolean()) {
+      throw new CancellationException();
+    }
+  }
+
+  @Override
+  public void setFraction(double fraction) {
+    indicator.setFraction(fraction);
+  }
+}
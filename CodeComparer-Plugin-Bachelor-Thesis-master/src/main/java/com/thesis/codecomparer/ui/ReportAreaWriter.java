@@ -0,0 +1,102 @@
+package com.thesis.codecomparer.ui;
+
+import java.io.Writer;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+
+/**
+ * Writer that shows a report in a text area while it is written by a background task. Written text
+ * is collected and appended on the event dispatch thread, one append for everything written since
+ * the previous one, so a fast report does not flood the event queue. Only the beginning of the
+ * report is shown live; the complete report is kept by a {@link BoundedReportWriter} and shown with
+ * {@link #getText()} once it is finished.
+ */
+public class ReportAreaWriter extends Writer {
+
+  private final JTextArea area; // Text area showing the report
+  private final BoundedReportWriter report; // Head and tail of the complete report
+  private final int liveLimit; // Maximum number of characters appended while writing
+  private final StringBuilder pending = new StringBuilder(); // Text not yet appended to the area
+  private long shown; // Number of characters appended or pending
+  private boolean appendScheduled; // Whether an append is waiting on the event dispatch thread
+  private volatile boolean detached; // Set when the area is used for another report
+
+  /**
+   * Creates a writer showing a report in the given text area.
+   *
+   * @param area The text area showing the report, it should be empty.
+   * @param headLimit Number of characters kept and shown from the beginning of the report.
+   * @param tailLimit Number of characters kept from the end of the report.
+   */
+  public ReportAreaWriter(JTextArea area, int headLimit, int tailLimit) {
+    this.area = area;
+    this.report = new BoundedReportWriter(headLimit, tailLimit);
+    this.liveLimit = headLimit;
+  }
+
+  @Override
+  public void write(char[] buffer, int offset, int length) {
+    report.write(buffer, offset, length);
+
+    synchronized (this) {
+      int toShow = (int) Math.min(length, liveLimit - shown);
+      if (toShow <= 0) return;
+
+      pending.append(buffer, offset, toShow);
+      shown += toShow;
+      if (!appendScheduled) {
+        appendScheduled = true;
+        SwingUtilities.invokeLater(this::appendPending);
+      }
+    }
+  }
+
+  // Appends the collected text to the area, runs on the event dispatch thread
+  private void appendPending() {
+    String text;
+    synchronized (this) {
+      text = pending.toString();
+      pending.setLength(0);
+      appendScheduled = false;
+    }
+    if (!detached) {
+      area.append(text);
+    }
+  }
+
+  /**
+   * Stops showing the report, e.g. because the area shows the report of a newer comparison. Must
+   * be called on the event dispatch thread, so no append scheduled before is shown afterwards.
+   */
+  public void detach() {
+    detached = true;
+  }
+
+  /**
+   * Returns whether the report is no longer shown.
+   *
+   * @return True if {@link #detach()} was called.
+   */
+  public boolean isDetached() {
+    return detached;
+  }
+
+  /**
+   * Returns the kept parts of the report, see {@link BoundedReportWriter#getText()}.
+   *
+   * @return The report text to display.
+   */
+  public String getText() {
+    return report.getText();
+  }
+
+  @Override
+  public void flush() {
+    // Nothing to flush, appends are scheduled while writing
+  }
+
+  @Override
+  public void close() {
+    // Nothing to close, the report is kept in memory
+  }
+}
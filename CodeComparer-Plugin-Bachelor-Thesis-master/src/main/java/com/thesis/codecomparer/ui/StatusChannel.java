@@ -0,0 +1,113 @@
+package com.thesis.codecomparer.ui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.swing.Timer;
+
+/**
+ * Collects status events, i.e. errors and the path of the capture file, from any thread and
+ * applies them to the UI in coalesced batches on the event dispatch thread.
+ *
+ * <p>Posting an event only updates concurrent counters and schedules a flush, if none is pending.
+ * The flush runs at most {@link #MAX_FLUSHES_PER_SECOND} times per second and shows the latest
+ * error, the latest file path and how often each kind of error occurred since the last reset. The
+ * capture threads therefore never touch Swing components, however many errors they report.
+ */
+class StatusChannel {
+
+  static final int MAX_FLUSHES_PER_SECOND = 10;
+  private static final int MAX_ERROR_KINDS = 32; // Further kinds are counted as other errors
+  private static final String OTHER_ERRORS = "Other errors"; // Kind of errors beyond the limit
+
+  private final Consumer<Status> display; // Applies a status on the event dispatch thread
+  private final Timer flushTimer; // Runs the pending flush on the event dispatch thread
+  private final AtomicBoolean flushPending = new AtomicBoolean(); // Whether a flush is scheduled
+  private final Map<String, LongAdder> errorCounts =
+      new ConcurrentHashMap<>(); // Kind -> number of errors of that kind
+  private volatile String latestError; // Latest error message, or null
+  private volatile String filePath; // Latest capture file path, or null
+
+  /**
+   * Status to display, coalesced from all events since the last reset.
+   *
+   * @param latestError The latest error message, or null if there was no error.
+   * @param errorCounts The number of errors per kind, most frequent first.
+   * @param filePath The latest capture file path, or null if none was posted.
+   */
+  record Status(String latestError, List<Map.Entry<String, Long>> errorCounts, String filePath) {
+
+    /**
+     * Returns the total number of errors.
+     *
+     * @return The sum of the counts of all kinds.
+     */
+    long totalErrors() {
+      return errorCounts.stream().mapToLong(Map.Entry::getValue).sum();
+    }
+  }
+
+  /**
+   * Creates a channel applying the coalesced status through the given display.
+   *
+   * @param display Shows a status, always called on the event dispatch thread.
+   */
+  StatusChannel(Consumer<Status> display) {
+    this.display = display;
+    this.flushTimer = new Timer(1000 / MAX_FLUSHES_PER_SECOND, e -> flush());
+    flushTimer.setRepeats(false);
+  }
+
+  /**
+   * Posts an error. Its kind is the part of the message before the first colon, so errors that
+   * only differ in their details are counted together.
+   *
+   * @param message The error message.
+   */
+  void postError(String message) {
+    int colon = message.indexOf(':');
+    String kind = colon > 0 ? message.substring(0, colon).strip() : message.strip();
+    if (!errorCounts.containsKey(kind) && errorCounts.size() >= MAX_ERROR_KINDS) {
+      kind = OTHER_ERRORS;
+    }
+    errorCounts.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    latestError = message;
+    scheduleFlush();
+  }
+
+  /**
+   * Posts the path of the capture file.
+   *
+   * @param path The path to display.
+   */
+  void postFilePath(String path) {
+    filePath = path;
+    scheduleFlush();
+  }
+
+  /** Forgets all errors, e.g. when a new debugging session starts. */
+  void reset() {
+    errorCounts.clear();
+    latestError = null;
+  }
+
+  // Only the first event after a flush starts the timer, later events are part of its batch
+  private void scheduleFlush() {
+    if (flushPending.compareAndSet(false, true)) {
+      flushTimer.start();
+    }
+  }
+
+  // Runs on the event dispatch thread, events posted from now on schedule the next flush
+  private void flush() {
+    flushPending.set(false);
+    List<Map.Entry<String, Long>> counts = new ArrayList<>(errorCounts.size());
+    errorCounts.forEach((kind, count) -> counts.add(Map.entry(kind, count.sum())));
+    counts.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+    display.accept(new Status(latestError, counts, filePath));
+  }
+}
@@ -0,0 +1,119 @@
+package com.thesis.codecomparer.ui;
+
+import com.intellij.diff.DiffContentFactory;
+import com.intellij.diff.DiffManager;
+import com.intellij.diff.requests.SimpleDiffRequest;
+import com.intellij.openapi.fileTypes.FileType;
+import com.intellij.openapi.fileTypes.FileTypeManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.ui.Messages;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.comparators.ComparisonResult;
+import com.thesis.codecomparer.comparators.DifferenceValues;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CancellationException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Opens the IDE's diff viewer on the two values behind a difference of a comparison. The values are
+ * not kept in memory: the result of the comparison reads the hits from the capture files, seeking
+ * to them through the files' sidecar indexes (see {@link ComparisonResult#readingHitsFrom}).
+ * Reading and pretty printing run as a cancellable background task, so even a value of many
+ * megabytes does not block the UI.
+ */
+public class ValueDiffOpener {
+
+  private static final int MAX_TITLE_CHARS = 80; // Longer difference lines are shortened in titles
+
+  private final ComparisonResult result; // The compared breakpoints
+
+  /**
+   * Creates an opener for the differences of a comparison.
+   *
+   * @param result The result of the comparison, reading its hits from the capture files.
+   */
+  public ValueDiffOpener(ComparisonResult result) {
+    this.result = result;
+  }
+
+  /**
+   * Loads the values of a difference in the background and opens the diff viewer on them.
+   *
+   * @param breakpointIndex The index of the differing breakpoint in the result.
+   * @param section The section of the difference, e.g. "Current Method".
+   * @param detail The rest of the difference line, e.g. "Argument[0] JSON $.x: 1 != 2".
+   */
+  public void open(int breakpointIndex, String section, String detail) {
+    String title =
+        "Breakpoint "
+            + result.getBreakpointNumber(breakpointIndex)
+            + ": "
+            + section
+            + (detail.isEmpty() ? "" : " -> " + shorten(detail));
+
+    new Task.Backgroundable(null, "Loading " + title, true) {
+      private String value1; // Printed value of the first file
+      private String value2; // Printed value of the second file
+      private String error; // Message shown instead of the diff if a value cannot be read
+
+      @Override
+      public void run(@NotNull ProgressIndicator indicator) {
+        ProgressMonitor progress = new IndicatorMonitor(indicator, () -> false);
+        try {
+          indicator.setText("Reading " + result.getFile1Name());
+          value1 = loadValue(result.getState1(breakpointIndex), section, detail, progress);
+          indicator.setText("Reading " + result.getFile2Name());
+          value2 = loadValue(result.getState2(breakpointIndex), section, detail, progress);
+        } catch (UncheckedIOException e) {
+          error = "Error while reading the values: " + e.getCause().getMessage();
+        } catch (CancellationException e) {
+          // Cancelled by the user, no diff is opened
+        }
+      }
+
+      @Override
+      public void onSuccess() {
+        if (error != null) {
+          Messages.showErrorDialog(error, title);
+          return;
+        }
+        if (value1 == null || value2 == null) return;
+
+        DiffContentFactory contents = DiffContentFactory.getInstance();
+        FileType json = FileTypeManager.getInstance().getFileTypeByExtension("json");
+        DiffManager.getInstance()
+            .showDiff(
+                null,
+                new SimpleDiffRequest(
+                    title,
+                    contents.create(value1, json),
+                    contents.create(value2, json),
+                    result.getFile1Name(),
+                    result.getFile2Name()));
+      }
+    }.queue();
+  }
+
+  /**
+   * Returns the printed value a difference refers to.
+   *
+   * @param state The hit, read from its capture file, or null.
+   * @return The printed value, or an empty text if the file has no hit for the breakpoint.
+   */
+  private static String loadValue(
+      BreakpointState state, String section, String detail, ProgressMonitor progress) {
+    if (state == null) {
+      return "";
+    }
+    progress.checkCanceled();
+    return DifferenceValues.prettyPrint(
+        DifferenceValues.selectValue(state, section, detail), progress);
+  }
+
+  private static String shorten(String text) {
+    String line = text.replace('\n', ' ');
+    return line.length() <= MAX_TITLE_CHARS ? line : line.substring(0, MAX_TITLE_CHARS) + " ...";
+  }
+}
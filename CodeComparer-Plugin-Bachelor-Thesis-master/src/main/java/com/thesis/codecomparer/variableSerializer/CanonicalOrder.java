@@ -0,0 +1,93 @@
+package com.thesis.codecomparer.variableSerializer;
+
+import com.thesis.codecomparer.captureFile.RecordDigest;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical order of the serialized elements of unordered sets and entries of unordered maps.
+ * Object ids and identity hash codes are left out of the order, so equal values are ordered in the
+ * same way in every run.
+ *
+ * <p>The sort key of a value, its JSON without run-specific parts and the digest of that JSON, is
+ * computed once per value before sorting instead of in every comparison.
+ */
+class CanonicalOrder {
+
+  // Parts of a value that differ between runs: object ids of "Type(id=1234)" references and
+  // identity hash codes of default toString results like "Type@1b6d3586"
+  private static final Pattern RUN_SPECIFIC =
+      Pattern.compile("\\(id=\\d+\\)|(?<=[\\w$])@[0-9a-f]{6,8}\\b");
+
+  // Orders by the group, then by the digest of the value, which is cheaper than comparing the JSON
+  // of large values, then by the value and finally by the serialized JSON itself
+  private static final Comparator<SortKey<?>> ORDER =
+      Comparator.comparing((SortKey<?> key) -> key.group())
+          .thenComparingLong(SortKey::digest)
+          .thenComparing(SortKey::value, Comparator.nullsFirst(Comparator.naturalOrder()))
+          .thenComparing(SortKey::tieBreak, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+  /**
+   * A sorted item with its precomputed sort key.
+   *
+   * @param item The sorted element or map entry.
+   * @param group The map key without run-specific parts, empty for set elements.
+   * @param digest Digest of the value without run-specific parts.
+   * @param value The value without run-specific parts.
+   * @param tieBreak The serialized element or map key, for items that are equal without ids.
+   */
+  private record SortKey<T>(T item, String group, long digest, String value, String tieBreak) {
+
+    static <T> SortKey<T> of(T item, String group, String json, String tieBreak) {
+      String value = withoutRunSpecificParts(json);
+      return new SortKey<>(item, group, RecordDigest.of(value), value, tieBreak);
+    }
+  }
+
+  private CanonicalOrder() {
+    // Only static helpers
+  }
+
+  /**
+   * Sorts the serialized elements of a set in canonical order.
+   *
+   * @param elements The serialized elements, sorted in place. Elements may be null.
+   */
+  static void sortElements(List<String> elements) {
+    List<SortKey<String>> keys = new ArrayList<>(elements.size());
+    for (String element : elements) {
+      keys.add(SortKey.of(element, "", element, element));
+    }
+    sort(elements, keys);
+  }
+
+  /**
+   * Sorts the entries of a map in canonical order: by their key without run-specific parts, so keys
+   * of objects that differ only in their ids are ordered by their value, then by the key itself.
+   *
+   * @param entries The serialized entries as {key, value} pairs, sorted in place. Values may be
+   *     null.
+   */
+  static void sortEntries(List<String[]> entries) {
+    List<SortKey<String[]>> keys = new ArrayList<>(entries.size());
+    for (String[] entry : entries) {
+      keys.add(SortKey.of(entry, withoutRunSpecificParts(entry[0]), entry[1], entry[0]));
+    }
+    sort(entries, keys);
+  }
+
+  // Sorts the keys and writes their items back to the list in that order
+  private static <T> void sort(List<T> items, List<SortKey<T>> keys) {
+    keys.sort(ORDER);
+    for (int i = 0; i < keys.size(); i++) {
+      items.set(i, keys.get(i).item());
+    }
+  }
+
+  // Removes the parts of a serialized value that differ between runs
+  private static String withoutRunSpecificParts(String json) {
+    return json == null ? null : RUN_SPECIFIC.matcher(json).replaceAll("");
+  }
+}
@@ -3,7 +3,10 @@ package com.thesis.codecomparer.variableSerializer;
 import static com.thesis.codecomparer.variableSerializer.ValueUtil.invokeMethod;
 
 import com.sun.jdi.*;
+import com.thesis.codecomparer.captureFile.CaptureMetrics;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import org.jetbrains.annotations.NotNull;
@@ -35,6 +38,11 @@ public class ValueJsonSerializer {
   // A timestamp indicating when the serialization process started.
   private static long timeStamp;
 
+  // Opt-in canonical order of unordered maps and sets, enabled with
+  // -Dcodecomparer.canonicalOrder=true. Equal values then serialize to equal strings, so the
+  // comparison of two runs does not depend on hash iteration order.
+  private static final boolean CANONICAL_ORDER = Boolean.getBoolean("codecomparer.canonicalOrder");
+
   /**
    * Converts a JDI `Value` to a JSON string.
    *
@@ -97,12 +105,12 @@ public class ValueJsonSerializer {
 
       // Handle maps
       if (allInheritedTypes.contains("java.util.Map")) {
-        return handleMap(objectValue, thread, refPath);
+        return handleMap(objectValue, thread, refPath, isUnorderedMap(allInheritedTypes));
       }
 
       // Handle collections
       if (allInheritedTypes.contains("java.util.Collection")) {
-        return handleCollection(objectValue, thread, refPath);
+        return handleCollection(objectValue, thread, refPath, isUnorderedSet(allInheritedTypes));
       }
 
       // Handle Java objects with overridden `toString`
@@ -125,6 +133,7 @@ public class ValueJsonSerializer {
    */
   private static void checkTimeLimit() {
     if (System.currentTimeMillis() - timeStamp > timeLimit) {
+      CaptureMetrics.getInstance().recordTruncation(); // The value is not captured
       throw new JsonSerializeException(
           "JSON serializing timed out, probably the object is too big to JSON.");
     }
@@ -207,16 +216,18 @@ public class ValueJsonSerializer {
    *
    * <p>This method iterates through the map's key-value pairs, serializing each key and value to
    * JSON. Keys are checked for their type, with simple types directly converted and complex types
-   * serialized using their string representation. Values are recursively serialized.
+   * serialized using their string representation. Values are recursively serialized. In canonical
+   * mode, the entries of maps without a defined order are sorted by their serialized key.
    *
    * @param objectValue the `ObjectReference` representing the map instance.
    * @param thread the current thread used for method invocation and serialization.
    * @param refPath a set containing the unique IDs of previously visited object references to
    *     prevent circular references.
+   * @param unordered whether the iteration order of the map is undefined, e.g. for a `HashMap`.
    * @return the JSON string representation of the map.
    */
   private static String handleMap(
-      ObjectReference objectValue, ThreadReference thread, Set<Long> refPath) {
+      ObjectReference objectValue, ThreadReference thread, Set<Long> refPath, boolean unordered) {
     // Obtain the keySet of the map by invoking the "keySet" method
     ObjectReference keySet = (ObjectReference) invokeMethod(objectValue, "keySet", thread);
     if (keySet == null) {
@@ -230,8 +241,8 @@ public class ValueJsonSerializer {
       throw new JsonSerializeException("KeySet convert failed: " + toValRefString(keySet));
     }
 
-    // Build the JSON representation of the map
-    StringBuilder str = new StringBuilder("{");
+    // Serialize the key-value pairs of the map
+    List<String[]> entries = new ArrayList<>();
     for (Value key : keyArr.getValues()) {
       // Retrieve the value associated with the current key
       Value val = invokeMethod(objectValue, "get", thread, key);
@@ -248,12 +259,22 @@ public class ValueJsonSerializer {
         keyStr = "\"" + toValRefString((ObjectReference) key) + "\"";
       }
 
-      // Append the serialized key-value pair to the JSON string
-      str.append(keyStr).append(":").append(toJsonInner(val, thread, refPath)).append(",");
+      entries.add(new String[] {keyStr, toJsonInner(val, thread, refPath)});
+    }
+
+    // Sorted without object ids and identity hash codes, which differ between runs
+    if (CANONICAL_ORDER && unordered) {
+      CanonicalOrder.sortEntries(entries);
+    }
+
+    // Build the JSON representation of the map
+    StringBuilder str = new StringBuilder("{");
+    for (String[] entry : entries) {
+      str.append(entry[0]).append(":").append(entry[1]).append(",");
     }
 
     // Remove the trailing comma, if present, and close the JSON object
-    if (keyArr.length() > 0) {
+    if (!entries.isEmpty()) {
       str.delete(str.length() - 1, str.length());
     }
     str.append("}");
@@ -263,16 +284,60 @@ public class ValueJsonSerializer {
   /**
    * Serializes a `java.util.Collection` object to its JSON representation.
    *
-   * <p>Converts the collection to an array using `toArray` and serializes it as a JSON array.
+   * <p>Converts the collection to an array using `toArray` and serializes it as a JSON array. In
+   * canonical mode, the elements of sets without a defined order are sorted by the digest of their
+   * JSON, which is cheaper than comparing the JSON of large elements. Object ids and identity hash
+   * codes are left out of the digest, so the order is the same in every run.
    *
    * @param objectValue the `ObjectReference` representing the collection.
    * @param thread the current thread being used for method evaluation and serialization.
    * @param refPath a set containing the unique IDs of previously visited object references.
+   * @param unordered whether the iteration order of the collection is undefined, e.g. for a
+   *     `HashSet`.
    * @return the JSON string representation of the collection.
    */
   private static String handleCollection(
-      ObjectReference objectValue, ThreadReference thread, Set<Long> refPath) {
-    return toJsonInner(invokeMethod(objectValue, "toArray", thread), thread, refPath);
+      ObjectReference objectValue, ThreadReference thread, Set<Long> refPath, boolean unordered) {
+    Value array = invokeMethod(objectValue, "toArray", thread);
+    if (!CANONICAL_ORDER || !unordered || !(array instanceof ArrayReference arrayValue)) {
+      return toJsonInner(array, thread, refPath);
+    }
+
+    // Mark the array as visited like toJsonInner does, its elements may refer back to it
+    if (isCircularReference(arrayValue, refPath)) {
+      return null;
+    }
+    List<String> elements = new ArrayList<>();
+    for (Value v : arrayValue.getValues()) {
+      elements.add(toJsonInner(v, thread, refPath));
+    }
+    CanonicalOrder.sortElements(elements);
+    return "[" + String.join(",", elements) + "]";
+  }
+
+  /**
+   * Checks if a map has no defined iteration order, so its entries may be sorted in canonical mode.
+   * Sorted and insertion ordered maps keep their order.
+   *
+   * @param allInheritedTypes a set containing all inherited types of the map.
+   * @return `true` if the iteration order of the map is undefined, otherwise `false`.
+   */
+  private static boolean isUnorderedMap(Set<String> allInheritedTypes) {
+    return !allInheritedTypes.contains("java.util.SortedMap")
+        && !allInheritedTypes.contains("java.util.LinkedHashMap");
+  }
+
+  /**
+   * Checks if a collection is a set without a defined iteration order, so its elements may be
+   * sorted in canonical mode. Lists, queues, sorted and insertion ordered sets keep their order.
+   *
+   * @param allInheritedTypes a set containing all inherited types of the collection.
+   * @return `true` if the collection is an unordered set, otherwise `false`.
+   */
+  private static boolean isUnorderedSet(Set<String> allInheritedTypes) {
+    return allInheritedTypes.contains("java.util.Set")
+        && !allInheritedTypes.contains("java.util.SortedSet")
+        && !allInheritedTypes.contains("java.util.LinkedHashSet");
   }
 
   /**
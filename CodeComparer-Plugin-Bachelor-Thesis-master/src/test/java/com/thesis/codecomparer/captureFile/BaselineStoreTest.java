@@ -0,0 +1,205 @@
+package com.thesis.codecomparer.captureFile;
+
+import static com.thesis.codecomparer.captureFile.TestStates.assertSameHits;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.thesis.codecomparer.comparators.FileComparator;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Adds runs to a baseline store and reads them back after replaying and compacting the log. */
+public class BaselineStoreTest {
+
+  private static final List<BreakpointState> RUN_A = TestStates.run(200, 1);
+  private static final List<BreakpointState> RUN_B = TestStates.run(150, 2);
+  private static final List<BreakpointState> RUN_C = TestStates.run(100, 3);
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void readsRunsAfterReopening() throws IOException {
+    File directory = folder.getRoot();
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      add(store, "a", RUN_A);
+      add(store, "b", RUN_B);
+    }
+
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      assertEquals(List.of("a", "b"), runIds(store));
+      assertSameHits(RUN_A, store.readRun("a", NormalizationRules.NONE));
+      assertSameHits(RUN_B, store.readRun("b", NormalizationRules.NONE));
+      assertEquals(RUN_A.size(), store.getRuns().get(0).hits());
+    }
+  }
+
+  @Test
+  public void replaysFramesWrittenAfterTheIndexSnapshot() throws IOException {
+    File directory = folder.getRoot();
+    File snapshot = new File(folder.getRoot(), "snapshot.idx");
+    File indexFile = new File(directory, "baselines.idx");
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      add(store, "a", RUN_A);
+      Files.copy(indexFile.toPath(), snapshot.toPath());
+      add(store, "b", RUN_B);
+      store.removeRun("a");
+    }
+    // The snapshot only knows run a, run b and the removal of a are replayed from the log
+    Files.copy(snapshot.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      assertEquals(List.of("b"), runIds(store));
+      assertSameHits(RUN_B, store.readRun("b", NormalizationRules.NONE));
+    }
+  }
+
+  @Test
+  public void rebuildsTheIndexFromTheLog() throws IOException {
+    File directory = folder.getRoot();
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      add(store, "a", RUN_A);
+      add(store, "b", RUN_B);
+    }
+    assertTrue(new File(directory, "baselines.idx").delete());
+
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      assertEquals(List.of("a", "b"), runIds(store));
+      assertSameHits(RUN_B, store.readRun("b", NormalizationRules.NONE));
+      List<BaselineStore.LocationHits> hits =
+          store.findByLocation("Foo1", 11, 5, new StringDictionary(), NormalizationRules.NONE);
+      assertEquals(2, hits.size());
+      assertEquals("b", hits.get(0).run().id()); // Most recent run first
+    }
+  }
+
+  @Test
+  public void cutsOffATornFrameAtTheEndOfTheLog() throws IOException {
+    File directory = folder.getRoot();
+    File logFile = new File(directory, "baselines.log");
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      add(store, "a", RUN_A);
+    }
+    long complete = logFile.length();
+    try (OutputStream out = new FileOutputStream(logFile, true)) {
+      out.write(new byte[] {0, 0, 1, 0, 42, 42, 42}); // A frame header cut off by a crash
+    }
+    assertTrue(new File(directory, "baselines.idx").delete());
+
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      assertEquals(List.of("a"), runIds(store));
+      assertSameHits(RUN_A, store.readRun("a", NormalizationRules.NONE));
+      add(store, "b", RUN_B);
+    }
+    assertTrue(logFile.length() > complete);
+
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      assertEquals(List.of("a", "b"), runIds(store));
+      assertSameHits(RUN_B, store.readRun("b", NormalizationRules.NONE));
+    }
+  }
+
+  @Test
+  public void refusesToOpenALogCorruptBeforeItsEnd() throws IOException {
+    File directory = folder.getRoot();
+    File logFile = new File(directory, "baselines.log");
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      add(store, "a", RUN_A);
+      add(store, "b", RUN_B);
+    }
+    assertTrue(new File(directory, "baselines.idx").delete());
+    byte[] log = Files.readAllBytes(logFile.toPath());
+    log[log.length / 3] ^= 0x5A; // A flipped bit in a hit of run a
+    Files.write(logFile.toPath(), log);
+
+    assertThrows(IOException.class, () -> BaselineStore.open(directory));
+    assertArrayEquals(log, Files.readAllBytes(logFile.toPath()));
+  }
+
+  @Test
+  public void compactionKeepsOnlyTheLiveRuns() throws IOException {
+    File directory = folder.getRoot();
+    File logFile = new File(directory, "baselines.log");
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      add(store, "a", RUN_A);
+      add(store, "b", RUN_B);
+      add(store, "a", RUN_C); // Replaces run a, its old frames become garbage
+      store.removeRun("b");
+      assertNull(store.readRun("b", NormalizationRules.NONE));
+      assertTrue(store.getGarbageBytes() > 0);
+      long uncompacted = logFile.length();
+
+      store.compact();
+
+      assertEquals(0, store.getGarbageBytes());
+      assertTrue(logFile.length() < uncompacted);
+      assertEquals(List.of("a"), runIds(store));
+      assertSameHits(RUN_C, store.readRun("a", NormalizationRules.NONE));
+      add(store, "d", RUN_B);
+    }
+
+    try (BaselineStore store = BaselineStore.open(directory)) {
+      assertEquals(List.of("a", "d"), runIds(store));
+      assertSameHits(RUN_C, store.readRun("a", NormalizationRules.NONE));
+      assertSameHits(RUN_B, store.readRun("d", NormalizationRules.NONE));
+      assertFalse(new File(directory, "baselines.log.compact").exists());
+    }
+  }
+
+  @Test
+  public void comparesACaptureWithTheNewestStoredRunAsBaseline() throws IOException {
+    File capture = folder.newFile("run.txt");
+    try (CaptureWriter writer = new CaptureWriter(capture, false)) {
+      for (BreakpointState hit : RUN_C) {
+        writer.write(hit);
+      }
+    }
+    StringWriter report = new StringWriter();
+    try (BaselineStore store = BaselineStore.open(folder.newFolder("store"))) {
+      add(store, "a", RUN_A);
+      add(store, "b", RUN_B);
+
+      FileComparator.writeStoredBaselineReport(
+          capture.getPath(),
+          store,
+          "Foo1",
+          11,
+          20,
+          NormalizationRules.NONE,
+          report,
+          ProgressMonitor.NONE);
+    }
+
+    assertTrue(
+        report.toString(),
+        report
+            .toString()
+            .startsWith(
+                "=== Comparing Runs ===\n"
+                    + "- Run 1 (Baseline): b\n"
+                    + "- Run 2: run.txt (Capture)\n"
+                    + "- Run 3: a\n"));
+  }
+
+  private static void add(BaselineStore store, String runId, List<BreakpointState> hits)
+      throws IOException {
+    store.addRun(runId, hits, "test", ProgressMonitor.NONE);
+  }
+
+  private static List<String> runIds(BaselineStore store) {
+    return store.getRuns().stream().map(BaselineStore.RunInfo::id).toList();
+  }
+}
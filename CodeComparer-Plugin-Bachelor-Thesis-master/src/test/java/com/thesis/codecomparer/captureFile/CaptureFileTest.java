@@ -0,0 +1,167 @@
+package com.thesis.codecomparer.captureFile;
+
+import static com.thesis.codecomparer.captureFile.TestStates.assertSameHits;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Writes captures and reads them back through the readers and the sidecar index. */
+public class CaptureFileTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void plainCaptureRoundTrip() throws IOException {
+    List<BreakpointState> hits = TestStates.run(500, 1);
+    File capture = write("run.txt", false, hits);
+
+    assertSameHits(hits, CaptureReader.readAll(capture));
+    assertSameHits(hits, readParallel(capture));
+  }
+
+  @Test
+  public void compressedCaptureRoundTrip() throws IOException {
+    List<BreakpointState> hits = TestStates.run(5000, 2); // Several compressed blocks
+    File capture = write("run.ccz", true, hits);
+
+    assertTrue(CaptureReader.isCompressed(capture));
+    assertSameHits(hits, CaptureReader.readAll(capture));
+    assertSameHits(hits, readParallel(capture));
+  }
+
+  @Test
+  public void nullFieldsRoundTrip() throws IOException {
+    BreakpointState hit = TestStates.hit("Foo", 1, "main", null);
+    hit.setThreadName(null);
+    hit.setInvokedMethodState(null);
+    hit.setInvokedMethodReturnValue(null);
+    File capture = write("nulls.txt", false, List.of(hit));
+
+    assertSameHits(List.of(hit), CaptureReader.readAll(capture));
+  }
+
+  @Test
+  public void readsLegacyRecordsWithPlainNamesAndEscapedValues() throws IOException {
+    // Captures of older versions hold the beans as pretty printed JSON, values as strings
+    List<BreakpointState> hits = TestStates.run(20, 3);
+    Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    File capture = folder.newFile("legacy.txt");
+    try (OutputStream out = new FileOutputStream(capture)) {
+      for (BreakpointState hit : hits) {
+        String record = gson.toJson(hit) + "\n" + CaptureWriter.SEPARATOR + "\n";
+        out.write(record.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+
+    assertSameHits(hits, CaptureReader.readAll(capture));
+    assertSameHits(hits, readThroughIndex(capture));
+  }
+
+  @Test
+  public void rebuildsMissingIndex() throws IOException {
+    List<BreakpointState> hits = TestStates.run(300, 4);
+    for (boolean compressed : new boolean[] {false, true}) {
+      File capture = write(compressed ? "run.ccz" : "run.txt", compressed, hits);
+      List<IndexEntry> written = CaptureIndex.load(capture).getEntries();
+
+      assertTrue(CaptureIndex.indexFileFor(capture).delete());
+      CaptureIndex rebuilt = CaptureIndex.load(capture);
+
+      assertEquals(written, rebuilt.getEntries());
+      assertTrue(CaptureIndex.indexFileFor(capture).isFile());
+      assertSameHits(hits, readThroughIndex(capture));
+      long hitsOfLocation =
+          hits.stream()
+              .filter(hit -> hit.getFileName().equals("Foo2") && hit.getLineNumber() == 12)
+              .count();
+      assertEquals(hitsOfLocation, rebuilt.findByLocation("Foo2", 12).size());
+    }
+  }
+
+  @Test
+  public void ignoresTruncatedTailOfPlainCapture() throws IOException {
+    List<BreakpointState> hits = TestStates.run(50, 5);
+    File capture = write("run.txt", false, hits);
+    long complete = capture.length();
+
+    // A record cut off while it was written, e.g. by a crash of the debugged program
+    try (OutputStream out = new FileOutputStream(capture, true)) {
+      out.write("{\"fileName\":\"Foo\",\"lineNumber\":4".getBytes(StandardCharsets.UTF_8));
+    }
+
+    assertTrue(capture.length() > complete);
+    assertSameHits(hits, CaptureReader.readAll(capture));
+    assertEquals(hits.size(), CaptureIndex.rebuild(capture).getEntries().size());
+  }
+
+  @Test
+  public void ignoresTruncatedTailOfCompressedCapture() throws IOException {
+    List<BreakpointState> hits = TestStates.run(5000, 6);
+    File capture = write("run.ccz", true, hits);
+    List<IndexEntry> entries = CaptureIndex.load(capture).getEntries();
+    long lastBlock = entries.get(entries.size() - 1).blockOffset();
+
+    // Cut the last block in half, its records are lost but all earlier blocks are read
+    try (RandomAccessFile file = new RandomAccessFile(capture, "rw")) {
+      file.setLength(lastBlock + (file.length() - lastBlock) / 2);
+    }
+    int complete = (int) entries.stream().filter(entry -> entry.blockOffset() < lastBlock).count();
+    assertTrue(complete > 0 && complete < hits.size());
+
+    assertSameHits(hits.subList(0, complete), CaptureReader.readAll(capture));
+    assertEquals(complete, CaptureIndex.rebuild(capture).getEntries().size());
+  }
+
+  @Test
+  public void rejectsCorruptBlockLengths() throws IOException {
+    File capture = write("run.ccz", true, TestStates.run(100, 7));
+    int[][] corruptLengths = {{-1, 10}, {10, -1}, {Integer.MAX_VALUE, 10}, {50, 1 << 30}};
+    for (int[] lengths : corruptLengths) {
+      try (RandomAccessFile file = new RandomAccessFile(capture, "rw")) {
+        file.seek(CompressedBlockFormat.HEADER_LENGTH);
+        file.writeInt(lengths[0]);
+        file.writeInt(lengths[1]);
+      }
+
+      assertThrows(IOException.class, () -> CaptureReader.readAll(capture));
+      assertThrows(IOException.class, () -> CompressedBlockFormat.uncompressedLength(capture));
+    }
+  }
+
+  private File write(String name, boolean compressed, List<BreakpointState> hits)
+      throws IOException {
+    File capture = new File(folder.getRoot(), name);
+    try (CaptureWriter writer = new CaptureWriter(capture, compressed)) {
+      for (BreakpointState hit : hits) {
+        writer.write(hit);
+      }
+    }
+    return capture;
+  }
+
+  private static List<BreakpointState> readParallel(File capture) throws IOException {
+    return CaptureReader.readAllParallel(
+        capture, new StringDictionary(), ForkJoinPool.commonPool());
+  }
+
+  // Reads every record on its own, seeking to it through the index
+  private static List<BreakpointState> readThroughIndex(File capture) throws IOException {
+    CaptureIndex index = CaptureIndex.load(capture);
+    return CaptureReader.readRecords(capture, index, index.getEntries());
+  }
+}
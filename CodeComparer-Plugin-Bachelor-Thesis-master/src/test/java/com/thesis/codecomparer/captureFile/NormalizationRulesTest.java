@@ -0,0 +1,112 @@
+package com.thesis.codecomparer.captureFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import com.thesis.codecomparer.captureFile.NormalizationRules.Rule;
+import java.util.List;
+import org.junit.Test;
+
+/** Checks that normalization rules replace exactly the values they select. */
+public class NormalizationRulesTest {
+
+  @Test
+  public void defaultsReplaceObjectIdsAndHashCodes() {
+    NormalizationRules rules = NormalizationRules.defaults();
+
+    assertEquals(
+        "{\"owner\":\"User(id=*)\",\"lock\":\"java.lang.Object@*\"}",
+        rules.normalize("{\"owner\":\"User(id=4711)\",\"lock\":\"java.lang.Object@1b6d3586\"}"));
+    assertEquals("\"@1b6d3586\"", rules.normalize("\"@1b6d3586\"")); // No type before the @
+  }
+
+  @Test
+  public void valuesWithoutMatchesAreKept() {
+    String json = "{\"name\":\"Foo\",\"items\":[1,2,3]}";
+
+    assertSame(json, NormalizationRules.defaults().normalize(json));
+    assertSame(json, rules(new Rule("$..timestamp", null, "number", "<t>")).normalize(json));
+  }
+
+  @Test
+  public void anchoredPatternsMatchWholeValues() {
+    NormalizationRules rules =
+        rules(
+            new Rule(null, "^/tmp/.*$", null, "<tmp>"),
+            new Rule("$.id", "^\\d+$", null, "<id>"));
+
+    assertEquals(
+        "{\"dir\":\"<tmp>\",\"log\":\"see /tmp/a\"}",
+        rules.normalize("{\"dir\":\"/tmp/a1\",\"log\":\"see /tmp/a\"}"));
+    assertEquals("{\"id\":\"<id>\",\"n\":12345}", rules.normalize("{\"id\":12345,\"n\":12345}"));
+    assertEquals("\"<tmp>\"", rules.normalize("\"/tmp/x\""));
+  }
+
+  @Test
+  public void negativeLookaroundsSeeTheValueBounds() {
+    NormalizationRules rules = rules(new Rule(null, "(?<!\\d)42", null, "<n>"));
+
+    assertEquals("[\"<n>\",\"142\"]", rules.normalize("[\"42\",\"142\"]"));
+  }
+
+  @Test
+  public void typeRulesReplaceValuesOfTheirPath() {
+    NormalizationRules rules =
+        rules(
+            new Rule("$..timestamp", null, "number", "<timestamp>"),
+            new Rule("$.items[*].path", "/tmp/[\\w.-]+", null, "/tmp/*"));
+
+    assertEquals(
+        "{\"timestamp\":\"<timestamp>\","
+            + "\"items\":[{\"path\":\"/tmp/*\"},{\"timestamp\":\"<timestamp>\"}],"
+            + "\"path\":\"/tmp/b\"}",
+        rules.normalize(
+            "{\"timestamp\":17,\"items\":[{\"path\":\"/tmp/a.txt\"},{\"timestamp\":18}],"
+                + "\"path\":\"/tmp/b\"}"));
+  }
+
+  @Test
+  public void pathsAreParsedLikeQueryPaths() {
+    NormalizationRules rules =
+        rules(
+            new Rule("$.byId[*].at", null, "number", "<t>"),
+            new Rule("$[\"a.b\"]", null, "string", "<s>"));
+
+    assertEquals(
+        "{\"byId\":{\"7\":{\"at\":\"<t>\"}},\"a.b\":\"<s>\",\"a\":{\"b\":\"y\"}}",
+        rules.normalize("{\"byId\":{\"7\":{\"at\":5}},\"a.b\":\"x\",\"a\":{\"b\":\"y\"}}"));
+  }
+
+  @Test
+  public void matchesBehindEscapesAreFound() {
+    NormalizationRules rules = rules(new Rule(null, "\"secret\"", null, "<hidden>"));
+
+    assertEquals("\"say <hidden>\"", rules.normalize("\"say \\\"secret\\\"\""));
+  }
+
+  @Test
+  public void normalizesTextsThatAreNoJson() {
+    String trace = "a.B.c(B.java:4)\nUser(id=12)";
+
+    assertEquals("a.B.c(B.java:4)\nUser(id=*)", NormalizationRules.defaults().normalizeText(trace));
+    assertEquals("plain User(id=*)", NormalizationRules.defaults().normalize("plain User(id=3)"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsRulesWithPatternAndType() {
+    rules(new Rule(null, "x", "string", "y"));
+  }
+
+  @Test
+  public void rejectsInvalidPaths() {
+    for (String path : List.of("items[0]", "$.", "$.items[x]", "$['a]")) {
+      assertThrows(
+          IllegalArgumentException.class, () -> rules(new Rule(path, null, "string", "y")));
+    }
+  }
+
+  private static NormalizationRules rules(Rule... rules) {
+    return new NormalizationRules(List.of(rules));
+  }
+}
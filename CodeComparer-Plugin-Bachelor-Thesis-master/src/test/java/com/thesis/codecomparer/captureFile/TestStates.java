@@ -0,0 +1,114 @@
+package com.thesis.codecomparer.captureFile;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+
+/** Builds breakpoint hits for tests and compares them field by field. */
+public final class TestStates {
+
+  private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+
+  private TestStates() {
+    // Only static helpers
+  }
+
+  /**
+   * Creates a hit with a current method taking one parameter and an invoked method returning a
+   * value.
+   *
+   * @param fileName The file name of the breakpoint.
+   * @param lineNumber The line number of the breakpoint.
+   * @param methodName The name of the current method.
+   * @param value The serialized value of the parameter {@code request}.
+   * @return The hit.
+   */
+  public static BreakpointState hit(
+      String fileName, int lineNumber, String methodName, String value) {
+    BreakpointState state = new BreakpointState();
+    state.setFileName(fileName);
+    state.setLineNumber(lineNumber);
+    state.setThreadName("main");
+    state.setCurrentMethodState(method(methodName, "int", new ParameterInfo("request", value)));
+    state.setInvokedMethodState(method("parse", "Result"));
+    state.setInvokedMethodReturnValue("{\"status\":\"OK\",\"text\":\"\u00e4\u00f6\u00fc\"}");
+    return state;
+  }
+
+  /**
+   * Creates the hits of a run: {@code count} hits cycling through a few locations and methods.
+   *
+   * @param count The number of hits.
+   * @param seed Changes the values, so runs with different seeds differ.
+   * @return The hits.
+   */
+  public static List<BreakpointState> run(int count, int seed) {
+    List<BreakpointState> hits = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      BreakpointState state =
+          hit(
+              "Foo" + i % 5,
+              10 + i % 3,
+              "handle" + i % 4,
+              "{\"id\":" + i + ",\"items\":[1,2,\"x\"],\"seed\":" + seed + "}");
+      if (i % 7 == 3) {
+        state.setExceptionDetails(
+            exception("java.lang.IllegalStateException", "hit " + i % 2, i % 3));
+      }
+      hits.add(state);
+    }
+    return hits;
+  }
+
+  /**
+   * Creates a method state.
+   *
+   * @param name The method name.
+   * @param returnType The return type.
+   * @param parameters The parameters.
+   * @return The method state.
+   */
+  public static MethodState method(String name, String returnType, ParameterInfo... parameters) {
+    MethodState method = new MethodState();
+    method.setMethodName(name);
+    method.setReturnType(returnType);
+    method.setParameters(new ArrayList<>(List.of(parameters)));
+    return method;
+  }
+
+  /**
+   * Creates the details of a thrown exception.
+   *
+   * @param type The exception type.
+   * @param message The exception message.
+   * @param variant Selects one of a few stack traces.
+   * @return The exception details.
+   */
+  public static ExceptionDetails exception(String type, String message, int variant) {
+    ExceptionDetails exception = new ExceptionDetails();
+    exception.setExceptionType(type);
+    exception.setExceptionMessage(message);
+    exception.setStackTrace(
+        "com.example.Foo.bar(Foo.java:" + (40 + variant) + ")\ncom.example.Main.main(Main.java:7)");
+    return exception;
+  }
+
+  /**
+   * Asserts that two lists of hits are equal in every field.
+   *
+   * @param expected The expected hits.
+   * @param actual The actual hits.
+   */
+  public static void assertSameHits(List<BreakpointState> expected, List<BreakpointState> actual) {
+    Assert.assertEquals("number of hits", expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals("hit " + i, GSON.toJson(expected.get(i)), GSON.toJson(actual.get(i)));
+    }
+  }
+}
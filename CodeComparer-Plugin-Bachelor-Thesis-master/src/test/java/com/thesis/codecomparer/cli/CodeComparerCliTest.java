@@ -0,0 +1,75 @@
+package com.thesis.codecomparer.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.thesis.codecomparer.captureFile.CaptureWriter;
+import com.thesis.codecomparer.captureFile.TestStates;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Runs the command line comparison and checks its exit code and JSON report. */
+public class CodeComparerCliTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void reportsEqualAndDifferingCandidates() throws IOException {
+    String baseline = write("baseline.txt", TestStates.run(50, 1));
+    String same = write("same.txt", TestStates.run(50, 1));
+    String changed = write("changed.txt", TestStates.run(50, 2));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    assertEquals(CodeComparerCli.EXIT_SAME, run(out, baseline, same));
+    assertFalse(parse(out).get("differencesFound").getAsBoolean());
+
+    out.reset();
+    assertEquals(CodeComparerCli.EXIT_DIFFERENT, run(out, baseline, same, changed));
+    JsonObject report = parse(out);
+    assertTrue(report.get("differencesFound").getAsBoolean());
+    assertEquals(2, report.getAsJsonArray("candidates").size());
+  }
+
+  @Test
+  public void failedComparisonsHaveAnError() throws IOException {
+    String baseline = write("baseline.txt", TestStates.run(50, 1));
+    String same = write("same.txt", TestStates.run(50, 1));
+    String missing = new File(folder.getRoot(), "missing.txt").getPath();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    assertEquals(CodeComparerCli.EXIT_ERROR, run(out, baseline, same, missing));
+    JsonObject report = parse(out);
+    assertEquals(1, report.getAsJsonArray("candidates").size());
+    assertTrue(report.has("error"));
+  }
+
+  private String write(String name, List<BreakpointState> hits) throws IOException {
+    File capture = new File(folder.getRoot(), name);
+    try (CaptureWriter writer = new CaptureWriter(capture, false)) {
+      for (BreakpointState hit : hits) {
+        writer.write(hit);
+      }
+    }
+    return capture.getPath();
+  }
+
+  private static int run(ByteArrayOutputStream out, String... args) {
+    PrintStream err = new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+    return CodeComparerCli.run(args, new PrintStream(out, true, StandardCharsets.UTF_8), err);
+  }
+
+  private static JsonObject parse(ByteArrayOutputStream out) {
+    return JsonParser.parseString(out.toString(StandardCharsets.UTF_8)).getAsJsonObject();
+  }
+}
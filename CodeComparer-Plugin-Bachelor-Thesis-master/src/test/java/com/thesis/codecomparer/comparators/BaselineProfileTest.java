@@ -0,0 +1,101 @@
+package com.thesis.codecomparer.comparators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.thesis.codecomparer.captureFile.TestStates;
+import com.thesis.codecomparer.comparators.BaselineProfile.Stability;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Builds profiles from reference runs and checks which values they accept. */
+public class BaselineProfileTest {
+
+  private static final String ARGUMENT = "Current Method -> Argument[0] $";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void classifiesPathsByTheirValues() {
+    List<List<BreakpointState>> runs = new ArrayList<>();
+    for (int run = 0; run < 3; run++) {
+      List<BreakpointState> hits = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        int time = run * 100 + i;
+        hits.add(hit("{\"kind\":\"order\",\"state\":" + i % 3 + ",\"time\":" + time + "}"));
+      }
+      runs.add(hits);
+    }
+
+    BaselineProfile profile = BaselineProfile.build(runs);
+    BreakpointState state = runs.get(0).get(0);
+
+    assertEquals(3, profile.getRunCount());
+    assertEquals(Stability.STABLE, profile.getStability(state, ARGUMENT + ".kind"));
+    assertEquals(Stability.SMALL_SET, profile.getStability(state, ARGUMENT + ".state"));
+    assertEquals(Stability.VOLATILE, profile.getStability(state, ARGUMENT + ".time"));
+    assertTrue(
+        profile.findUnexpectedValues(hit("{\"kind\":\"order\",\"state\":2,\"time\":9}")).isEmpty());
+    assertEquals(
+        List.of(
+            "  - " + ARGUMENT + ".kind: \"refund\" != \"order\" (stable in the reference runs)",
+            "  - " + ARGUMENT + ".state: 7 is none of the 3 values of the reference runs",
+            "  - " + ARGUMENT + ".time: \"now\" has a type not seen in the reference runs"),
+        profile.findUnexpectedValues(hit("{\"kind\":\"refund\",\"state\":7,\"time\":\"now\"}")));
+  }
+
+  @Test
+  public void membersKeyedByIdsShareOnePath() {
+    List<BreakpointState> run = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      run.add(hit("{\"byId\":{\"" + (5000 + i) + "\":{\"name\":\"n" + i % 2 + "\"}}}"));
+    }
+
+    BaselineProfile profile = BaselineProfile.build(List.of(run));
+    int paths = profile.countPaths().values().stream().mapToInt(Integer::intValue).sum();
+
+    assertTrue("paths: " + paths, paths < 100);
+    assertEquals(Stability.SMALL_SET, profile.getStability(run.get(0), ARGUMENT + ".byId.*.name"));
+    BreakpointState unseenId = hit("{\"byId\":{\"9999\":{\"name\":\"n1\"}}}");
+    assertTrue(profile.findUnexpectedValues(unseenId).isEmpty());
+  }
+
+  @Test
+  public void savedProfilesAcceptTheSameValues() throws IOException {
+    List<BreakpointState> run = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      run.add(hit("{\"byId\":{\"" + i + "\":" + i % 4 + "},\"kind\":\"order\"}"));
+    }
+    BaselineProfile profile = BaselineProfile.build(List.of(run));
+    File file = new File(folder.getRoot(), "profile.bin");
+
+    profile.save(file);
+    BaselineProfile loaded = BaselineProfile.load(file);
+
+    assertEquals(profile.countPaths(), loaded.countPaths());
+    for (String value :
+        List.of(
+            "{\"byId\":{\"3\":3},\"kind\":\"order\"}",
+            "{\"byId\":{\"500\":1},\"kind\":\"order\"}",
+            "{\"byId\":{\"500\":\"x\"},\"kind\":\"refund\"}")) {
+      assertEquals(
+          profile.findUnexpectedValues(hit(value)), loaded.findUnexpectedValues(hit(value)));
+    }
+    Map<Stability, Integer> counts = loaded.countPaths();
+    assertTrue(counts.toString(), counts.get(Stability.STABLE) >= 1);
+  }
+
+  private static BreakpointState hit(String value) {
+    BreakpointState state = TestStates.hit("Foo", 10, "handle", value);
+    state.setInvokedMethodState(null);
+    state.setInvokedMethodReturnValue(null);
+    return state;
+  }
+}
@@ -0,0 +1,140 @@
+package com.thesis.codecomparer.comparators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.thesis.codecomparer.captureFile.TestStates;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import com.thesis.codecomparer.dataModels.ExceptionDetails;
+import com.thesis.codecomparer.dataModels.MethodState;
+import com.thesis.codecomparer.dataModels.ParameterInfo;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.junit.Test;
+
+/** Checks that the matrix report finds the same divergent breakpoints as the grouped report. */
+public class MultiRunComparatorTest {
+
+  private static final Pattern DIVERGENT = Pattern.compile("- Divergent Breakpoints: (\\d+)");
+  private static final Pattern DIFFERING =
+      Pattern.compile("- Breakpoints with Differences: (\\d+)");
+
+  @Test
+  public void differentMethodTypesWithEqualValuesDiverge() {
+    List<BreakpointState> baseline = TestStates.run(30, 1);
+    List<BreakpointState> candidate = copy(baseline);
+    // Same values, but the invoked method was renamed and returns another type
+    MethodState legacy = TestStates.method("parseLegacy", "long");
+    candidate.get(4).setInvokedMethodState(legacy);
+    candidate.get(9).getCurrentMethodState().setReturnType("long");
+
+    assertEquals(2, divergentBreakpoints(baseline, candidate));
+    assertEquals(2, breakpointsWithDifferences(baseline, candidate));
+  }
+
+  @Test
+  public void differentParameterNamesWithEqualValuesDiverge() {
+    List<BreakpointState> baseline = TestStates.run(30, 1);
+    List<BreakpointState> candidate = copy(baseline);
+    candidate.get(7).getCurrentMethodState().getParameters().get(0).setName("input");
+
+    assertEquals(1, divergentBreakpoints(baseline, candidate));
+    assertEquals(1, breakpointsWithDifferences(baseline, candidate));
+  }
+
+  @Test
+  public void differencesTheComparatorIgnoresDoNotDiverge() {
+    List<BreakpointState> baseline = TestStates.run(30, 1);
+    List<BreakpointState> candidate = copy(baseline);
+    // Only the line numbers of the stack trace and the formatting of the value differ
+    ExceptionDetails exception = candidate.get(3).getExceptionDetails();
+    exception.setStackTrace(exception.getStackTrace().replace("Main.java:7", "Main.java:8"));
+    ParameterInfo parameter = candidate.get(5).getCurrentMethodState().getParameters().get(0);
+    parameter.setSerializedValue(parameter.getSerializedValue().replace(",", ", "));
+
+    assertEquals(0, divergentBreakpoints(baseline, candidate));
+    assertEquals(0, breakpointsWithDifferences(baseline, candidate));
+  }
+
+  @Test
+  public void agreesWithTheGroupedReportOnChangedValues() {
+    List<BreakpointState> baseline = TestStates.run(200, 1);
+    List<BreakpointState> candidate = TestStates.run(200, 1);
+    for (int i = 0; i < candidate.size(); i += 13) {
+      candidate.get(i).setInvokedMethodReturnValue("{\"status\":\"FAILED\"}");
+    }
+
+    int divergent = divergentBreakpoints(baseline, candidate);
+    assertTrue(divergent > 0);
+    assertEquals(breakpointsWithDifferences(baseline, candidate), divergent);
+  }
+
+  @Test
+  public void runsWithEqualHitsShareAClass() {
+    List<BreakpointState> baseline = TestStates.run(10, 1);
+    List<BreakpointState> changed = copy(baseline);
+    changed.get(2).getCurrentMethodState().setReturnType("long");
+    List<BreakpointState> changedAgain = copy(changed);
+
+    String report =
+        MultiRunComparator.generateMatrixReport(
+            List.of(baseline, changed, baseline, changedAgain), List.of("a", "b", "c", "d"));
+
+    assertTrue(report, report.contains("  Class:     A   B   A   B\n"));
+    assertTrue(report, report.contains("  Class B (Run 2, Run 4):\n"));
+  }
+
+  private static int divergentBreakpoints(
+      List<BreakpointState> baseline, List<BreakpointState> candidate) {
+    return count(
+        DIVERGENT,
+        MultiRunComparator.generateMatrixReport(
+            List.of(baseline, candidate), List.of("baseline", "candidate")));
+  }
+
+  private static int breakpointsWithDifferences(
+      List<BreakpointState> baseline, List<BreakpointState> candidate) {
+    String report =
+        FileComparator.generateGroupedReport(baseline, candidate, "baseline", "candidate");
+    return count(DIFFERING, report);
+  }
+
+  private static int count(Pattern pattern, String report) {
+    Matcher matcher = pattern.matcher(report);
+    assertTrue(report, matcher.find());
+    return Integer.parseInt(matcher.group(1));
+  }
+
+  // Copies the hits deep enough to change their methods, parameters and exceptions
+  private static List<BreakpointState> copy(List<BreakpointState> hits) {
+    List<BreakpointState> copies = new ArrayList<>();
+    for (BreakpointState hit : hits) {
+      BreakpointState copy = new BreakpointState();
+      copy.setFileName(hit.getFileName());
+      copy.setLineNumber(hit.getLineNumber());
+      copy.setThreadName(hit.getThreadName());
+      copy.setCurrentMethodState(copy(hit.getCurrentMethodState()));
+      copy.setInvokedMethodState(copy(hit.getInvokedMethodState()));
+      copy.setInvokedMethodReturnValue(hit.getInvokedMethodReturnValue());
+      ExceptionDetails exception = hit.getExceptionDetails();
+      if (exception != null) {
+        copy.setExceptionDetails(
+            TestStates.exception(exception.getExceptionType(), exception.getExceptionMessage(), 0));
+        copy.getExceptionDetails().setStackTrace(exception.getStackTrace());
+      }
+      copies.add(copy);
+    }
+    return copies;
+  }
+
+  private static MethodState copy(MethodState method) {
+    List<ParameterInfo> parameters = new ArrayList<>();
+    for (ParameterInfo parameter : method.getParameters()) {
+      parameters.add(new ParameterInfo(parameter.getName(), parameter.getSerializedValue()));
+    }
+    return TestStates.method(
+        method.getMethodName(), method.getReturnType(), parameters.toArray(new ParameterInfo[0]));
+  }
+}
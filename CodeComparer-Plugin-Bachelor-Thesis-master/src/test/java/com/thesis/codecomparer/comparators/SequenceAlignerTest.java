@@ -0,0 +1,131 @@
+package com.thesis.codecomparer.comparators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.thesis.codecomparer.captureFile.TestStates;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/** Checks the alignments of the sequence aligner against a longest common subsequence. */
+public class SequenceAlignerTest {
+
+  @Test
+  public void matchesAsManyKeysAsTheLongestCommonSubsequence() {
+    Random random = new Random(42);
+    for (int round = 0; round < 500; round++) {
+      int[] a = randomKeys(random, random.nextInt(60), 1 + random.nextInt(6));
+      int[] b = mutate(random, a, 1 + random.nextInt(6));
+
+      Alignment alignment = SequenceAligner.align(a, b);
+
+      assertValid(a, b, alignment);
+      assertEquals("round " + round, lcsLength(a, b), matches(alignment));
+    }
+  }
+
+  @Test
+  public void alignsEmptyAndEqualSequences() {
+    int[] keys = {1, 2, 3, 2, 1};
+
+    assertEquals(0, SequenceAligner.align(new int[0], new int[0]).size());
+    assertEquals(0, matches(SequenceAligner.align(keys, new int[0])));
+    assertEquals(keys.length, SequenceAligner.align(new int[0], keys).size());
+    Alignment equal = SequenceAligner.align(keys, keys);
+    assertEquals(keys.length, equal.size());
+    assertEquals(keys.length, matches(equal));
+  }
+
+  @Test
+  public void aMissingHitDoesNotShiftTheFollowingHits() {
+    List<BreakpointState> run1 = TestStates.run(40, 1);
+    List<BreakpointState> run2 = new ArrayList<>(run1);
+    run2.remove(17);
+
+    Alignment alignment = SequenceAligner.alignHits(run1, run2);
+
+    assertEquals(run1.size(), alignment.size());
+    assertEquals(run2.size(), matches(alignment));
+    for (int step = 0; step < alignment.size(); step++) {
+      if (alignment.isMatch(step)) {
+        assertTrue(run1.get(alignment.index1(step)) == run2.get(alignment.index2(step)));
+      } else {
+        assertEquals(-1, alignment.index2(step));
+      }
+    }
+  }
+
+  // Every index of both sequences appears once and in order, matched steps have equal keys
+  private static void assertValid(int[] a, int[] b, Alignment alignment) {
+    int next1 = 0;
+    int next2 = 0;
+    for (int step = 0; step < alignment.size(); step++) {
+      int index1 = alignment.index1(step);
+      int index2 = alignment.index2(step);
+      assertTrue("step without hits", index1 >= 0 || index2 >= 0);
+      if (index1 >= 0) {
+        assertEquals(next1++, index1);
+      }
+      if (index2 >= 0) {
+        assertEquals(next2++, index2);
+      }
+      if (alignment.isMatch(step)) {
+        assertEquals(a[index1], b[index2]);
+      }
+    }
+    assertEquals(a.length, next1);
+    assertEquals(b.length, next2);
+  }
+
+  private static int matches(Alignment alignment) {
+    int matches = 0;
+    for (int step = 0; step < alignment.size(); step++) {
+      if (alignment.isMatch(step)) {
+        matches++;
+      }
+    }
+    return matches;
+  }
+
+  // The textbook dynamic program, quadratic but obviously correct
+  private static int lcsLength(int[] a, int[] b) {
+    int[][] lengths = new int[a.length + 1][b.length + 1];
+    for (int i = a.length - 1; i >= 0; i--) {
+      for (int j = b.length - 1; j >= 0; j--) {
+        lengths[i][j] =
+            a[i] == b[j]
+                ? lengths[i + 1][j + 1] + 1
+                : Math.max(lengths[i + 1][j], lengths[i][j + 1]);
+      }
+    }
+    return lengths[0][0];
+  }
+
+  private static int[] randomKeys(Random random, int length, int alphabet) {
+    int[] keys = new int[length];
+    for (int i = 0; i < length; i++) {
+      keys[i] = random.nextInt(alphabet);
+    }
+    return keys;
+  }
+
+  // Deletes, inserts and replaces some keys, like a run that took a slightly different path
+  private static int[] mutate(Random random, int[] keys, int alphabet) {
+    List<Integer> mutated = new ArrayList<>();
+    for (int key : keys) {
+      int change = random.nextInt(10);
+      if (change == 0) continue;
+      if (change == 1) {
+        mutated.add(random.nextInt(alphabet));
+      }
+      mutated.add(change == 2 ? random.nextInt(alphabet) : key);
+    }
+    if (random.nextBoolean()) {
+      mutated.add(random.nextInt(alphabet));
+    }
+    return mutated.stream().mapToInt(Integer::intValue).toArray();
+  }
+}
@@ -0,0 +1,53 @@
+package com.thesis.codecomparer.comparators;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.thesis.codecomparer.captureFile.TestStates;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.util.List;
+import org.junit.Test;
+
+/** Checks the differences the two-file comparison finds between single hits. */
+public class StateComparatorTest {
+
+  @Test
+  public void reportsAMethodPresentInOneFileOnly() {
+    BreakpointState state1 = TestStates.hit("Foo", 10, "handle", "{\"id\":1}");
+    BreakpointState state2 = TestStates.hit("Foo", 10, "handle", "{\"id\":1}");
+    state2.setInvokedMethodState(null);
+
+    List<String> differences =
+        StateComparator.compareBreakpointStates(state1, "old.txt", state2, "new.txt");
+
+    assertEquals(List.of("  - Invoked Method: present only in file old.txt: parse"), differences);
+    assertFalse(StateComparator.isEqual(state1, state2));
+    assertFalse(StateComparator.isEqual(state2, state1));
+  }
+
+  @Test
+  public void hitsWithoutMethodsAreEqual() {
+    BreakpointState state1 = TestStates.hit("Foo", 10, "handle", "{\"id\":1}");
+    BreakpointState state2 = TestStates.hit("Foo", 10, "handle", "{\"id\": 1}");
+    state1.setInvokedMethodState(null);
+    state2.setInvokedMethodState(null);
+
+    assertTrue(StateComparator.compareBreakpointStates(state1, "a", state2, "b").isEmpty());
+    assertTrue(StateComparator.isEqual(state1, state2));
+  }
+
+  @Test
+  public void comparesExceptionsWithoutMessage() {
+    BreakpointState state1 = TestStates.hit("Foo", 10, "handle", "{\"id\":1}");
+    BreakpointState state2 = TestStates.hit("Foo", 10, "handle", "{\"id\":1}");
+    state1.setExceptionDetails(TestStates.exception("java.lang.NullPointerException", null, 0));
+    state2.setExceptionDetails(TestStates.exception("java.lang.NullPointerException", "x", 0));
+
+    assertEquals(
+        List.of("  - Exception Message: null != x"),
+        StateComparator.compareBreakpointStates(state1, "a", state2, "b"));
+    state2.getExceptionDetails().setExceptionMessage(null);
+    assertTrue(StateComparator.compareBreakpointStates(state1, "a", state2, "b").isEmpty());
+  }
+}
@@ -0,0 +1,92 @@
+package com.thesis.codecomparer.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.thesis.codecomparer.captureFile.CaptureWriter;
+import com.thesis.codecomparer.captureFile.ProgressMonitor;
+import com.thesis.codecomparer.captureFile.TestStates;
+import com.thesis.codecomparer.dataModels.BreakpointState;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/** Runs queries over a capture and checks their rows and what they read. */
+public class CaptureQueryEngineTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void filtersByIndexAndRecordValues() throws IOException {
+    StringWriter report = new StringWriter();
+
+    CaptureQueryEngine.Statistics statistics =
+        run("where method = handle1 and arg.request.id >= 40 select arg.request.id", report);
+
+    assertEquals(50, statistics.indexedHits());
+    assertEquals(13, statistics.selectedHits()); // Every fourth hit calls handle1
+    assertEquals(13, statistics.decodedHits());
+    assertEquals(3, statistics.matchingHits());
+    assertEquals(List.of("arg.request.id", "41", "45", "49"), rows(report));
+  }
+
+  @Test
+  public void skipsRecordsWithoutTheComparedText() throws IOException {
+    StringWriter report = new StringWriter();
+
+    CaptureQueryEngine.Statistics statistics = run("where return.status = FAILED", report);
+
+    assertEquals(50, statistics.skippedHits());
+    assertEquals(0, statistics.decodedHits());
+    assertEquals(0, statistics.rows());
+    assertEquals(List.of("location\tmethod\tthread"), rows(report));
+  }
+
+  @Test
+  public void countsGroupsFromTheIndex() throws IOException {
+    StringWriter report = new StringWriter();
+
+    CaptureQueryEngine.Statistics statistics = run("group by thread", report);
+
+    assertEquals(0, statistics.decodedHits());
+    assertEquals(List.of("thread\tcount", "main\t50"), rows(report));
+  }
+
+  @Test
+  public void stopsAtTheLimit() throws IOException {
+    StringWriter report = new StringWriter();
+
+    CaptureQueryEngine.Statistics statistics =
+        run("where arg.request.items[*] = x select arg.request.id limit 2", report);
+
+    assertEquals(2, statistics.rows());
+    assertTrue(statistics.limited());
+    assertEquals(48, statistics.unreadHits());
+    assertEquals(List.of("arg.request.id", "0", "1"), rows(report));
+    assertTrue(report.toString().contains("- Left Unread after the Limit: 48\n"));
+  }
+
+  // Runs a query over a capture of 50 hits
+  private CaptureQueryEngine.Statistics run(String query, StringWriter report)
+      throws IOException {
+    File capture = new File(folder.getRoot(), "run.txt");
+    try (CaptureWriter writer = new CaptureWriter(capture, false)) {
+      for (BreakpointState hit : TestStates.run(50, 1)) {
+        writer.write(hit);
+      }
+    }
+    return CaptureQueryEngine.run(capture, CaptureQuery.parse(query), report, ProgressMonitor.NONE);
+  }
+
+  // Returns the title and result rows of a report
+  private static List<String> rows(StringWriter report) {
+    String text = report.toString();
+    int start = text.indexOf("=== Results ===\n") + "=== Results ===\n".length();
+    int end = text.indexOf("\n\n=== Summary ===");
+    return List.of(text.substring(start, end).split("\n"));
+  }
+}
@@ -0,0 +1,89 @@
+package com.thesis.codecomparer.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import com.google.gson.JsonPrimitive;
+import com.thesis.codecomparer.query.CaptureQuery.Condition;
+import java.util.List;
+import org.junit.Test;
+
+/** Parses queries and checks their conditions. */
+public class CaptureQueryTest {
+
+  @Test
+  public void parsesAllClauses() {
+    CaptureQuery query =
+        CaptureQuery.parse(
+            " where invoked = parse and arg.request.id >= 3 select distinct arg.request.id"
+                + " limit 5 ");
+
+    assertEquals(2, query.getConditions().size());
+    assertEquals("arg.request.id >= 3", query.getConditions().get(1).toString());
+    assertEquals("[arg.request.id]", query.getSelection().toString());
+    assertTrue(query.isAggregated());
+    assertFalse(query.isIndexOnly());
+    assertEquals(5, query.getLimit());
+    assertEquals(
+        "where invoked = parse and arg.request.id >= 3 select distinct arg.request.id limit 5",
+        query.toString());
+  }
+
+  @Test
+  public void queriesOnIndexedFieldsNeedNoRecords() {
+    CaptureQuery all = CaptureQuery.parse("");
+    CaptureQuery threads = CaptureQuery.parse("group by thread");
+
+    assertEquals("[location, method, thread]", all.getSelection().toString());
+    assertTrue(all.isIndexOnly());
+    assertFalse(all.isAggregated());
+    assertEquals(Integer.MAX_VALUE, all.getLimit());
+    assertTrue(threads.isIndexOnly());
+    assertTrue(threads.isAggregated());
+    assertTrue(threads.getSelection().isEmpty());
+  }
+
+  @Test
+  public void comparesNumbersByValue() {
+    Condition greater = CaptureQuery.parse("where return.count > 9").getConditions().get(0);
+    Condition notEqual = CaptureQuery.parse("where return.status != OK").getConditions().get(0);
+
+    assertTrue(greater.test(List.of(new JsonPrimitive(10))));
+    assertFalse(greater.test(List.of(new JsonPrimitive(9.0))));
+    assertTrue(greater.test(List.of(new JsonPrimitive(1), new JsonPrimitive(12))));
+    assertTrue(notEqual.test(List.of(new JsonPrimitive("FAIL"))));
+    assertFalse(notEqual.test(List.of(new JsonPrimitive("FAIL"), new JsonPrimitive("OK"))));
+  }
+
+  @Test
+  public void onlyTextEqualityAllowsSkippingRecords() {
+    assertNotNull(condition("where return.status = OK").requiredBytes());
+    assertNull(condition("where return.status = 42").requiredBytes());
+    assertNull(condition("where return.status != OK").requiredBytes());
+    assertNull(condition("where method = handle").requiredBytes());
+  }
+
+  @Test
+  public void rejectsInvalidQueries() {
+    for (String query :
+        List.of(
+            "where",
+            "group thread",
+            "limit x",
+            "select unknown",
+            "select line.x",
+            "select arg",
+            "select return.items[",
+            "order by line")) {
+      assertThrows(IllegalArgumentException.class, () -> CaptureQuery.parse(query));
+    }
+  }
+
+  private static Condition condition(String query) {
+    return CaptureQuery.parse(query).getConditions().get(0);
+  }
+}
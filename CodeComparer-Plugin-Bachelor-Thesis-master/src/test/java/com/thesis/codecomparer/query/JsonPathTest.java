@@ -0,0 +1,61 @@
+package com.thesis.codecomparer.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/** Checks which parts of a value the query paths select. */
+public class JsonPathTest {
+
+  private static final JsonElement VALUE =
+      JsonParser.parseString(
+          "{\"status\":\"OK\",\"items\":[{\"id\":1,\"a.b\":\"x\"},{\"id\":2}],"
+              + "\"meta\":{\"id\":3,\"tags\":[\"t\"]}}");
+
+  @Test
+  public void selectsMembersAndIndexes() {
+    assertEquals(List.of(VALUE.toString()), select(""));
+    assertEquals(List.of("OK"), select(".status"));
+    assertEquals(List.of("2"), select(".items[1].id"));
+    assertEquals(List.of("x"), select(".items[0]['a.b']"));
+    assertEquals(List.of("x"), select(".items[0][\"a.b\"]"));
+    assertEquals(List.of(), select(".items[5].id"));
+    assertEquals(List.of(), select(".status.missing"));
+  }
+
+  @Test
+  public void wildcardsSelectMembersAndElements() {
+    assertEquals(List.of("1", "2"), select(".items[*].id"));
+    assertEquals(List.of("1", "2"), select(".items.*.id"));
+    assertEquals(List.of("3", "[\"t\"]"), select(".meta.*"));
+    assertEquals(select(".meta.*"), select(".meta[*]"));
+  }
+
+  @Test
+  public void recursiveStepsSelectAtAnyDepth() {
+    assertEquals(List.of("1", "2", "3"), select("..id"));
+    assertEquals(List.of("t"), select("..tags[0]"));
+    assertEquals(List.of("t"), select(".meta..[0]"));
+  }
+
+  @Test
+  public void rejectsInvalidPaths() {
+    for (String path : List.of("status", ".", ".items[", ".items[x]", ".items['a]", "..")) {
+      assertThrows(IllegalArgumentException.class, () -> JsonPath.compile(path));
+    }
+  }
+
+  // Returns the texts of the selected parts
+  private static List<String> select(String path) {
+    List<String> texts = new ArrayList<>();
+    for (JsonElement element : JsonPath.compile(path).select(VALUE)) {
+      texts.add(CaptureQuery.textOf(element));
+    }
+    return texts;
+  }
+}
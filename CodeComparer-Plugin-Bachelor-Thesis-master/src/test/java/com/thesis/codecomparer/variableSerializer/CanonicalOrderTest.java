@@ -0,0 +1,68 @@
+package com.thesis.codecomparer.variableSerializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+/** Checks that equal values are sorted in the same order in every run. */
+public class CanonicalOrderTest {
+
+  @Test
+  public void elementsAreOrderedWithoutTheirIds() {
+    List<String> run1 =
+        new ArrayList<>(List.of("\"User(id=7)\"", "\"b\"", "\"Lock@1b6d3586\"", "\"a\""));
+    List<String> run2 =
+        new ArrayList<>(List.of("\"a\"", "\"Lock@7a81197d\"", "\"User(id=12)\"", "\"b\""));
+
+    CanonicalOrder.sortElements(run1);
+    CanonicalOrder.sortElements(run2);
+
+    for (int i = 0; i < run1.size(); i++) {
+      assertEquals(strip(run1.get(i)), strip(run2.get(i)));
+    }
+  }
+
+  @Test
+  public void elementsEqualWithoutIdsAreOrderedByTheirJson() {
+    List<String> elements = new ArrayList<>(List.of("\"User(id=9)\"", "\"User(id=10)\""));
+    List<String> reversed = new ArrayList<>(elements);
+    Collections.reverse(reversed);
+    elements.add(null);
+    reversed.add(0, null);
+
+    CanonicalOrder.sortElements(elements);
+    CanonicalOrder.sortElements(reversed);
+
+    assertEquals(elements, reversed);
+    assertTrue(elements.indexOf("\"User(id=10)\"") < elements.indexOf("\"User(id=9)\""));
+  }
+
+  @Test
+  public void entriesAreOrderedByKeyThenByValue() {
+    List<String[]> entries = new ArrayList<>();
+    entries.add(new String[] {"\"k(id=2)\"", "2"});
+    entries.add(new String[] {"\"b\"", null});
+    entries.add(new String[] {"\"k(id=1)\"", "1"});
+    entries.add(new String[] {"\"a\"", "3"});
+    List<String[]> shuffled = new ArrayList<>(entries);
+    Collections.reverse(shuffled);
+
+    CanonicalOrder.sortEntries(entries);
+    CanonicalOrder.sortEntries(shuffled);
+
+    assertEquals("\"a\"", entries.get(0)[0]);
+    assertEquals("\"b\"", entries.get(1)[0]);
+    assertEquals("\"k\"", strip(entries.get(2)[0]));
+    assertEquals("\"k\"", strip(entries.get(3)[0]));
+    assertArrayEquals(entries.toArray(), shuffled.toArray());
+  }
+
+  private static String strip(String json) {
+    return json.replaceAll("\\(id=\\d+\\)|@[0-9a-f]{8}", "");
+  }
+}